@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteException;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@SmallTest
+public class ParallelTableReaderTest {
+
+    private static final String[] COLUMNS = new String[] {"_id", "name", "money", "rate"};
+
+    private static Callable<Cursor> createQuery(final int rows) {
+        return new Callable<Cursor>() {
+
+            @Override
+            public Cursor call() {
+                MatrixCursor cursor = new MatrixCursor(COLUMNS);
+                for (int i = 0; i < rows; i++) {
+                    cursor.addRow(new Object[] {(long) i, i % 7 == 0 ? null : "name-" + i, i * 100L, i / 4d});
+                }
+                return cursor;
+            }
+
+        };
+    }
+
+    @Test
+    public void cursorsContainAllTheRowsInOrder() {
+        int[] sizes = new int[] {0, 1, 255, 256, 257, 5000, 3};
+        ParallelTableReader reader = new ParallelTableReader(2);
+        try {
+            List<Cursor> cursors = new ArrayList<>();
+            for (int size : sizes) {
+                cursors.add(reader.read(createQuery(size)));
+            }
+            for (int i = 0; i < sizes.length; i++) {
+                Cursor cursor = cursors.get(i);
+                assertEquals(sizes[i], cursor.getCount());
+                int nameIndex = cursor.getColumnIndex("name");
+                int row = 0;
+                while (cursor.moveToNext()) {
+                    assertEquals(row, cursor.getLong(cursor.getColumnIndex("_id")));
+                    if (row % 7 == 0) {
+                        assertTrue(cursor.isNull(nameIndex));
+                        assertNull(cursor.getString(nameIndex));
+                    } else {
+                        assertEquals("name-" + row, cursor.getString(nameIndex));
+                    }
+                    assertEquals(row * 100L, cursor.getLong(cursor.getColumnIndex("money")));
+                    assertEquals(row / 4d, cursor.getDouble(cursor.getColumnIndex("rate")));
+                    row++;
+                }
+                assertEquals(sizes[i], row);
+                cursor.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void failedQueryIsReportedByTheCursor() {
+        ParallelTableReader reader = new ParallelTableReader(2);
+        try {
+            Cursor cursor = reader.read(new Callable<Cursor>() {
+
+                @Override
+                public Cursor call() {
+                    throw new SQLiteException("no such table");
+                }
+
+            });
+            try {
+                cursor.moveToNext();
+                fail("The cursor should report the error of the query");
+            } catch (SQLiteException e) {
+                assertEquals("no such table", e.getMessage());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void closedCursorDoesNotBlockTheWorkers() {
+        ParallelTableReader reader = new ParallelTableReader(1);
+        try {
+            Cursor first = reader.read(createQuery(10000));
+            Cursor second = reader.read(createQuery(10));
+            assertTrue(first.moveToNext());
+            first.close();
+            // the only worker must release the first query to execute the second one
+            assertEquals(10, second.getCount());
+            int rows = 0;
+            while (second.moveToNext()) {
+                rows++;
+            }
+            assertEquals(10, rows);
+            assertFalse(second.moveToNext());
+        } finally {
+            reader.close();
+        }
+    }
+}
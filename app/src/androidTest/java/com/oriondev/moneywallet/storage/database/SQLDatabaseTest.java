@@ -32,6 +32,10 @@ import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.oriondev.moneywallet.R;
 import com.oriondev.moneywallet.model.Money;
+import com.oriondev.moneywallet.storage.database.model.Category;
+import com.oriondev.moneywallet.storage.database.model.DeletedItem;
+import com.oriondev.moneywallet.storage.database.model.Transaction;
+import com.oriondev.moneywallet.storage.database.model.Wallet;
 import com.oriondev.moneywallet.utils.DateUtils;
 
 import org.junit.After;
@@ -44,7 +48,9 @@ import java.util.Date;
 import java.util.Locale;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * Created by andrea on 28/08/18.
@@ -54,6 +60,8 @@ public class SQLDatabaseTest {
 
     private Context mContext;
     private SQLDatabase mDatabase;
+    private String mLastQuery;
+    private String[] mLastQueryArgs;
 
     @Before
     public void setUp() {
@@ -69,6 +77,15 @@ public class SQLDatabaseTest {
         // create a new database for testing purposes
         mDatabase = new SQLDatabase(mContext);
         mDatabase.setDeletedObjectCacheEnabled(false);
+        mDatabase.setQueryListener(new SQLDatabase.QueryListener() {
+
+            @Override
+            public void onQuery(String query, String[] selectionArgs) {
+                mLastQuery = query;
+                mLastQueryArgs = selectionArgs;
+            }
+
+        });
     }
 
     @After
@@ -846,6 +863,162 @@ public class SQLDatabaseTest {
         return mDatabase.updateTransferModel(id, contentValues);
     }
 
+    /**
+     * Check the plan of the query that has been executed by the database to create the cursor:
+     * the transactions must be searched through the given index and they must never be
+     * scanned (a scan of a whole index, even a covering one, is as slow as a full table scan).
+     */
+    private void checkQueryUsesIndex(Cursor cursor, String index) {
+        assertNotNull(cursor);
+        cursor.close();
+        String query = "EXPLAIN QUERY PLAN " + mLastQuery;
+        Cursor plan = mDatabase.getReadableDatabase().rawQuery(query, mLastQueryArgs);
+        assertNotNull(plan);
+        int detailIndex = plan.getColumnIndex("detail");
+        boolean indexUsed = false;
+        while (plan.moveToNext()) {
+            String detail = plan.getString(detailIndex);
+            boolean scan = detail.startsWith("SCAN");
+            assertFalse("scan detected: " + detail + " in query: " + mLastQuery, scan &&
+                    (detail.contains("TABLE " + Schema.Transaction.TABLE) || detail.contains("INDEX transactions_")));
+            if (detail.startsWith("SEARCH") && detail.contains("INDEX " + index)) {
+                indexUsed = true;
+            }
+        }
+        plan.close();
+        assertTrue("index " + index + " not used by query: " + mLastQuery, indexUsed);
+    }
+
+    private void checkBudgetProgressMatchesLegacyQuery() {
+        // this is the query that computed the progress of the budgets on the fly
+        String query = "SELECT " +
+                "b." + Schema.Budget.ID + " AS " + Contract.Budget.ID + ", " +
+                "b." + Schema.Budget.TYPE + " AS " + Contract.Budget.TYPE + ", " +
+                "b." + Schema.Budget.CATEGORY + " AS " + Contract.Budget.CATEGORY_ID + ", " +
+                "c." + Schema.Category.NAME + " AS " + Contract.Budget.CATEGORY_NAME + ", " +
+                "c." + Schema.Category.ICON + " AS " + Contract.Budget.CATEGORY_ICON + ", " +
+                "c." + Schema.Category.TYPE + " AS " + Contract.Budget.CATEGORY_TYPE + ", " +
+                "c." + Schema.Category.SHOW_REPORT + " AS " + Contract.Budget.CATEGORY_SHOW_REPORT + ", " +
+                "c." + Schema.Category.TAG + " AS " + Contract.Budget.CATEGORY_TAG + ", " +
+                "b." + Schema.Budget.START_DATE + " AS " + Contract.Budget.START_DATE + ", " +
+                "b." + Schema.Budget.END_DATE + " AS " + Contract.Budget.END_DATE + ", " +
+                "b." + Schema.Budget.MONEY + " AS " + Contract.Budget.MONEY + ", " +
+                "b." + Schema.Budget.CURRENCY + " AS " + Contract.Budget.CURRENCY + ", " +
+                "b." + Schema.Budget.TAG + " AS " + Contract.Budget.TAG + ", " +
+                "SUM(_progress) AS " + Contract.Budget.PROGRESS + "," +
+                "GROUP_CONCAT('<' || _wallet_id || '>') AS " + Contract.Budget.WALLET_IDS + "," +
+                "MAX(_wallet_total) AS " + Contract.Budget.HAS_WALLET_IN_TOTAL + " FROM(" +
+
+                // query all budgets of type expenses
+                "SELECT b.*, SUM(t." + Schema.Transaction.MONEY + ") AS _progress " +
+                "FROM(SELECT b.*, w." + Schema.Wallet.ID + " AS _wallet_id, " +
+                "w." + Schema.Wallet.CURRENCY + " AS _wallet_currency, " +
+                "w." + Schema.Wallet.COUNT_IN_TOTAL + " AS _wallet_total FROM " +
+                Schema.BudgetWallet.TABLE + " AS bw JOIN " + Schema.Budget.TABLE + " AS b ON " +
+                "bw._budget = b." + Schema.Budget.ID + " JOIN " + Schema.Wallet.TABLE + " AS w ON " +
+                "bw._wallet = w." + Schema.Wallet.ID + " WHERE bw. " + Schema.BudgetWallet.DELETED +
+                " = 0 AND b." + Schema.Budget.DELETED + " = 0 AND w." + Schema.Wallet.DELETED +
+                " = 0 AND b." + Schema.Budget.TYPE + " = " + Schema.BudgetType.EXPENSES +
+                " ) AS b LEFT JOIN " + Schema.Transaction.TABLE + " AS t ON b._wallet_id = t." +
+                Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DELETED + " = 0 AND t." +
+                Schema.Transaction.DIRECTION + " = 0 AND t." + Schema.Transaction.DATE +
+                " <= DATETIME('now', 'localtime') AND t." + Schema.Transaction.DATE +
+                " >= b." + Schema.Budget.START_DATE + " AND t." + Schema.Transaction.DATE +
+                " < DATE(b." + Schema.Budget.END_DATE + ", '+1 day') " +
+                // exclude transfers within the budget
+                "AND t." + Schema.Transaction.ID + " NOT IN ( " +
+                "SELECT tf." + Schema.Transfer.TRANSACTION_FROM + " " +
+                "FROM " + Schema.Transfer.TABLE + " AS tf " +
+                "LEFT JOIN " + Schema.Transaction.TABLE + " AS t2 " +
+                "ON tf." + Schema.Transfer.TRANSACTION_TO + " = t2." + Schema.Transaction.ID + " " +
+                "LEFT JOIN " + Schema.BudgetWallet.TABLE + " AS bw2 " +
+                "ON t2." + Schema.Transaction.WALLET + " = bw2." + Schema.BudgetWallet.WALLET + " " +
+                "WHERE bw2." + Schema.BudgetWallet.BUDGET + " = b." + Schema.Budget.ID + " " +
+                "AND bw2." + Schema.BudgetWallet.WALLET + " != b._wallet_id " +
+                ") " +
+                "GROUP BY b." + Schema.Budget.ID + ",b._wallet_id " +
+                "UNION " +
+
+                // query all budgets of type incomes
+                "SELECT b.*, SUM(t." + Schema.Transaction.MONEY + ") AS _progress " +
+                "FROM(SELECT b.*, w." + Schema.Wallet.ID + " AS _wallet_id, " +
+                "w." + Schema.Wallet.CURRENCY + " AS _wallet_currency, " +
+                "w." + Schema.Wallet.COUNT_IN_TOTAL + " AS _wallet_total FROM " +
+                Schema.BudgetWallet.TABLE + " AS bw JOIN " + Schema.Budget.TABLE + " AS b ON " +
+                "bw._budget = b." + Schema.Budget.ID + " JOIN " + Schema.Wallet.TABLE + " AS w ON " +
+                "bw._wallet = w." + Schema.Wallet.ID + " WHERE bw. " + Schema.BudgetWallet.DELETED +
+                " = 0 AND b." + Schema.Budget.DELETED + " = 0 AND w." + Schema.Wallet.DELETED +
+                " = 0 AND b." + Schema.Budget.TYPE + " = " + Schema.BudgetType.INCOMES +
+                " ) AS b LEFT JOIN " + Schema.Transaction.TABLE + " AS t ON b._wallet_id = t." +
+                Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DELETED + " = 0 AND t." +
+                Schema.Transaction.DIRECTION + " = 1 AND t." + Schema.Transaction.DATE +
+                " <= DATETIME('now', 'localtime') AND t." + Schema.Transaction.DATE +
+                " >= b." + Schema.Budget.START_DATE + " AND t." +
+                Schema.Transaction.DATE + " < DATE(b." + Schema.Budget.END_DATE + ", '+1 day') " +
+                // exclude transfers within the budget
+                "AND t." + Schema.Transaction.ID + " NOT IN ( " +
+                "SELECT tf." + Schema.Transfer.TRANSACTION_TO + " " +
+                "FROM " + Schema.Transfer.TABLE + " AS tf " +
+                "LEFT JOIN " + Schema.Transaction.TABLE + " AS t2 " +
+                "ON tf." + Schema.Transfer.TRANSACTION_FROM + " = t2." + Schema.Transaction.ID + " " +
+                "LEFT JOIN " + Schema.BudgetWallet.TABLE + " AS bw2 " +
+                "ON t2." + Schema.Transaction.WALLET + " = bw2." + Schema.BudgetWallet.WALLET + " " +
+                "WHERE bw2." + Schema.BudgetWallet.BUDGET + " = b." + Schema.Budget.ID + " " +
+                "AND bw2." + Schema.BudgetWallet.WALLET + " != b._wallet_id " +
+                ") " +
+
+                "GROUP BY b."
+                + Schema.Budget.ID + ", _wallet_id UNION " +
+                // query all budgets of type category
+                "SELECT b.*, SUM(((t." + Schema.Transaction.DIRECTION + " * 2) - 1) * t." +
+                Schema.Transaction.MONEY + ") AS _progress FROM(SELECT b.*, w." + Schema.Wallet.ID +
+                " AS _wallet_id, w." + Schema.Wallet.CURRENCY + " AS _wallet_currency, w." +
+                Schema.Wallet.COUNT_IN_TOTAL + " AS _wallet_total FROM " + Schema.BudgetWallet.TABLE +
+                " AS bw JOIN " + Schema.Budget.TABLE + " AS b ON bw._budget = b." + Schema.Budget.ID +
+                " JOIN " + Schema.Wallet.TABLE + " AS w ON bw._wallet = w." + Schema.Wallet.ID +
+                " WHERE bw. " + Schema.BudgetWallet.DELETED + " = 0 AND b." + Schema.Budget.DELETED +
+                " = 0 AND w." + Schema.Wallet.DELETED + " = 0 AND b." + Schema.Budget.TYPE + " = " +
+                Schema.BudgetType.CATEGORY + ") AS b LEFT JOIN (SELECT tr.*, tc." +
+                Schema.Category.PARENT + " AS _parent_category FROM " + Schema.Transaction.TABLE +
+                " AS tr JOIN " + Schema.Category.TABLE + " AS tc ON tr." + Schema.Transaction.CATEGORY +
+                " = tc." + Schema.Category.ID + " WHERE tr." + Schema.Transaction.DELETED + " = 0 " +
+                " AND tc." + Schema.Category.DELETED + " = 0) AS t ON (b._wallet_id = t." +
+                Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DATE +
+                " <= DATETIME('now', 'localtime') AND t." + Schema.Transaction.DATE +
+                " >= b." + Schema.Budget.START_DATE + " AND t." +
+                Schema.Transaction.DATE + " < DATE(b." + Schema.Budget.END_DATE + ", '+1 day') AND (b."
+                + Schema.Budget.CATEGORY + " = t." + Schema.Transaction.CATEGORY + " OR b." +
+                Schema.Budget.CATEGORY + " = t._parent_category)) GROUP BY b." + Schema.Budget.ID +
+                ", _wallet_id) AS b LEFT JOIN " + Schema.Category.TABLE + " AS c ON b." +
+                Schema.Budget.CATEGORY + " = c." + Schema.Category.ID + " AND c." +
+                Schema.Category.DELETED + " = 0 GROUP BY b." + Schema.Budget.ID;
+        Cursor expected = mDatabase.getReadableDatabase().rawQuery("SELECT * FROM (" + query + ") ORDER BY " + Contract.Budget.ID, null);
+        Cursor actual = mDatabase.getBudgets(null, null, null, Contract.Budget.ID);
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals(expected.getCount(), actual.getCount());
+        while (expected.moveToNext() && actual.moveToNext()) {
+            long budgetId = expected.getLong(expected.getColumnIndex(Contract.Budget.ID));
+            assertEquals(budgetId, actual.getLong(actual.getColumnIndex(Contract.Budget.ID)));
+            int expectedProgress = expected.getColumnIndex(Contract.Budget.PROGRESS);
+            int actualProgress = actual.getColumnIndex(Contract.Budget.PROGRESS);
+            assertEquals("progress of budget " + budgetId, expected.isNull(expectedProgress), actual.isNull(actualProgress));
+            assertEquals("progress of budget " + budgetId, expected.getLong(expectedProgress), actual.getLong(actualProgress));
+            long[] expectedWallets = parseIds(expected.getString(expected.getColumnIndex(Contract.Budget.WALLET_IDS)));
+            long[] actualWallets = parseIds(actual.getString(actual.getColumnIndex(Contract.Budget.WALLET_IDS)));
+            if (expectedWallets != null && actualWallets != null) {
+                Arrays.sort(expectedWallets);
+                Arrays.sort(actualWallets);
+            }
+            assertTrue(Arrays.equals(expectedWallets, actualWallets));
+            assertEquals(expected.getInt(expected.getColumnIndex(Contract.Budget.HAS_WALLET_IN_TOTAL)),
+                    actual.getInt(actual.getColumnIndex(Contract.Budget.HAS_WALLET_IN_TOTAL)));
+        }
+        expected.close();
+        actual.close();
+        assertTrue(mDatabase.verifyBudgetProgress());
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////////
     //////////////////////////////////// START THE TEST /////////////////////////////////////
     /////////////////////////////////////////////////////////////////////////////////////////
@@ -1924,4 +2097,312 @@ public class SQLDatabaseTest {
         checkCursorSize(mDatabase.getAttachments(null, null, null, null), 0);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void transactionQueriesUseIndexes() throws Exception {
+        checkQueryUsesIndex(mDatabase.getWallets(null, null, null, null), "transactions_date_index");
+        checkQueryUsesIndex(mDatabase.getBudgets(null, null, null, null), "transactions_date_index");
+        checkQueryUsesIndex(mDatabase.getDebts(null, null, null, null), "transactions_debt_index");
+        checkQueryUsesIndex(mDatabase.getSavings(null, null, null, null), "transactions_saving_index");
+        checkQueryUsesIndex(mDatabase.getEvents(null, null, null, null), "transactions_event_index");
+        // the same selections of the transaction list and of the period detail loaders
+        String[] walletArgs = new String[] {"1"};
+        String selection = Contract.Transaction.WALLET_ID + " = ? AND " + Contract.Transaction.DATE +
+                " <= DATETIME('now', 'localtime')";
+        String sortOrder = Contract.Transaction.DATE + " DESC";
+        checkQueryUsesIndex(mDatabase.getTransactions(null, selection, walletArgs, sortOrder), "transactions_wallet_index");
+        selection = Contract.Transaction.WALLET_COUNT_IN_TOTAL + " = 1 AND " + Contract.Transaction.DATE +
+                " <= DATETIME('now', 'localtime')";
+        checkQueryUsesIndex(mDatabase.getTransactions(null, selection, null, sortOrder), "transactions_date_index");
+        selection = Contract.Transaction.WALLET_ID + " = ? AND " + Contract.Transaction.CONFIRMED + " = '1' AND " +
+                Contract.Transaction.COUNT_IN_TOTAL + " = '1' AND " + Contract.Transaction.DATE +
+                " <= DATETIME('now', 'localtime') AND " + Contract.Transaction.DIRECTION + " = " +
+                Contract.Direction.EXPENSE + " AND " + Contract.Transaction.DATE + " >= '2018-01-01 00:00:00' AND " +
+                Contract.Transaction.DATE + " <= '2018-01-31 23:59:59'";
+        checkQueryUsesIndex(mDatabase.getTransactions(null, selection, walletArgs, null), "transactions_wallet_index");
+        selection = Contract.Transaction.CATEGORY_ID + " = ? AND " + Contract.Transaction.DATE +
+                " <= DATETIME('now', 'localtime')";
+        checkQueryUsesIndex(mDatabase.getTransactions(null, selection, walletArgs, sortOrder), "transactions_category_index");
+        selection = Contract.Transaction.EVENT_ID + " = ?";
+        checkQueryUsesIndex(mDatabase.getTransactions(null, selection, walletArgs, sortOrder), "transactions_event_index");
+    }
+
+    @Test
+    public void getTransactionDays() throws Exception {
+        long id1 = insertWallet("Test wallet 1", "encoded-icon-1", "EUR", "note-wallet-1", true, 0L, false, "tag-wallet-1");
+        long id2 = insertCategory("Test category 2", "encoded-icon-2", Contract.CategoryType.INCOME.getValue(), null, true, "tag-category-2");
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2018, Calendar.JANUARY, 10, 10, 0, 0);
+        Date date1 = calendar.getTime();
+        calendar.set(2018, Calendar.JANUARY, 11, 10, 0, 0);
+        Date date2 = calendar.getTime();
+        insertTransaction(1000L, date1, "desc", id2, Contract.Direction.INCOME, 0, id1, null, null, null, null, null, true, true, null, null, null);
+        insertTransaction(300L, date1, "desc", id2, Contract.Direction.EXPENSE, 0, id1, null, null, null, null, null, true, true, null, null, null);
+        insertTransaction(500L, date2, "desc", id2, Contract.Direction.INCOME, 0, id1, null, null, null, null, null, false, true, null, null, null);
+        Cursor cursor = mDatabase.getTransactionDays(null, null, Contract.TransactionDay.DAY + " DESC");
+        assertNotNull(cursor);
+        assertEquals(2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals("2018-01-11", cursor.getString(cursor.getColumnIndex(Contract.TransactionDay.DAY)));
+        assertEquals(1, cursor.getInt(cursor.getColumnIndex(Contract.TransactionDay.COUNT)));
+        assertTrue(cursor.isNull(cursor.getColumnIndex(Contract.TransactionDay.MONEY)));
+        cursor.moveToNext();
+        assertEquals("2018-01-10", cursor.getString(cursor.getColumnIndex(Contract.TransactionDay.DAY)));
+        assertEquals(2, cursor.getInt(cursor.getColumnIndex(Contract.TransactionDay.COUNT)));
+        assertEquals(700L, cursor.getLong(cursor.getColumnIndex(Contract.TransactionDay.MONEY)));
+        cursor.close();
+        // the transactions can be queried one page at time
+        String sortOrder = Contract.Transaction.DATE + " DESC, " + Contract.Transaction.ID + " DESC";
+        checkCursorSize(mDatabase.getTransactions(null, null, null, sortOrder, "2"), 2);
+    }
+
+    @Test
+    public void budgetProgressMatchesLegacyQuery() throws Exception {
+        long wallet1 = insertWallet("Test wallet 1", "encoded-icon-1", "EUR", null, true, 0L, false, null);
+        long wallet2 = insertWallet("Test wallet 2", "encoded-icon-2", "EUR", null, false, 0L, false, null);
+        long wallet3 = insertWallet("Test wallet 3", "encoded-icon-3", "EUR", null, true, 0L, false, null);
+        long parent = insertCategory("Test parent", "encoded-icon-4", Contract.CategoryType.EXPENSE.getValue(), null, true, null);
+        long child = insertCategory("Test child", "encoded-icon-5", Contract.CategoryType.EXPENSE.getValue(), parent, true, null);
+        long other = insertCategory("Test other", "encoded-icon-6", Contract.CategoryType.INCOME.getValue(), null, true, null);
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -10);
+        Date start = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, 5);
+        Date past = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, 10);
+        Date future = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, 5);
+        Date end = calendar.getTime();
+        long expenses = insertBudget(Contract.BudgetType.EXPENSES.getValue(), null, start, end, 1000L, "EUR", new Long[] {wallet1, wallet2}, null);
+        long incomes = insertBudget(Contract.BudgetType.INCOMES.getValue(), null, start, end, 1000L, "EUR", new Long[] {wallet1, wallet3}, null);
+        long category = insertBudget(Contract.BudgetType.CATEGORY.getValue(), parent, start, end, 1000L, "EUR", new Long[] {wallet1, wallet2, wallet3}, null);
+        checkBudgetProgressMatchesLegacyQuery();
+        long transaction1 = insertTransaction(100L, past, "desc", child, Contract.Direction.EXPENSE, 0, wallet1, null, null, null, null, null, true, true, null, null, null);
+        long transaction2 = insertTransaction(200L, past, "desc", parent, Contract.Direction.EXPENSE, 0, wallet2, null, null, null, null, null, true, true, null, null, null);
+        long transaction3 = insertTransaction(300L, past, "desc", other, Contract.Direction.INCOME, 0, wallet3, null, null, null, null, null, true, true, null, null, null);
+        insertTransaction(400L, future, "desc", child, Contract.Direction.EXPENSE, 0, wallet1, null, null, null, null, null, true, true, null, null, null);
+        // transfer inside the expenses budget and across the boundaries of the incomes budget
+        long transfer1 = insertTransfer("desc", past, wallet1, wallet2, null, 50L, 50L, 0L, null, null, null, true, true, null, null, null);
+        long transfer2 = insertTransfer("desc", past, wallet2, wallet3, null, 70L, 70L, 0L, null, null, null, true, true, null, null, null);
+        checkBudgetProgressMatchesLegacyQuery();
+        // now mutate the data and check that the materialized progress follows
+        assertEquals(1, updateTransaction(transaction1, 150L, past, "desc", other, Contract.Direction.INCOME, 0, wallet3, null, null, null, null, null, true, true, null, null, null));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, mDatabase.deleteTransaction(transaction2));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, updateTransfer(transfer1, "desc", past, wallet3, wallet1, null, 60L, 60L, 0L, null, null, null, true, true, null, null, null));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, mDatabase.deleteTransfer(transfer2));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, updateBudget(expenses, Contract.BudgetType.EXPENSES.getValue(), null, past, end, 1000L, "EUR", new Long[] {wallet3}, null));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, updateBudget(incomes, Contract.BudgetType.CATEGORY.getValue(), other, start, end, 1000L, "EUR", new Long[] {wallet1, wallet3}, null));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, updateCategory(child, "Test child", "encoded-icon-5", Contract.CategoryType.EXPENSE.getValue(), null, true, null));
+        checkBudgetProgressMatchesLegacyQuery();
+        assertEquals(1, mDatabase.deleteTransaction(transaction3));
+        assertEquals(1, mDatabase.deleteBudget(category));
+        checkBudgetProgressMatchesLegacyQuery();
+    }
+
+    @Test
+    public void relationFilters() throws Exception {
+        long wallet1 = insertWallet("Test wallet 1", "encoded-icon-1", "EUR", null, true, 0L, false, null);
+        long wallet2 = insertWallet("Test wallet 2", "encoded-icon-2", "EUR", null, true, 0L, false, null);
+        long category = insertCategory("Test category", "encoded-icon-3", Contract.CategoryType.EXPENSE.getValue(), null, true, null);
+        long person1 = insertPerson("Test person 1", "encoded-icon-4", null, null);
+        long person2 = insertPerson("Test person 2", "encoded-icon-5", null, null);
+        Date date = new Date();
+        insertTransaction(100L, date, "desc", category, Contract.Direction.EXPENSE, 0, wallet1, null, null, null, null, null, true, true, new Long[] {person1}, null, null);
+        insertTransaction(200L, date, "desc", category, Contract.Direction.EXPENSE, 0, wallet1, null, null, null, null, null, true, true, new Long[] {person1, person2}, null, null);
+        insertTransaction(300L, date, "desc", category, Contract.Direction.EXPENSE, 0, wallet2, null, null, null, null, null, true, true, null, null, null);
+        checkCursorSize(mDatabase.getPeopleTransactions(person1, null, null, null, null), 2);
+        checkCursorSize(mDatabase.getPeopleTransactions(person2, null, null, null, null), 1);
+        String selection = Contract.Transaction.MONEY + " > ?";
+        checkCursorSize(mDatabase.getPeopleTransactions(person1, null, selection, new String[] {"150"}, null), 1);
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.MONTH, 1);
+        Date end = calendar.getTime();
+        insertBudget(Contract.BudgetType.EXPENSES.getValue(), null, date, end, 1000L, "EUR", new Long[] {wallet1}, null);
+        insertBudget(Contract.BudgetType.EXPENSES.getValue(), null, date, end, 1000L, "EUR", new Long[] {wallet1, wallet2}, null);
+        checkCursorSize(mDatabase.getWalletBudgets(wallet1, null, null, null, null), 2);
+        checkCursorSize(mDatabase.getWalletBudgets(wallet2, null, null, null, null), 1);
+        // the wallet ids column is still returned as a set of ids
+        Cursor cursor = mDatabase.getWalletBudgets(wallet2, null, null, null, null);
+        assertNotNull(cursor);
+        assertTrue(cursor.moveToFirst());
+        long[] walletIds = new IdSetReader().read(cursor, cursor.getColumnIndex(Contract.Budget.WALLET_IDS));
+        cursor.close();
+        assertNotNull(walletIds);
+        Arrays.sort(walletIds);
+        assertTrue(Arrays.equals(new long[] {wallet1, wallet2}, walletIds));
+    }
+
+
+    @Test
+    public void searchTransactions() throws Exception {
+        long wallet = insertWallet("Test wallet", "encoded-icon-1", "EUR", null, true, 0L, false, null);
+        long category1 = insertCategory("Groceries", "encoded-icon-2", Contract.CategoryType.EXPENSE.getValue(), null, true, null);
+        long category2 = insertCategory("Salary", "encoded-icon-3", Contract.CategoryType.INCOME.getValue(), null, true, null);
+        Date date = new Date();
+        insertTransaction(100L, date, "Weekly shopping", category1, Contract.Direction.EXPENSE, 0, wallet, null, null, null, null, null, true, true, null, null, null);
+        insertTransaction(200L, date, "Dinner", category1, Contract.Direction.EXPENSE, 0, wallet, null, "shopping list", null, null, null, true, true, null, null, null);
+        insertTransaction(300L, date, "Monthly salary", category2, Contract.Direction.INCOME, 0, wallet, null, null, null, null, null, true, true, null, null, null);
+        // every word is matched as a prefix
+        checkCursorSize(mDatabase.searchTransactions("shop", null, null, null, null, null, null), 2);
+        checkCursorSize(mDatabase.searchTransactions("groc shop", null, null, null, null, null, null), 2);
+        checkCursorSize(mDatabase.searchTransactions("week shop", null, null, null, null, null, null), 1);
+        checkCursorSize(mDatabase.searchTransactions("", null, null, null, null, null, null), 3);
+        // the search can be restricted to a subset of the columns
+        String[] columns = new String[] {Contract.Transaction.DESCRIPTION};
+        checkCursorSize(mDatabase.searchTransactions("shop", columns, null, null, null, null, null), 1);
+        checkCursorSize(mDatabase.searchTransactions("groc", columns, null, null, null, null, null), 0);
+        // the selection is applied to the matched transactions
+        String selection = Contract.Transaction.MONEY + " > ?";
+        checkCursorSize(mDatabase.searchTransactions("shop", null, null, selection, new String[] {"150"}, null, null), 1);
+        // the index follows the changes of the related tables
+        updateCategory(category2, "Wage", "encoded-icon-3", Contract.CategoryType.INCOME.getValue(), null, true, null);
+        checkCursorSize(mDatabase.searchTransactions("wage", null, null, null, null, null, null), 1);
+        checkCursorSize(mDatabase.searchTransactions("salary", new String[] {Contract.Transaction.CATEGORY_NAME}, null, null, null, null, null), 0);
+        assertTrue(mDatabase.verifyTransactionSearch());
+    }
+
+    @Test
+    public void bulkImportReplacesDatabase() throws Exception {
+        insertWallet("Old wallet", "encoded-icon-1", "EUR", null, true, 0L, false, null);
+        mDatabase.close();
+        SQLDatabaseBulkImporter importer = new SQLDatabaseBulkImporter(mContext);
+        long walletId;
+        long categoryId;
+        try {
+            importer.begin();
+            Wallet wallet = new Wallet();
+            wallet.mName = "Restored wallet";
+            wallet.mIcon = "encoded-icon-2";
+            wallet.mCurrency = "EUR";
+            wallet.mCountInTotal = true;
+            wallet.mUUID = "wallet-uuid";
+            walletId = importer.insert(wallet);
+            Category category = new Category();
+            category.mName = "Restored category";
+            category.mIcon = "encoded-icon-3";
+            category.mType = Contract.CategoryType.EXPENSE.getValue();
+            category.mShowReport = true;
+            category.mUUID = "category-uuid";
+            categoryId = importer.insert(category);
+            for (int i = 0; i < 100; i++) {
+                Transaction transaction = new Transaction();
+                transaction.mMoney = 100L;
+                transaction.mDate = DateUtils.getSQLDateTimeString(new Date());
+                transaction.mDescription = "Restored transaction " + i;
+                transaction.mCategory = categoryId;
+                transaction.mDirection = Contract.Direction.EXPENSE;
+                transaction.mWallet = walletId;
+                transaction.mConfirmed = true;
+                transaction.mCountInTotal = true;
+                transaction.mUUID = "transaction-uuid-" + i;
+                importer.insert(transaction);
+            }
+            importer.commit();
+        } finally {
+            importer.close();
+        }
+        mDatabase = new SQLDatabase(mContext);
+        mDatabase.setDeletedObjectCacheEnabled(false);
+        // the old content is replaced and the materialized tables are already filled
+        checkCursorSize(mDatabase.getWallets(null, null, null, null), 1);
+        checkCursorSize(mDatabase.getTransactions(null, null, null, null), 100);
+        checkCursorSize(mDatabase.searchTransactions("restored", null, null, null, null, null, null), 100);
+        assertTrue(mDatabase.verifyMaterializedTables());
+        // the triggers are created at the end of the import
+        insertTransaction(50L, new Date(), "desc", categoryId, Contract.Direction.EXPENSE, 0, walletId, null, null, null, null, null, true, true, null, null, null);
+        assertTrue(mDatabase.verifyMaterializedTables());
+    }
+
+    @Test
+    public void bulkImportKeepsDatabaseOnError() throws Exception {
+        insertWallet("Old wallet", "encoded-icon-1", "EUR", null, true, 0L, false, null);
+        mDatabase.close();
+        SQLDatabaseBulkImporter importer = new SQLDatabaseBulkImporter(mContext);
+        boolean failed = false;
+        try {
+            importer.begin();
+            Transaction transaction = new Transaction();
+            transaction.mDate = DateUtils.getSQLDateTimeString(new Date());
+            transaction.mCategory = 1000L;
+            transaction.mWallet = 1000L;
+            transaction.mUUID = "transaction-uuid";
+            importer.insert(transaction);
+            importer.commit();
+        } catch (ImportException e) {
+            failed = true;
+        } finally {
+            importer.close();
+        }
+        assertTrue(failed);
+        mDatabase = new SQLDatabase(mContext);
+        mDatabase.setDeletedObjectCacheEnabled(false);
+        checkCursorSize(mDatabase.getWallets(null, null, null, null), 1);
+        checkCursorSize(mDatabase.getTransactions(null, null, null, null), 0);
+    }
+
+    @Test
+    public void bulkImportMergesIncrementalBackup() throws Exception {
+        mDatabase.close();
+        SQLDatabaseBulkImporter importer = new SQLDatabaseBulkImporter(mContext);
+        long walletId;
+        long categoryId;
+        try {
+            importer.begin();
+            Wallet wallet = new Wallet();
+            wallet.mName = "Restored wallet";
+            wallet.mIcon = "encoded-icon-1";
+            wallet.mCurrency = "EUR";
+            wallet.mCountInTotal = true;
+            wallet.mUUID = "wallet-uuid";
+            walletId = importer.insert(wallet);
+            Category category = new Category();
+            category.mName = "Restored category";
+            category.mIcon = "encoded-icon-2";
+            category.mType = Contract.CategoryType.EXPENSE.getValue();
+            category.mShowReport = true;
+            category.mUUID = "category-uuid";
+            categoryId = importer.insert(category);
+            long[] transactionIds = new long[10];
+            for (int i = 0; i < transactionIds.length; i++) {
+                transactionIds[i] = importer.insert(createTransaction("Restored transaction " + i, walletId, categoryId, "transaction-uuid-" + i));
+            }
+            // the incremental backup removes a transaction, updates another one and adds a new one
+            importer.setMergeEnabled(true);
+            DeletedItem deletedItem = new DeletedItem();
+            deletedItem.mTable = Schema.Transaction.TABLE;
+            deletedItem.mUUID = "transaction-uuid-0";
+            importer.delete(deletedItem);
+            long updatedId = importer.insert(createTransaction("Updated transaction", walletId, categoryId, "transaction-uuid-1"));
+            assertEquals(transactionIds[1], updatedId);
+            importer.insert(createTransaction("Restored transaction 10", walletId, categoryId, "transaction-uuid-10"));
+            importer.commit();
+        } finally {
+            importer.close();
+        }
+        mDatabase = new SQLDatabase(mContext);
+        mDatabase.setDeletedObjectCacheEnabled(false);
+        checkCursorSize(mDatabase.getTransactions(null, null, null, null), 10);
+        checkCursorSize(mDatabase.searchTransactions("updated", null, null, null, null, null, null), 1);
+        assertTrue(mDatabase.verifyMaterializedTables());
+    }
+
+    private Transaction createTransaction(String description, long walletId, long categoryId, String uuid) {
+        Transaction transaction = new Transaction();
+        transaction.mMoney = 100L;
+        transaction.mDate = DateUtils.getSQLDateTimeString(new Date());
+        transaction.mDescription = description;
+        transaction.mCategory = categoryId;
+        transaction.mDirection = Contract.Direction.EXPENSE;
+        transaction.mWallet = walletId;
+        transaction.mConfirmed = true;
+        transaction.mCountInTotal = true;
+        transaction.mUUID = uuid;
+        return transaction;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.RenamingDelegatingContext;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.oriondev.moneywallet.utils.DateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+
+/**
+ * Micro-benchmark that compares the query of the transactions when all the columns are requested
+ * (every table is joined and the people of each transaction are collected) with the query that
+ * is planned from a narrow projection (only the wallets are joined).
+ */
+@LargeTest
+public class TransactionQueryBenchmark {
+
+    private static final int FIXTURE_SIZE = 100000;
+    private static final int ITERATIONS = 5;
+
+    private static final String[] NARROW_PROJECTION = new String[] {
+            Contract.Transaction.DATE,
+            Contract.Transaction.DIRECTION,
+            Contract.Transaction.WALLET_CURRENCY,
+            Contract.Transaction.MONEY
+    };
+
+    private Context mContext;
+    private SQLDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context baseContext = instrumentation.getTargetContext();
+        mContext = new RenamingDelegatingContext(baseContext, "test.");
+        mContext.deleteDatabase(SQLDatabase.DATABASE_NAME);
+        mDatabase = new SQLDatabase(mContext);
+        insertFixture();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+        mContext.deleteDatabase(SQLDatabase.DATABASE_NAME);
+    }
+
+    private void insertFixture() {
+        ContentValues wallet = new ContentValues();
+        wallet.put(Contract.Wallet.NAME, "Benchmark wallet");
+        wallet.put(Contract.Wallet.ICON, "encoded-icon");
+        wallet.put(Contract.Wallet.CURRENCY, "EUR");
+        wallet.put(Contract.Wallet.COUNT_IN_TOTAL, true);
+        wallet.put(Contract.Wallet.START_MONEY, 0L);
+        wallet.put(Contract.Wallet.ARCHIVED, false);
+        long walletId = mDatabase.insertWallet(wallet);
+        ContentValues category = new ContentValues();
+        category.put(Contract.Category.NAME, "Benchmark category");
+        category.put(Contract.Category.ICON, "encoded-icon");
+        category.put(Contract.Category.TYPE, Contract.CategoryType.EXPENSE.getValue());
+        category.put(Contract.Category.SHOW_REPORT, true);
+        long categoryId = mDatabase.insertCategory(category);
+        SQLiteDatabase db = mDatabase.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("INSERT INTO " + Schema.Transaction.TABLE + " (" +
+                Schema.Transaction.MONEY + ", " + Schema.Transaction.DATE + ", " +
+                Schema.Transaction.DESCRIPTION + ", " + Schema.Transaction.CATEGORY + ", " +
+                Schema.Transaction.DIRECTION + ", " + Schema.Transaction.TYPE + ", " +
+                Schema.Transaction.WALLET + ", " + Schema.Transaction.UUID + ", " +
+                Schema.Transaction.LAST_EDIT + ") VALUES (?, ?, ?, ?, ?, 0, ?, ?, ?)");
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2000, Calendar.JANUARY, 1, 12, 0, 0);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < FIXTURE_SIZE; i++) {
+                if (i % 10 == 0) {
+                    calendar.add(Calendar.DAY_OF_MONTH, 1);
+                }
+                statement.bindLong(1, 100 + i % 1000);
+                statement.bindString(2, DateUtils.getSQLDateTimeString(calendar.getTime()));
+                statement.bindString(3, "description " + i);
+                statement.bindLong(4, categoryId);
+                statement.bindLong(5, i % 3 == 0 ? Contract.Direction.INCOME : Contract.Direction.EXPENSE);
+                statement.bindLong(6, walletId);
+                statement.bindString(7, UUID.randomUUID().toString());
+                statement.bindLong(8, System.currentTimeMillis());
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
+    private long runQuery(String[] projection, long[] result) {
+        String sortOrder = Contract.Transaction.DATE + " DESC";
+        long start = System.nanoTime();
+        Cursor cursor = mDatabase.getTransactions(projection, null, null, sortOrder);
+        assertNotNull(cursor);
+        int indexDirection = cursor.getColumnIndex(Contract.Transaction.DIRECTION);
+        int indexMoney = cursor.getColumnIndex(Contract.Transaction.MONEY);
+        long total = 0;
+        while (cursor.moveToNext()) {
+            long money = cursor.getLong(indexMoney);
+            total += cursor.getInt(indexDirection) == Contract.Direction.INCOME ? money : -money;
+        }
+        long elapsed = System.nanoTime() - start;
+        result[0] = cursor.getCount();
+        result[1] = total;
+        cursor.close();
+        return elapsed;
+    }
+
+    private long getMedian(long[] samples) {
+        long[] sorted = Arrays.copyOf(samples, samples.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    @Test
+    public void compareTransactionQueryPlans() throws Exception {
+        long[] fullSamples = new long[ITERATIONS];
+        long[] narrowSamples = new long[ITERATIONS];
+        long[] fullResult = new long[2];
+        long[] narrowResult = new long[2];
+        for (int i = 0; i < ITERATIONS; i++) {
+            fullSamples[i] = runQuery(null, fullResult);
+            narrowSamples[i] = runQuery(NARROW_PROJECTION, narrowResult);
+        }
+        // both the plans must return exactly the same data
+        assertEquals(FIXTURE_SIZE, fullResult[0]);
+        assertEquals(fullResult[0], narrowResult[0]);
+        assertEquals(fullResult[1], narrowResult[1]);
+        System.out.println("TransactionQueryBenchmark: full projection median " +
+                (getMedian(fullSamples) / 1000000L) + " ms, narrow projection median " +
+                (getMedian(narrowSamples) / 1000000L) + " ms (" + FIXTURE_SIZE + " rows)");
+    }
+}
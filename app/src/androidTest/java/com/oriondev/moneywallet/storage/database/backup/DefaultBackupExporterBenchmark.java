@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database.backup;
+
+import android.content.Context;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.oriondev.moneywallet.storage.database.model.Attachment;
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
+
+import net.lingala.zip4j.core.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Benchmark that measures the time and the peak of the heap used while 200 MB of attachments
+ * are written inside an encrypted backup. Half of the files contain random bytes and are
+ * declared as photos (stored without deflate), the others contain text and are compressed.
+ */
+@LargeTest
+public class DefaultBackupExporterBenchmark {
+
+    private static final int FILE_COUNT = 50;
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long SAMPLING_INTERVAL = 5L;
+
+    private Context mContext;
+    private File mAttachmentFolder;
+    private File mBackupFile;
+    private List<Attachment> mAttachments;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        File folder = new File(mContext.getCacheDir(), "backup-exporter-benchmark");
+        mAttachmentFolder = new File(folder, "attachments");
+        FileUtils.forceMkdir(mAttachmentFolder);
+        mBackupFile = new File(folder, "backup.mwbx");
+        mAttachments = new ArrayList<>();
+        Random random = new Random(42);
+        byte[] text = "2019-01-01;groceries;12.50;EUR;weekly shopping at the market\n".getBytes("UTF-8");
+        byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        for (int i = 0; i < FILE_COUNT; i++) {
+            boolean photo = i % 2 == 0;
+            Attachment attachment = new Attachment();
+            attachment.mFile = "attachment-" + i;
+            attachment.mName = photo ? "photo-" + i + ".jpg" : "statement-" + i + ".csv";
+            attachment.mType = photo ? "image/jpeg" : "text/csv";
+            attachment.mSize = FILE_SIZE;
+            OutputStream outputStream = new FileOutputStream(new File(mAttachmentFolder, attachment.mFile));
+            try {
+                for (int written = 0; written < FILE_SIZE; written += buffer.length) {
+                    if (photo) {
+                        random.nextBytes(buffer);
+                    } else {
+                        for (int j = 0; j < buffer.length; j++) {
+                            buffer[j] = text[(written + j) % text.length];
+                        }
+                    }
+                    outputStream.write(buffer);
+                }
+            } finally {
+                outputStream.close();
+            }
+            mAttachments.add(attachment);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(mAttachmentFolder.getParentFile());
+    }
+
+    @Test
+    public void exportLargeAttachments() throws Exception {
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        final long baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = new long[] {baseline};
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (running.get()) {
+                    long used = runtime.totalMemory() - runtime.freeMemory();
+                    if (used > peak[0]) {
+                        peak[0] = used;
+                    }
+                    try {
+                        Thread.sleep(SAMPLING_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+        });
+        sampler.start();
+        long start = System.nanoTime();
+        DefaultBackupExporter exporter = new DefaultBackupExporter(mContext.getContentResolver(), mBackupFile, "password", new BackupHeader());
+        try {
+            exporter.exportAttachmentFiles(mAttachmentFolder, mAttachments);
+        } finally {
+            exporter.close();
+        }
+        long time = System.nanoTime() - start;
+        running.set(false);
+        sampler.join();
+        long totalSize = (long) FILE_COUNT * FILE_SIZE;
+        long peakDelta = peak[0] - baseline;
+        assertEquals(FILE_COUNT, new ZipFile(mBackupFile).getFileHeaders().size());
+        // the photos are stored as they are, so the archive cannot be smaller than them
+        assertTrue(mBackupFile.length() > totalSize / 2);
+        // the files are streamed: the heap must not grow with the size of the attachments
+        assertTrue("peak heap delta " + (peakDelta / 1024L) + " KB", peakDelta < FILE_SIZE * 4L);
+        System.out.println("DefaultBackupExporterBenchmark: " + (totalSize / (1024L * 1024L)) +
+                " MB of attachments (" + (mBackupFile.length() / 1024L) + " KB archive) exported in " +
+                (time / 1000000L) + " ms, peak heap delta " + (peakDelta / 1024L) + " KB");
+    }
+}
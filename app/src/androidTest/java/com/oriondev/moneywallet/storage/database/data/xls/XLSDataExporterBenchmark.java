@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database.data.xls;
+
+import android.content.Context;
+import android.database.AbstractCursor;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.oriondev.moneywallet.storage.database.Contract;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Benchmark that measures the peak of the heap used while a large number of transactions is
+ * exported to a spreadsheet. The rows are generated on the fly by the cursor so that the only
+ * memory measured is the one retained by the exporter.
+ */
+@LargeTest
+public class XLSDataExporterBenchmark {
+
+    private static final int FIXTURE_SIZE = 300000;
+    private static final long SAMPLING_INTERVAL = 5L;
+    private static final long MAX_PEAK_HEAP_DELTA = 16L * 1024L * 1024L;
+
+    private Context mContext;
+    private File mFolder;
+    private File mOutputFile;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mFolder = new File(mContext.getCacheDir(), "xls-exporter-benchmark");
+        mFolder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        if (mOutputFile != null) {
+            mOutputFile.delete();
+        }
+        mFolder.delete();
+    }
+
+    @Test
+    public void peakHeapUsage() throws Exception {
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        final long baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = new long[] {baseline};
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (running.get()) {
+                    long used = runtime.totalMemory() - runtime.freeMemory();
+                    if (used > peak[0]) {
+                        peak[0] = used;
+                    }
+                    try {
+                        Thread.sleep(SAMPLING_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+        });
+        sampler.start();
+        long start = System.nanoTime();
+        XLSDataExporter exporter = new XLSDataExporter(mContext, mFolder);
+        String[] columns = exporter.getColumns(true, new String[] {XLSDataExporter.COLUMN_NOTE});
+        exporter.exportData(new TransactionCursor(FIXTURE_SIZE), columns);
+        exporter.close();
+        long time = System.nanoTime() - start;
+        running.set(false);
+        sampler.join();
+        long peakDelta = peak[0] - baseline;
+        mOutputFile = exporter.getOutputFile();
+        assertTrue(mOutputFile.exists());
+        assertTrue(mOutputFile.length() > 0);
+        // the rows are streamed: the heap must not grow with the number of transactions
+        assertTrue("peak heap delta " + (peakDelta / 1024L) + " KB", peakDelta < MAX_PEAK_HEAP_DELTA);
+        System.out.println("XLSDataExporterBenchmark: " + FIXTURE_SIZE + " transactions (" +
+                (mOutputFile.length() / 1024L) + " KB) exported in " + (time / 1000000L) +
+                " ms, peak heap delta " + (peakDelta / 1024L) + " KB");
+    }
+
+    /**
+     * Cursor that generates the content of each row when it is requested.
+     */
+    private static class TransactionCursor extends AbstractCursor {
+
+        private static final String[] COLUMNS = new String[] {
+                Contract.Transaction.DATE,
+                Contract.Transaction.CATEGORY_NAME,
+                Contract.Transaction.MONEY,
+                Contract.Transaction.DIRECTION,
+                Contract.Transaction.WALLET_NAME,
+                Contract.Transaction.WALLET_CURRENCY,
+                Contract.Transaction.DESCRIPTION,
+                Contract.Transaction.NOTE
+        };
+
+        private final int mCount;
+
+        private TransactionCursor(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return COLUMNS;
+        }
+
+        @Override
+        public String getString(int column) {
+            int position = getPosition();
+            switch (column) {
+                case 0:
+                    return String.format("2019-%02d-%02d 12:%02d:00", 1 + position % 12, 1 + position % 28, position % 60);
+                case 1:
+                    return "category " + (position % 20);
+                case 2:
+                case 3:
+                    return String.valueOf(getLong(column));
+                case 4:
+                    return "wallet";
+                case 5:
+                    return "EUR";
+                case 6:
+                    return "description " + position;
+                default:
+                    return position % 10 == 0 ? "note " + position : null;
+            }
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            int position = getPosition();
+            switch (column) {
+                case 2:
+                    return 100 + position % 100000;
+                case 3:
+                    return position % 2;
+                default:
+                    return 0L;
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return getString(column) == null;
+        }
+    }
+}
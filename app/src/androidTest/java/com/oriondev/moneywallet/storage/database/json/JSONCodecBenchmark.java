@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database.json;
+
+import android.content.Context;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.oriondev.moneywallet.storage.database.model.Transaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Micro-benchmark that measures the throughput of the json codecs on a backup that contains
+ * a large number of transactions. The file is written and read back from the cache folder.
+ */
+@LargeTest
+public class JSONCodecBenchmark {
+
+    private static final int FIXTURE_SIZE = 500000;
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mFile = new File(context.getCacheDir(), "json-codec-benchmark.json");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void transactionThroughput() throws Exception {
+        JSONDataOutputFactory outputFactory = new JSONDataOutputFactory();
+        Transaction transaction = new Transaction();
+        long start = System.nanoTime();
+        JSONDataStreamWriter writer = new JSONDataStreamWriter(new BufferedOutputStream(new FileOutputStream(mFile)));
+        writer.writeName(JSONDatabase.Transaction.ARRAY);
+        writer.beginArray();
+        for (int i = 0; i < FIXTURE_SIZE; i++) {
+            transaction.mId = (long) i;
+            transaction.mMoney = 100 + i % 1000;
+            transaction.mDate = "2019-01-01 12:00:00";
+            transaction.mDescription = "description " + i;
+            transaction.mDirection = i % 2;
+            transaction.mConfirmed = true;
+            transaction.mCountInTotal = true;
+            transaction.mUUID = "transaction-" + i;
+            transaction.mLastEdit = 1546300800000L + i;
+            outputFactory.write(writer, transaction);
+        }
+        writer.endArray();
+        writer.close();
+        long writeTime = System.nanoTime() - start;
+
+        JSONDataInputFactory inputFactory = new JSONDataInputFactory();
+        long total = 0L;
+        int count = 0;
+        start = System.nanoTime();
+        JSONDataStreamReader reader = new JSONDataStreamReader(new BufferedInputStream(new FileInputStream(mFile)));
+        assertEquals(JSONDatabase.Transaction.ARRAY, reader.readName());
+        reader.beginArray();
+        while (reader.hasArrayAnotherObject()) {
+            total += inputFactory.readTransaction(reader).mMoney;
+            count++;
+        }
+        reader.endArray();
+        reader.close();
+        long readTime = System.nanoTime() - start;
+
+        assertEquals(FIXTURE_SIZE, count);
+        long expectedTotal = 0L;
+        for (int i = 0; i < FIXTURE_SIZE; i++) {
+            expectedTotal += 100 + i % 1000;
+        }
+        assertEquals(expectedTotal, total);
+        long size = mFile.length();
+        System.out.println("JSONCodecBenchmark: " + FIXTURE_SIZE + " transactions (" + (size / 1024L) +
+                " KB) written in " + (writeTime / 1000000L) + " ms, read in " + (readTime / 1000000L) + " ms");
+    }
+}
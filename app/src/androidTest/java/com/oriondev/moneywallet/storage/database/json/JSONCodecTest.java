@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database.json;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.oriondev.moneywallet.storage.database.model.Category;
+import com.oriondev.moneywallet.storage.database.model.Place;
+import com.oriondev.moneywallet.storage.database.model.Transaction;
+import com.oriondev.moneywallet.storage.database.model.Wallet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@LargeTest
+public class JSONCodecTest {
+
+    private Wallet createWallet() {
+        Wallet wallet = new Wallet();
+        wallet.mId = 1L;
+        wallet.mName = "Test wallet";
+        wallet.mIcon = "encoded-icon";
+        wallet.mCurrency = "EUR";
+        wallet.mStartMoney = -1500L;
+        wallet.mCountInTotal = false;
+        wallet.mArchived = true;
+        wallet.mIndex = 3;
+        wallet.mUUID = "wallet-uuid";
+        wallet.mLastEdit = 1546300800000L;
+        return wallet;
+    }
+
+    private Category createCategory(long id, Long parent, String uuid) {
+        Category category = new Category();
+        category.mId = id;
+        category.mName = "Test category";
+        category.mIcon = "encoded-icon";
+        category.mType = 1;
+        category.mParent = parent;
+        category.mShowReport = false;
+        category.mUUID = uuid;
+        category.mLastEdit = 1546300800000L;
+        return category;
+    }
+
+    private Place createPlace(long id, Double latitude, Double longitude, String uuid) {
+        Place place = new Place();
+        place.mId = id;
+        place.mName = "Test place";
+        place.mIcon = "encoded-icon";
+        place.mAddress = "Address \"with\" quotes\nand new lines";
+        place.mLatitude = latitude;
+        place.mLongitude = longitude;
+        place.mUUID = uuid;
+        place.mLastEdit = 1546300800000L;
+        return place;
+    }
+
+    private Transaction createTransaction() {
+        Transaction transaction = new Transaction();
+        transaction.mId = 1L;
+        transaction.mMoney = Long.MAX_VALUE;
+        transaction.mDate = "2019-01-01 12:00:00";
+        transaction.mDescription = "Test transaction";
+        transaction.mCategory = 11L;
+        transaction.mDirection = 1;
+        transaction.mWallet = 1L;
+        transaction.mPlace = 21L;
+        transaction.mConfirmed = false;
+        transaction.mCountInTotal = true;
+        transaction.mUUID = "transaction-uuid";
+        transaction.mLastEdit = 1546300800000L;
+        transaction.mDeleted = true;
+        return transaction;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JSONDataStreamWriter writer = new JSONDataStreamWriter(outputStream);
+        JSONDataOutputFactory outputFactory = new JSONDataOutputFactory();
+        writer.writeName(JSONDatabase.Wallet.ARRAY);
+        writer.beginArray();
+        outputFactory.write(writer, createWallet());
+        writer.endArray();
+        writer.writeName(JSONDatabase.Category.ARRAY);
+        writer.beginArray();
+        outputFactory.write(writer, createCategory(10L, null, "parent-uuid"));
+        outputFactory.write(writer, createCategory(11L, 10L, "child-uuid"));
+        writer.endArray();
+        writer.writeName(JSONDatabase.Place.ARRAY);
+        writer.beginArray();
+        outputFactory.write(writer, createPlace(20L, null, null, "empty-place-uuid"));
+        outputFactory.write(writer, createPlace(21L, 45.4642, 9.19, "place-uuid"));
+        writer.endArray();
+        writer.writeName(JSONDatabase.Transaction.ARRAY);
+        writer.beginArray();
+        outputFactory.write(writer, createTransaction());
+        writer.endArray();
+        writer.close();
+
+        // the items are read back with different database ids
+        JSONDataStreamReader reader = new JSONDataStreamReader(new ByteArrayInputStream(outputStream.toByteArray()));
+        JSONDataInputFactory inputFactory = new JSONDataInputFactory();
+        assertEquals(JSONDatabase.Wallet.ARRAY, reader.readName());
+        reader.beginArray();
+        Wallet wallet = inputFactory.readWallet(reader);
+        assertFalse(reader.hasArrayAnotherObject());
+        reader.endArray();
+        assertEquals("Test wallet", wallet.mName);
+        assertEquals("EUR", wallet.mCurrency);
+        assertEquals(-1500L, wallet.mStartMoney);
+        assertFalse(wallet.mCountInTotal);
+        assertTrue(wallet.mArchived);
+        assertNull(wallet.mNote);
+        assertEquals(3, wallet.mIndex);
+        assertEquals("wallet-uuid", wallet.mUUID);
+        assertEquals(1546300800000L, wallet.mLastEdit);
+        inputFactory.cacheWallet(wallet.mUUID, 101L);
+        assertEquals(JSONDatabase.Category.ARRAY, reader.readName());
+        reader.beginArray();
+        Category parent = inputFactory.readCategory(reader);
+        inputFactory.cacheCategory(parent.mUUID, 110L);
+        Category child = inputFactory.readCategory(reader);
+        inputFactory.cacheCategory(child.mUUID, 111L);
+        reader.endArray();
+        assertNull(parent.mParent);
+        assertEquals(Long.valueOf(110L), child.mParent);
+        assertFalse(child.mShowReport);
+        assertEquals(1, child.mType);
+        assertEquals(JSONDatabase.Place.ARRAY, reader.readName());
+        reader.beginArray();
+        Place emptyPlace = inputFactory.readPlace(reader);
+        Place place = inputFactory.readPlace(reader);
+        inputFactory.cachePlace(place.mUUID, 121L);
+        reader.endArray();
+        assertNull(emptyPlace.mLatitude);
+        assertNull(emptyPlace.mLongitude);
+        assertEquals(45.4642, place.mLatitude);
+        assertEquals(9.19, place.mLongitude);
+        assertEquals("Address \"with\" quotes\nand new lines", place.mAddress);
+        assertEquals(JSONDatabase.Transaction.ARRAY, reader.readName());
+        reader.beginArray();
+        Transaction transaction = inputFactory.readTransaction(reader);
+        reader.endArray();
+        reader.close();
+        assertEquals(Long.MAX_VALUE, transaction.mMoney);
+        assertEquals("2019-01-01 12:00:00", transaction.mDate);
+        assertEquals(Long.valueOf(111L), transaction.mCategory);
+        assertEquals(Long.valueOf(101L), transaction.mWallet);
+        assertEquals(Long.valueOf(121L), transaction.mPlace);
+        assertNull(transaction.mEvent);
+        assertNull(transaction.mNote);
+        assertEquals(1, transaction.mDirection);
+        assertFalse(transaction.mConfirmed);
+        assertTrue(transaction.mCountInTotal);
+        assertTrue(transaction.mDeleted);
+    }
+
+    @Test
+    public void readLooselyTypedValues() throws Exception {
+        // files written through JSONObject may contain decimal numbers, strings instead of
+        // booleans, null values and unknown fields
+        String json = "{\"wallets\":[{\"id\":\"wallet-uuid\",\"start_money\":25.0,\"count_in_total\":\"false\"," +
+                "\"archived\":null,\"index\":\"7\",\"unknown\":{\"nested\":[1,2,3]},\"name\":null,\"note\":12}]}";
+        JSONDataStreamReader reader = new JSONDataStreamReader(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))));
+        JSONDataInputFactory inputFactory = new JSONDataInputFactory();
+        assertEquals(JSONDatabase.Wallet.ARRAY, reader.readName());
+        reader.beginArray();
+        Wallet wallet = inputFactory.readWallet(reader);
+        reader.endArray();
+        reader.close();
+        assertEquals("wallet-uuid", wallet.mUUID);
+        assertEquals(25L, wallet.mStartMoney);
+        assertFalse(wallet.mCountInTotal);
+        assertFalse(wallet.mArchived);
+        assertEquals(7, wallet.mIndex);
+        assertNull(wallet.mName);
+        assertEquals("12", wallet.mNote);
+    }
+
+    @Test
+    public void readNineteenDigitLongs() throws Exception {
+        // these values cannot be represented by a double: they must not go through it
+        String json = "{\"wallets\":[{\"id\":\"positive-uuid\",\"start_money\":1234567890123456789}," +
+                "{\"id\":\"negative-uuid\",\"start_money\":-1234567890123456789}," +
+                "{\"id\":\"min-uuid\",\"start_money\":-9223372036854775808}]}";
+        JSONDataStreamReader reader = new JSONDataStreamReader(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))));
+        JSONDataInputFactory inputFactory = new JSONDataInputFactory();
+        assertEquals(JSONDatabase.Wallet.ARRAY, reader.readName());
+        reader.beginArray();
+        Wallet positive = inputFactory.readWallet(reader);
+        Wallet negative = inputFactory.readWallet(reader);
+        Wallet min = inputFactory.readWallet(reader);
+        reader.endArray();
+        reader.close();
+        assertEquals(1234567890123456789L, positive.mStartMoney);
+        assertEquals(-1234567890123456789L, negative.mStartMoney);
+        assertEquals(Long.MIN_VALUE, min.mStartMoney);
+    }
+}
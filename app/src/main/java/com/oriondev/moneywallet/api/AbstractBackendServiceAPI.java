@@ -22,6 +22,9 @@ package com.oriondev.moneywallet.api;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.oriondev.moneywallet.api.chunk.ChunkedDownloader;
+import com.oriondev.moneywallet.api.chunk.ChunkedUploader;
+import com.oriondev.moneywallet.api.chunk.IChunkStore;
 import com.oriondev.moneywallet.model.IFile;
 import com.oriondev.moneywallet.utils.ProgressInputStream;
 import com.oriondev.moneywallet.utils.ProgressOutputStream;
@@ -52,6 +55,19 @@ public abstract class AbstractBackendServiceAPI<T extends IFile> implements IBac
 
     protected abstract T upload(@Nullable T folder, File file, ProgressInputStream.UploadProgressListener listener) throws BackendException;
 
+    @Override
+    public IFile uploadFileResumable(IFile folder, File file, File manifestFile, ProgressInputStream.UploadProgressListener listener) throws BackendException {
+        if (folder == null || mType.isInstance(folder)) {
+            IChunkStore<T> chunkStore = getChunkStore();
+            if (chunkStore != null) {
+                return new ChunkedUploader<>(chunkStore).upload((T) folder, file, manifestFile, listener);
+            }
+            return upload((T) folder, file, listener);
+        } else {
+            throw new ClassCastException("Backend cannot upload a file to a folder that is not an instance of " + mType.getName() + ". The provided folder is an instance of: " + folder.getClass().getName());
+        }
+    }
+
     @Override
     public File downloadFile(File folder, IFile file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException {
         if (mType.isInstance(file)) {
@@ -63,6 +79,23 @@ public abstract class AbstractBackendServiceAPI<T extends IFile> implements IBac
 
     protected abstract File download(File folder, @NonNull T file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException;
 
+    @Override
+    public File downloadFileResumable(File folder, IFile file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException {
+        if (mType.isInstance(file)) {
+            return downloadResumable(folder, (T) file, listener);
+        } else {
+            throw new ClassCastException("Backend cannot download a file that is not an instance of " + mType.getName() + ". The provided file is an instance of: " + file.getClass().getName());
+        }
+    }
+
+    protected File downloadResumable(File folder, @NonNull T file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException {
+        IChunkStore<T> chunkStore = getChunkStore();
+        if (chunkStore != null && file.getSize() > 0) {
+            return new ChunkedDownloader<>(chunkStore).download(folder, file, listener);
+        }
+        return download(folder, file, listener);
+    }
+
     @Override
     public List<IFile> getFolderContent(IFile folder) throws BackendException {
         if (folder == null || mType.isInstance(folder)) {
@@ -84,4 +117,14 @@ public abstract class AbstractBackendServiceAPI<T extends IFile> implements IBac
     }
 
     protected abstract T newFolder(T parent, String name) throws BackendException;
+
+    /**
+     * The backends that support chunked transfers should override this method to provide their
+     * implementation of the chunk store. If it returns null, the resumable transfers fall back
+     * to the standard upload and download methods.
+     * @return the chunk store of the backend or null if not supported.
+     */
+    protected IChunkStore<T> getChunkStore() {
+        return null;
+    }
 }
\ No newline at end of file
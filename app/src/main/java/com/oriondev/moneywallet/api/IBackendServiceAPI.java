@@ -35,6 +35,20 @@ public interface IBackendServiceAPI {
 
     File downloadFile(File folder, IFile file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException;
 
+    /**
+     * Upload a file using a resumable transfer if it is supported by the backend. The state of
+     * the upload is stored inside the manifest file: if the upload fails with a recoverable
+     * exception, it can be resumed calling this method again with the same manifest file.
+     */
+    IFile uploadFileResumable(IFile folder, File file, File manifestFile, ProgressInputStream.UploadProgressListener listener) throws BackendException;
+
+    /**
+     * Download a file using a resumable transfer if it is supported by the backend. The partial
+     * content is kept inside the folder: if the download fails with a recoverable exception, it
+     * can be resumed calling this method again with the same folder.
+     */
+    File downloadFileResumable(File folder, IFile file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException;
+
     List<IFile> getFolderContent(IFile folder) throws BackendException;
 
     IFile createFolder(IFile parent, String name) throws BackendException;
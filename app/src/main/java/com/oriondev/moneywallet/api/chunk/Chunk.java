@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.chunk;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class represents a contiguous range of bytes of a transferred file. The checksum is the
+ * SHA-256 hash of the content of the range (encoded as hexadecimal string): it is used both to
+ * verify the content and to identify the chunks that are already stored.
+ */
+public class Chunk {
+
+    private static final String CHECKSUM_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long mOffset;
+    private final int mLength;
+    private String mChecksum;
+    private boolean mTransferred;
+
+    public Chunk(long offset, int length, String checksum) {
+        mOffset = offset;
+        mLength = length;
+        mChecksum = checksum;
+        mTransferred = false;
+    }
+
+    public long getOffset() {
+        return mOffset;
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    public String getChecksum() {
+        return mChecksum;
+    }
+
+    /*package-local*/ void setChecksum(String checksum) {
+        mChecksum = checksum;
+    }
+
+    public boolean isTransferred() {
+        return mTransferred;
+    }
+
+    /*package-local*/ void setTransferred(boolean transferred) {
+        mTransferred = transferred;
+    }
+
+    /**
+     * Create a new digest that can be used to compute the checksum of a chunk.
+     * @return a new digest instance.
+     */
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encode the result of a digest as the checksum of a chunk.
+     * @param hash computed by the digest.
+     * @return the hexadecimal representation of the hash.
+     */
+    public static String encodeChecksum(byte[] hash) {
+        char[] checksum = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            checksum[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0x0F];
+            checksum[i * 2 + 1] = HEX_DIGITS[hash[i] & 0x0F];
+        }
+        return new String(checksum);
+    }
+}
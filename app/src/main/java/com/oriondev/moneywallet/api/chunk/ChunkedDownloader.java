@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.chunk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.model.IFile;
+import com.oriondev.moneywallet.utils.ProgressOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class downloads a remote file from a backend that implements {@link IChunkStore}. The
+ * file is downloaded in chunks of fixed size inside a partial file and the checksum of each
+ * downloaded chunk is stored inside a local manifest: if the download is interrupted, calling
+ * this method again verifies the chunks already downloaded and continues from the first chunk
+ * that is missing (or corrupted).
+ */
+public class ChunkedDownloader<T extends IFile> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /*package-local*/ static final int MAX_ATTEMPTS = 3;
+
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+    private static final String MANIFEST_FILE_SUFFIX = ".manifest";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long RETRY_DELAY = 1000L;
+
+    private final IChunkStore<T> mChunkStore;
+    private final int mChunkSize;
+    private final long mRetryDelay;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+
+    public ChunkedDownloader(IChunkStore<T> chunkStore) {
+        this(chunkStore, DEFAULT_CHUNK_SIZE, RETRY_DELAY);
+    }
+
+    /*package-local*/ ChunkedDownloader(IChunkStore<T> chunkStore, int chunkSize, long retryDelay) {
+        mChunkStore = chunkStore;
+        mChunkSize = chunkSize;
+        mRetryDelay = retryDelay;
+    }
+
+    /**
+     * Download a file or resume the download of the same file inside the same folder.
+     * @param folder where the file should be downloaded.
+     * @param file to download.
+     * @param listener of the download progress (if any).
+     * @return the downloaded file.
+     * @throws BackendException if the download failed: if it is recoverable it can be resumed.
+     */
+    public File download(@NonNull File folder, @NonNull T file, @Nullable ProgressOutputStream.DownloadProgressListener listener) throws BackendException {
+        File destination = new File(folder, file.getName());
+        File partial = new File(folder, file.getName() + PARTIAL_FILE_SUFFIX);
+        File manifestFile = new File(folder, file.getName() + MANIFEST_FILE_SUFFIX);
+        long size = file.getSize();
+        if (destination.exists() && !manifestFile.exists() && destination.length() == size) {
+            // the file has been completely downloaded by a previous attempt
+            return destination;
+        }
+        TransferManifest manifest = prepareManifest(file, partial, manifestFile);
+        int attempt = 1;
+        while (true) {
+            try {
+                downloadMissingChunks(file, partial, manifest, manifestFile, listener);
+                break;
+            } catch (BackendException e) {
+                if (!e.isRecoverable() || attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+            waitBeforeRetry(attempt);
+            attempt++;
+        }
+        FileUtils.deleteQuietly(destination);
+        try {
+            // an empty file has no chunks: the partial file is never written
+            FileUtils.touch(partial);
+        } catch (IOException e) {
+            throw new BackendException("Failed to store the downloaded file: " + e.getMessage(), e, true);
+        }
+        if (!partial.renameTo(destination)) {
+            throw new BackendException("Failed to store the downloaded file", true);
+        }
+        FileUtils.deleteQuietly(manifestFile);
+        return destination;
+    }
+
+    private TransferManifest prepareManifest(T file, File partial, File manifestFile) throws BackendException {
+        String target = file.encodeToString();
+        long size = file.getSize();
+        TransferManifest manifest = TransferManifest.load(manifestFile);
+        if (manifest != null && manifest.matches(target, file.getName(), size, 0L) && partial.exists()) {
+            verifyChunks(partial, manifest);
+            return manifest;
+        }
+        FileUtils.deleteQuietly(partial);
+        List<Chunk> chunks = new ArrayList<>();
+        for (long offset = 0L; offset < size; offset += mChunkSize) {
+            chunks.add(new Chunk(offset, (int) Math.min(mChunkSize, size - offset), null));
+        }
+        manifest = new TransferManifest(file.getName(), target, file.getName(), size, 0L, chunks);
+        saveManifest(manifest, manifestFile);
+        return manifest;
+    }
+
+    /**
+     * The partial file may have been modified (or truncated) after the previous attempt: the
+     * chunks that do not match their checksum are downloaded again.
+     */
+    private void verifyChunks(File partial, TransferManifest manifest) throws BackendException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(partial, "r");
+            for (Chunk chunk : manifest.getChunks()) {
+                if (chunk.isTransferred()) {
+                    MessageDigest digest = Chunk.createDigest();
+                    randomAccessFile.seek(chunk.getOffset());
+                    int remaining = chunk.getLength();
+                    while (remaining > 0) {
+                        int read = randomAccessFile.read(mBuffer, 0, Math.min(remaining, mBuffer.length));
+                        if (read == -1) {
+                            break;
+                        }
+                        digest.update(mBuffer, 0, read);
+                        remaining -= read;
+                    }
+                    if (remaining > 0 || !Chunk.encodeChecksum(digest.digest()).equals(chunk.getChecksum())) {
+                        chunk.setTransferred(false);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new BackendException("Failed to verify the partial download: " + e.getMessage(), e, true);
+        } finally {
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    private void downloadMissingChunks(T file, File partial, TransferManifest manifest, File manifestFile,
+                                       ProgressOutputStream.DownloadProgressListener listener) throws BackendException {
+        long size = manifest.getSize();
+        long transferred = manifest.getTransferredBytes();
+        notifyProgress(listener, transferred, size);
+        Chunk first = null;
+        for (Chunk chunk : manifest.getChunks()) {
+            if (!chunk.isTransferred()) {
+                first = chunk;
+                break;
+            }
+        }
+        if (first == null) {
+            return;
+        }
+        InputStream inputStream = null;
+        RandomAccessFile randomAccessFile = null;
+        try {
+            inputStream = mChunkStore.openFile(file, first.getOffset());
+            randomAccessFile = new RandomAccessFile(partial, "rw");
+            long position = first.getOffset();
+            for (Chunk chunk : manifest.getChunks()) {
+                if (chunk.getOffset() < first.getOffset()) {
+                    continue;
+                }
+                if (chunk.isTransferred()) {
+                    // the stream is sequential: a valid chunk after a missing one is skipped
+                    IOUtils.skipFully(inputStream, chunk.getLength());
+                    position += chunk.getLength();
+                    continue;
+                }
+                MessageDigest digest = Chunk.createDigest();
+                randomAccessFile.seek(position);
+                int remaining = chunk.getLength();
+                while (remaining > 0) {
+                    int read = inputStream.read(mBuffer, 0, Math.min(remaining, mBuffer.length));
+                    if (read == -1) {
+                        throw new BackendException("Unexpected end of the remote file", true);
+                    }
+                    digest.update(mBuffer, 0, read);
+                    randomAccessFile.write(mBuffer, 0, read);
+                    remaining -= read;
+                }
+                position += chunk.getLength();
+                chunk.setChecksum(Chunk.encodeChecksum(digest.digest()));
+                chunk.setTransferred(true);
+                transferred += chunk.getLength();
+                saveManifest(manifest, manifestFile);
+                notifyProgress(listener, transferred, size);
+            }
+            randomAccessFile.setLength(size);
+        } catch (IOException e) {
+            throw new BackendException("Download interrupted: " + e.getMessage(), e, true);
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    private void saveManifest(TransferManifest manifest, File manifestFile) throws BackendException {
+        try {
+            manifest.save(manifestFile);
+        } catch (IOException e) {
+            throw new BackendException("Failed to store the state of the download: " + e.getMessage(), e, true);
+        }
+    }
+
+    private void waitBeforeRetry(int attempt) throws BackendException {
+        try {
+            Thread.sleep(mRetryDelay * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackendException("Download interrupted", e, true);
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException ignore) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static void notifyProgress(ProgressOutputStream.DownloadProgressListener listener, long transferred, long size) {
+        if (listener != null) {
+            listener.onDownloadProgressUpdate(size > 0 ? (int) (transferred * 100 / size) : 100);
+        }
+    }
+}
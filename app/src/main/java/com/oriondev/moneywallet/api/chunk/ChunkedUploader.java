@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.chunk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.model.IFile;
+import com.oriondev.moneywallet.utils.ProgressInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This class uploads a local file to a backend that implements {@link IChunkStore}. The file is
+ * split using a {@link ContentDefinedChunker} and the state of the upload is stored inside a
+ * local manifest after each chunk: if the upload is interrupted, calling this method again with
+ * the same manifest file uploads only the missing chunks.
+ * If the file is changed while its upload is interrupted, the new upload to the same folder
+ * reuses the session of the previous manifest, so the chunks with the same content that have
+ * already been stored are not uploaded again. When an upload completes, the chunks are
+ * assembled (and the session is removed) and the manifest is deleted: nothing is shared with
+ * the uploads that follow.
+ */
+public class ChunkedUploader<T extends IFile> {
+
+    /*package-local*/ static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY = 1000L;
+
+    private final IChunkStore<T> mChunkStore;
+    private final ContentDefinedChunker mChunker;
+    private final long mRetryDelay;
+
+    public ChunkedUploader(IChunkStore<T> chunkStore) {
+        this(chunkStore, new ContentDefinedChunker(), RETRY_DELAY);
+    }
+
+    /*package-local*/ ChunkedUploader(IChunkStore<T> chunkStore, ContentDefinedChunker chunker, long retryDelay) {
+        mChunkStore = chunkStore;
+        mChunker = chunker;
+        mRetryDelay = retryDelay;
+    }
+
+    /**
+     * Upload a file or resume the upload described by the manifest.
+     * @param folder where the file should be uploaded (null for the root folder).
+     * @param file to upload.
+     * @param manifestFile local file where the state of the upload is stored.
+     * @param listener of the upload progress (if any).
+     * @return the uploaded file.
+     * @throws BackendException if the upload failed: if it is recoverable the upload can be resumed.
+     */
+    public T upload(@Nullable T folder, @NonNull File file, @NonNull File manifestFile,
+                    @Nullable ProgressInputStream.UploadProgressListener listener) throws BackendException {
+        TransferManifest manifest = prepareManifest(folder, file, manifestFile);
+        String session = manifest.getSession();
+        Set<String> storedChunks = new HashSet<>(mChunkStore.getStoredChunks(folder, session));
+        for (Chunk chunk : manifest.getChunks()) {
+            chunk.setTransferred(storedChunks.contains(chunk.getChecksum()));
+        }
+        long size = manifest.getSize();
+        long transferred = manifest.getTransferredBytes();
+        notifyProgress(listener, transferred, size);
+        for (Chunk chunk : manifest.getChunks()) {
+            if (chunk.isTransferred()) {
+                continue;
+            }
+            if (!storedChunks.contains(chunk.getChecksum())) {
+                uploadChunk(folder, session, file, chunk);
+                storedChunks.add(chunk.getChecksum());
+            }
+            chunk.setTransferred(true);
+            transferred += chunk.getLength();
+            saveManifest(manifest, manifestFile);
+            notifyProgress(listener, transferred, size);
+        }
+        T uploaded = mChunkStore.assembleFile(folder, session, file.getName(), manifest.getChunks());
+        FileUtils.deleteQuietly(manifestFile);
+        return uploaded;
+    }
+
+    private TransferManifest prepareManifest(@Nullable T folder, File file, File manifestFile) throws BackendException {
+        String target = folder != null ? folder.encodeToString() : "";
+        TransferManifest manifest = TransferManifest.load(manifestFile);
+        if (manifest != null && manifest.matches(target, file.getName(), file.length(), file.lastModified())) {
+            return manifest;
+        }
+        String session;
+        if (manifest != null && manifest.getTarget().equals(target)) {
+            session = manifest.getSession();
+        } else {
+            session = UUID.randomUUID().toString().replaceAll("-", "");
+        }
+        try {
+            manifest = new TransferManifest(session, target, file.getName(), file.length(), file.lastModified(), mChunker.split(file));
+        } catch (IOException e) {
+            throw new BackendException("Failed to read the file to upload: " + e.getMessage(), e);
+        }
+        saveManifest(manifest, manifestFile);
+        return manifest;
+    }
+
+    private void uploadChunk(@Nullable T folder, String session, File file, Chunk chunk) throws BackendException {
+        int attempt = 1;
+        while (true) {
+            InputStream inputStream = null;
+            try {
+                inputStream = openChunk(file, chunk);
+                mChunkStore.storeChunk(folder, session, chunk, inputStream);
+                return;
+            } catch (BackendException e) {
+                if (!e.isRecoverable() || attempt >= MAX_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+            waitBeforeRetry(attempt);
+            attempt++;
+        }
+    }
+
+    private InputStream openChunk(File file, Chunk chunk) throws BackendException {
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            IOUtils.skipFully(inputStream, chunk.getOffset());
+            return new BoundedInputStream(inputStream, chunk.getLength());
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            throw new BackendException("Failed to read the file to upload: " + e.getMessage(), e);
+        }
+    }
+
+    private void saveManifest(TransferManifest manifest, File manifestFile) throws BackendException {
+        try {
+            manifest.save(manifestFile);
+        } catch (IOException e) {
+            throw new BackendException("Failed to store the state of the upload: " + e.getMessage(), e, true);
+        }
+    }
+
+    private void waitBeforeRetry(int attempt) throws BackendException {
+        try {
+            Thread.sleep(mRetryDelay * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackendException("Upload interrupted", e, true);
+        }
+    }
+
+    private static void notifyProgress(ProgressInputStream.UploadProgressListener listener, long transferred, long size) {
+        if (listener != null) {
+            listener.onUploadProgressUpdate(size > 0 ? (int) (transferred * 100 / size) : 100);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.chunk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class splits a stream of bytes in chunks using a content-defined chunking algorithm:
+ * a rolling hash (gear hash) is computed over the last bytes of the content and a chunk ends
+ * when the hash matches a mask. The boundaries depend only on the content, so an insertion or a
+ * deletion inside a file only changes the chunks around it and the other chunks keep the same
+ * checksum (and they do not need to be transferred again).
+ * The expected size of a chunk is the minimum size plus the average size.
+ */
+public class ContentDefinedChunker {
+
+    public static final int DEFAULT_MIN_SIZE = 256 * 1024;
+    public static final int DEFAULT_AVERAGE_SIZE = 512 * 1024;
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // the table must be the same on every device: it is generated using a fixed seed
+        long seed = 0x4D6F6E657957616CL;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            long value = seed;
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = value ^ (value >>> 31);
+        }
+    }
+
+    private final int mMinSize;
+    private final int mMaxSize;
+    private final long mMask;
+
+    public ContentDefinedChunker() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a new chunker.
+     * @param minSize minimum size of a chunk (except the last one).
+     * @param averageSize average size of a chunk after the minimum size: it must be a power of two.
+     * @param maxSize maximum size of a chunk.
+     */
+    public ContentDefinedChunker(int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || maxSize < minSize || averageSize < 2 || Integer.bitCount(averageSize) != 1) {
+            throw new IllegalArgumentException("Invalid chunk sizes");
+        }
+        mMinSize = minSize;
+        mMaxSize = maxSize;
+        // the highest bits of the gear hash depend on the last 64 bytes of the content
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        mMask = (averageSize - 1L) << (Long.SIZE - bits);
+    }
+
+    public List<Chunk> split(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return split(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Read the whole stream and compute the boundaries and the checksum of each chunk.
+     * @param inputStream to read: it is not closed by this method.
+     * @return the ordered list of chunks.
+     * @throws IOException if the stream cannot be read.
+     */
+    public List<Chunk> split(InputStream inputStream) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        MessageDigest digest = Chunk.createDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long offset = 0L;
+        int length = 0;
+        long hash = 0L;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+                length++;
+                if ((length >= mMinSize && (hash & mMask) == 0L) || length >= mMaxSize) {
+                    digest.update(buffer, start, i + 1 - start);
+                    chunks.add(new Chunk(offset, length, Chunk.encodeChecksum(digest.digest())));
+                    offset += length;
+                    length = 0;
+                    hash = 0L;
+                    start = i + 1;
+                }
+            }
+            digest.update(buffer, start, read - start);
+        }
+        if (length > 0) {
+            chunks.add(new Chunk(offset, length, Chunk.encodeChecksum(digest.digest())));
+        }
+        return chunks;
+    }
+}
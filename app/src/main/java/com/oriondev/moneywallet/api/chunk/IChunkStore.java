@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.chunk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.model.IFile;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This interface should be implemented by the backends that support chunked transfers. During
+ * an upload the chunks are stored inside a session (a temporary area of the remote folder) and
+ * they are identified by their checksum: a chunk that is already stored is not uploaded again.
+ * When all the chunks are stored they are assembled to create the final file.
+ * An interrupted transfer should be reported with a recoverable {@link BackendException}.
+ */
+public interface IChunkStore<T extends IFile> {
+
+    /**
+     * Retrieve the checksums of the chunks that are already stored inside a session.
+     * @param folder where the file is going to be uploaded (null for the root folder).
+     * @param session identifier of the upload session.
+     * @return the set of the checksums (empty if the session does not exist).
+     */
+    Set<String> getStoredChunks(@Nullable T folder, @NonNull String session) throws BackendException;
+
+    /**
+     * Store the content of a chunk inside a session.
+     * @param folder where the file is going to be uploaded (null for the root folder).
+     * @param session identifier of the upload session.
+     * @param chunk to store.
+     * @param inputStream that contains exactly the content of the chunk.
+     */
+    void storeChunk(@Nullable T folder, @NonNull String session, @NonNull Chunk chunk, @NonNull InputStream inputStream) throws BackendException;
+
+    /**
+     * Create the final file concatenating the content of the chunks and release the session.
+     * The content of each chunk must be verified using its checksum: a chunk that does not
+     * match should be removed from the session and reported with a recoverable exception.
+     * @param folder where the file is uploaded (null for the root folder).
+     * @param session identifier of the upload session.
+     * @param name of the file.
+     * @param chunks ordered list of the chunks of the file.
+     * @return the uploaded file.
+     */
+    T assembleFile(@Nullable T folder, @NonNull String session, @NonNull String name, @NonNull List<Chunk> chunks) throws BackendException;
+
+    /**
+     * Open a remote file to read its content starting from the given position.
+     * @param file to read.
+     * @param offset of the first byte to read.
+     * @return an input stream that must be closed by the caller.
+     */
+    InputStream openFile(@NonNull T file, long offset) throws BackendException;
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.chunk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class contains the state of a chunked transfer: the list of the chunks of the file and,
+ * for each of them, if it has already been transferred. The manifest is stored inside a local
+ * file after each chunk, so an interrupted transfer can be resumed from the last chunk.
+ */
+public class TransferManifest {
+
+    private static final int MAGIC_NUMBER = 0x4D57544D;
+    private static final int VERSION = 1;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final String mSession;
+    private final String mTarget;
+    private final String mName;
+    private final long mSize;
+    private final long mLastModified;
+    private final List<Chunk> mChunks;
+
+    /**
+     * Create a new manifest.
+     * @param session identifier of the transfer session on the backend.
+     * @param target identifier of the remote folder or of the remote file.
+     * @param name of the transferred file.
+     * @param size of the transferred file.
+     * @param lastModified time of the last modification of the local file (if any).
+     * @param chunks ordered list of the chunks of the file.
+     */
+    public TransferManifest(String session, String target, String name, long size, long lastModified, List<Chunk> chunks) {
+        mSession = session;
+        mTarget = target;
+        mName = name;
+        mSize = size;
+        mLastModified = lastModified;
+        mChunks = chunks;
+    }
+
+    public String getSession() {
+        return mSession;
+    }
+
+    public String getTarget() {
+        return mTarget;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public List<Chunk> getChunks() {
+        return Collections.unmodifiableList(mChunks);
+    }
+
+    /**
+     * Check if this manifest describes the transfer of the same file to (or from) the same target.
+     * @return true if the transfer can be resumed using this manifest.
+     */
+    public boolean matches(String target, String name, long size, long lastModified) {
+        return mTarget.equals(target) && mName.equals(name) && mSize == size && mLastModified == lastModified;
+    }
+
+    public long getTransferredBytes() {
+        long transferred = 0L;
+        for (Chunk chunk : mChunks) {
+            if (chunk.isTransferred()) {
+                transferred += chunk.getLength();
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * Read a manifest from a local file.
+     * @param file that contains the manifest.
+     * @return the manifest or null if the file does not exist or it is not a valid manifest.
+     */
+    public static TransferManifest load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (inputStream.readInt() != MAGIC_NUMBER || inputStream.readInt() != VERSION) {
+                return null;
+            }
+            String session = inputStream.readUTF();
+            String target = inputStream.readUTF();
+            String name = inputStream.readUTF();
+            long size = inputStream.readLong();
+            long lastModified = inputStream.readLong();
+            int count = inputStream.readInt();
+            List<Chunk> chunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long offset = inputStream.readLong();
+                int length = inputStream.readInt();
+                String checksum = inputStream.readBoolean() ? inputStream.readUTF() : null;
+                Chunk chunk = new Chunk(offset, length, checksum);
+                chunk.setTransferred(inputStream.readBoolean());
+                chunks.add(chunk);
+            }
+            return new TransferManifest(session, target, name, size, lastModified, chunks);
+        } catch (IOException e) {
+            // a corrupted manifest is simply ignored: the transfer starts again
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ignore) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the manifest to a local file. The content is written to a temporary file that then
+     * replaces the old one, so the manifest is never left incomplete.
+     * @param file where the manifest should be stored.
+     * @throws IOException if the manifest cannot be written.
+     */
+    public void save(File file) throws IOException {
+        File temporary = new File(file.getPath() + TEMPORARY_FILE_SUFFIX);
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            outputStream.writeInt(MAGIC_NUMBER);
+            outputStream.writeInt(VERSION);
+            outputStream.writeUTF(mSession);
+            outputStream.writeUTF(mTarget);
+            outputStream.writeUTF(mName);
+            outputStream.writeLong(mSize);
+            outputStream.writeLong(mLastModified);
+            outputStream.writeInt(mChunks.size());
+            for (Chunk chunk : mChunks) {
+                outputStream.writeLong(chunk.getOffset());
+                outputStream.writeInt(chunk.getLength());
+                outputStream.writeBoolean(chunk.getChecksum() != null);
+                if (chunk.getChecksum() != null) {
+                    outputStream.writeUTF(chunk.getChecksum());
+                }
+                outputStream.writeBoolean(chunk.isTransferred());
+            }
+        } finally {
+            outputStream.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Failed to store the transfer manifest");
+        }
+    }
+}
@@ -24,6 +24,7 @@ import androidx.annotation.NonNull;
 
 import com.oriondev.moneywallet.api.AbstractBackendServiceAPI;
 import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.api.chunk.IChunkStore;
 import com.oriondev.moneywallet.model.IFile;
 import com.oriondev.moneywallet.model.LocalFile;
 import com.oriondev.moneywallet.utils.ProgressInputStream;
@@ -77,6 +78,17 @@ public class DiskBackendServiceAPI extends AbstractBackendServiceAPI<LocalFile>
         return file.getFile();
     }
 
+    @Override
+    protected File downloadResumable(File folder, @NonNull LocalFile file, ProgressOutputStream.DownloadProgressListener listener) throws BackendException {
+        // file is already on disk, there is nothing to resume
+        return download(folder, file, listener);
+    }
+
+    @Override
+    protected IChunkStore<LocalFile> getChunkStore() {
+        return new DiskChunkStore();
+    }
+
     @Override
     public List<IFile> list(LocalFile folder) throws BackendException {
         List<IFile> fileList = new ArrayList<>();
@@ -85,7 +97,10 @@ public class DiskBackendServiceAPI extends AbstractBackendServiceAPI<LocalFile>
             File[] files = diskFolder.listFiles();
             if (files != null) {
                 for (File file : files) {
-                    fileList.add(new LocalFile(file));
+                    // the chunks of the uploads in progress are not visible
+                    if (!file.getName().startsWith(DiskChunkStore.SESSION_FOLDER_PREFIX)) {
+                        fileList.add(new LocalFile(file));
+                    }
                 }
             }
         }
@@ -103,7 +118,7 @@ public class DiskBackendServiceAPI extends AbstractBackendServiceAPI<LocalFile>
         }
     }
 
-    private File getFolder(LocalFile folder) {
+    /*package-local*/ static File getFolder(LocalFile folder) {
         if (folder == null) {
             return Environment.getExternalStorageDirectory();
         }
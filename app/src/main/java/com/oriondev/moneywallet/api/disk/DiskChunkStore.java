@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.api.disk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.api.chunk.Chunk;
+import com.oriondev.moneywallet.api.chunk.IChunkStore;
+import com.oriondev.moneywallet.model.LocalFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chunk store of the disk backend: the chunks of a session are stored as files (named using
+ * their checksum) inside a hidden folder next to the destination of the upload.
+ */
+/*package-local*/ class DiskChunkStore implements IChunkStore<LocalFile> {
+
+    /*package-local*/ static final String SESSION_FOLDER_PREFIX = ".chunks_";
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    @Override
+    public Set<String> getStoredChunks(@Nullable LocalFile folder, @NonNull String session) throws BackendException {
+        Set<String> storedChunks = new HashSet<>();
+        File[] files = getSessionFolder(folder, session).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(TEMPORARY_FILE_SUFFIX)) {
+                    storedChunks.add(file.getName());
+                }
+            }
+        }
+        return storedChunks;
+    }
+
+    @Override
+    public void storeChunk(@Nullable LocalFile folder, @NonNull String session, @NonNull Chunk chunk, @NonNull InputStream inputStream) throws BackendException {
+        File sessionFolder = getSessionFolder(folder, session);
+        File temporary = new File(sessionFolder, chunk.getChecksum() + TEMPORARY_FILE_SUFFIX);
+        MessageDigest digest = Chunk.createDigest();
+        OutputStream outputStream = null;
+        try {
+            FileUtils.forceMkdir(sessionFolder);
+            outputStream = new DigestOutputStream(new FileOutputStream(temporary), digest);
+            IOUtils.copy(inputStream, outputStream);
+            outputStream.close();
+            outputStream = null;
+            if (!chunk.getChecksum().equals(Chunk.encodeChecksum(digest.digest()))) {
+                FileUtils.deleteQuietly(temporary);
+                throw new BackendException("The content of the chunk does not match its checksum", true);
+            }
+            if (!temporary.renameTo(new File(sessionFolder, chunk.getChecksum()))) {
+                throw new IOException("Failed to store the chunk on disk");
+            }
+        } catch (IOException e) {
+            IOUtils.closeQuietly(outputStream);
+            FileUtils.deleteQuietly(temporary);
+            throw new BackendException(e.getMessage(), e, true);
+        }
+    }
+
+    @Override
+    public LocalFile assembleFile(@Nullable LocalFile folder, @NonNull String session, @NonNull String name, @NonNull List<Chunk> chunks) throws BackendException {
+        File parent = DiskBackendServiceAPI.getFolder(folder);
+        File sessionFolder = getSessionFolder(folder, session);
+        File destination = new File(parent, name);
+        File temporary = new File(parent, name + TEMPORARY_FILE_SUFFIX);
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporary);
+            for (Chunk chunk : chunks) {
+                appendChunk(new File(sessionFolder, chunk.getChecksum()), chunk, outputStream);
+            }
+            outputStream.close();
+            outputStream = null;
+            FileUtils.deleteQuietly(destination);
+            if (!temporary.renameTo(destination)) {
+                throw new IOException("Failed to create the file on disk");
+            }
+        } catch (IOException e) {
+            throw new BackendException(e.getMessage(), e, true);
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+            FileUtils.deleteQuietly(temporary);
+        }
+        FileUtils.deleteQuietly(sessionFolder);
+        return new LocalFile(destination);
+    }
+
+    private void appendChunk(File chunkFile, Chunk chunk, OutputStream outputStream) throws IOException, BackendException {
+        if (!chunkFile.exists()) {
+            throw new BackendException("The chunk " + chunk.getChecksum() + " is missing", true);
+        }
+        MessageDigest digest = Chunk.createDigest();
+        InputStream inputStream = new FileInputStream(chunkFile);
+        try {
+            IOUtils.copy(inputStream, new DigestOutputStream(outputStream, digest));
+        } finally {
+            inputStream.close();
+        }
+        if (!chunk.getChecksum().equals(Chunk.encodeChecksum(digest.digest()))) {
+            // the chunk will be uploaded again when the transfer is resumed
+            FileUtils.deleteQuietly(chunkFile);
+            throw new BackendException("The chunk " + chunk.getChecksum() + " is corrupted", true);
+        }
+    }
+
+    @Override
+    public InputStream openFile(@NonNull LocalFile file, long offset) throws BackendException {
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file.getFile());
+            IOUtils.skipFully(inputStream, offset);
+            return inputStream;
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            throw new BackendException(e.getMessage(), e, true);
+        }
+    }
+
+    private File getSessionFolder(@Nullable LocalFile folder, @NonNull String session) {
+        return new File(DiskBackendServiceAPI.getFolder(folder), SESSION_FOLDER_PREFIX + session);
+    }
+}
@@ -7,6 +7,7 @@ import android.webkit.MimeTypeMap;
 
 import com.oriondev.moneywallet.api.AbstractBackendServiceAPI;
 import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.api.chunk.IChunkStore;
 import com.oriondev.moneywallet.model.IFile;
 import com.oriondev.moneywallet.model.SAFFile;
 import com.oriondev.moneywallet.utils.ProgressInputStream;
@@ -120,11 +121,10 @@ public class SAFBackendServiceAPI extends AbstractBackendServiceAPI<SAFFile> {
                 );
             }
         }
-        return docFolder.createFile(getFileType(file), file.getName());
+        return docFolder.createFile(getFileType(file.getName()), file.getName());
     }
 
-    private String getFileType(File file) {
-        String name = file.getName();
+    /*package-local*/ static String getFileType(String name) {
         final int lastDot = name.lastIndexOf('.');
         if (lastDot >= 0) {
             final String extension = name.substring(lastDot + 1).toLowerCase();
@@ -190,6 +190,11 @@ public class SAFBackendServiceAPI extends AbstractBackendServiceAPI<SAFFile> {
         return out;
     }
 
+    @Override
+    protected IChunkStore<SAFFile> getChunkStore() {
+        return new SAFChunkStore(mContext, mRoot);
+    }
+
     @Override
     public List<IFile> list(@Nullable SAFFile folder) throws BackendException {
         DocumentFile docFolder;
@@ -206,7 +211,11 @@ public class SAFBackendServiceAPI extends AbstractBackendServiceAPI<SAFFile> {
         }
         LinkedList<IFile> folderContents = new LinkedList<>();
         for (DocumentFile file : docFolder.listFiles()) {
-            folderContents.add(new SAFFile(file));
+            // the chunks of the uploads in progress are not visible
+            String name = file.getName();
+            if (name == null || !name.startsWith(SAFChunkStore.SESSION_FOLDER_PREFIX)) {
+                folderContents.add(new SAFFile(file));
+            }
         }
         return folderContents;
     }
@@ -0,0 +1,192 @@
+package com.oriondev.moneywallet.api.saf;
+
+import android.content.Context;
+
+import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.api.chunk.Chunk;
+import com.oriondev.moneywallet.api.chunk.IChunkStore;
+import com.oriondev.moneywallet.model.SAFFile;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.documentfile.provider.DocumentFile;
+
+/**
+ * Chunk store of the storage access framework backend: the chunks of a session are stored as
+ * documents (named using their checksum) inside a hidden folder next to the destination.
+ */
+/*package-local*/ class SAFChunkStore implements IChunkStore<SAFFile> {
+
+    /*package-local*/ static final String SESSION_FOLDER_PREFIX = ".chunks_";
+
+    private static final String CHUNK_MIME_TYPE = "application/octet-stream";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Context mContext;
+    private final DocumentFile mRoot;
+
+    /*package-local*/ SAFChunkStore(Context context, DocumentFile root) {
+        mContext = context;
+        mRoot = root;
+    }
+
+    @Override
+    public Set<String> getStoredChunks(@Nullable SAFFile folder, @NonNull String session) throws BackendException {
+        Set<String> storedChunks = new HashSet<>();
+        DocumentFile sessionFolder = getDocumentFolder(folder).findFile(SESSION_FOLDER_PREFIX + session);
+        if (sessionFolder != null) {
+            for (DocumentFile file : sessionFolder.listFiles()) {
+                String name = file.getName();
+                if (name != null && !name.endsWith(TEMPORARY_FILE_SUFFIX)) {
+                    storedChunks.add(name);
+                }
+            }
+        }
+        return storedChunks;
+    }
+
+    @Override
+    public void storeChunk(@Nullable SAFFile folder, @NonNull String session, @NonNull Chunk chunk, @NonNull InputStream inputStream) throws BackendException {
+        DocumentFile sessionFolder = getSessionFolder(folder, session);
+        DocumentFile temporary = createFile(sessionFolder, CHUNK_MIME_TYPE, chunk.getChecksum() + TEMPORARY_FILE_SUFFIX);
+        MessageDigest digest = Chunk.createDigest();
+        try (OutputStream out = openOutputStream(temporary)) {
+            IOUtils.copy(inputStream, new DigestOutputStream(out, digest));
+        } catch (IOException e) {
+            temporary.delete();
+            throw new BackendException(String.format("Failed to upload chunk %s", chunk.getChecksum()), e, true);
+        }
+        if (!chunk.getChecksum().equals(Chunk.encodeChecksum(digest.digest()))) {
+            temporary.delete();
+            throw new BackendException("The content of the chunk does not match its checksum", true);
+        }
+        renameFile(sessionFolder, temporary, chunk.getChecksum());
+    }
+
+    @Override
+    public SAFFile assembleFile(@Nullable SAFFile folder, @NonNull String session, @NonNull String name, @NonNull List<Chunk> chunks) throws BackendException {
+        DocumentFile docFolder = getDocumentFolder(folder);
+        DocumentFile sessionFolder = getSessionFolder(folder, session);
+        DocumentFile temporary = createFile(docFolder, SAFBackendServiceAPI.getFileType(name), name + TEMPORARY_FILE_SUFFIX);
+        try (OutputStream out = openOutputStream(temporary)) {
+            for (Chunk chunk : chunks) {
+                appendChunk(sessionFolder, chunk, out);
+            }
+        } catch (IOException e) {
+            temporary.delete();
+            throw new BackendException(String.format("Failed to assemble %s", name), e, true);
+        } catch (BackendException e) {
+            temporary.delete();
+            throw e;
+        }
+        renameFile(docFolder, temporary, name);
+        sessionFolder.delete();
+        return new SAFFile(temporary);
+    }
+
+    private void appendChunk(DocumentFile sessionFolder, Chunk chunk, OutputStream out) throws IOException, BackendException {
+        DocumentFile chunkFile = sessionFolder.findFile(chunk.getChecksum());
+        if (chunkFile == null) {
+            throw new BackendException(String.format("The chunk %s is missing", chunk.getChecksum()), true);
+        }
+        MessageDigest digest = Chunk.createDigest();
+        try (InputStream in = openInputStream(chunkFile)) {
+            IOUtils.copy(in, new DigestOutputStream(out, digest));
+        }
+        if (!chunk.getChecksum().equals(Chunk.encodeChecksum(digest.digest()))) {
+            // the chunk will be uploaded again when the transfer is resumed
+            chunkFile.delete();
+            throw new BackendException(String.format("The chunk %s is corrupted", chunk.getChecksum()), true);
+        }
+    }
+
+    @Override
+    public InputStream openFile(@NonNull SAFFile file, long offset) throws BackendException {
+        InputStream in = null;
+        try {
+            in = mContext.getContentResolver().openInputStream(file.getUri());
+            if (in == null) {
+                throw new IOException("Provider returned a null stream");
+            }
+            IOUtils.skipFully(in, offset);
+            return in;
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw new BackendException(String.format("Unable to open uri %s", file.getUri()), e, true);
+        }
+    }
+
+    private DocumentFile getDocumentFolder(@Nullable SAFFile folder) throws BackendException {
+        if (folder == null) {
+            return mRoot;
+        }
+        DocumentFile docFolder = DocumentFile.fromTreeUri(mContext, folder.getUri());
+        if (docFolder == null) {
+            throw new BackendException(String.format("Couldn't access folder '%s'", folder.getUri()));
+        }
+        return docFolder;
+    }
+
+    private DocumentFile getSessionFolder(@Nullable SAFFile folder, @NonNull String session) throws BackendException {
+        DocumentFile docFolder = getDocumentFolder(folder);
+        String name = SESSION_FOLDER_PREFIX + session;
+        DocumentFile sessionFolder = docFolder.findFile(name);
+        if (sessionFolder == null) {
+            sessionFolder = docFolder.createDirectory(name);
+        }
+        if (sessionFolder == null) {
+            throw new BackendException(String.format("Couldn't create folder '%s'", name), true);
+        }
+        return sessionFolder;
+    }
+
+    private DocumentFile createFile(DocumentFile parent, String mimeType, String name) throws BackendException {
+        DocumentFile existing = parent.findFile(name);
+        if (existing != null) {
+            existing.delete();
+        }
+        DocumentFile file = parent.createFile(mimeType, name);
+        if (file == null) {
+            throw new BackendException(String.format("Couldn't create output file %s", name), true);
+        }
+        return file;
+    }
+
+    private void renameFile(DocumentFile parent, DocumentFile file, String name) throws BackendException {
+        DocumentFile existing = parent.findFile(name);
+        if (existing != null) {
+            existing.delete();
+        }
+        if (!file.renameTo(name)) {
+            file.delete();
+            throw new BackendException(String.format("Couldn't rename file to %s", name), true);
+        }
+    }
+
+    private OutputStream openOutputStream(DocumentFile file) throws IOException {
+        OutputStream out = mContext.getContentResolver().openOutputStream(file.getUri());
+        if (out == null) {
+            throw new IOException("Provider returned a null stream");
+        }
+        return out;
+    }
+
+    private InputStream openInputStream(DocumentFile file) throws IOException {
+        InputStream in = mContext.getContentResolver().openInputStream(file.getUri());
+        if (in == null) {
+            throw new IOException("Provider returned a null stream");
+        }
+        return in;
+    }
+}
@@ -77,60 +77,64 @@ public class OverviewDataLoader extends AbstractGenericLoader<OverviewData> {
     public OverviewData loadInBackground() {
         Money totalNetIncomes = new Money();
         List<PeriodMoney> periodMoneyList = new ArrayList<>();
-        Uri uri = DataContentProvider.CONTENT_TRANSACTIONS;
+        // the periods are always aligned to the days, so we can roll up the daily totals
+        // instead of iterating all the single transactions
+        Uri uri = DataContentProvider.CONTENT_DAILY_TOTALS;
         String[] projection = new String[] {
-                Contract.Transaction.DATE,
-                Contract.Transaction.DIRECTION,
-                Contract.Transaction.WALLET_CURRENCY,
-                Contract.Transaction.MONEY
+                Contract.DailyTotal.DAY,
+                Contract.DailyTotal.DIRECTION,
+                Contract.DailyTotal.WALLET_CURRENCY,
+                Contract.DailyTotal.MONEY
         };
         String selection;
         String[] selectionArgs;
         long currentWallet = PreferenceManager.getCurrentWallet();
         if (currentWallet == PreferenceManager.TOTAL_WALLET_ID) {
-            selection = Contract.Transaction.WALLET_COUNT_IN_TOTAL + " = 1";
+            selection = Contract.DailyTotal.WALLET_COUNT_IN_TOTAL + " = 1";
             selectionArgs = null;
         } else {
-            selection = Contract.Transaction.WALLET_ID + " = ?";
+            selection = Contract.DailyTotal.WALLET_ID + " = ?";
             selectionArgs = new String[] {String.valueOf(currentWallet)};
         }
-        selection += " AND " + Contract.Transaction.CONFIRMED + " = '1' AND " + Contract.Transaction.COUNT_IN_TOTAL + " = '1'";
-        selection += " AND " + Contract.Transaction.CATEGORY_SHOW_REPORT + " = '1'";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('now', 'localtime')";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") >= DATETIME('" + DateUtils.getSQLDateTimeString(mOverviewSetting.getStartDate()) + "')";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('" + DateUtils.getSQLDateTimeString(mOverviewSetting.getEndDate()) + "')";
+        selection += " AND " + Contract.DailyTotal.CATEGORY_SHOW_REPORT + " = '1'";
+        selection += " AND " + Contract.DailyTotal.DAY + " >= ? AND " + Contract.DailyTotal.DAY + " <= ?";
+        selectionArgs = appendSelectionArgs(selectionArgs, DateUtils.getSQLDateString(mOverviewSetting.getStartDate()), DateUtils.getSQLDateString(mOverviewSetting.getEndDate()));
         switch (mOverviewSetting.getType()) {
             case CASH_FLOW:
                 switch (mOverviewSetting.getCashFlow()) {
                     case INCOMES:
-                        selection += " AND " + Contract.Transaction.DIRECTION + " = ?";
+                        selection += " AND " + Contract.DailyTotal.DIRECTION + " = ?";
                         selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(Contract.Direction.INCOME));
                         break;
                     case EXPENSES:
-                        selection += " AND " + Contract.Transaction.DIRECTION + " = ?";
+                        selection += " AND " + Contract.DailyTotal.DIRECTION + " = ?";
                         selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(Contract.Direction.EXPENSE));
                         break;
                 }
                 break;
             case CATEGORY:
-                selection += " AND (" + Contract.Transaction.CATEGORY_ID + " = ? OR " + Contract.Transaction.CATEGORY_PARENT_ID + " = ?)";
+                selection += " AND (" + Contract.DailyTotal.CATEGORY_ID + " = ? OR " + Contract.DailyTotal.CATEGORY_PARENT_ID + " = ?)";
                 selectionArgs = appendSelectionArgs(selectionArgs, String.valueOf(mOverviewSetting.getCategoryId()), String.valueOf(mOverviewSetting.getCategoryId()));
                 break;
         }
-        String sortOrder = Contract.Transaction.DATE + " ASC";
+        String sortOrder = Contract.DailyTotal.DAY + " ASC";
         Cursor cursor = getContext().getContentResolver().query(uri, projection, selection, selectionArgs, sortOrder);
         if (cursor != null) {
+            int indexDay = cursor.getColumnIndex(Contract.DailyTotal.DAY);
+            int indexDirection = cursor.getColumnIndex(Contract.DailyTotal.DIRECTION);
+            int indexCurrency = cursor.getColumnIndex(Contract.DailyTotal.WALLET_CURRENCY);
+            int indexMoney = cursor.getColumnIndex(Contract.DailyTotal.MONEY);
             cursor.moveToFirst();
             PeriodMoney currentPeriod = null;
             while (isAnotherPeriodNeeded(currentPeriod)) {
                 currentPeriod = getNextPeriod(currentPeriod);
                 if (!cursor.isAfterLast()) {
                     do {
-                        Date date = DateUtils.getDateFromSQLDateTimeString(cursor.getString(cursor.getColumnIndex(Contract.Transaction.DATE)));
+                        Date date = DateUtils.getDateFromSQLDateString(cursor.getString(indexDay));
                         if (belongToPeriod(currentPeriod, date)) {
-                            int direction = cursor.getInt(cursor.getColumnIndex(Contract.Transaction.DIRECTION));
-                            String currency = cursor.getString(cursor.getColumnIndex(Contract.Transaction.WALLET_CURRENCY));
-                            long money = cursor.getLong(cursor.getColumnIndex(Contract.Transaction.MONEY));
+                            int direction = cursor.getInt(indexDirection);
+                            String currency = cursor.getString(indexCurrency);
+                            long money = cursor.getLong(indexMoney);
                             if (direction == Contract.Direction.INCOME) {
                                 currentPeriod.addIncome(currency, money);
                                 totalNetIncomes.addMoney(currency, money);
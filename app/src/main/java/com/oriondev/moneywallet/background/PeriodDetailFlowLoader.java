@@ -102,13 +102,13 @@ public class PeriodDetailFlowLoader extends AbstractGenericLoader<PeriodDetailFl
             selectionArgs = new String[] {String.valueOf(currentWallet)};
         }
         selection += " AND " + Contract.Transaction.CONFIRMED + " = '1' AND " + Contract.Transaction.COUNT_IN_TOTAL + " = '1'";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('now', 'localtime')";
+        selection += " AND " + Contract.Transaction.DATE + " <= DATETIME('now', 'localtime')";
         selection += " AND " + Contract.Transaction.DIRECTION + " = " + (mIncomes ? Contract.Direction.INCOME : Contract.Direction.EXPENSE);
         if (mStartDate != null) {
-            selection += " AND DATETIME(" + Contract.Transaction.DATE + ") >= DATETIME('" + DateUtils.getSQLDateTimeString(mStartDate) + "')";
+            selection += " AND " + Contract.Transaction.DATE + " >= '" + DateUtils.getSQLDateTimeString(mStartDate) + "'";
         }
         if (mEndDate != null) {
-            selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('" + DateUtils.getSQLDateTimeString(mEndDate) + "')";
+            selection += " AND " + Contract.Transaction.DATE + " <= '" + DateUtils.getSQLDateTimeString(mEndDate) + "'";
         }
         String sortOrder = Contract.Transaction.CATEGORY_ID;
         Cursor cursor = getContext().getContentResolver().query(uri, projection, selection, selectionArgs, sortOrder);
@@ -150,15 +150,15 @@ public class PeriodDetailFlowLoader extends AbstractGenericLoader<PeriodDetailFl
         for (CategoryMoney categoryMoney : categoryMoneyMap.values()) {
             Money money = categoryMoney.getMoney();
             totalMoney.addMoney(money);
-            for (Map.Entry<String, Long> entry : money.getCurrencyMoneys().entrySet()) {
-                CurrencyUnit currency = CurrencyManager.getCurrency(entry.getKey());
+            for (int i = 0; i < money.getNumberOfCurrencies(); i++) {
+                CurrencyUnit currency = CurrencyManager.getCurrency(money.getCurrencyAt(i));
                 if (pieDataSets.containsKey(currency)) {
                     PieData pieData = pieDataSets.get(currency);
-                    pieData.add(new PieSlice(categoryMoney.getName(), entry.getValue(), categoryMoney.getIcon().getDrawable(getContext())));
+                    pieData.add(new PieSlice(categoryMoney.getName(), money.getMoneyAt(i), categoryMoney.getIcon().getDrawable(getContext())));
                 } else {
                     PieData pieData = new PieData();
                     //entries.add(new PieEntry(entry.getValue(), categoryMoney.getName(), categoryMoney.getIcon().getDrawable(getContext())));
-                    pieData.add(new PieSlice(categoryMoney.getName(), entry.getValue(), categoryMoney.getIcon().getDrawable(getContext())));
+                    pieData.add(new PieSlice(categoryMoney.getName(), money.getMoneyAt(i), categoryMoney.getIcon().getDrawable(getContext())));
                     pieDataSets.put(currency, pieData);
                 }
                 // --->
@@ -68,41 +68,27 @@ public class PeriodDetailSummaryLoader extends AbstractGenericLoader<PeriodDetai
     public PeriodDetailSummaryData loadInBackground() {
         Money totalNetIncomes = new Money();
         List<PeriodMoney> periodMoneyList = new ArrayList<>();
-        Uri uri = DataContentProvider.CONTENT_TRANSACTIONS;
-        String[] projection = new String[] {
-                Contract.Transaction.DATE,
-                Contract.Transaction.DIRECTION,
-                Contract.Transaction.WALLET_CURRENCY,
-                Contract.Transaction.MONEY
-        };
-        String selection;
-        String[] selectionArgs;
-        long currentWallet = PreferenceManager.getCurrentWallet();
-        if (currentWallet == PreferenceManager.TOTAL_WALLET_ID) {
-            selection = Contract.Transaction.WALLET_COUNT_IN_TOTAL + " = 1";
-            selectionArgs = null;
-        } else {
-            selection = Contract.Transaction.WALLET_ID + " = ?";
-            selectionArgs = new String[] {String.valueOf(currentWallet)};
-        }
-        selection += " AND " + Contract.Transaction.CONFIRMED + " = '1' AND " + Contract.Transaction.COUNT_IN_TOTAL + " = '1'";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('now', 'localtime')";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") >= DATETIME('" + DateUtils.getSQLDateTimeString(mStartDate) + "')";
-        selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('" + DateUtils.getSQLDateTimeString(mEndDate) + "')";
-        String sortOrder = Contract.Transaction.DATE + " ASC";
-        Cursor cursor = getContext().getContentResolver().query(uri, projection, selection, selectionArgs, sortOrder);
+        // the hourly periods are the only ones that are not aligned to the days: in this case
+        // we need to iterate the single transactions instead of the daily totals
+        boolean hourly = mGroupType == GROUP_BY_HOUR;
+        Cursor cursor = hourly ? queryTransactions() : queryDailyTotals();
         if (cursor != null) {
+            int indexDate = cursor.getColumnIndex(hourly ? Contract.Transaction.DATE : Contract.DailyTotal.DAY);
+            int indexDirection = cursor.getColumnIndex(hourly ? Contract.Transaction.DIRECTION : Contract.DailyTotal.DIRECTION);
+            int indexCurrency = cursor.getColumnIndex(hourly ? Contract.Transaction.WALLET_CURRENCY : Contract.DailyTotal.WALLET_CURRENCY);
+            int indexMoney = cursor.getColumnIndex(hourly ? Contract.Transaction.MONEY : Contract.DailyTotal.MONEY);
             cursor.moveToFirst();
             PeriodMoney currentPeriod = null;
             while (isAnotherPeriodNeeded(currentPeriod)) {
                 currentPeriod = getNextPeriod(currentPeriod);
                 if (!cursor.isAfterLast()) {
                     do {
-                        Date date = DateUtils.getDateFromSQLDateTimeString(cursor.getString(cursor.getColumnIndex(Contract.Transaction.DATE)));
+                        String dateString = cursor.getString(indexDate);
+                        Date date = hourly ? DateUtils.getDateFromSQLDateTimeString(dateString) : DateUtils.getDateFromSQLDateString(dateString);
                         if (belongToPeriod(currentPeriod, date)) {
-                            int direction = cursor.getInt(cursor.getColumnIndex(Contract.Transaction.DIRECTION));
-                            String currency = cursor.getString(cursor.getColumnIndex(Contract.Transaction.WALLET_CURRENCY));
-                            long money = cursor.getLong(cursor.getColumnIndex(Contract.Transaction.MONEY));
+                            int direction = cursor.getInt(indexDirection);
+                            String currency = cursor.getString(indexCurrency);
+                            long money = cursor.getLong(indexMoney);
                             if (direction == Contract.Direction.INCOME) {
                                 currentPeriod.addIncome(currency, money);
                                 totalNetIncomes.addMoney(currency, money);
@@ -145,6 +131,58 @@ public class PeriodDetailSummaryLoader extends AbstractGenericLoader<PeriodDetai
         return new PeriodDetailSummaryData(totalNetIncomes, barDataList, barDataCurrencies, periodMoneyList);
     }
 
+    private Cursor queryTransactions() {
+        Uri uri = DataContentProvider.CONTENT_TRANSACTIONS;
+        String[] projection = new String[] {
+                Contract.Transaction.DATE,
+                Contract.Transaction.DIRECTION,
+                Contract.Transaction.WALLET_CURRENCY,
+                Contract.Transaction.MONEY
+        };
+        String selection;
+        String[] selectionArgs;
+        long currentWallet = PreferenceManager.getCurrentWallet();
+        if (currentWallet == PreferenceManager.TOTAL_WALLET_ID) {
+            selection = Contract.Transaction.WALLET_COUNT_IN_TOTAL + " = 1";
+            selectionArgs = null;
+        } else {
+            selection = Contract.Transaction.WALLET_ID + " = ?";
+            selectionArgs = new String[] {String.valueOf(currentWallet)};
+        }
+        selection += " AND " + Contract.Transaction.CONFIRMED + " = '1' AND " + Contract.Transaction.COUNT_IN_TOTAL + " = '1'";
+        selection += " AND " + Contract.Transaction.DATE + " <= DATETIME('now', 'localtime')";
+        selection += " AND " + Contract.Transaction.DATE + " >= '" + DateUtils.getSQLDateTimeString(mStartDate) + "'";
+        selection += " AND " + Contract.Transaction.DATE + " <= '" + DateUtils.getSQLDateTimeString(mEndDate) + "'";
+        String sortOrder = Contract.Transaction.DATE + " ASC";
+        return getContext().getContentResolver().query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    private Cursor queryDailyTotals() {
+        Uri uri = DataContentProvider.CONTENT_DAILY_TOTALS;
+        String[] projection = new String[] {
+                Contract.DailyTotal.DAY,
+                Contract.DailyTotal.DIRECTION,
+                Contract.DailyTotal.WALLET_CURRENCY,
+                Contract.DailyTotal.MONEY
+        };
+        String selection;
+        String[] selectionArgs;
+        long currentWallet = PreferenceManager.getCurrentWallet();
+        if (currentWallet == PreferenceManager.TOTAL_WALLET_ID) {
+            selection = Contract.DailyTotal.WALLET_COUNT_IN_TOTAL + " = 1";
+            selectionArgs = new String[2];
+        } else {
+            selection = Contract.DailyTotal.WALLET_ID + " = ?";
+            selectionArgs = new String[3];
+            selectionArgs[0] = String.valueOf(currentWallet);
+        }
+        selection += " AND " + Contract.DailyTotal.DAY + " >= ? AND " + Contract.DailyTotal.DAY + " <= ?";
+        selectionArgs[selectionArgs.length - 2] = DateUtils.getSQLDateString(mStartDate);
+        selectionArgs[selectionArgs.length - 1] = DateUtils.getSQLDateString(mEndDate);
+        String sortOrder = Contract.DailyTotal.DAY + " ASC";
+        return getContext().getContentResolver().query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
     /**
      * This method is used to determine if another period must be added to the period list.
      * @param periodMoney is the last period analyzed.
@@ -32,6 +32,8 @@ import com.oriondev.moneywallet.R;
 import com.oriondev.moneywallet.ui.view.theme.ThemedDialog;
 
 import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
 
 /**
@@ -41,8 +43,11 @@ public class Attachment implements Parcelable, Identifiable {
 
     public static final String FOLDER_NAME = "attachments";
 
+    private static final String CONTENT_DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private long mId;
-    private final String mFile;
+    private String mFile;
     private final String mName;
     private final String mType;
     private final long mSize;
@@ -89,6 +94,10 @@ public class Attachment implements Parcelable, Identifiable {
         return mFile;
     }
 
+    public void setFile(String file) {
+        mFile = file;
+    }
+
     public String getName() {
         return mName;
     }
@@ -174,6 +183,34 @@ public class Attachment implements Parcelable, Identifiable {
         return UUID.randomUUID().toString().replaceAll("-", "");
     }
 
+    /**
+     * The attachment files are named using the hash of their content: two attachments with the
+     * same content (for example a receipt that has been picked twice) share the same file.
+     * @return a new digest that can be used to compute the hash of the content.
+     */
+    public static MessageDigest createContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Complete the computation of the hash and encode it as the name of the attachment file.
+     * @param digest that has been updated with the whole content of the attachment.
+     * @return the name of the file as hexadecimal string.
+     */
+    public static String getContentFileName(MessageDigest digest) {
+        byte[] hash = digest.digest();
+        char[] name = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            name[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0x0F];
+            name[i * 2 + 1] = HEX_DIGITS[hash[i] & 0x0F];
+        }
+        return new String(name);
+    }
+
     public static void openAttachment(Context context, Attachment attachment) {
         try {
             context.startActivity(attachment.getActionViewIntent(context));
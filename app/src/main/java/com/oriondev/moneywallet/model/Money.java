@@ -21,8 +21,8 @@ package com.oriondev.moneywallet.model;
 
 import android.text.TextUtils;
 
-import java.util.HashMap;
-import java.util.Locale;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,78 +31,94 @@ import java.util.Set;
  */
 public class Money {
 
-    private Map<String, Long> mCurrencies;
+    private final MoneyAccumulator mAccumulator;
 
     public static Money empty() {
         return new Money();
     }
 
     public Money() {
-        mCurrencies = new HashMap<>();
+        mAccumulator = new MoneyAccumulator();
     }
 
     public Money(String currency, long money) {
-        mCurrencies = new HashMap<>();
-        mCurrencies.put(currency, money);
+        mAccumulator = new MoneyAccumulator();
+        mAccumulator.add(currency, money);
     }
 
     public void addMoney(String currency, long money) {
-        long total = money;
-        if (mCurrencies.containsKey(currency)) {
-            total += mCurrencies.get(currency);
-        }
-        mCurrencies.put(currency, total);
+        mAccumulator.add(currency, money);
     }
 
     public void addMoney(Money money) {
         if (money != null) {
-            for (Map.Entry<String, Long> currency : money.mCurrencies.entrySet()) {
-                addMoney(currency.getKey(), currency.getValue());
-            }
+            mAccumulator.addAll(money.mAccumulator);
         }
     }
 
     public void removeMoney(String currency, long money) {
-        long total = -money;
-        if (mCurrencies.containsKey(currency)) {
-            total += mCurrencies.get(currency);
-        }
-        mCurrencies.put(currency, total);
+        mAccumulator.subtract(currency, money);
     }
 
     public void removeMoney(Money money) {
         if (money != null) {
-            for (Map.Entry<String, Long> currency : money.mCurrencies.entrySet()) {
-                removeMoney(currency.getKey(), currency.getValue());
-            }
+            mAccumulator.subtractAll(money.mAccumulator);
         }
     }
 
     public long getMoney(String currency) {
-        Long money = mCurrencies.get(currency);
-        return money != null ? money : 0;
+        return mAccumulator.get(currency);
+    }
+
+    /**
+     * @param index between 0 and {@link #getNumberOfCurrencies()} (excluded).
+     * @return the iso code of the currency at the given index.
+     */
+    public String getCurrencyAt(int index) {
+        return mAccumulator.getCurrencyAt(index);
+    }
+
+    /**
+     * @param index between 0 and {@link #getNumberOfCurrencies()} (excluded).
+     * @return the money of the currency at the given index.
+     */
+    public long getMoneyAt(int index) {
+        return mAccumulator.getMoneyAt(index);
     }
 
+    /**
+     * Build a snapshot of the currencies and their money. Prefer the index based accessors
+     * in the hot paths because this method allocates a new map (and boxes every value).
+     * @return a new map that contains all the currencies in insertion order.
+     */
     public Map<String, Long> getCurrencyMoneys() {
-        return mCurrencies;
+        Map<String, Long> currencyMoneys = new LinkedHashMap<>();
+        for (int i = 0; i < mAccumulator.size(); i++) {
+            currencyMoneys.put(mAccumulator.getCurrencyAt(i), mAccumulator.getMoneyAt(i));
+        }
+        return currencyMoneys;
     }
 
     public Set<String> getCurrencies() {
-        return mCurrencies.keySet();
+        Set<String> currencies = new LinkedHashSet<>();
+        for (int i = 0; i < mAccumulator.size(); i++) {
+            currencies.add(mAccumulator.getCurrencyAt(i));
+        }
+        return currencies;
     }
 
     public int getNumberOfCurrencies() {
-        return mCurrencies.size();
+        return mAccumulator.size();
     }
 
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        for (Map.Entry<String, Long> entry : mCurrencies.entrySet()) {
+        for (int i = 0; i < mAccumulator.size(); i++) {
             if (builder.length() > 0) {
                 builder.append(",");
             }
-            builder.append(String.format(Locale.ENGLISH, "%s %d", entry.getKey(), entry.getValue()));
+            builder.append(mAccumulator.getCurrencyAt(i)).append(' ').append(mAccumulator.getMoneyAt(i));
         }
         return builder.toString();
     }
@@ -118,4 +134,4 @@ public class Money {
         }
         return money;
     }
-}
\ No newline at end of file
+}
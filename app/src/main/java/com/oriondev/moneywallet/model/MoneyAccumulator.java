@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Primitive accumulator of money grouped by currency. Each currency iso is interned once in a
+ * process wide table that assigns it a small ordinal, and the totals are stored in dense arrays
+ * of long (in insertion order) indexed through a small open-addressed table of ordinals. This
+ * way adding money to an existing currency does not box any value and does not allocate.
+ */
+public class MoneyAccumulator {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private static final ConcurrentHashMap<String, Integer> sOrdinals = new ConcurrentHashMap<>();
+    private static volatile String[] sCurrencies = new String[16];
+    private static int sCurrencyCount = 0;
+
+    /**
+     * Return the ordinal of the currency, assigning a new one if the currency has never been
+     * seen before. Ordinals are never released and they are stable for the lifetime of the
+     * process, so they can be cached by the callers.
+     * @param currency iso code of the currency.
+     * @return the ordinal of the currency.
+     */
+    public static int getOrdinal(String currency) {
+        Integer ordinal = sOrdinals.get(currency);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (sOrdinals) {
+            ordinal = sOrdinals.get(currency);
+            if (ordinal == null) {
+                String[] currencies = sCurrencies;
+                if (sCurrencyCount == currencies.length) {
+                    currencies = Arrays.copyOf(currencies, currencies.length * 2);
+                }
+                ordinal = sCurrencyCount;
+                currencies[sCurrencyCount++] = currency;
+                // publish the array before the ordinal becomes visible to the other threads
+                sCurrencies = currencies;
+                sOrdinals.put(currency, ordinal);
+            }
+            return ordinal;
+        }
+    }
+
+    /**
+     * Return the iso code of the currency associated to the given ordinal.
+     * @param ordinal of the currency returned by {@link #getOrdinal(String)}.
+     * @return the iso code of the currency.
+     */
+    public static String getCurrency(int ordinal) {
+        return sCurrencies[ordinal];
+    }
+
+    // open-addressed table: each slot contains the position + 1 of the currency (0 = empty)
+    private int[] mSlots;
+    private int[] mOrdinals;
+    private long[] mMoney;
+    private int mSize;
+
+    // the rows of a cursor are usually grouped by currency
+    private String mLastCurrency;
+    private int mLastOrdinal;
+
+    public MoneyAccumulator() {
+        mSlots = new int[DEFAULT_CAPACITY * 2];
+        mOrdinals = new int[DEFAULT_CAPACITY];
+        mMoney = new long[DEFAULT_CAPACITY];
+        mSize = 0;
+    }
+
+    public MoneyAccumulator(MoneyAccumulator accumulator) {
+        mSlots = accumulator.mSlots.clone();
+        mOrdinals = accumulator.mOrdinals.clone();
+        mMoney = accumulator.mMoney.clone();
+        mSize = accumulator.mSize;
+    }
+
+    public void add(String currency, long money) {
+        add(resolveOrdinal(currency), money);
+    }
+
+    public void add(int ordinal, long money) {
+        int position = findPosition(ordinal);
+        if (position < 0) {
+            position = insert(ordinal);
+        }
+        mMoney[position] += money;
+    }
+
+    public void addAll(MoneyAccumulator accumulator) {
+        for (int i = 0; i < accumulator.mSize; i++) {
+            add(accumulator.mOrdinals[i], accumulator.mMoney[i]);
+        }
+    }
+
+    public void subtract(String currency, long money) {
+        add(resolveOrdinal(currency), -money);
+    }
+
+    public void subtractAll(MoneyAccumulator accumulator) {
+        for (int i = 0; i < accumulator.mSize; i++) {
+            add(accumulator.mOrdinals[i], -accumulator.mMoney[i]);
+        }
+    }
+
+    public long get(String currency) {
+        Integer ordinal = sOrdinals.get(currency);
+        if (ordinal != null) {
+            int position = findPosition(ordinal);
+            if (position >= 0) {
+                return mMoney[position];
+            }
+        }
+        return 0L;
+    }
+
+    public boolean contains(String currency) {
+        Integer ordinal = sOrdinals.get(currency);
+        return ordinal != null && findPosition(ordinal) >= 0;
+    }
+
+    /**
+     * @return the number of currencies stored inside this accumulator.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param index between 0 and {@link #size()} (excluded), in insertion order.
+     * @return the iso code of the currency stored at the given index.
+     */
+    public String getCurrencyAt(int index) {
+        checkIndex(index);
+        return sCurrencies[mOrdinals[index]];
+    }
+
+    /**
+     * @param index between 0 and {@link #size()} (excluded), in insertion order.
+     * @return the money of the currency stored at the given index.
+     */
+    public long getMoneyAt(int index) {
+        checkIndex(index);
+        return mMoney[index];
+    }
+
+    public void clear() {
+        Arrays.fill(mSlots, 0);
+        mSize = 0;
+    }
+
+    private int resolveOrdinal(String currency) {
+        if (mLastCurrency != null && mLastCurrency.equals(currency)) {
+            return mLastOrdinal;
+        }
+        int ordinal = getOrdinal(currency);
+        mLastCurrency = currency;
+        mLastOrdinal = ordinal;
+        return ordinal;
+    }
+
+    private int findPosition(int ordinal) {
+        int mask = mSlots.length - 1;
+        int slot = ordinal & mask;
+        while (true) {
+            int value = mSlots[slot];
+            if (value == 0) {
+                return -1;
+            } else if (mOrdinals[value - 1] == ordinal) {
+                return value - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int insert(int ordinal) {
+        if (mSize == mOrdinals.length) {
+            int capacity = mOrdinals.length * 2;
+            mOrdinals = Arrays.copyOf(mOrdinals, capacity);
+            mMoney = Arrays.copyOf(mMoney, capacity);
+            mSlots = new int[capacity * 2];
+            for (int i = 0; i < mSize; i++) {
+                placeSlot(mOrdinals[i], i);
+            }
+        }
+        int position = mSize++;
+        mOrdinals[position] = ordinal;
+        mMoney[position] = 0L;
+        placeSlot(ordinal, position);
+        return position;
+    }
+
+    private void placeSlot(int ordinal, int position) {
+        int mask = mSlots.length - 1;
+        int slot = ordinal & mask;
+        while (mSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        mSlots[slot] = position + 1;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index + " (size: " + mSize + ")");
+        }
+    }
+}
@@ -347,14 +347,16 @@ public class AttachmentPicker extends Fragment {
                     Attachment attachment = intent.getParcelableExtra(AttachmentHandlerIntentService.ATTACHMENT);
                     switch (action) {
                         case LocalAction.ACTION_ATTACHMENT_OP_STARTED:
-                            updateAttachmentStatus(attachment, Attachment.Status.PENDING, null);
+                            updateAttachmentStatus(attachment.getFile(), attachment, Attachment.Status.PENDING, null);
                             break;
                         case LocalAction.ACTION_ATTACHMENT_OP_FINISHED:
-                            updateAttachmentStatus(attachment, Attachment.Status.READY, null);
+                            // the file of the attachment has been renamed using the hash of the content
+                            String pendingFile = intent.getStringExtra(AttachmentHandlerIntentService.PENDING_FILE);
+                            updateAttachmentStatus(pendingFile, attachment, Attachment.Status.READY, null);
                             break;
                         case LocalAction.ACTION_ATTACHMENT_OP_FAILED:
                             String error = intent.getStringExtra(AttachmentHandlerIntentService.ERROR);
-                            updateAttachmentStatus(attachment, Attachment.Status.PENDING, error);
+                            updateAttachmentStatus(attachment.getFile(), attachment, Attachment.Status.PENDING, error);
                             break;
                     }
                 }
@@ -363,10 +365,11 @@ public class AttachmentPicker extends Fragment {
 
     };
 
-    private void updateAttachmentStatus(Attachment attachment, Attachment.Status status, String error) {
+    private void updateAttachmentStatus(String file, Attachment attachment, Attachment.Status status, String error) {
         for (Attachment attach : mNewAttachments) {
-            if (attach.equals(attachment)) {
+            if (attach.getFile().equals(file)) {
                 attach.setId(attachment.getId());
+                attach.setFile(attachment.getFile());
                 attach.setStatus(status, error);
                 fireCallbackSafely();
                 break;
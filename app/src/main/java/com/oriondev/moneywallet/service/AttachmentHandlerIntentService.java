@@ -24,6 +24,7 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Intent;
+import android.database.Cursor;
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
@@ -41,19 +42,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 
 /**
  * Created by andrea on 27/03/18.
+ *
+ * The attachment files are stored using the hash of their content as name: if the content of a
+ * new attachment is already stored, the new attachment simply shares the existing file.
  */
 public class AttachmentHandlerIntentService extends IntentService {
 
     public static final String ATTACHMENT = "AttachmentHandlerIntentService::Parameters::Attachment";
     public static final String ACTION = "AttachmentHandlerIntentService::Parameters::Action";
     public static final String ERROR = "AttachmentHandlerIntentService::Parameters::Error";
+    public static final String PENDING_FILE = "AttachmentHandlerIntentService::Parameters::PendingFile";
 
     public static final int ACTION_CREATE = 1;
     public static final int ACTION_DELETE = 2;
 
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
     public AttachmentHandlerIntentService() {
         super("AttachmentHandlerIntentService");
     }
@@ -63,6 +72,8 @@ public class AttachmentHandlerIntentService extends IntentService {
         if (intent != null) {
             int action = intent.getIntExtra(ACTION, 0);
             Attachment attachment = intent.getParcelableExtra(ATTACHMENT);
+            // the name of the file is replaced by the hash of the content when it is created
+            String pendingFile = attachment.getFile();
             notifyOperationStarted(attachment, action);
             try {
                 switch (action) {
@@ -74,33 +85,38 @@ public class AttachmentHandlerIntentService extends IntentService {
                         deleteAttachment(attachment);
                         break;
                 }
-                notifyOperationFinished(attachment, action);
+                notifyOperationFinished(attachment, action, pendingFile);
             } catch (IOException e) {
                 notifyOperationFailed(attachment, action, e.getMessage());
             }
         }
     }
 
-    private File getAttachmentFile(Attachment attachment) throws IOException {
-        File folder = new File(getExternalFilesDir(null), "attachments");
+    private File getAttachmentFolder() throws IOException {
+        File folder = new File(getExternalFilesDir(null), Attachment.FOLDER_NAME);
         FileUtils.forceMkdir(folder);
-        File file = new File(folder, attachment.getFile());
-        if (!file.exists() && !file.createNewFile()) {
-            throw new IOException("Failed to create a new file");
-        }
-        return file;
+        return folder;
     }
 
     private Uri createAttachment(Uri uri, Attachment attachment) throws IOException {
         ContentResolver contentResolver = getContentResolver();
+        File folder = getAttachmentFolder();
+        // the content is copied to a temporary file while the hash is computed: the name of
+        // the file is known only when the whole content has been read
+        File temporary = new File(folder, attachment.getFile() + TEMPORARY_FILE_SUFFIX);
+        MessageDigest digest = Attachment.createContentDigest();
         InputStream inputStream = null;
         OutputStream outputStream = null;
         try {
             inputStream = contentResolver.openInputStream(uri);
-            if (inputStream != null) {
-                outputStream = new FileOutputStream(getAttachmentFile(attachment));
-                IOUtils.copy(inputStream, outputStream);
+            if (inputStream == null) {
+                throw new IOException("Failed to open the attachment content");
             }
+            outputStream = new DigestOutputStream(new FileOutputStream(temporary), digest);
+            IOUtils.copy(inputStream, outputStream);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temporary);
+            throw e;
         } finally {
             if (inputStream != null) {
                 try {inputStream.close();} catch (IOException ignore) {}
@@ -109,6 +125,16 @@ public class AttachmentHandlerIntentService extends IntentService {
                 try {outputStream.close();} catch (IOException ignore) {}
             }
         }
+        String fileName = Attachment.getContentFileName(digest);
+        File file = new File(folder, fileName);
+        if (file.exists()) {
+            // the same content is already stored by another attachment
+            FileUtils.deleteQuietly(temporary);
+        } else if (!temporary.renameTo(file)) {
+            FileUtils.deleteQuietly(temporary);
+            throw new IOException("Failed to store the attachment file");
+        }
+        attachment.setFile(fileName);
         ContentValues contentValues = new ContentValues();
         contentValues.put(Contract.Attachment.FILE, attachment.getFile());
         contentValues.put(Contract.Attachment.NAME, attachment.getName());
@@ -121,7 +147,22 @@ public class AttachmentHandlerIntentService extends IntentService {
         ContentResolver contentResolver = getContentResolver();
         Uri uri = ContentUris.withAppendedId(DataContentProvider.CONTENT_ATTACHMENTS, attachment.getId());
         contentResolver.delete(uri, null, null);
-        FileUtils.forceDelete(getAttachmentFile(attachment));
+        // the file is removed only if it is not shared with other attachments
+        String[] projection = new String[] {Contract.Attachment.ID};
+        String selection = Contract.Attachment.FILE + " = ?";
+        String[] selectionArgs = new String[] {attachment.getFile()};
+        Cursor cursor = contentResolver.query(DataContentProvider.CONTENT_ATTACHMENTS, projection, selection, selectionArgs, null);
+        boolean shared = false;
+        if (cursor != null) {
+            shared = cursor.getCount() > 0;
+            cursor.close();
+        }
+        if (!shared) {
+            File file = new File(getAttachmentFolder(), attachment.getFile());
+            if (file.exists()) {
+                FileUtils.forceDelete(file);
+            }
+        }
     }
 
     private void notifyOperationStarted(Attachment attachment, int action) {
@@ -131,10 +172,11 @@ public class AttachmentHandlerIntentService extends IntentService {
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
     }
 
-    private void notifyOperationFinished(Attachment attachment, int action) {
+    private void notifyOperationFinished(Attachment attachment, int action, String pendingFile) {
         Intent intent = new Intent(LocalAction.ACTION_ATTACHMENT_OP_FINISHED);
         intent.putExtra(ATTACHMENT, attachment);
         intent.putExtra(ACTION, action);
+        intent.putExtra(PENDING_FILE, pendingFile);
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
     }
 
@@ -46,6 +46,7 @@ import com.oriondev.moneywallet.model.IFile;
 import com.oriondev.moneywallet.storage.database.DataContentProvider;
 import com.oriondev.moneywallet.storage.database.ExportException;
 import com.oriondev.moneywallet.storage.database.ImportException;
+import com.oriondev.moneywallet.storage.database.SQLDatabaseExporter;
 import com.oriondev.moneywallet.storage.database.SQLDatabaseImporter;
 import com.oriondev.moneywallet.storage.database.backup.AbstractBackupExporter;
 import com.oriondev.moneywallet.storage.database.backup.AbstractBackupImporter;
@@ -53,6 +54,7 @@ import com.oriondev.moneywallet.storage.database.backup.BackupManager;
 import com.oriondev.moneywallet.storage.database.backup.DefaultBackupExporter;
 import com.oriondev.moneywallet.storage.database.backup.DefaultBackupImporter;
 import com.oriondev.moneywallet.storage.database.backup.LegacyBackupImporter;
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
 import com.oriondev.moneywallet.storage.preference.BackendManager;
 import com.oriondev.moneywallet.storage.preference.PreferenceManager;
 import com.oriondev.moneywallet.ui.notification.NotificationContract;
@@ -63,13 +65,15 @@ import com.oriondev.moneywallet.utils.ProgressOutputStream;
 import com.oriondev.moneywallet.utils.Utils;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.UUID;
+import java.util.Set;
 
 /**
  * Created by andrea on 21/11/18.
@@ -93,8 +97,31 @@ public class BackupHandlerIntentService extends IntentService {
     private static final String ATTACHMENT_FOLDER = "attachments";
     private static final String BACKUP_CACHE_FOLDER = "backups";
     private static final String TEMP_FOLDER = "temp";
+    private static final String PENDING_UPLOAD_FOLDER = "upload_%s_%s";
+    private static final String PENDING_DOWNLOAD_FOLDER = "download_%s";
+    private static final String UPLOAD_MANIFEST_FILE = "upload.manifest";
     private static final String FILE_DATETIME_PATTERN = "yyyy-MM-dd_HH-mm-ss";
     private static final String OUTPUT_FILE = "backup_%s%s";
+    private static final String OUTPUT_FILE_INCREMENTAL = "backup_%s_incremental%s";
+
+    /**
+     * Maximum number of incremental backups that are created after a full automatic backup.
+     * Every backup of the chain must be downloaded to restore the last one.
+     */
+    private static final int MAX_INCREMENTAL_BACKUPS = 6;
+
+    /**
+     * The changes saved in the database just before the creation of a backup may be not
+     * exported: the next incremental backup also includes the changes of this interval.
+     */
+    private static final long WATERMARK_SAFETY_MARGIN = 60 * 1000L;
+
+    /**
+     * A backup that has not been completely uploaded is kept on the device and the upload is
+     * resumed by the next attempt, unless the data has been changed since it was created or it
+     * is older than this interval: in both cases a new backup is created.
+     */
+    private static final long PENDING_UPLOAD_VALIDITY = 6 * 60 * 60 * 1000L;
 
     private static final int ACTION_NONE = 0;
     public static final int ACTION_LIST = 1;
@@ -210,16 +237,39 @@ public class BackupHandlerIntentService extends IntentService {
 
     private void onActionBackup(@NonNull Intent intent) throws ExportException, BackendException, IOException {
         IFile remoteFolder = intent.getParcelableExtra(PARENT_FOLDER);
+        String backendId = intent.getStringExtra(BACKEND_ID);
         File folder = getExternalFilesDir(null);
         File cache = new File(folder, BACKUP_CACHE_FOLDER);
-        File revision = new File(cache, UUID.randomUUID().toString());
+        // the automatic and the manual backups never share the same pending upload
+        String pendingName = String.format(Locale.ENGLISH, PENDING_UPLOAD_FOLDER, backendId, mAutoBackup ? "auto" : "manual");
+        File pending = new File(cache, pendingName);
+        boolean keepPendingUpload = false;
         try {
-            FileUtils.forceMkdir(revision);
+            FileUtils.forceMkdir(pending);
             String password = intent.getStringExtra(PASSWORD);
             notifyTaskProgress(ACTION_BACKUP, STATUS_BACKUP_CREATION, 0);
-            File backup = prepareLocalBackupFile(revision, password);
+            // only the automatic backups are incremental: the manual ones are always full
+            // backups and they do not change the chain of the automatic backups
+            boolean incremental = mAutoBackup && isIncrementalBackupAllowed(backendId);
+            String base = incremental ? BackendManager.getAutoBackupChainId(backendId) : null;
+            File backup = findPendingBackupFile(pending, password, base);
+            BackupHeader header;
+            if (backup != null) {
+                header = DefaultBackupImporter.readBackupHeader(backup, password);
+                header.mId = FilenameUtils.getBaseName(backup.getName());
+            } else {
+                FileUtils.cleanDirectory(pending);
+                header = new BackupHeader();
+                header.mWatermark = System.currentTimeMillis() - WATERMARK_SAFETY_MARGIN;
+                if (incremental) {
+                    header.mBase = base;
+                    header.mSince = BackendManager.getAutoBackupChainWatermark(backendId);
+                }
+                backup = prepareLocalBackupFile(pending, password, header);
+            }
             notifyTaskProgress(ACTION_BACKUP, STATUS_BACKUP_UPLOADING, 30);
-            IFile uploaded = mBackendServiceAPI.uploadFile(remoteFolder, backup, new ProgressInputStream.UploadProgressListener() {
+            File manifestFile = new File(pending, UPLOAD_MANIFEST_FILE);
+            IFile uploaded = mBackendServiceAPI.uploadFileResumable(remoteFolder, backup, manifestFile, new ProgressInputStream.UploadProgressListener() {
 
                 @Override
                 public void onUploadProgressUpdate(int percentage) {
@@ -228,31 +278,111 @@ public class BackupHandlerIntentService extends IntentService {
                 }
 
             });
+            if (mAutoBackup) {
+                int chainLength = incremental ? BackendManager.getAutoBackupChainLength(backendId) + 1 : 0;
+                BackendManager.setAutoBackupChain(backendId, header.mId, header.mWatermark, chainLength);
+                pruneDeletedItems();
+            }
             notifyTaskProgress(ACTION_BACKUP, STATUS_BACKUP_UPLOADING, 100);
             notifyUploadTaskFinished(uploaded);
+        } catch (BackendException e) {
+            // the upload can be resumed by the next attempt only if the error is recoverable
+            keepPendingUpload = e.isRecoverable();
+            throw e;
         } finally {
-            FileUtils.deleteQuietly(revision);
+            if (!keepPendingUpload) {
+                FileUtils.deleteQuietly(pending);
+            }
+        }
+    }
+
+    /**
+     * Search the backup file of an upload that has been interrupted by a recoverable error.
+     * It can be uploaded again only if it is recent, it has been created with the same password
+     * and the same base of the backup that should be created now and no data has been changed
+     * after its watermark: otherwise the retry would silently upload a backup that misses the
+     * most recent changes.
+     * @param folder of the pending upload.
+     * @param password of the new backup.
+     * @param base of the new backup or null if it is a full backup.
+     * @return the pending backup file or null if it does not exist or it is not valid.
+     */
+    private File findPendingBackupFile(@NonNull File folder, @Nullable String password, @Nullable String base) {
+        String extension = BackupManager.getExtension(!TextUtils.isEmpty(password));
+        File[] files = folder.listFiles();
+        if (files != null) {
+            long validity = System.currentTimeMillis() - PENDING_UPLOAD_VALIDITY;
+            long lastDataChange = PreferenceManager.getLastTimeDataIsChanged();
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(extension) && file.lastModified() > validity) {
+                    try {
+                        BackupHeader header = DefaultBackupImporter.readBackupHeader(file, password);
+                        boolean sameBase = base != null ? base.equals(header.mBase) : header.mBase == null;
+                        if (sameBase && lastDataChange <= header.mWatermark) {
+                            return file;
+                        }
+                    } catch (ImportException ignore) {
+                        // the file is corrupted or the password does not match
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isIncrementalBackupAllowed(String backendId) {
+        return BackendManager.getAutoBackupChainId(backendId) != null &&
+                BackendManager.getAutoBackupChainLength(backendId) < MAX_INCREMENTAL_BACKUPS;
+    }
+
+    /**
+     * The deleted items are kept inside the database until all the chains of automatic backups
+     * contain them: the oldest watermark of the chains is the limit.
+     */
+    private void pruneDeletedItems() {
+        Set<String> backendIdSet = BackendManager.getAutoBackupEnabledServices();
+        if (backendIdSet != null) {
+            Long watermark = null;
+            for (String backendId : backendIdSet) {
+                if (BackendManager.getAutoBackupChainId(backendId) != null) {
+                    long chainWatermark = BackendManager.getAutoBackupChainWatermark(backendId);
+                    if (watermark == null || chainWatermark < watermark) {
+                        watermark = chainWatermark;
+                    }
+                }
+            }
+            if (watermark != null) {
+                SQLDatabaseExporter.pruneDeletedItems(getContentResolver(), watermark);
+            }
         }
     }
 
     /**
      * Create a local zip file that contains the database entries according to the backup
      * file specification. If a password is provided, set it to the zip file.
+     * The file is written in a single pass: it is the only copy of the backup on the device.
      * @param folder where the local backup is stored.
      * @param password if the backup should be protected.
+     * @param header of the backup: the id is assigned using the name of the file.
      * @return the backup file is success.
      */
-    private File prepareLocalBackupFile(@NonNull File folder, @Nullable String password) throws ExportException, IOException {
-        File backupFile = createBackupFile(folder, BackupManager.getExtension(!TextUtils.isEmpty(password)));
-        AbstractBackupExporter exporter = new DefaultBackupExporter(getContentResolver(), backupFile, password);
-        exporter.exportDatabase(getFilesDir());
-        exporter.exportAttachments(getAttachmentFolder());
+    private File prepareLocalBackupFile(@NonNull File folder, @Nullable String password, @NonNull BackupHeader header) throws ExportException, IOException {
+        File backupFile = createBackupFile(folder, BackupManager.getExtension(!TextUtils.isEmpty(password)), header.mBase != null);
+        header.mId = FilenameUtils.getBaseName(backupFile.getName());
+        File attachmentFolder = getAttachmentFolder();
+        AbstractBackupExporter exporter = new DefaultBackupExporter(getContentResolver(), backupFile, password, header);
+        try {
+            exporter.exportDatabase();
+            exporter.exportAttachments(attachmentFolder);
+        } finally {
+            exporter.close();
+        }
         return backupFile;
     }
 
-    private File createBackupFile(@NonNull File folder, @NonNull String extension) {
+    private File createBackupFile(@NonNull File folder, @NonNull String extension, boolean incremental) {
         String datetime = DateUtils.getDateTimeString(new Date(), FILE_DATETIME_PATTERN);
-        String name = String.format(Locale.ENGLISH, OUTPUT_FILE, datetime, extension);
+        String name = String.format(Locale.ENGLISH, incremental ? OUTPUT_FILE_INCREMENTAL : OUTPUT_FILE, datetime, extension);
         return new File(folder, name);
     }
 
@@ -268,11 +398,13 @@ public class BackupHandlerIntentService extends IntentService {
         if (remoteFile != null) {
             File folder = getExternalFilesDir(null);
             File cache = new File(folder, BACKUP_CACHE_FOLDER);
-            File revision = new File(cache, UUID.randomUUID().toString());
+            String backendId = intent.getStringExtra(BACKEND_ID);
+            File revision = new File(cache, String.format(Locale.ENGLISH, PENDING_DOWNLOAD_FOLDER, backendId));
+            boolean keepPendingDownload = false;
             try {
                 FileUtils.forceMkdir(revision);
                 notifyTaskProgress(ACTION_RESTORE, STATUS_BACKUP_DOWNLOADING, 0);
-                File backup = mBackendServiceAPI.downloadFile(revision, remoteFile, new ProgressOutputStream.DownloadProgressListener() {
+                ProgressOutputStream.DownloadProgressListener listener = new ProgressOutputStream.DownloadProgressListener() {
 
                     @Override
                     public void onDownloadProgressUpdate(int percentage) {
@@ -280,32 +412,106 @@ public class BackupHandlerIntentService extends IntentService {
                         notifyTaskProgress(ACTION_RESTORE, STATUS_BACKUP_DOWNLOADING, realProgress);
                     }
 
-                });
-                notifyTaskProgress(ACTION_RESTORE, STATUS_BACKUP_RESTORING, 75);
+                };
+                File backup = mBackendServiceAPI.downloadFileResumable(revision, remoteFile, listener);
                 String password = intent.getStringExtra(PASSWORD);
-                restoreLocalBackupFile(backup, password);
+                IFile remoteFolder = intent.getParcelableExtra(PARENT_FOLDER);
+                List<File> backupChain = downloadBackupChain(revision, remoteFolder, backup, password, listener);
+                notifyTaskProgress(ACTION_RESTORE, STATUS_BACKUP_RESTORING, 75);
+                restoreLocalBackupFile(backupChain, password);
                 notifyTaskProgress(ACTION_RESTORE, STATUS_BACKUP_RESTORING, 100);
                 DataContentProvider.notifyDatabaseIsChanged(this);
                 PreferenceManager.setLastTimeDataIsChanged(0L);
                 CurrencyManager.invalidateCache(this);
+                // the restored data does not match the content of the chains
+                // of automatic backups anymore: the next ones must be full backups
+                resetAutoBackupChains();
                 RecurrenceBroadcastReceiver.scheduleRecurrenceTask(this);
                 AutoBackupBroadcastReceiver.scheduleAutoBackupTask(this);
                 notifyTaskFinished(ACTION_RESTORE);
+            } catch (BackendException e) {
+                // the partial downloads are resumed by the next attempt to restore the backup
+                keepPendingDownload = e.isRecoverable();
+                throw e;
             } finally {
-                FileUtils.deleteQuietly(revision);
+                if (!keepPendingDownload) {
+                    FileUtils.deleteQuietly(revision);
+                }
             }
         } else {
             throw new RuntimeException("Backup file to restore not specified");
         }
     }
 
-    private void restoreLocalBackupFile(@NonNull File backup, @Nullable String password) throws ImportException, IOException {
+    /**
+     * An incremental backup only contains the changes since the previous backup of its chain:
+     * all the previous backups, up to the full one, are downloaded from the same folder.
+     * @param folder where the backups are downloaded.
+     * @param remoteFolder where the backups are searched.
+     * @param backup file that should be restored.
+     * @param password used to decrypt the backups.
+     * @param listener of the download progress.
+     * @return the list of the backup files to apply, starting from the full backup.
+     */
+    private List<File> downloadBackupChain(@NonNull File folder, @Nullable IFile remoteFolder, @NonNull File backup,
+                                           @Nullable String password, ProgressOutputStream.DownloadProgressListener listener) throws ImportException, BackendException {
+        LinkedList<File> backupChain = new LinkedList<>();
+        backupChain.add(backup);
+        if (!backup.getName().endsWith(BackupManager.BACKUP_EXTENSION_LEGACY)) {
+            BackupHeader header = DefaultBackupImporter.readBackupHeader(backup, password);
+            List<IFile> remoteFiles = null;
+            while (header.mBase != null) {
+                if (backupChain.size() > MAX_INCREMENTAL_BACKUPS * 10) {
+                    throw new ImportException("The backup chain is too long or it contains a loop");
+                }
+                if (remoteFiles == null) {
+                    remoteFiles = mBackendServiceAPI.getFolderContent(remoteFolder);
+                }
+                IFile remoteBase = findBackupFile(remoteFiles, header.mBase);
+                if (remoteBase == null) {
+                    throw new ImportException("The backup '" + header.mBase + "' is required to restore " +
+                            "this incremental backup but it has not been found in the same folder");
+                }
+                File base = mBackendServiceAPI.downloadFileResumable(folder, remoteBase, listener);
+                backupChain.addFirst(base);
+                header = DefaultBackupImporter.readBackupHeader(base, password);
+            }
+        }
+        return backupChain;
+    }
+
+    private IFile findBackupFile(List<IFile> remoteFiles, String backupId) {
+        if (remoteFiles != null) {
+            for (IFile remoteFile : remoteFiles) {
+                String name = remoteFile.getName();
+                if (!remoteFile.isDirectory() && (name.equals(backupId + BackupManager.BACKUP_EXTENSION_STANDARD)
+                        || name.equals(backupId + BackupManager.BACKUP_EXTENSION_PROTECTED))) {
+                    return remoteFile;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void resetAutoBackupChains() {
+        Set<String> backendIdSet = BackendManager.getAutoBackupEnabledServices();
+        if (backendIdSet != null) {
+            for (String backendId : backendIdSet) {
+                BackendManager.resetAutoBackupChain(backendId);
+            }
+        }
+        // the deleted items of the old data are not useful anymore
+        SQLDatabaseExporter.pruneDeletedItems(getContentResolver(), Long.MAX_VALUE);
+    }
+
+    private void restoreLocalBackupFile(@NonNull List<File> backupChain, @Nullable String password) throws ImportException, IOException {
         AbstractBackupImporter importer;
+        File backup = backupChain.get(backupChain.size() - 1);
         String fileName = backup.getName();
         if (fileName.endsWith(BackupManager.BACKUP_EXTENSION_LEGACY)) {
             importer = new LegacyBackupImporter(this, backup);
         } else {
-            importer = new DefaultBackupImporter(this, backup, password);
+            importer = new DefaultBackupImporter(this, backupChain, password);
         }
         File temporaryFolder = new File(getExternalFilesDir(null), TEMP_FOLDER);
         FileUtils.forceMkdir(temporaryFolder);
@@ -2,6 +2,7 @@ package com.oriondev.moneywallet.service;
 
 import android.app.IntentService;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
@@ -13,6 +14,7 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.oriondev.moneywallet.broadcast.LocalAction;
 import com.oriondev.moneywallet.model.DataFormat;
+import com.oriondev.moneywallet.model.Money;
 import com.oriondev.moneywallet.model.Wallet;
 import com.oriondev.moneywallet.storage.database.Contract;
 import com.oriondev.moneywallet.storage.database.DataContentProvider;
@@ -128,14 +130,16 @@ public class ImportExportIntentService extends IntentService {
             StringBuilder selectionBuilder = new StringBuilder();
             List<String> selectionArguments = new ArrayList<>();
             // append rule to limit to the end date or to the current date
-            selectionBuilder.append("DATE (" + Contract.Transaction.DATE + ") <= DATE(?)");
+            selectionBuilder.append(Contract.Transaction.DATE + " < DATE(?, '+1 day')");
             selectionArguments.add(DateUtils.getSQLDateString(getFixedEndDate(endDate)));
             // if provided, apply a rule to the start date
             if (startDate != null) {
-                selectionBuilder.append(" AND DATE (" + Contract.Transaction.DATE + ") >= DATE(?)");
+                selectionBuilder.append(" AND " + Contract.Transaction.DATE + " >= DATE(?)");
                 selectionArguments.add(DateUtils.getSQLDateString(startDate));
             }
-            String sortOrder = Contract.Transaction.DATE + " DESC";
+            // the running balance can be computed only from the oldest to the newest transaction
+            boolean loadOpeningBalance = dataExporter.shouldLoadOpeningBalance();
+            String sortOrder = Contract.Transaction.DATE + (loadOpeningBalance ? " ASC" : " DESC");
             // check if we should create a unique wallet or if we can export each wallet
             // in a separate way
             boolean multiWallet = wallets.length > 1 && dataExporter.isMultiWalletSupported() && !uniqueWallet;
@@ -159,6 +163,9 @@ public class ImportExportIntentService extends IntentService {
                     arguments[arguments.length - 1] = String.valueOf(wallet.getId());
                     Cursor cursor = contentResolver.query(uri, null, selection, arguments, sortOrder);
                     if (cursor != null) {
+                        if (loadOpeningBalance) {
+                            dataExporter.setOpeningBalance(getOpeningBalance(startDate, wallet));
+                        }
                         dataExporter.exportData(cursor, columns, wallet);
                         cursor.close();
                     }
@@ -176,6 +183,9 @@ public class ImportExportIntentService extends IntentService {
                 selectionBuilder.append(")");
                 Cursor cursor = contentResolver.query(uri, null, selectionBuilder.toString(), selectionArguments.toArray(new String[selectionArguments.size()]), sortOrder);
                 if (cursor != null) {
+                    if (loadOpeningBalance) {
+                        dataExporter.setOpeningBalance(getOpeningBalance(startDate, wallets));
+                    }
                     dataExporter.exportData(cursor, columns, wallets);
                     cursor.close();
                 }
@@ -251,6 +261,57 @@ public class ImportExportIntentService extends IntentService {
         }
     }
 
+    /**
+     * Compute the balance of the wallets before the start date: the start money of each wallet
+     * plus all the confirmed transactions that count in the total and that are older than the
+     * start date. If there is no start date, the balance is the start money of the wallets.
+     */
+    private Money getOpeningBalance(Date startDate, Wallet... wallets) {
+        ContentResolver contentResolver = getContentResolver();
+        Money openingBalance = new Money();
+        StringBuilder walletSelection = new StringBuilder("(");
+        String[] arguments = new String[wallets.length + (startDate != null ? 1 : 0)];
+        for (int i = 0; i < wallets.length; i++) {
+            Uri walletUri = ContentUris.withAppendedId(DataContentProvider.CONTENT_WALLETS, wallets[i].getId());
+            String[] projection = new String[] {Contract.Wallet.CURRENCY, Contract.Wallet.START_MONEY};
+            Cursor cursor = contentResolver.query(walletUri, projection, null, null, null);
+            if (cursor != null) {
+                if (cursor.moveToFirst()) {
+                    openingBalance.addMoney(cursor.getString(0), cursor.getLong(1));
+                }
+                cursor.close();
+            }
+            if (i != 0) {
+                walletSelection.append(" OR ");
+            }
+            walletSelection.append(Contract.Transaction.WALLET_ID + " = ?");
+            arguments[i] = String.valueOf(wallets[i].getId());
+        }
+        walletSelection.append(")");
+        if (startDate != null) {
+            String selection = walletSelection + " AND " + Contract.Transaction.DATE + " < DATE(?) AND " +
+                    Contract.Transaction.CONFIRMED + " = 1 AND " + Contract.Transaction.COUNT_IN_TOTAL + " = 1";
+            arguments[wallets.length] = DateUtils.getSQLDateString(startDate);
+            String[] projection = new String[] {
+                    Contract.Transaction.WALLET_CURRENCY,
+                    Contract.Transaction.DIRECTION,
+                    Contract.Transaction.MONEY
+            };
+            Cursor cursor = contentResolver.query(DataContentProvider.CONTENT_TRANSACTIONS, projection, selection, arguments, null);
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    long money = cursor.getLong(2);
+                    if (cursor.getInt(1) == Contract.Direction.EXPENSE) {
+                        money *= -1;
+                    }
+                    openingBalance.addMoney(cursor.getString(0), money);
+                }
+                cursor.close();
+            }
+        }
+        return openingBalance;
+    }
+
     private Date getFixedEndDate(Date endDate) {
         Date now = new Date();
         if (endDate != null) {
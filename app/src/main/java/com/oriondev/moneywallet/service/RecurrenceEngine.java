@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.service;
+
+import com.oriondev.moneywallet.utils.DateCodec;
+import com.oriondev.moneywallet.utils.RecurrenceRuleCache;
+
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class expands in memory all the occurrences of the recurrences that are due before a
+ * fixed horizon (usually the current date). The rules are compiled only once for each rule
+ * string and reused for all the recurrences that share the same rule.
+ */
+/*package-local*/ class RecurrenceEngine {
+
+    private final DateTime mHorizon;
+    private final RecurrenceRuleCache mRuleCache = new RecurrenceRuleCache();
+
+    /*package-local*/ RecurrenceEngine(DateTime horizon) {
+        mHorizon = horizon;
+    }
+
+    /**
+     * Expand all the occurrences of a recurrence that are not after the horizon.
+     * @param rule string of the recurrence rule.
+     * @param firstOccurrence first occurrence that has not been added yet.
+     * @return the expansion of the recurrence: if the rule is not valid, it contains no
+     * occurrence and no next occurrence so the recurrence will not be processed again.
+     */
+    /*package-local*/ Expansion expand(String rule, DateTime firstOccurrence) {
+        Expansion expansion = new Expansion(firstOccurrence);
+        RecurrenceRule recurrenceRule = getRule(rule);
+        if (recurrenceRule != null) {
+            RecurrenceRuleIterator iterator = recurrenceRule.iterator(firstOccurrence);
+            while (iterator.hasNext()) {
+                DateTime nextInstance = iterator.nextDateTime();
+                if (!nextInstance.after(mHorizon)) {
+                    expansion.mOccurrences.add(nextInstance);
+                    expansion.mLastOccurrence = nextInstance;
+                } else {
+                    expansion.mNextOccurrence = nextInstance;
+                    break;
+                }
+            }
+        }
+        return expansion;
+    }
+
+    /*package-local*/ RecurrenceRule getRule(String rule) {
+        return mRuleCache.get(rule);
+    }
+
+    /**
+     * Format an occurrence with the date format of the database.
+     */
+    /*package-local*/ static String getSQLDateString(DateTime dateTime) {
+        return DateCodec.formatPackedDay(dateTime.getYear() * 10000 + (dateTime.getMonth() + 1) * 100 + dateTime.getDayOfMonth());
+    }
+
+    /**
+     * Format an occurrence with the date time format of the database: the occurrences always
+     * start at midnight.
+     */
+    /*package-local*/ static String getSQLDateTimeString(DateTime dateTime) {
+        return getSQLDateString(dateTime) + " 00:00:00";
+    }
+
+    /*package-local*/ static class Expansion {
+
+        /*package-local*/ final List<DateTime> mOccurrences = new ArrayList<>();
+        /*package-local*/ DateTime mLastOccurrence;
+        /*package-local*/ DateTime mNextOccurrence;
+
+        private Expansion(DateTime firstOccurrence) {
+            mLastOccurrence = firstOccurrence;
+        }
+    }
+}
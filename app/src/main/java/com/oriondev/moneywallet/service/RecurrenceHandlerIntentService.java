@@ -19,12 +19,14 @@
 
 package com.oriondev.moneywallet.service;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 import androidx.annotation.NonNull;
 import androidx.core.app.JobIntentService;
 
@@ -34,10 +36,8 @@ import com.oriondev.moneywallet.storage.database.DataContentProvider;
 import com.oriondev.moneywallet.utils.DateUtils;
 
 import org.dmfs.rfc5545.DateTime;
-import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
-import org.dmfs.rfc5545.recur.RecurrenceRule;
-import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
 
+import java.util.ArrayList;
 import java.util.Date;
 
 /**
@@ -53,131 +53,138 @@ public class RecurrenceHandlerIntentService extends JobIntentService {
 
     @Override
     protected void onHandleWork(@NonNull Intent intent) {
-        addMissingRecurrentTransactionOccurrences();
-        addMissingRecurrentTransferOccurrences();
+        // all the due occurrences are expanded in memory and inserted with a single batch,
+        // together with the update of the next occurrence of each recurrence
+        RecurrenceEngine engine = new RecurrenceEngine(DateUtils.getFixedDateTime(new Date()));
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addMissingRecurrentTransactionOccurrences(engine, operations);
+        addMissingRecurrentTransferOccurrences(engine, operations);
+        if (!operations.isEmpty()) {
+            try {
+                getContentResolver().applyBatch(DataContentProvider.CONTENT_TRANSACTIONS.getAuthority(), operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                // nothing has been committed: the occurrences will be added the next time
+                e.printStackTrace();
+            }
+        }
         RecurrenceBroadcastReceiver.scheduleRecurrenceTask(this);
     }
 
-    private void addMissingRecurrentTransactionOccurrences() {
+    private void addMissingRecurrentTransactionOccurrences(RecurrenceEngine engine, ArrayList<ContentProviderOperation> operations) {
         Uri uri = DataContentProvider.CONTENT_RECURRENT_TRANSACTIONS;
-        String selection = Contract.RecurrentTransaction.NEXT_OCCURRENCE + " IS NOT NULL AND DATE(" + Contract.RecurrentTransaction.NEXT_OCCURRENCE + ") <= DATE('now', 'localtime')";
+        String selection = Contract.RecurrentTransaction.NEXT_OCCURRENCE + " IS NOT NULL AND " + Contract.RecurrentTransaction.NEXT_OCCURRENCE + " < DATE('now', 'localtime', '+1 day')";
         Cursor cursor = getContentResolver().query(uri, null, selection, null, null);
         if (cursor != null) {
+            int indexId = cursor.getColumnIndex(Contract.RecurrentTransaction.ID);
+            int indexUUID = cursor.getColumnIndex(Contract.RecurrentTransaction.UUID);
+            int indexNextOccurrence = cursor.getColumnIndex(Contract.RecurrentTransaction.NEXT_OCCURRENCE);
+            int indexRule = cursor.getColumnIndex(Contract.RecurrentTransaction.RULE);
+            int indexMoney = cursor.getColumnIndex(Contract.RecurrentTransaction.MONEY);
+            int indexDescription = cursor.getColumnIndex(Contract.RecurrentTransaction.DESCRIPTION);
+            int indexCategory = cursor.getColumnIndex(Contract.RecurrentTransaction.CATEGORY_ID);
+            int indexDirection = cursor.getColumnIndex(Contract.RecurrentTransaction.DIRECTION);
+            int indexWallet = cursor.getColumnIndex(Contract.RecurrentTransaction.WALLET_ID);
+            int indexNote = cursor.getColumnIndex(Contract.RecurrentTransaction.NOTE);
+            int indexPlace = cursor.getColumnIndex(Contract.RecurrentTransaction.PLACE_ID);
+            int indexEvent = cursor.getColumnIndex(Contract.RecurrentTransaction.EVENT_ID);
+            int indexConfirmed = cursor.getColumnIndex(Contract.RecurrentTransaction.CONFIRMED);
+            int indexCountInTotal = cursor.getColumnIndex(Contract.RecurrentTransaction.COUNT_IN_TOTAL);
             while (cursor.moveToNext()) {
                 // get basic information about the recurrence entity
-                long transactionId = cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransaction.ID));
-                String firstOccurrenceDateString = cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransaction.NEXT_OCCURRENCE));
-                Date firstOccurrenceDate = DateUtils.getDateFromSQLDateString(firstOccurrenceDateString);
-                DateTime currentDateTime = DateUtils.getFixedDateTime(new Date());
-                DateTime startDateTime = DateUtils.getFixedDateTime(firstOccurrenceDate);
-                DateTime lastOccurrence = DateUtils.getFixedDateTime(firstOccurrenceDate);
-                DateTime nextOccurrence = null;
-                RecurrenceRule recurrenceRule;
-                try {
-                    recurrenceRule = new RecurrenceRule(cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransaction.RULE)));
-                    RecurrenceRuleIterator iterator = recurrenceRule.iterator(startDateTime);
-                    while (iterator.hasNext()) {
-                        DateTime nextInstance = iterator.nextDateTime();
-                        if (!nextInstance.after(currentDateTime)) {
-                            Date transactionDate = DateUtils.getFixedDate(nextInstance);
-                            ContentValues contentValues = new ContentValues();
-                            contentValues.put(Contract.Transaction.MONEY, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransaction.MONEY)));
-                            contentValues.put(Contract.Transaction.DATE, DateUtils.getSQLDateTimeString(transactionDate));
-                            contentValues.put(Contract.Transaction.DESCRIPTION, cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransaction.DESCRIPTION)));
-                            contentValues.put(Contract.Transaction.CATEGORY_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransaction.CATEGORY_ID)));
-                            contentValues.put(Contract.Transaction.DIRECTION, cursor.getInt(cursor.getColumnIndex(Contract.RecurrentTransaction.DIRECTION)));
-                            contentValues.put(Contract.Transaction.TYPE, Contract.TransactionType.STANDARD);
-                            contentValues.put(Contract.Transaction.WALLET_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransaction.WALLET_ID)));
-                            contentValues.put(Contract.Transaction.NOTE, cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransaction.NOTE)));
-                            if (!cursor.isNull(cursor.getColumnIndex(Contract.RecurrentTransaction.PLACE_ID))) {
-                                contentValues.put(Contract.Transaction.PLACE_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransaction.PLACE_ID)));
-                            }
-                            if (!cursor.isNull(cursor.getColumnIndex(Contract.RecurrentTransaction.EVENT_ID))) {
-                                contentValues.put(Contract.Transaction.EVENT_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransaction.EVENT_ID)));
-                            }
-                            contentValues.put(Contract.Transaction.RECURRENCE_ID, transactionId);
-                            contentValues.put(Contract.Transaction.CONFIRMED, cursor.getInt(cursor.getColumnIndex(Contract.RecurrentTransaction.CONFIRMED)) == 1);
-                            contentValues.put(Contract.Transaction.COUNT_IN_TOTAL, cursor.getInt(cursor.getColumnIndex(Contract.RecurrentTransaction.COUNT_IN_TOTAL)) == 1);
-                            getContentResolver().insert(DataContentProvider.CONTENT_TRANSACTIONS, contentValues);
-                            lastOccurrence = nextInstance;
-                        } else {
-                            nextOccurrence = nextInstance;
-                            break;
-                        }
+                long recurrenceId = cursor.getLong(indexId);
+                String recurrenceUUID = cursor.getString(indexUUID);
+                Date firstOccurrenceDate = DateUtils.getDateFromSQLDateString(cursor.getString(indexNextOccurrence));
+                DateTime firstOccurrence = DateUtils.getFixedDateTime(firstOccurrenceDate);
+                RecurrenceEngine.Expansion expansion = engine.expand(cursor.getString(indexRule), firstOccurrence);
+                for (DateTime occurrence : expansion.mOccurrences) {
+                    ContentProviderOperation.Builder builder = ContentProviderOperation.newInsert(DataContentProvider.CONTENT_TRANSACTIONS)
+                            .withValue(Contract.Transaction.MONEY, cursor.getLong(indexMoney))
+                            .withValue(Contract.Transaction.DATE, RecurrenceEngine.getSQLDateTimeString(occurrence))
+                            .withValue(Contract.Transaction.DESCRIPTION, cursor.getString(indexDescription))
+                            .withValue(Contract.Transaction.CATEGORY_ID, cursor.getLong(indexCategory))
+                            .withValue(Contract.Transaction.DIRECTION, cursor.getInt(indexDirection))
+                            .withValue(Contract.Transaction.TYPE, Contract.TransactionType.STANDARD)
+                            .withValue(Contract.Transaction.WALLET_ID, cursor.getLong(indexWallet))
+                            .withValue(Contract.Transaction.NOTE, cursor.getString(indexNote))
+                            .withValue(Contract.Transaction.RECURRENCE_ID, recurrenceId)
+                            .withValue(Contract.Transaction.RECURRENCE_UUID, recurrenceUUID)
+                            .withValue(Contract.Transaction.CONFIRMED, cursor.getInt(indexConfirmed) == 1)
+                            .withValue(Contract.Transaction.COUNT_IN_TOTAL, cursor.getInt(indexCountInTotal) == 1);
+                    if (!cursor.isNull(indexPlace)) {
+                        builder.withValue(Contract.Transaction.PLACE_ID, cursor.getLong(indexPlace));
                     }
-                } catch (InvalidRecurrenceRuleException ignore) {
-                    // do nothing, next occurrence is still null so this recurrence will
-                    // not be processed again in future
+                    if (!cursor.isNull(indexEvent)) {
+                        builder.withValue(Contract.Transaction.EVENT_ID, cursor.getLong(indexEvent));
+                    }
+                    operations.add(builder.build());
                 }
-                ContentValues contentValues = new ContentValues();
-                contentValues.put(Contract.RecurrentTransaction.LAST_OCCURRENCE, DateUtils.getSQLDateString(DateUtils.getFixedDate(lastOccurrence)));
-                contentValues.put(Contract.RecurrentTransaction.NEXT_OCCURRENCE, nextOccurrence != null ? DateUtils.getSQLDateString(DateUtils.getFixedDate(nextOccurrence)) : null);
-                Uri contentUri = ContentUris.withAppendedId(DataContentProvider.CONTENT_RECURRENT_TRANSACTIONS, transactionId);
-                getContentResolver().update(contentUri, contentValues, null, null);
+                Uri contentUri = ContentUris.withAppendedId(DataContentProvider.CONTENT_RECURRENT_TRANSACTIONS, recurrenceId);
+                operations.add(ContentProviderOperation.newUpdate(contentUri)
+                        .withValue(Contract.RecurrentTransaction.LAST_OCCURRENCE, RecurrenceEngine.getSQLDateString(expansion.mLastOccurrence))
+                        .withValue(Contract.RecurrentTransaction.NEXT_OCCURRENCE, expansion.mNextOccurrence != null ? RecurrenceEngine.getSQLDateString(expansion.mNextOccurrence) : null)
+                        .build());
             }
             cursor.close();
         }
     }
 
-    private void addMissingRecurrentTransferOccurrences() {
+    private void addMissingRecurrentTransferOccurrences(RecurrenceEngine engine, ArrayList<ContentProviderOperation> operations) {
         Uri uri = DataContentProvider.CONTENT_RECURRENT_TRANSFERS;
-        String selection = Contract.RecurrentTransfer.NEXT_OCCURRENCE + " IS NOT NULL AND DATE(" + Contract.RecurrentTransfer.NEXT_OCCURRENCE + ") <= DATE('now', 'localtime')";
+        String selection = Contract.RecurrentTransfer.NEXT_OCCURRENCE + " IS NOT NULL AND " + Contract.RecurrentTransfer.NEXT_OCCURRENCE + " < DATE('now', 'localtime', '+1 day')";
         Cursor cursor = getContentResolver().query(uri, null, selection, null, null);
         if (cursor != null) {
+            int indexId = cursor.getColumnIndex(Contract.RecurrentTransfer.ID);
+            int indexUUID = cursor.getColumnIndex(Contract.RecurrentTransfer.UUID);
+            int indexNextOccurrence = cursor.getColumnIndex(Contract.RecurrentTransfer.NEXT_OCCURRENCE);
+            int indexRule = cursor.getColumnIndex(Contract.RecurrentTransfer.RULE);
+            int indexDescription = cursor.getColumnIndex(Contract.RecurrentTransfer.DESCRIPTION);
+            int indexWalletFrom = cursor.getColumnIndex(Contract.RecurrentTransfer.WALLET_FROM_ID);
+            int indexWalletTo = cursor.getColumnIndex(Contract.RecurrentTransfer.WALLET_TO_ID);
+            int indexMoneyFrom = cursor.getColumnIndex(Contract.RecurrentTransfer.MONEY_FROM);
+            int indexMoneyTo = cursor.getColumnIndex(Contract.RecurrentTransfer.MONEY_TO);
+            int indexMoneyTax = cursor.getColumnIndex(Contract.RecurrentTransfer.MONEY_TAX);
+            int indexNote = cursor.getColumnIndex(Contract.RecurrentTransfer.NOTE);
+            int indexPlace = cursor.getColumnIndex(Contract.RecurrentTransfer.PLACE_ID);
+            int indexEvent = cursor.getColumnIndex(Contract.RecurrentTransfer.EVENT_ID);
+            int indexConfirmed = cursor.getColumnIndex(Contract.RecurrentTransfer.CONFIRMED);
+            int indexCountInTotal = cursor.getColumnIndex(Contract.RecurrentTransfer.COUNT_IN_TOTAL);
             while (cursor.moveToNext()) {
                 // get basic information about the recurrence entity
-                long recurrenceId = cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.ID));
-                String firstOccurrenceDateString = cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransfer.NEXT_OCCURRENCE));
-                Date firstOccurrenceDate = DateUtils.getDateFromSQLDateString(firstOccurrenceDateString);
-                DateTime currentDateTime = DateUtils.getFixedDateTime(new Date());
-                DateTime startDateTime = DateUtils.getFixedDateTime(firstOccurrenceDate);
-                DateTime lastOccurrence = DateUtils.getFixedDateTime(firstOccurrenceDate);
-                DateTime nextOccurrence = null;
-                RecurrenceRule recurrenceRule;
-                try {
-                    recurrenceRule = new RecurrenceRule(cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransfer.RULE)));
-                    RecurrenceRuleIterator iterator = recurrenceRule.iterator(startDateTime);
-                    while (iterator.hasNext()) {
-                        DateTime nextInstance = iterator.nextDateTime();
-                        if (!nextInstance.after(currentDateTime)) {
-                            Date transferDate = DateUtils.getFixedDate(nextInstance);
-                            ContentValues contentValues = new ContentValues();
-                            contentValues.put(Contract.Transfer.DESCRIPTION, cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransfer.DESCRIPTION)));
-                            contentValues.put(Contract.Transfer.DATE, DateUtils.getSQLDateTimeString(transferDate));
-                            contentValues.put(Contract.Transfer.TRANSACTION_FROM_WALLET_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.WALLET_FROM_ID)));
-                            contentValues.put(Contract.Transfer.TRANSACTION_TO_WALLET_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.WALLET_TO_ID)));
-                            contentValues.put(Contract.Transfer.TRANSACTION_TAX_WALLET_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.WALLET_FROM_ID)));
-                            contentValues.put(Contract.Transfer.TRANSACTION_FROM_MONEY, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.MONEY_FROM)));
-                            contentValues.put(Contract.Transfer.TRANSACTION_TO_MONEY, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.MONEY_TO)));
-                            contentValues.put(Contract.Transfer.TRANSACTION_TAX_MONEY, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.MONEY_TAX)));
-                            contentValues.put(Contract.Transfer.NOTE, cursor.getString(cursor.getColumnIndex(Contract.RecurrentTransfer.NOTE)));
-                            if (!cursor.isNull(cursor.getColumnIndex(Contract.RecurrentTransfer.PLACE_ID))) {
-                                contentValues.put(Contract.Transfer.PLACE_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.PLACE_ID)));
-                            }
-                            if (!cursor.isNull(cursor.getColumnIndex(Contract.RecurrentTransfer.EVENT_ID))) {
-                                contentValues.put(Contract.Transfer.EVENT_ID, cursor.getLong(cursor.getColumnIndex(Contract.RecurrentTransfer.EVENT_ID)));
-                            }
-                            contentValues.put(Contract.Transfer.RECURRENCE_ID, recurrenceId);
-                            contentValues.put(Contract.Transfer.CONFIRMED, cursor.getInt(cursor.getColumnIndex(Contract.RecurrentTransfer.CONFIRMED)) == 1);
-                            contentValues.put(Contract.Transfer.COUNT_IN_TOTAL, cursor.getInt(cursor.getColumnIndex(Contract.RecurrentTransfer.COUNT_IN_TOTAL)) == 1);
-                            getContentResolver().insert(DataContentProvider.CONTENT_TRANSFERS, contentValues);
-                            lastOccurrence = nextInstance;
-                        } else {
-                            nextOccurrence = nextInstance;
-                            break;
-                        }
+                long recurrenceId = cursor.getLong(indexId);
+                String recurrenceUUID = cursor.getString(indexUUID);
+                Date firstOccurrenceDate = DateUtils.getDateFromSQLDateString(cursor.getString(indexNextOccurrence));
+                DateTime firstOccurrence = DateUtils.getFixedDateTime(firstOccurrenceDate);
+                RecurrenceEngine.Expansion expansion = engine.expand(cursor.getString(indexRule), firstOccurrence);
+                for (DateTime occurrence : expansion.mOccurrences) {
+                    ContentProviderOperation.Builder builder = ContentProviderOperation.newInsert(DataContentProvider.CONTENT_TRANSFERS)
+                            .withValue(Contract.Transfer.DESCRIPTION, cursor.getString(indexDescription))
+                            .withValue(Contract.Transfer.DATE, RecurrenceEngine.getSQLDateTimeString(occurrence))
+                            .withValue(Contract.Transfer.TRANSACTION_FROM_WALLET_ID, cursor.getLong(indexWalletFrom))
+                            .withValue(Contract.Transfer.TRANSACTION_TO_WALLET_ID, cursor.getLong(indexWalletTo))
+                            .withValue(Contract.Transfer.TRANSACTION_TAX_WALLET_ID, cursor.getLong(indexWalletFrom))
+                            .withValue(Contract.Transfer.TRANSACTION_FROM_MONEY, cursor.getLong(indexMoneyFrom))
+                            .withValue(Contract.Transfer.TRANSACTION_TO_MONEY, cursor.getLong(indexMoneyTo))
+                            .withValue(Contract.Transfer.TRANSACTION_TAX_MONEY, cursor.getLong(indexMoneyTax))
+                            .withValue(Contract.Transfer.NOTE, cursor.getString(indexNote))
+                            .withValue(Contract.Transfer.RECURRENCE_ID, recurrenceId)
+                            .withValue(Contract.Transfer.RECURRENCE_UUID, recurrenceUUID)
+                            .withValue(Contract.Transfer.CONFIRMED, cursor.getInt(indexConfirmed) == 1)
+                            .withValue(Contract.Transfer.COUNT_IN_TOTAL, cursor.getInt(indexCountInTotal) == 1);
+                    if (!cursor.isNull(indexPlace)) {
+                        builder.withValue(Contract.Transfer.PLACE_ID, cursor.getLong(indexPlace));
+                    }
+                    if (!cursor.isNull(indexEvent)) {
+                        builder.withValue(Contract.Transfer.EVENT_ID, cursor.getLong(indexEvent));
                     }
-                } catch (InvalidRecurrenceRuleException ignore) {
-                    // do nothing, next occurrence is still null so this recurrence will
-                    // not be processed again in future
+                    operations.add(builder.build());
                 }
-                ContentValues contentValues = new ContentValues();
-                contentValues.put(Contract.RecurrentTransfer.LAST_OCCURRENCE, DateUtils.getSQLDateString(DateUtils.getFixedDate(lastOccurrence)));
-                contentValues.put(Contract.RecurrentTransfer.NEXT_OCCURRENCE, nextOccurrence != null ? DateUtils.getSQLDateString(DateUtils.getFixedDate(nextOccurrence)) : null);
                 Uri contentUri = ContentUris.withAppendedId(DataContentProvider.CONTENT_RECURRENT_TRANSFERS, recurrenceId);
-                getContentResolver().update(contentUri, contentValues, null, null);
+                operations.add(ContentProviderOperation.newUpdate(contentUri)
+                        .withValue(Contract.RecurrentTransfer.LAST_OCCURRENCE, RecurrenceEngine.getSQLDateString(expansion.mLastOccurrence))
+                        .withValue(Contract.RecurrentTransfer.NEXT_OCCURRENCE, expansion.mNextOccurrence != null ? RecurrenceEngine.getSQLDateString(expansion.mNextOccurrence) : null)
+                        .build());
             }
             cursor.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -105,7 +105,8 @@ public class OpenExchangeRatesCurrencyRateDownloadIntentService extends Abstract
 
     private void storeResponse(JSONObject response) throws Exception {
         CurrencyUnit base = CurrencyManager.getCurrency(response.getString("base"));
-        long timestamp = response.getLong("timestamp");
+        // the service returns the timestamp in seconds
+        long timestamp = response.getLong("timestamp") * 1000L;
         JSONObject rates = response.getJSONObject("rates");
         Collection<CurrencyUnit> currencies = CurrencyManager.getCurrencies();
         float progress = 35;
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.cache;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import com.oriondev.moneywallet.model.CurrencyUnit;
+import com.oriondev.moneywallet.storage.database.Contract;
+import com.oriondev.moneywallet.storage.database.DataContentProvider;
+import com.oriondev.moneywallet.storage.preference.PreferenceManager;
+import com.oriondev.moneywallet.utils.CurrencyManager;
+
+/**
+ * Implementation of the data source of the conversion engine that reads the money from the
+ * daily totals of the content provider. Only the wallets that are counted in total are
+ * considered, as in the overview and in the total wallet.
+ */
+/*package-local*/ class ContentResolverConversionSource implements ConversionEngine.DataSource {
+
+    private static final int DEFAULT_DECIMALS = 2;
+
+    private final ContentResolver mContentResolver;
+    private final ExchangeRateCache mExchangeRateCache;
+
+    /*package-local*/ ContentResolverConversionSource(ContentResolver contentResolver, ExchangeRateCache exchangeRateCache) {
+        mContentResolver = contentResolver;
+        mExchangeRateCache = exchangeRateCache;
+    }
+
+    @Override
+    public ExchangeRateHistory getExchangeRateHistory() {
+        return mExchangeRateCache.getExchangeRateHistory();
+    }
+
+    @Override
+    public long getDataVersion() {
+        return PreferenceManager.getLastTimeDataIsChanged();
+    }
+
+    @Override
+    public void readPeriodTotals(String startDay, String endDay, ConversionEngine.Collector collector) {
+        String selection = Contract.DailyTotal.WALLET_COUNT_IN_TOTAL + " = 1 AND " +
+                Contract.DailyTotal.CATEGORY_SHOW_REPORT + " = '1' AND " +
+                Contract.DailyTotal.DAY + " >= ? AND " + Contract.DailyTotal.DAY + " <= ?";
+        readDailyTotals(selection, new String[] {startDay, endDay}, collector);
+    }
+
+    @Override
+    public void readBalances(String day, ConversionEngine.Collector collector) {
+        String[] projection = new String[] {
+                Contract.Wallet.CURRENCY,
+                Contract.Wallet.START_MONEY
+        };
+        String selection = Contract.Wallet.COUNT_IN_TOTAL + " = 1";
+        Cursor cursor = mContentResolver.query(DataContentProvider.CONTENT_WALLETS, projection, selection, null, null);
+        if (cursor != null) {
+            int indexCurrency = cursor.getColumnIndex(Contract.Wallet.CURRENCY);
+            int indexStartMoney = cursor.getColumnIndex(Contract.Wallet.START_MONEY);
+            while (cursor.moveToNext()) {
+                String currency = cursor.getString(indexCurrency);
+                collector.add(day, currency, getDecimals(currency), Contract.Direction.INCOME, cursor.getLong(indexStartMoney));
+            }
+            cursor.close();
+        }
+        selection = Contract.DailyTotal.WALLET_COUNT_IN_TOTAL + " = 1 AND " + Contract.DailyTotal.DAY + " <= ?";
+        readDailyTotals(selection, new String[] {day}, collector);
+    }
+
+    private void readDailyTotals(String selection, String[] selectionArgs, ConversionEngine.Collector collector) {
+        String[] projection = new String[] {
+                Contract.DailyTotal.DAY,
+                Contract.DailyTotal.WALLET_CURRENCY,
+                Contract.DailyTotal.DIRECTION,
+                Contract.DailyTotal.MONEY
+        };
+        Cursor cursor = mContentResolver.query(DataContentProvider.CONTENT_DAILY_TOTALS, projection, selection, selectionArgs, null);
+        if (cursor != null) {
+            int indexDay = cursor.getColumnIndex(Contract.DailyTotal.DAY);
+            int indexCurrency = cursor.getColumnIndex(Contract.DailyTotal.WALLET_CURRENCY);
+            int indexDirection = cursor.getColumnIndex(Contract.DailyTotal.DIRECTION);
+            int indexMoney = cursor.getColumnIndex(Contract.DailyTotal.MONEY);
+            while (cursor.moveToNext()) {
+                String currency = cursor.getString(indexCurrency);
+                collector.add(cursor.getString(indexDay), currency, getDecimals(currency), cursor.getInt(indexDirection), cursor.getLong(indexMoney));
+            }
+            cursor.close();
+        }
+    }
+
+    private static int getDecimals(String iso) {
+        CurrencyUnit currencyUnit = CurrencyManager.getCurrency(iso);
+        return currencyUnit != null ? currencyUnit.getDecimals() : DEFAULT_DECIMALS;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.cache;
+
+import com.oriondev.moneywallet.storage.database.Contract;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class converts the totals of many currencies in a single target currency using the
+ * historical exchange rates. The totals of a period are converted day by day with the rate that
+ * is valid on the day of the money, while the net worth is the sum of the balances of the
+ * wallets in a specific day converted with the rate of that day. The converted totals are cached
+ * for each range and currency until the data or the exchange rates are changed.
+ */
+public class ConversionEngine {
+
+    private static final int MAX_CACHE_SIZE = 32;
+
+    private final DataSource mDataSource;
+    private final Map<String, ConvertedTotal> mCache = new LinkedHashMap<String, ConvertedTotal>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConvertedTotal> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+
+    };
+
+    private ExchangeRateHistory mCachedHistory;
+    private long mCachedVersion;
+
+    public ConversionEngine(DataSource dataSource) {
+        mDataSource = dataSource;
+    }
+
+    /**
+     * Compute the income and the expenses of a period in the target currency.
+     * @param startDay first day of the period (yyyy-MM-dd).
+     * @param endDay last day of the period (yyyy-MM-dd).
+     * @param currency iso code of the target currency.
+     * @param decimals number of decimals of the target currency.
+     * @return the converted total.
+     */
+    public synchronized ConvertedTotal getPeriodTotal(String startDay, String endDay, String currency, int decimals) {
+        String key = "period:" + startDay + ":" + endDay + ":" + currency;
+        ConvertedTotal total = getCachedTotal(key);
+        if (total == null) {
+            total = new ConvertedTotal(mCachedHistory, currency, decimals, null);
+            mDataSource.readPeriodTotals(startDay, endDay, total);
+            mCache.put(key, total);
+        }
+        return total;
+    }
+
+    /**
+     * Compute the sum of the balances of the wallets at the end of a day in the target currency.
+     * @param day of the balances (yyyy-MM-dd).
+     * @param currency iso code of the target currency.
+     * @param decimals number of decimals of the target currency.
+     * @return the converted total: the net worth is the net money of the total.
+     */
+    public synchronized ConvertedTotal getNetWorth(String day, String currency, int decimals) {
+        String key = "worth:" + day + ":" + currency;
+        ConvertedTotal total = getCachedTotal(key);
+        if (total == null) {
+            total = new ConvertedTotal(mCachedHistory, currency, decimals, day);
+            mDataSource.readBalances(day, total);
+            mCache.put(key, total);
+        }
+        return total;
+    }
+
+    private ConvertedTotal getCachedTotal(String key) {
+        ExchangeRateHistory history = mDataSource.getExchangeRateHistory();
+        long version = mDataSource.getDataVersion();
+        if (history != mCachedHistory || version != mCachedVersion) {
+            mCache.clear();
+            mCachedHistory = history;
+            mCachedVersion = version;
+        }
+        return mCache.get(key);
+    }
+
+    /**
+     * Source of the data that should be converted.
+     */
+    public interface DataSource {
+
+        /**
+         * @return the current exchange rates: a new object must be returned when they change.
+         */
+        ExchangeRateHistory getExchangeRateHistory();
+
+        /**
+         * @return a number that changes every time the data changes.
+         */
+        long getDataVersion();
+
+        /**
+         * Add to the collector the income and the expenses of each day of the period.
+         */
+        void readPeriodTotals(String startDay, String endDay, Collector collector);
+
+        /**
+         * Add to the collector all the money that is part of the balance of the wallets at the
+         * end of the day (the initial money of the wallets as income).
+         */
+        void readBalances(String day, Collector collector);
+    }
+
+    public interface Collector {
+
+        /**
+         * @param day of the money (yyyy-MM-dd).
+         * @param currency iso code of the currency of the money.
+         * @param decimals number of decimals of the currency.
+         * @param direction of the money (income or expense).
+         * @param money amount of money.
+         */
+        void add(String day, String currency, int decimals, int direction, long money);
+    }
+
+    public static class ConvertedTotal implements Collector {
+
+        private final ExchangeRateHistory mHistory;
+        private final String mCurrency;
+        private final int mDecimals;
+        private final String mFixedDay;
+        private final Set<String> mMissingCurrencies = new TreeSet<>();
+
+        // the money is rounded only once at the end to avoid the sum of the rounding errors
+        private double mIncome;
+        private double mExpense;
+
+        private ConvertedTotal(ExchangeRateHistory history, String currency, int decimals, String fixedDay) {
+            mHistory = history;
+            mCurrency = currency;
+            mDecimals = decimals;
+            mFixedDay = fixedDay;
+        }
+
+        @Override
+        public void add(String day, String currency, int decimals, int direction, long money) {
+            double rate;
+            if (currency.equals(mCurrency)) {
+                rate = 1d;
+            } else if (mHistory != null) {
+                rate = mHistory.getExchangeRate(currency, mCurrency, mFixedDay != null ? mFixedDay : day);
+            } else {
+                rate = Double.NaN;
+            }
+            if (Double.isNaN(rate)) {
+                mMissingCurrencies.add(currency);
+                return;
+            }
+            double converted = money * rate * Math.pow(10d, mDecimals - decimals);
+            if (direction == Contract.Direction.INCOME) {
+                mIncome += converted;
+            } else {
+                mExpense += converted;
+            }
+        }
+
+        public String getCurrency() {
+            return mCurrency;
+        }
+
+        public long getIncome() {
+            return Math.round(mIncome);
+        }
+
+        public long getExpense() {
+            return Math.round(mExpense);
+        }
+
+        public long getNet() {
+            return Math.round(mIncome - mExpense);
+        }
+
+        /**
+         * @return the iso codes of the currencies that have been skipped because they have no
+         * exchange rate.
+         */
+        public Set<String> getMissingCurrencies() {
+            return Collections.unmodifiableSet(mMissingCurrencies);
+        }
+
+        public boolean isComplete() {
+            return mMissingCurrencies.isEmpty();
+        }
+    }
+}
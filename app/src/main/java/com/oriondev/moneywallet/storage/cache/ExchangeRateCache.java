@@ -19,15 +19,23 @@
 
 package com.oriondev.moneywallet.storage.cache;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.text.TextUtils;
 
 import com.oriondev.moneywallet.model.ExchangeRate;
+import com.oriondev.moneywallet.utils.DateUtils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Created by andre on 25/03/2018.
@@ -37,6 +45,8 @@ public class ExchangeRateCache {
     private final Map<String, CacheObj> mCacheMemory;
     private final SQLCache mCacheStorage;
 
+    private ExchangeRateHistory mHistory;
+
     public ExchangeRateCache(Context context) {
         mCacheMemory = new HashMap<>();
         mCacheStorage = new SQLCache(context);
@@ -73,6 +83,80 @@ public class ExchangeRateCache {
         contentValues.put(SQLCache.ExchangeRateT.RATE, rate);
         contentValues.put(SQLCache.ExchangeRateT.TIMESTAMP, timestamp);
         mCacheStorage.insertOrUpdateExchangeRate(contentValues);
+        // the rate is also stored as the rate of the day of the timestamp (in milliseconds)
+        List<ContentValues> historyValues = new ArrayList<>();
+        historyValues.add(buildHistoryContentValues(currency, DateUtils.getSQLDateString(new Date(timestamp)), rate));
+        mCacheStorage.insertOrUpdateExchangeRateHistory(historyValues);
+        invalidateHistory();
+    }
+
+    /**
+     * Import the historical rates from a text file (see {@link ExchangeRateHistory#parse}):
+     * the file is fully validated before storing any rate.
+     * @param reader of the file.
+     * @return the number of imported rates.
+     * @throws IOException if the file cannot be read or it is not well formatted.
+     */
+    public int importExchangeRates(Reader reader) throws IOException {
+        ExchangeRateHistory.Builder builder = new ExchangeRateHistory.Builder();
+        int count = ExchangeRateHistory.parse(reader, builder);
+        List<ContentValues> historyValues = new ArrayList<>(count);
+        for (Map.Entry<String, TreeMap<String, Double>> currency : builder.getRates().entrySet()) {
+            for (Map.Entry<String, Double> rate : currency.getValue().entrySet()) {
+                historyValues.add(buildHistoryContentValues(currency.getKey(), rate.getKey(), rate.getValue()));
+            }
+        }
+        mCacheStorage.insertOrUpdateExchangeRateHistory(historyValues);
+        invalidateHistory();
+        return count;
+    }
+
+    /**
+     * Get all the historical rates: the same object is returned until the rates are changed.
+     * @return the history of the rates.
+     */
+    public synchronized ExchangeRateHistory getExchangeRateHistory() {
+        ExchangeRateHistory history = mHistory;
+        if (history == null) {
+            String[] projection = new String[] {
+                    SQLCache.ExchangeRateHistoryT.CURRENCY_ISO,
+                    SQLCache.ExchangeRateHistoryT.DAY,
+                    SQLCache.ExchangeRateHistoryT.RATE
+            };
+            ExchangeRateHistory.Builder builder = new ExchangeRateHistory.Builder();
+            Cursor cursor = mCacheStorage.getExchangeRateHistory(projection, null, null, null);
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    builder.addRate(cursor.getString(0), cursor.getString(1), cursor.getDouble(2));
+                }
+                cursor.close();
+            }
+            history = builder.build();
+            mHistory = history;
+        }
+        return history;
+    }
+
+    /**
+     * Create an engine that converts the totals of the content provider using the historical
+     * rates of this cache.
+     * @param contentResolver used to read the data.
+     * @return a new conversion engine.
+     */
+    public ConversionEngine createConversionEngine(ContentResolver contentResolver) {
+        return new ConversionEngine(new ContentResolverConversionSource(contentResolver, this));
+    }
+
+    private synchronized void invalidateHistory() {
+        mHistory = null;
+    }
+
+    private ContentValues buildHistoryContentValues(String currency, String day, double rate) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(SQLCache.ExchangeRateHistoryT.CURRENCY_ISO, currency);
+        contentValues.put(SQLCache.ExchangeRateHistoryT.DAY, day);
+        contentValues.put(SQLCache.ExchangeRateHistoryT.RATE, rate);
+        return contentValues;
     }
 
     public ExchangeRate getExchangeRate(String currency1, String currency2) {
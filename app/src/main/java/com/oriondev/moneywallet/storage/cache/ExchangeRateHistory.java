@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.cache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable time series of the exchange rates. Each rate is the amount of the currency that
+ * corresponds to one unit of the base currency of the rate service, and it is valid from its
+ * day (yyyy-MM-dd) until the day of the next rate of the same currency. The days are stored in
+ * sorted arrays so that the rate of a day is found with a binary search.
+ */
+public class ExchangeRateHistory {
+
+    private final Map<String, Series> mSeries;
+
+    private ExchangeRateHistory(Map<String, Series> series) {
+        mSeries = series;
+    }
+
+    /**
+     * @return the iso codes of the currencies that have at least one rate.
+     */
+    public Set<String> getCurrencies() {
+        return Collections.unmodifiableSet(mSeries.keySet());
+    }
+
+    /**
+     * Get the rate of a currency that is valid on a specific day: it is the last rate that is
+     * not after the day or, if the day is before all the known rates, the first known rate.
+     * @param currency iso code of the currency.
+     * @param day in the yyyy-MM-dd format.
+     * @return the rate or NaN if the currency has no rate.
+     */
+    public double getRate(String currency, String day) {
+        Series series = mSeries.get(currency);
+        if (series == null) {
+            return Double.NaN;
+        }
+        int low = 0;
+        int high = series.mDays.length - 1;
+        int index = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (series.mDays[middle].compareTo(day) <= 0) {
+                index = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return series.mRates[index];
+    }
+
+    /**
+     * Get the exchange rate between two currencies that is valid on a specific day.
+     * @param currency1 iso code of the currency to convert from.
+     * @param currency2 iso code of the currency to convert to.
+     * @param day in the yyyy-MM-dd format.
+     * @return the amount of currency2 that corresponds to one unit of currency1 or NaN if one
+     * of the currencies has no rate.
+     */
+    public double getExchangeRate(String currency1, String currency2, String day) {
+        if (currency1.equals(currency2)) {
+            return 1d;
+        }
+        return (1d / getRate(currency1, day)) * getRate(currency2, day);
+    }
+
+    /**
+     * Read the rates from a text file. Each line contains the day, the iso code of the currency
+     * and the rate separated by a comma (for example '2019-01-10,EUR,0.872'). The empty lines and
+     * the lines that start with '#' are ignored.
+     * @param reader of the file.
+     * @param builder where the rates are added.
+     * @return the number of rates that have been read.
+     * @throws IOException if the file cannot be read or a line is not well formatted.
+     */
+    public static int parse(Reader reader, Builder builder) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        int count = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IOException("Invalid exchange rate at line " + lineNumber + ": " + line);
+            }
+            try {
+                builder.addRate(fields[1].trim(), fields[0].trim(), Double.parseDouble(fields[2].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid exchange rate at line " + lineNumber + ": " + line);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    public static class Builder {
+
+        private final Map<String, TreeMap<String, Double>> mRates = new HashMap<>();
+
+        /**
+         * Add a rate to the history: if the currency already has a rate in the same day, it is
+         * replaced.
+         * @param currency iso code of the currency.
+         * @param day in the yyyy-MM-dd format.
+         * @param rate amount of the currency that corresponds to one unit of the base currency.
+         * @return the builder.
+         * @throws IllegalArgumentException if the day is not well formatted or the rate is not
+         * a positive number.
+         */
+        public Builder addRate(String currency, String day, double rate) {
+            if (!isValidDay(day)) {
+                throw new IllegalArgumentException("Invalid day: " + day);
+            }
+            if (!(rate > 0d) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("Invalid rate: " + rate);
+            }
+            TreeMap<String, Double> rates = mRates.get(currency);
+            if (rates == null) {
+                rates = new TreeMap<>();
+                mRates.put(currency, rates);
+            }
+            rates.put(day, rate);
+            return this;
+        }
+
+        /*package-local*/ Map<String, TreeMap<String, Double>> getRates() {
+            return mRates;
+        }
+
+        public ExchangeRateHistory build() {
+            Map<String, Series> seriesMap = new HashMap<>();
+            for (Map.Entry<String, TreeMap<String, Double>> entry : mRates.entrySet()) {
+                TreeMap<String, Double> rates = entry.getValue();
+                Series series = new Series(rates.size());
+                int index = 0;
+                for (Map.Entry<String, Double> rate : rates.entrySet()) {
+                    series.mDays[index] = rate.getKey();
+                    series.mRates[index] = rate.getValue();
+                    index++;
+                }
+                seriesMap.put(entry.getKey(), series);
+            }
+            return new ExchangeRateHistory(seriesMap);
+        }
+
+        private static boolean isValidDay(String day) {
+            if (day == null || day.length() != 10) {
+                return false;
+            }
+            for (int i = 0; i < day.length(); i++) {
+                char c = day.charAt(i);
+                if (i == 4 || i == 7 ? c != '-' : c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Series {
+
+        private final String[] mDays;
+        private final double[] mRates;
+
+        private Series(int size) {
+            mDays = new String[size];
+            mRates = new double[size];
+        }
+    }
+}
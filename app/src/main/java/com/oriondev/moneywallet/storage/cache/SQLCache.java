@@ -25,13 +25,15 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import java.util.List;
+
 /**
  * Created by andre on 24/03/2018.
  */
 /*package-local*/ class SQLCache extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "cache.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
 
     /*package-local*/ static final class ExchangeRateT {
         private static final String TABLE = "exchange_rates";
@@ -40,12 +42,35 @@ import android.database.sqlite.SQLiteOpenHelper;
         /*package-local*/ static final String TIMESTAMP = "exchange_timestamp";
     }
 
+    /*package-local*/ static final class ExchangeRateHistoryT {
+        private static final String TABLE = "exchange_rate_history";
+        /*package-local*/ static final String CURRENCY_ISO = "history_currency_iso";
+        /*package-local*/ static final String DAY = "history_day";
+        /*package-local*/ static final String RATE = "history_rate";
+    }
+
     private static final String CREATE_TABLE_EXCHANGE_RATE = "CREATE TABLE " + ExchangeRateT.TABLE + " (" +
             ExchangeRateT.CURRENCY_ISO + " TEXT PRIMARY KEY, " +
             ExchangeRateT.RATE + " REAL NOT NULL, " +
             ExchangeRateT.TIMESTAMP + " INTEGER NOT NULL" +
             ")";
 
+    private static final String CREATE_TABLE_EXCHANGE_RATE_HISTORY = "CREATE TABLE " + ExchangeRateHistoryT.TABLE + " (" +
+            ExchangeRateHistoryT.CURRENCY_ISO + " TEXT NOT NULL, " +
+            ExchangeRateHistoryT.DAY + " TEXT NOT NULL, " +
+            ExchangeRateHistoryT.RATE + " REAL NOT NULL, " +
+            "PRIMARY KEY (" + ExchangeRateHistoryT.CURRENCY_ISO + ", " + ExchangeRateHistoryT.DAY + ")" +
+            ")";
+
+    /**
+     * The rates of the first version were stored with the timestamp in seconds of the service.
+     */
+    private static final String FILL_EXCHANGE_RATE_HISTORY = "INSERT OR REPLACE INTO " +
+            ExchangeRateHistoryT.TABLE + " (" + ExchangeRateHistoryT.CURRENCY_ISO + ", " +
+            ExchangeRateHistoryT.DAY + ", " + ExchangeRateHistoryT.RATE + ") SELECT " +
+            ExchangeRateT.CURRENCY_ISO + ", DATE(" + ExchangeRateT.TIMESTAMP + ", 'unixepoch', 'localtime'), " +
+            ExchangeRateT.RATE + " FROM " + ExchangeRateT.TABLE;
+
     /*package-local*/ SQLCache(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -53,11 +78,16 @@ import android.database.sqlite.SQLiteOpenHelper;
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_EXCHANGE_RATE);
+        db.execSQL(CREATE_TABLE_EXCHANGE_RATE_HISTORY);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // do nothing -> this is just a cache
+        // the current rates are just a cache, but the history cannot be downloaded again
+        if (oldVersion < 2) {
+            db.execSQL(CREATE_TABLE_EXCHANGE_RATE_HISTORY);
+            db.execSQL(FILL_EXCHANGE_RATE_HISTORY);
+        }
     }
 
     /*package-local*/ Cursor getExchangeRates(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
@@ -67,4 +97,25 @@ import android.database.sqlite.SQLiteOpenHelper;
     /*package-local*/ void insertOrUpdateExchangeRate(ContentValues contentValues) {
         getWritableDatabase().insertWithOnConflict(ExchangeRateT.TABLE, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
     }
+
+    /*package-local*/ Cursor getExchangeRateHistory(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return getReadableDatabase().query(ExchangeRateHistoryT.TABLE, projection, selection, selectionArgs, null, null, sortOrder);
+    }
+
+    /**
+     * Insert the rates inside a single transaction: a rate replaces the rate of the same
+     * currency in the same day.
+     */
+    /*package-local*/ void insertOrUpdateExchangeRateHistory(List<ContentValues> contentValuesList) {
+        SQLiteDatabase database = getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (ContentValues contentValues : contentValuesList) {
+                database.insertWithOnConflict(ExchangeRateHistoryT.TABLE, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
 }
\ No newline at end of file
@@ -19,11 +19,8 @@
 
 package com.oriondev.moneywallet.storage.database;
 
-import android.text.TextUtils;
-
 import com.oriondev.moneywallet.model.Identifiable;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -97,11 +94,39 @@ public class Contract {
         public static final String SAVING_ID = Schema.Transaction.SAVING;
         public static final String DEBT_ID = Schema.Transaction.DEBT;
         public static final String RECURRENCE_ID = Schema.Transaction.RECURRENCE;
+        public static final String RECURRENCE_UUID = "recurrence_" + Schema.RecurrentTransaction.UUID;
         public static final String CONFIRMED = Schema.Transaction.CONFIRMED;
         public static final String COUNT_IN_TOTAL = Schema.Transaction.COUNT_IN_TOTAL;
         public static final String PEOPLE_IDS = "transaction_person_ids";
         public static final String ATTACHMENT_IDS = "transaction_attachment_ids";
         public static final String TAG = Schema.Transaction.TAG;
+        public static final String SEARCH_RANK = "transaction_search_rank";
+    }
+
+    public static final class DailyTotal {
+        public static final String DAY = Schema.DailyTotal.DAY;
+        public static final String WALLET_ID = "daily_total_" + Schema.Wallet.ID;
+        public static final String WALLET_CURRENCY = "daily_total_" + Schema.Wallet.CURRENCY;
+        public static final String WALLET_COUNT_IN_TOTAL = "daily_total_" + Schema.Wallet.COUNT_IN_TOTAL;
+        public static final String CATEGORY_ID = "daily_total_" + Schema.Category.ID;
+        public static final String CATEGORY_PARENT_ID = "daily_total_" + Schema.Category.PARENT;
+        public static final String CATEGORY_SHOW_REPORT = "daily_total_" + Schema.Category.SHOW_REPORT;
+        public static final String DIRECTION = Schema.DailyTotal.DIRECTION;
+        public static final String MONEY = Schema.DailyTotal.MONEY;
+    }
+
+    public static final class TransactionDay {
+        public static final String DAY = "transaction_day";
+        public static final String CURRENCY = "transaction_day_currency";
+        public static final String COUNT = "transaction_day_count";
+        public static final String MONEY = "transaction_day_money";
+    }
+
+    public static final class Forecast {
+        public static final String DAY = "forecast_day";
+        public static final String WALLET_ID = "forecast_wallet_id";
+        public static final String CURRENCY = "forecast_currency";
+        public static final String MONEY = "forecast_money";
     }
 
     public static final class Transfer {
@@ -153,6 +178,7 @@ public class Contract {
         public static final String EVENT_END_DATE = "transfer_" + Schema.Event.END_DATE;
         public static final String EVENT_TAG = "transfer_" + Schema.Event.TAG;
         public static final String RECURRENCE_ID = Schema.Transfer.RECURRENCE;
+        public static final String RECURRENCE_UUID = "recurrence_" + Schema.RecurrentTransfer.UUID;
         public static final String CONFIRMED = Schema.Transfer.CONFIRMED;
         public static final String COUNT_IN_TOTAL = Schema.Transfer.COUNT_IN_TOTAL;
         public static final String PEOPLE_IDS = "transfer_person_ids";
@@ -299,6 +325,7 @@ public class Contract {
         public static final String NEXT_OCCURRENCE = Schema.RecurrentTransaction.NEXT_OCCURRENCE;
         public static final String RULE = Schema.RecurrentTransaction.RULE;
         public static final String TAG = Schema.RecurrentTransaction.TAG;
+        public static final String UUID = Schema.RecurrentTransaction.UUID;
     }
 
     public static final class RecurrentTransfer {
@@ -343,6 +370,7 @@ public class Contract {
         public static final String NEXT_OCCURRENCE = Schema.RecurrentTransfer.NEXT_OCCURRENCE;
         public static final String RULE = Schema.RecurrentTransfer.RULE;
         public static final String TAG = Schema.RecurrentTransfer.TAG;
+        public static final String UUID = Schema.RecurrentTransfer.UUID;
     }
 
     public static final class TransactionModel {
@@ -574,25 +602,6 @@ public class Contract {
         public static final int INVALID_RECURRENCE_RULE = 4545;
     }
 
-    public static List<Long> parseObjectIds(String encodedIds) {
-        if (!TextUtils.isEmpty(encodedIds)) {
-            List<Long> objectIds = new ArrayList<>();
-            String[] parts = encodedIds.split(",");
-            for (String part : parts) {
-                if (part.startsWith("<") && part.endsWith(">")) {
-                    String encodedId = part.substring(1, part.length() - 1);
-                    try {
-                        objectIds.add(Long.parseLong(encodedId));
-                    } catch (NumberFormatException ignore) {
-                        // do nothing
-                    }
-                }
-            }
-            return objectIds;
-        }
-        return null;
-    }
-
     public static <T extends Identifiable> String getObjectIds(T[] objects) {
         if (objects != null && objects.length > 0) {
             StringBuilder builder = new StringBuilder();
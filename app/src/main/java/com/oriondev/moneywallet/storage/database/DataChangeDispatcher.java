@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.oriondev.moneywallet.storage.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class collects the changes of the content provider and dispatches them to the content
+ * resolver only once for each table within a short time window (or at the end of a batch), so
+ * that an import or a recurrence catch-up does not requery the cursors once per row.
+ * Every dispatched uri carries the generation of the dispatch and the full set of the tables
+ * that have been changed: a cursor that observes more than one table can use the generation to
+ * reload only once for each dispatch.
+ */
+/*package-local*/ class DataChangeDispatcher {
+
+    /*package-local*/ static final String QUERY_PARAMETER_GENERATION = "generation";
+    /*package-local*/ static final String QUERY_PARAMETER_TABLES = "tables";
+
+    private static final long DISPATCH_DELAY = 150L;
+
+    private final ContentResolver mContentResolver;
+    private final Handler mHandler;
+
+    /**
+     * Map that contains, for each changed table, the uri that should be notified: it is the uri
+     * of the item if it is the only item of the table that has been changed, otherwise it is
+     * the uri of the whole table.
+     */
+    private final Map<String, Uri> mPendingChanges = new LinkedHashMap<>();
+
+    private long mGeneration;
+    private boolean mDispatchScheduled;
+
+    private final Runnable mDispatchRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            dispatchPendingChanges();
+        }
+
+    };
+
+    /*package-local*/ DataChangeDispatcher(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Schedule the notification of a changed uri: all the changes that happen before the end of
+     * the time window are merged together.
+     * @param uri that has been changed.
+     */
+    /*package-local*/ void dispatchChange(Uri uri) {
+        synchronized (mPendingChanges) {
+            addPendingChange(uri);
+            if (!mDispatchScheduled) {
+                mDispatchScheduled = true;
+                mHandler.postDelayed(mDispatchRunnable, DISPATCH_DELAY);
+            }
+        }
+    }
+
+    /**
+     * Notify immediately a group of changed uris (for example at the end of a batch) together
+     * with all the changes that are still pending.
+     * @param uris that have been changed.
+     */
+    /*package-local*/ void dispatchChanges(Collection<Uri> uris) {
+        synchronized (mPendingChanges) {
+            for (Uri uri : uris) {
+                addPendingChange(uri);
+            }
+        }
+        dispatchPendingChanges();
+    }
+
+    private void addPendingChange(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        String table = segments.get(0);
+        Uri pendingUri = mPendingChanges.get(table);
+        if (pendingUri == null) {
+            mPendingChanges.put(table, uri);
+        } else if (!pendingUri.equals(uri)) {
+            Uri tableUri = new Uri.Builder()
+                    .scheme(uri.getScheme())
+                    .authority(uri.getAuthority())
+                    .appendPath(table)
+                    .build();
+            mPendingChanges.put(table, tableUri);
+        }
+    }
+
+    private void dispatchPendingChanges() {
+        Collection<Uri> uris;
+        String tables;
+        long generation;
+        synchronized (mPendingChanges) {
+            mHandler.removeCallbacks(mDispatchRunnable);
+            mDispatchScheduled = false;
+            if (mPendingChanges.isEmpty()) {
+                return;
+            }
+            uris = new ArrayList<>(mPendingChanges.values());
+            tables = TextUtils.join(",", mPendingChanges.keySet());
+            generation = ++mGeneration;
+            mPendingChanges.clear();
+        }
+        PreferenceManager.setLastTimeDataIsChanged(System.currentTimeMillis());
+        String generationValue = String.valueOf(generation);
+        for (Uri uri : uris) {
+            Uri notifyUri = uri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_GENERATION, generationValue)
+                    .appendQueryParameter(QUERY_PARAMETER_TABLES, tables)
+                    .build();
+            mContentResolver.notifyChange(notifyUri, null);
+        }
+    }
+
+    /**
+     * Extract the generation of the dispatch from a notified uri.
+     * @param uri that has been notified.
+     * @return the generation or -1 if the uri has not been notified by this class.
+     */
+    /*package-local*/ static long getGeneration(Uri uri) {
+        String generation = uri != null ? uri.getQueryParameter(QUERY_PARAMETER_GENERATION) : null;
+        if (generation != null) {
+            try {
+                return Long.parseLong(generation);
+            } catch (NumberFormatException ignore) {
+                // not a dispatched uri
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Extract the set of the changed tables from a notified uri.
+     * @param uri that has been notified.
+     * @return the set of the tables (identified by the first segment of their uri).
+     */
+    /*package-local*/ static Set<String> getChangedTables(Uri uri) {
+        String tables = uri != null ? uri.getQueryParameter(QUERY_PARAMETER_TABLES) : null;
+        if (TextUtils.isEmpty(tables)) {
+            return Collections.emptySet();
+        }
+        Set<String> tableSet = new HashSet<>();
+        Collections.addAll(tableSet, TextUtils.split(tables, ","));
+        return tableSet;
+    }
+}
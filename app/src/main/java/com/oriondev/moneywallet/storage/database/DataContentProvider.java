@@ -22,20 +22,38 @@ package com.oriondev.moneywallet.storage.database;
 import android.annotation.SuppressLint;
 import android.content.ContentProvider;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.oriondev.moneywallet.BuildConfig;
 import com.oriondev.moneywallet.storage.preference.PreferenceManager;
+import com.oriondev.moneywallet.utils.DateCodec;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by andrea on 17/01/18.
@@ -62,6 +80,17 @@ public class DataContentProvider extends ContentProvider {
     public static final Uri CONTENT_PLACES = Uri.parse("content://" + AUTHORITY + "/places");
     public static final Uri CONTENT_PEOPLE = Uri.parse("content://" + AUTHORITY + "/people");
     public static final Uri CONTENT_ATTACHMENTS = Uri.parse("content://" + AUTHORITY + "/attachments");
+    public static final Uri CONTENT_DAILY_TOTALS = Uri.parse("content://" + AUTHORITY + "/totals/daily");
+    public static final Uri CONTENT_TRANSACTION_DAYS = Uri.parse("content://" + AUTHORITY + "/transactions/days");
+    public static final Uri CONTENT_TRANSACTION_SEARCH = Uri.parse("content://" + AUTHORITY + "/transactions/search");
+    public static final Uri CONTENT_FORECAST_WALLETS = Uri.parse("content://" + AUTHORITY + "/forecast/wallets");
+    public static final Uri CONTENT_FORECAST_CURRENCIES = Uri.parse("content://" + AUTHORITY + "/forecast/currencies");
+
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+    public static final String QUERY_PARAMETER_SEARCH_QUERY = "query";
+    public static final String QUERY_PARAMETER_SEARCH_COLUMNS = "columns";
+    public static final String QUERY_PARAMETER_START_DATE = "start";
+    public static final String QUERY_PARAMETER_END_DATE = "end";
 
     private static final int CURRENCY_LIST = 1;
     private static final int WALLET_LIST = 2;
@@ -112,6 +141,13 @@ public class DataContentProvider extends ContentProvider {
     private static final int PLACE_TRANSACTION_LIST = 44;
     private static final int PERSON_TRANSACTION_LIST = 45;
 
+    private static final int DAILY_TOTAL_LIST = 46;
+    private static final int TRANSACTION_DAY_LIST = 47;
+    private static final int WALLET_BUDGET_LIST = 48;
+    private static final int TRANSACTION_SEARCH_LIST = 49;
+    private static final int FORECAST_WALLET_LIST = 50;
+    private static final int FORECAST_CURRENCY_LIST = 51;
+
     private static final UriMatcher mUriMatcher = createUriMatcher();
 
     private static UriMatcher createUriMatcher() {
@@ -120,6 +156,7 @@ public class DataContentProvider extends ContentProvider {
         matcher.addURI(AUTHORITY, "currencies/*", CURRENCY_ITEM);
         matcher.addURI(AUTHORITY, "wallets", WALLET_LIST);
         matcher.addURI(AUTHORITY, "wallets/#", WALLET_ITEM);
+        matcher.addURI(AUTHORITY, "wallets/#/budgets", WALLET_BUDGET_LIST);
         matcher.addURI(AUTHORITY, "transactions", TRANSACTION_LIST);
         matcher.addURI(AUTHORITY, "transactions/#", TRANSACTION_ITEM);
         matcher.addURI(AUTHORITY, "transactions/#/attachments", TRANSACTION_ATTACHMENTS);
@@ -161,14 +198,39 @@ public class DataContentProvider extends ContentProvider {
         matcher.addURI(AUTHORITY, "people/#/transactions", PERSON_TRANSACTION_LIST);
         matcher.addURI(AUTHORITY, "attachments", ATTACHMENT_LIST);
         matcher.addURI(AUTHORITY, "attachments/#", ATTACHMENT_ITEM);
+        matcher.addURI(AUTHORITY, "totals/daily", DAILY_TOTAL_LIST);
+        matcher.addURI(AUTHORITY, "transactions/days", TRANSACTION_DAY_LIST);
+        matcher.addURI(AUTHORITY, "transactions/search", TRANSACTION_SEARCH_LIST);
+        matcher.addURI(AUTHORITY, "forecast/wallets", FORECAST_WALLET_LIST);
+        matcher.addURI(AUTHORITY, "forecast/currencies", FORECAST_CURRENCY_LIST);
         return matcher;
     }
 
+    /**
+     * Tables (identified by the first segment of their uri) that contain data used by the
+     * forecast: when one of them is changed the cached forecast is not valid anymore.
+     */
+    private static final Set<String> FORECAST_TABLES = new HashSet<>(Arrays.asList(
+            "currencies", "wallets", "transactions", "transfers", "debts", "savings", "recurrences"
+    ));
+
+    private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<>();
+
     private SQLDatabase mDatabase;
+    private DataChangeDispatcher mDispatcher;
+
+    private final Object mForecastLock = new Object();
+    private final AtomicLong mForecastGeneration = new AtomicLong();
+    private ForecastEngine.Forecast mForecast;
+    private long mForecastCachedGeneration;
 
     @Override
     public boolean onCreate() {
         initializeDatabase(getContext());
+        ContentResolver contentResolver = getContentResolver();
+        if (contentResolver != null) {
+            mDispatcher = new DataChangeDispatcher(contentResolver);
+        }
         return true;
     }
 
@@ -199,7 +261,8 @@ public class DataContentProvider extends ContentProvider {
                 cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSFERS);
                 break;
             case TRANSACTION_LIST:
-                cursor = new MultiUriCursorWrapper(mDatabase.getTransactions(projection, selection, selectionArgs, sortOrder));
+                String limit = uri.getQueryParameter(QUERY_PARAMETER_LIMIT);
+                cursor = new MultiUriCursorWrapper(mDatabase.getTransactions(projection, selection, selectionArgs, sortOrder, limit));
                 cursor.setNotificationUri(getContentResolver(), CONTENT_WALLETS);
                 cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
                 cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSFERS);
@@ -314,6 +377,13 @@ public class DataContentProvider extends ContentProvider {
                 cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
                 cursor.setNotificationUri(getContentResolver(), CONTENT_BUDGETS);
                 break;
+            case WALLET_BUDGET_LIST:
+                cursor = new MultiUriCursorWrapper(mDatabase.getWalletBudgets(parseIdAtIndex(uri, 1), projection, selection, selectionArgs, sortOrder));
+                cursor.setNotificationUri(getContentResolver(), CONTENT_WALLETS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_CATEGORIES);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_BUDGETS);
+                break;
             case BUDGET_ITEM:
                 cursor = new MultiUriCursorWrapper(mDatabase.getBudget(ContentUris.parseId(uri), projection));
                 cursor.setNotificationUri(getContentResolver(), uri);
@@ -477,10 +547,153 @@ public class DataContentProvider extends ContentProvider {
                 cursor = new MultiUriCursorWrapper(mDatabase.getAttachment(ContentUris.parseId(uri), projection));
                 cursor.setNotificationUri(getContentResolver(), uri);
                 break;
+            case DAILY_TOTAL_LIST:
+                cursor = new MultiUriCursorWrapper(mDatabase.getDailyTotals(projection, selection, selectionArgs, sortOrder));
+                cursor.setNotificationUri(getContentResolver(), CONTENT_WALLETS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSFERS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_CATEGORIES);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_DEBTS);
+                break;
+            case TRANSACTION_DAY_LIST:
+                cursor = new MultiUriCursorWrapper(mDatabase.getTransactionDays(selection, selectionArgs, sortOrder));
+                cursor.setNotificationUri(getContentResolver(), CONTENT_WALLETS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSFERS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_CATEGORIES);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_DEBTS);
+                break;
+            case TRANSACTION_SEARCH_LIST:
+                String searchQuery = uri.getQueryParameter(QUERY_PARAMETER_SEARCH_QUERY);
+                String searchColumns = uri.getQueryParameter(QUERY_PARAMETER_SEARCH_COLUMNS);
+                String searchLimit = uri.getQueryParameter(QUERY_PARAMETER_LIMIT);
+                String[] columns = !TextUtils.isEmpty(searchColumns) ? TextUtils.split(searchColumns, ",") : null;
+                cursor = new MultiUriCursorWrapper(mDatabase.searchTransactions(searchQuery, columns, projection, selection, selectionArgs, sortOrder, searchLimit));
+                cursor.setNotificationUri(getContentResolver(), CONTENT_WALLETS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSFERS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_CATEGORIES);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_DEBTS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_EVENTS);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_PEOPLE);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_PLACES);
+                cursor.setNotificationUri(getContentResolver(), CONTENT_ATTACHMENTS);
+                break;
+            case FORECAST_WALLET_LIST:
+                cursor = new MultiUriCursorWrapper(queryForecast(uri, false));
+                setForecastNotificationUris(cursor);
+                break;
+            case FORECAST_CURRENCY_LIST:
+                cursor = new MultiUriCursorWrapper(queryForecast(uri, true));
+                setForecastNotificationUris(cursor);
+                break;
         }
         return cursor;
     }
 
+    /**
+     * Build a cursor with the projected balance of each day between the start date and the end
+     * date of the uri (both inclusive, in the yyyy-MM-dd format). The start date is never
+     * before the current day and, if the dates are missing, the forecast starts from the
+     * current day and ends after the default horizon. The end date is limited to the maximum
+     * horizon of the forecast (counted from the current day). The rows are sorted by day and they are
+     * grouped by wallet or by currency (only the wallets counted in total are part of the
+     * currency balance): the projection, the selection and the sort order are not supported.
+     * If one of the dates is not well formatted the cursor is empty.
+     * @param uri that contains the range of dates.
+     * @param groupByCurrency true if the wallets should be grouped by currency.
+     * @return a cursor that contains the balance of each day.
+     */
+    private Cursor queryForecast(Uri uri, boolean groupByCurrency) {
+        MatrixCursor cursor;
+        if (groupByCurrency) {
+            cursor = new MatrixCursor(new String[] {Contract.Forecast.DAY, Contract.Forecast.CURRENCY, Contract.Forecast.MONEY});
+        } else {
+            cursor = new MatrixCursor(new String[] {Contract.Forecast.DAY, Contract.Forecast.WALLET_ID, Contract.Forecast.CURRENCY, Contract.Forecast.MONEY});
+        }
+        long today = getCurrentEpochDay();
+        String startDate = uri.getQueryParameter(QUERY_PARAMETER_START_DATE);
+        String endDate = uri.getQueryParameter(QUERY_PARAMETER_END_DATE);
+        long startDay;
+        long endDay;
+        try {
+            startDay = !TextUtils.isEmpty(startDate) ? Math.max(today, ForecastEngine.parseEpochDay(startDate)) : today;
+            endDay = !TextUtils.isEmpty(endDate) ? ForecastEngine.parseEpochDay(endDate) : today + ForecastEngine.DEFAULT_HORIZON_DAYS - 1;
+        } catch (IllegalArgumentException e) {
+            // a malformed date cannot match any day of the forecast
+            return cursor;
+        }
+        // the memory used by the forecast grows with the number of days
+        endDay = Math.min(endDay, today + ForecastEngine.MAX_HORIZON_DAYS - 1);
+        if (endDay < startDay) {
+            return cursor;
+        }
+        ForecastEngine.Forecast forecast = getForecast(today, endDay);
+        for (long day = startDay; day <= endDay; day++) {
+            String date = DateCodec.formatEpochDay(day);
+            if (groupByCurrency) {
+                Iterator<String> iterator = forecast.getCurrencies();
+                while (iterator.hasNext()) {
+                    String currency = iterator.next();
+                    cursor.addRow(new Object[] {date, currency, forecast.getCurrencyBalance(currency, day)});
+                }
+            } else {
+                for (int index = 0; index < forecast.getWalletCount(); index++) {
+                    cursor.addRow(new Object[] {date, forecast.getWalletId(index), forecast.getWalletCurrency(index), forecast.getWalletBalance(index, day)});
+                }
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Return the cached forecast if it is still valid, otherwise compute it again. The cache is
+     * valid until one of the tables used by the forecast is changed, the day changes or a day
+     * after the end of the forecast is requested. The forecast is always computed at least for
+     * the default horizon so that different ranges can be served by the same forecast.
+     */
+    private ForecastEngine.Forecast getForecast(long startDay, long endDay) {
+        synchronized (mForecastLock) {
+            ForecastEngine.Forecast forecast = mForecast;
+            if (forecast != null && mForecastCachedGeneration == mForecastGeneration.get() &&
+                    forecast.getStartDay() == startDay && forecast.getEndDay() >= endDay) {
+                return forecast;
+            }
+            // a change that is committed while the forecast is computed makes it invalid
+            long generation = mForecastGeneration.get();
+            forecast = mDatabase.getForecast(startDay, Math.max(endDay, startDay + ForecastEngine.DEFAULT_HORIZON_DAYS - 1));
+            mForecast = forecast;
+            mForecastCachedGeneration = generation;
+            return forecast;
+        }
+    }
+
+    private void invalidateForecast(Collection<Uri> uris) {
+        for (Uri uri : uris) {
+            List<String> segments = uri.getPathSegments();
+            if (!segments.isEmpty() && FORECAST_TABLES.contains(segments.get(0))) {
+                mForecastGeneration.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void setForecastNotificationUris(Cursor cursor) {
+        cursor.setNotificationUri(getContentResolver(), CONTENT_CURRENCIES);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_WALLETS);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSACTIONS);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_TRANSFERS);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_DEBTS);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_SAVINGS);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_RECURRENT_TRANSACTIONS);
+        cursor.setNotificationUri(getContentResolver(), CONTENT_RECURRENT_TRANSFERS);
+    }
+
+    private static long getCurrentEpochDay() {
+        Calendar calendar = Calendar.getInstance();
+        return DateCodec.toEpochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
@@ -524,6 +737,7 @@ public class DataContentProvider extends ContentProvider {
             case DEBT_TRANSACTION_LIST:
                 return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.transaction";
             case BUDGET_LIST:
+            case WALLET_BUDGET_LIST:
                 return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.budget";
             case BUDGET_ITEM:
                 return "vnd.android.cursor.item/vnd.com.oriondev.moneywallet.storage.budget";
@@ -575,6 +789,16 @@ public class DataContentProvider extends ContentProvider {
                 return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.attachment";
             case ATTACHMENT_ITEM:
                 return "vnd.android.cursor.item/vnd.com.oriondev.moneywallet.storage.attachment";
+            case DAILY_TOTAL_LIST:
+                return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.total.daily";
+            case TRANSACTION_DAY_LIST:
+                return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.transaction.day";
+            case TRANSACTION_SEARCH_LIST:
+                return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.transaction";
+            case FORECAST_WALLET_LIST:
+                return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.forecast.wallet";
+            case FORECAST_CURRENCY_LIST:
+                return "vnd.android.cursor.dir/vnd.com.oriondev.moneywallet.storage.forecast.currency";
         }
         return null;
     }
@@ -634,22 +858,14 @@ public class DataContentProvider extends ContentProvider {
                 objectId = mDatabase.insertAttachment(contentValues);
                 break;
         }
-        if (currencyIso != null || objectId > 0L) {
-            PreferenceManager.setLastTimeDataIsChanged(System.currentTimeMillis());
-            ContentResolver contentResolver = getContentResolver();
-            if (currencyIso != null) {
-                Uri objectUri = Uri.withAppendedPath(uri, currencyIso);
-                if (contentResolver != null) {
-                    contentResolver.notifyChange(objectUri, null);
-                }
-                return objectUri;
-            } else if (objectId > 0L) {
-                Uri objectUri = ContentUris.withAppendedId(uri, objectId);
-                if (contentResolver != null) {
-                    contentResolver.notifyChange(objectUri, null);
-                }
-                return objectUri;
-            }
+        if (currencyIso != null) {
+            Uri objectUri = Uri.withAppendedPath(uri, currencyIso);
+            notifyChange(objectUri);
+            return objectUri;
+        } else if (objectId > 0L) {
+            Uri objectUri = ContentUris.withAppendedId(uri, objectId);
+            notifyChange(objectUri);
+            return objectUri;
         }
         return null;
     }
@@ -724,10 +940,8 @@ public class DataContentProvider extends ContentProvider {
                 result = mDatabase.deleteAttachment(ContentUris.parseId(uri));
                 break;
         }
-        ContentResolver contentResolver = getContentResolver();
-        if (contentResolver != null && notifyUri != null) {
-            PreferenceManager.setLastTimeDataIsChanged(System.currentTimeMillis());
-            contentResolver.notifyChange(notifyUri, null);
+        if (notifyUri != null) {
+            notifyChange(notifyUri);
         }
         return result;
     }
@@ -783,15 +997,121 @@ public class DataContentProvider extends ContentProvider {
                 break;
         }
         if (result > 0) {
-            PreferenceManager.setLastTimeDataIsChanged(System.currentTimeMillis());
-            ContentResolver contentResolver = getContentResolver();
-            if (contentResolver != null) {
-                contentResolver.notifyChange(uri, null);
-            }
+            notifyChange(uri);
         }
         return result;
     }
 
+    /**
+     * Apply all the operations inside a single database transaction: if one of them fails, all
+     * the changes are rolled back. The change notifications are deferred and coalesced until the
+     * transaction is committed.
+     * @param operations to apply.
+     * @return the results of the operations.
+     * @throws OperationApplicationException if one of the operations fails.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        boolean batchOwner = beginBatch();
+        boolean success = false;
+        database.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            success = true;
+            return results;
+        } finally {
+            database.endTransaction();
+            endBatch(batchOwner, success);
+        }
+    }
+
+    /**
+     * Insert all the rows inside a single database transaction: if one of them fails, all the
+     * changes are rolled back. The change notifications are deferred and coalesced until the
+     * transaction is committed.
+     * @param uri where the rows should be inserted.
+     * @param values of the rows.
+     * @return the number of inserted rows.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        boolean batchOwner = beginBatch();
+        boolean success = false;
+        database.beginTransaction();
+        try {
+            int count = 0;
+            for (ContentValues contentValues : values) {
+                if (insert(uri, contentValues) == null) {
+                    // the exception prevents the commit: the whole batch is rolled back
+                    throw new SQLException("Failed to insert a row into " + uri);
+                }
+                count++;
+            }
+            database.setTransactionSuccessful();
+            success = true;
+            return count;
+        } finally {
+            database.endTransaction();
+            endBatch(batchOwner, success);
+        }
+    }
+
+    /**
+     * Start collecting the change notifications of the current thread instead of dispatching
+     * them immediately.
+     * @return true if the batch has been started by this call, false if it was already running.
+     */
+    private boolean beginBatch() {
+        if (mPendingNotifications.get() == null) {
+            mPendingNotifications.set(new LinkedHashSet<Uri>());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stop collecting the change notifications of the current thread and dispatch the collected
+     * ones only if the batch has been committed (otherwise nothing has changed).
+     * @param batchOwner true if the batch has been started by the caller.
+     * @param success true if the batch has been committed.
+     */
+    private void endBatch(boolean batchOwner, boolean success) {
+        if (batchOwner) {
+            Set<Uri> uris = mPendingNotifications.get();
+            mPendingNotifications.remove();
+            if (success && uris != null && !uris.isEmpty()) {
+                // the forecast is invalidated only after the commit, otherwise it may be computed
+                // again from the old data while the batch is still running
+                invalidateForecast(uris);
+                if (mDispatcher != null) {
+                    mDispatcher.dispatchChanges(uris);
+                }
+            }
+        }
+    }
+
+    /**
+     * Notify that the content of the database has been changed. If a batch is running on the
+     * current thread, the notification is deferred until the end of the batch, otherwise it is
+     * merged with the other changes that happen within a short time window.
+     * @param uri that has been changed.
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> pendingNotifications = mPendingNotifications.get();
+        if (pendingNotifications != null) {
+            pendingNotifications.add(uri);
+        } else {
+            invalidateForecast(Collections.singleton(uri));
+            if (mDispatcher != null) {
+                mDispatcher.dispatchChange(uri);
+            }
+        }
+    }
+
     private ContentResolver getContentResolver() {
         Context context = getContext();
         return context != null ? context.getContentResolver() : null;
@@ -815,6 +1135,27 @@ public class DataContentProvider extends ContentProvider {
         }
         mDatabase = new SQLDatabase(context);
         mDatabase.setDeletedObjectCacheEnabled(IS_REMOTE_SYNC_ENABLED);
+        mForecastGeneration.incrementAndGet();
+    }
+
+    /**
+     * Close the connections of the provider to the current database file. It must be called
+     * before the file is moved or replaced: the provider is reopened by
+     * {@link #notifyDatabaseIsChanged(Context)} when the new file is in place.
+     */
+    @SuppressLint("Recycle")
+    public static void closeDatabase(Context context) {
+        ContentResolver contentResolver = context.getContentResolver();
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(AUTHORITY);
+        if (client != null) {
+            ContentProvider contentProvider = client.getLocalContentProvider();
+            if (contentProvider instanceof DataContentProvider) {
+                if (((DataContentProvider) contentProvider).mDatabase != null) {
+                    ((DataContentProvider) contentProvider).mDatabase.close();
+                }
+            }
+            client.close();
+        }
     }
 
     @SuppressLint("Recycle")
@@ -825,6 +1166,9 @@ public class DataContentProvider extends ContentProvider {
             ContentProvider contentProvider = client.getLocalContentProvider();
             if (contentProvider instanceof DataContentProvider) {
                 ((DataContentProvider) contentProvider).initializeDatabase(context);
+                // the database file may have been replaced: ensure that the
+                // materialized data is aligned with the content of the tables
+                ((DataContentProvider) contentProvider).mDatabase.verifyMaterializedTables();
                 PreferenceManager.setCurrentWallet(context, PreferenceManager.NO_CURRENT_WALLET);
             }
             client.close();
@@ -21,13 +21,17 @@ package com.oriondev.moneywallet.storage.database;
 
 import android.database.Cursor;
 
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
+
 /**
  * Created by andrea on 28/10/18.
  */
 
 public interface DatabaseExporter {
 
-    void exportHeader() throws ExportException;
+    void exportHeader(BackupHeader header) throws ExportException;
+
+    void exportDeletedItems(Cursor cursor) throws ExportException;
 
     void exportCurrencies(Cursor cursor) throws ExportException;
 
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import com.oriondev.moneywallet.utils.DateCodec;
+import com.oriondev.moneywallet.utils.RecurrenceRuleCache;
+
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+import org.dmfs.rfc5545.recur.RecurrenceRuleIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class projects the balance of the wallets in the future. The occurrences of the
+ * recurrences are expanded in memory (no row is written inside the database) and merged, day by
+ * day, with the current balance of the wallets and with the transactions that are already
+ * scheduled in the future. The timeline of each wallet is a single array of money that contains
+ * one item for each day of the forecast.
+ */
+/*package-local*/ class ForecastEngine {
+
+    /*package-local*/ static final int DEFAULT_HORIZON_DAYS = 5 * 366;
+
+    /**
+     * Maximum number of days of a forecast: each wallet uses one long for each day.
+     */
+    /*package-local*/ static final int MAX_HORIZON_DAYS = 20 * 366;
+
+    private final long mStartDay;
+    private final int mDays;
+
+    private final RecurrenceRuleCache mRuleCache = new RecurrenceRuleCache();
+    private final Map<Long, WalletTimeline> mWallets = new LinkedHashMap<>();
+
+    private int[] mOccurrenceBuffer = new int[64];
+
+    /**
+     * Create a new engine.
+     * @param startDay first day of the forecast (usually the current day) as epoch day.
+     * @param endDay last day of the forecast (inclusive) as epoch day.
+     */
+    /*package-local*/ ForecastEngine(long startDay, long endDay) {
+        if (endDay < startDay) {
+            throw new IllegalArgumentException("The end day of the forecast is before the start day");
+        }
+        if (endDay - startDay >= MAX_HORIZON_DAYS) {
+            throw new IllegalArgumentException("The forecast cannot be longer than " + MAX_HORIZON_DAYS + " days");
+        }
+        mStartDay = startDay;
+        mDays = (int) (endDay - startDay + 1);
+    }
+
+    /**
+     * Add a wallet to the forecast: the money of the wallets that have not been added is ignored.
+     * @param walletId id of the wallet.
+     * @param currency iso code of the currency of the wallet.
+     * @param countInTotal true if the wallet is part of the totals of its currency.
+     * @param balance current balance of the wallet.
+     */
+    /*package-local*/ void addWallet(long walletId, String currency, boolean countInTotal, long balance) {
+        mWallets.put(walletId, new WalletTimeline(walletId, currency, countInTotal, balance, mDays));
+    }
+
+    /**
+     * Add an amount of money that will change the balance of a wallet in a specific day.
+     * The money of the days that are before the start of the forecast is added to the first day.
+     * @param walletId id of the wallet.
+     * @param epochDay day of the change.
+     * @param money signed amount of money.
+     */
+    /*package-local*/ void addMoney(long walletId, long epochDay, long money) {
+        WalletTimeline timeline = mWallets.get(walletId);
+        if (timeline != null && epochDay - mStartDay < mDays) {
+            timeline.mMoney[(int) Math.max(0L, epochDay - mStartDay)] += money;
+        }
+    }
+
+    /**
+     * Add all the occurrences of a recurrent transaction until the end of the forecast.
+     * @param walletId id of the wallet.
+     * @param money signed amount of money of each occurrence.
+     * @param rule string of the recurrence rule.
+     * @param firstOccurrence first occurrence that has not been added to the database yet.
+     * @return the number of occurrences that are part of the forecast.
+     */
+    /*package-local*/ int addRecurrentTransaction(long walletId, long money, String rule, DateTime firstOccurrence) {
+        WalletTimeline timeline = mWallets.get(walletId);
+        if (timeline == null) {
+            return 0;
+        }
+        int count = expand(rule, firstOccurrence);
+        for (int i = 0; i < count; i++) {
+            timeline.mMoney[mOccurrenceBuffer[i]] += money;
+        }
+        return count;
+    }
+
+    /**
+     * Add all the occurrences of a recurrent transfer until the end of the forecast. The rule
+     * is expanded only once for both the wallets.
+     * @param walletFromId id of the source wallet.
+     * @param moneyFrom amount of money that is removed from the source wallet (tax included).
+     * @param walletToId id of the destination wallet.
+     * @param moneyTo amount of money that is added to the destination wallet.
+     * @param rule string of the recurrence rule.
+     * @param firstOccurrence first occurrence that has not been added to the database yet.
+     * @return the number of occurrences that are part of the forecast.
+     */
+    /*package-local*/ int addRecurrentTransfer(long walletFromId, long moneyFrom, long walletToId, long moneyTo, String rule, DateTime firstOccurrence) {
+        WalletTimeline timelineFrom = mWallets.get(walletFromId);
+        WalletTimeline timelineTo = mWallets.get(walletToId);
+        if (timelineFrom == null && timelineTo == null) {
+            return 0;
+        }
+        int count = expand(rule, firstOccurrence);
+        for (int i = 0; i < count; i++) {
+            int dayIndex = mOccurrenceBuffer[i];
+            if (timelineFrom != null) {
+                timelineFrom.mMoney[dayIndex] -= moneyFrom;
+            }
+            if (timelineTo != null) {
+                timelineTo.mMoney[dayIndex] += moneyTo;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Expand the occurrences of a rule inside the occurrence buffer as day indices: the
+     * occurrences that are before the start of the forecast have not been added to the database
+     * yet, so they are moved to the first day.
+     * @return the number of occurrences inside the buffer.
+     */
+    private int expand(String rule, DateTime firstOccurrence) {
+        RecurrenceRule recurrenceRule = getRule(rule);
+        if (recurrenceRule == null) {
+            return 0;
+        }
+        int count = 0;
+        RecurrenceRuleIterator iterator = recurrenceRule.iterator(firstOccurrence);
+        while (iterator.hasNext()) {
+            long dayIndex = Math.max(0L, DateCodec.getEpochDay(iterator.nextMillis()) - mStartDay);
+            if (dayIndex >= mDays) {
+                break;
+            }
+            if (count == mOccurrenceBuffer.length) {
+                int[] buffer = new int[count * 2];
+                System.arraycopy(mOccurrenceBuffer, 0, buffer, 0, count);
+                mOccurrenceBuffer = buffer;
+            }
+            mOccurrenceBuffer[count++] = (int) dayIndex;
+        }
+        return count;
+    }
+
+    /*package-local*/ RecurrenceRule getRule(String rule) {
+        return mRuleCache.get(rule);
+    }
+
+    /**
+     * Merge the timelines of the wallets with their current balance. The engine should not be
+     * used anymore after this call because the arrays are shared with the forecast.
+     * @return the forecast that contains the balances of each day.
+     */
+    /*package-local*/ Forecast build() {
+        List<WalletTimeline> wallets = new ArrayList<>(mWallets.values());
+        for (WalletTimeline timeline : wallets) {
+            long balance = timeline.mBalance;
+            long[] money = timeline.mMoney;
+            for (int i = 0; i < money.length; i++) {
+                balance += money[i];
+                money[i] = balance;
+            }
+        }
+        mWallets.clear();
+        return new Forecast(mStartDay, mDays, wallets);
+    }
+
+    /**
+     * Convert a date of the database (yyyy-MM-dd, optionally followed by the time) to the
+     * number of days since 1970-01-01.
+     * @throws IllegalArgumentException if the date is not well formatted.
+     */
+    /*package-local*/ static long parseEpochDay(String date) {
+        int[] fields = parseDate(date);
+        return DateCodec.toEpochDay(fields[0], fields[1], fields[2]);
+    }
+
+    /**
+     * Convert a date of the database (yyyy-MM-dd, optionally followed by the time) to an all
+     * day date time that can be used as first occurrence of a recurrence rule.
+     * @throws IllegalArgumentException if the date is not well formatted.
+     */
+    /*package-local*/ static DateTime parseDateTime(String date) {
+        int[] fields = parseDate(date);
+        return new DateTime(fields[0], fields[1] - 1, fields[2]);
+    }
+
+    private static int[] parseDate(String date) {
+        if (date == null || date.length() < 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+        return new int[] {year, month, day};
+    }
+
+    private static int parseDigits(String string, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid date: " + string);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static class WalletTimeline {
+
+        private final long mWalletId;
+        private final String mCurrency;
+        private final boolean mCountInTotal;
+        private final long mBalance;
+        private final long[] mMoney;
+
+        private WalletTimeline(long walletId, String currency, boolean countInTotal, long balance, int days) {
+            mWalletId = walletId;
+            mCurrency = currency;
+            mCountInTotal = countInTotal;
+            mBalance = balance;
+            mMoney = new long[days];
+        }
+    }
+
+    /**
+     * Immutable result of the engine: it contains the projected balance of each wallet for each
+     * day of the forecast, so it can be queried many times for any range of days.
+     */
+    /*package-local*/ static class Forecast {
+
+        private final long mStartDay;
+        private final int mDays;
+        private final long[] mWalletIds;
+        private final String[] mWalletCurrencies;
+        private final long[][] mWalletBalances;
+        private final Map<String, long[]> mCurrencyBalances = new LinkedHashMap<>();
+
+        private Forecast(long startDay, int days, List<WalletTimeline> wallets) {
+            mStartDay = startDay;
+            mDays = days;
+            mWalletIds = new long[wallets.size()];
+            mWalletCurrencies = new String[wallets.size()];
+            mWalletBalances = new long[wallets.size()][];
+            for (int i = 0; i < wallets.size(); i++) {
+                WalletTimeline timeline = wallets.get(i);
+                mWalletIds[i] = timeline.mWalletId;
+                mWalletCurrencies[i] = timeline.mCurrency;
+                mWalletBalances[i] = timeline.mMoney;
+                if (timeline.mCountInTotal) {
+                    long[] currencyBalances = mCurrencyBalances.get(timeline.mCurrency);
+                    if (currencyBalances == null) {
+                        currencyBalances = new long[days];
+                        mCurrencyBalances.put(timeline.mCurrency, currencyBalances);
+                    }
+                    for (int day = 0; day < days; day++) {
+                        currencyBalances[day] += timeline.mMoney[day];
+                    }
+                }
+            }
+        }
+
+        /*package-local*/ long getStartDay() {
+            return mStartDay;
+        }
+
+        /*package-local*/ long getEndDay() {
+            return mStartDay + mDays - 1;
+        }
+
+        /*package-local*/ int getWalletCount() {
+            return mWalletIds.length;
+        }
+
+        /*package-local*/ long getWalletId(int index) {
+            return mWalletIds[index];
+        }
+
+        /*package-local*/ String getWalletCurrency(int index) {
+            return mWalletCurrencies[index];
+        }
+
+        /**
+         * @param index of the wallet.
+         * @param epochDay that must be part of the forecast.
+         * @return the projected balance of the wallet at the end of the day.
+         */
+        /*package-local*/ long getWalletBalance(int index, long epochDay) {
+            return mWalletBalances[index][getDayIndex(epochDay)];
+        }
+
+        /**
+         * @return an iterator over the iso codes of the currencies of the wallets that are
+         * counted in total.
+         */
+        /*package-local*/ Iterator<String> getCurrencies() {
+            return mCurrencyBalances.keySet().iterator();
+        }
+
+        /**
+         * @param currency iso code of the currency.
+         * @param epochDay that must be part of the forecast.
+         * @return the sum of the projected balances of the wallets of the currency that are
+         * counted in total, at the end of the day.
+         */
+        /*package-local*/ long getCurrencyBalance(String currency, long epochDay) {
+            long[] balances = mCurrencyBalances.get(currency);
+            return balances != null ? balances[getDayIndex(epochDay)] : 0L;
+        }
+
+        private int getDayIndex(long epochDay) {
+            if (epochDay < mStartDay || epochDay - mStartDay >= mDays) {
+                throw new IndexOutOfBoundsException("The day is not part of the forecast: " + epochDay);
+            }
+            return (int) (epochDay - mStartDay);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+
+/**
+ * This class decodes the columns that contain a set of ids (for example the people of a
+ * transaction or the wallets of a budget) encoded as '<1>,<3>,<5>'. The ids are parsed in place
+ * without splitting the string: the only allocated object is the returned array.
+ * An instance of this class can be reused to read the same column of many rows of a cursor: the
+ * content of the column is copied inside an internal buffer instead of creating a new string.
+ */
+public class IdSetReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64;
+
+    private final CharArrayBuffer mBuffer = new CharArrayBuffer(DEFAULT_BUFFER_SIZE);
+    private final BufferSequence mSequence = new BufferSequence();
+
+    /**
+     * Read the ids contained inside a column of the current row of the cursor.
+     * @param cursor positioned on the row to read.
+     * @param columnIndex index of the column that contains the encoded ids.
+     * @return an array of ids or null if the column is null or empty.
+     * @throws IllegalArgumentException if the column is not well formatted.
+     */
+    public long[] read(Cursor cursor, int columnIndex) {
+        if (cursor.isNull(columnIndex)) {
+            return null;
+        }
+        cursor.copyStringToBuffer(columnIndex, mBuffer);
+        mSequence.mLength = mBuffer.sizeCopied;
+        return decode(mSequence);
+    }
+
+    /**
+     * Parse a string composed by zero, one or more ids. For example a well formatted string like
+     * '<1>,<3>,<5>' is decoded as an array with ids: 1, 3, 5.
+     * @param encodedIds well formatted sequence of ids.
+     * @return an array of ids or null if the sequence is null or empty.
+     * @throws IllegalArgumentException if the sequence is not well formatted.
+     */
+    public static long[] decode(CharSequence encodedIds) {
+        if (encodedIds == null || encodedIds.length() == 0) {
+            return null;
+        }
+        int length = encodedIds.length();
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            if (encodedIds.charAt(i) == ',') {
+                count++;
+            }
+        }
+        long[] ids = new long[count];
+        int index = 0;
+        int position = 0;
+        while (position < length) {
+            if (encodedIds.charAt(position) != '<') {
+                throw newFormatException(encodedIds, index);
+            }
+            position++;
+            int start = position;
+            long id = 0L;
+            while (position < length && encodedIds.charAt(position) != '>') {
+                char c = encodedIds.charAt(position);
+                if (c < '0' || c > '9' || position - start >= 18) {
+                    throw newFormatException(encodedIds, index);
+                }
+                id = id * 10L + (c - '0');
+                position++;
+            }
+            if (position == start || position == length) {
+                throw newFormatException(encodedIds, index);
+            }
+            ids[index++] = id;
+            // skip the closing bracket and the separator (if any)
+            position++;
+            if (position < length) {
+                if (encodedIds.charAt(position) != ',' || position == length - 1) {
+                    throw newFormatException(encodedIds, index);
+                }
+                position++;
+            }
+        }
+        return ids;
+    }
+
+    private static IllegalArgumentException newFormatException(CharSequence encodedIds, int index) {
+        return new IllegalArgumentException("The ids column not follow the pattern at index " +
+                index + ". Content: " + encodedIds);
+    }
+
+    /**
+     * Read-only view over the content of the internal buffer that avoids the creation of a new
+     * string for each row.
+     */
+    private class BufferSequence implements CharSequence {
+
+        private int mLength;
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mBuffer.data[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(mBuffer.data, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(mBuffer.data, 0, mLength);
+        }
+    }
+}
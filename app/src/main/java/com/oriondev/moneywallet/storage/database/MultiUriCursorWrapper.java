@@ -30,6 +30,8 @@ import android.os.Build;
 import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This class works as wrapper on top of {@link Cursor}.
@@ -54,6 +56,8 @@ public class MultiUriCursorWrapper extends CursorWrapper {
 
     private final LinkedHashSet<Uri> mChangedByUris = new LinkedHashSet<>();
 
+    private long mLastGeneration = -1L;
+
     private final ContentObservable mContentObservable = new ContentObservable();
 
     @Override
@@ -124,6 +128,9 @@ public class MultiUriCursorWrapper extends CursorWrapper {
     @SuppressWarnings("deprecation")
     private void onChange(boolean selfChange, Uri uri) {
         synchronized (mSelfObserverLock) {
+            if (!selfChange && !isDispatchRequired(uri)) {
+                return;
+            }
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
                 mContentObservable.dispatchChange(selfChange, uri);
             } else {
@@ -142,6 +149,32 @@ public class MultiUriCursorWrapper extends CursorWrapper {
         }
     }
 
+    /**
+     * Check if a change dispatched by the {@link DataChangeDispatcher} should be forwarded to the
+     * observers: a single dispatch can notify more than one of the observed uris but the observers
+     * only need to reload once, and only if one of the observed tables has been changed.
+     * @param uri that has been notified.
+     * @return true if the change should be dispatched.
+     */
+    private boolean isDispatchRequired(Uri uri) {
+        long generation = DataChangeDispatcher.getGeneration(uri);
+        if (generation == -1L) {
+            return true;
+        }
+        if (generation == mLastGeneration) {
+            return false;
+        }
+        Set<String> changedTables = DataChangeDispatcher.getChangedTables(uri);
+        for (Uri notifyUri : mNotifyUris) {
+            List<String> segments = notifyUri.getPathSegments();
+            if (!segments.isEmpty() && changedTables.contains(segments.get(0))) {
+                mLastGeneration = generation;
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void setNotificationUri(ContentResolver contentResolver, Uri notifyUri) {
         synchronized (mSelfObserverLock) {
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class executes many queries at the same time using a small pool of threads. The returned
+ * cursors can be read immediately: each cursor is filled by its worker while the previous ones
+ * are consumed, so the rows of a table are already in memory when the consumer reaches it.
+ * The queries are started in the same order they are submitted, so the consumer should read the
+ * cursors in the same order to never wait for a query that is not started yet.
+ */
+public class ParallelTableReader {
+
+    private static final int MAX_THREADS = 4;
+
+    private final ExecutorService mExecutor;
+    private final List<Cursor> mCursors = new ArrayList<>();
+
+    public ParallelTableReader() {
+        this(getDefaultThreadCount());
+    }
+
+    public ParallelTableReader(int threadCount) {
+        mExecutor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    /**
+     * The database keeps a limited pool of connections for the readers: more threads than
+     * connections would only wait for each other.
+     * @return the number of threads used by default.
+     */
+    public static int getDefaultThreadCount() {
+        return Math.max(2, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Submit a new query to the pool of workers.
+     * @param query that returns the cursor to read: it is executed by a worker thread.
+     * @return a forward-only cursor that contains the result of the query. If the query fails,
+     * the cursor throws an {@link android.database.sqlite.SQLiteException} when it is read.
+     */
+    public Cursor read(final Callable<Cursor> query) {
+        final PrefetchCursor cursor = new PrefetchCursor();
+        mCursors.add(cursor);
+        mExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                cursor.fill(query);
+            }
+
+        });
+        return cursor;
+    }
+
+    /**
+     * Release all the cursors (even if they are still filled) and stop the workers.
+     */
+    public void close() {
+        for (Cursor cursor : mCursors) {
+            cursor.close();
+        }
+        mCursors.clear();
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward-only cursor that is filled by a worker thread: the worker executes the query and copies
+ * the rows inside blocks of a bounded queue, while the consumer reads the rows of the previous
+ * blocks. The index of each column is resolved only once for the whole cursor.
+ */
+/*package-local*/ class PrefetchCursor extends AbstractCursor {
+
+    private static final int BLOCK_SIZE = 256;
+    private static final int MAX_PENDING_BLOCKS = 4;
+    private static final long OFFER_TIMEOUT = 100L;
+
+    private static final Object[][] EMPTY_BLOCK = new Object[0][];
+    private static final Object[][] END_OF_CURSOR = new Object[0][];
+
+    private final CountDownLatch mReady = new CountDownLatch(1);
+    private final BlockingQueue<Object[][]> mBlocks = new ArrayBlockingQueue<>(MAX_PENDING_BLOCKS);
+    private final Map<String, Integer> mColumnIndexes = new HashMap<>();
+
+    private String[] mColumnNames;
+    private int mCount;
+    private volatile RuntimeException mError;
+    private volatile boolean mReleased;
+
+    private Object[][] mBlock = EMPTY_BLOCK;
+    private int mBlockStart;
+
+    /**
+     * Execute the query and copy all the rows of the cursor. This method must be called by the
+     * worker thread: it returns when all the rows have been consumed or the cursor is closed.
+     * @param query that returns the cursor to read.
+     */
+    /*package-local*/ void fill(Callable<Cursor> query) {
+        Cursor cursor = null;
+        try {
+            cursor = query.call();
+            if (cursor != null) {
+                mColumnNames = cursor.getColumnNames();
+                mCount = cursor.getCount();
+            } else {
+                mColumnNames = new String[0];
+                mCount = 0;
+            }
+            for (int i = 0; i < mColumnNames.length; i++) {
+                mColumnIndexes.put(mColumnNames[i], i);
+            }
+            mReady.countDown();
+            if (cursor != null) {
+                copyRows(cursor);
+            }
+        } catch (Exception e) {
+            mError = e instanceof RuntimeException ? (RuntimeException) e : new SQLiteException(e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            mReady.countDown();
+            publish(END_OF_CURSOR);
+        }
+    }
+
+    private void copyRows(Cursor cursor) {
+        int columns = mColumnNames.length;
+        Object[][] block = new Object[Math.min(BLOCK_SIZE, mCount)][];
+        int index = 0;
+        int remaining = mCount;
+        while (remaining > 0 && !mReleased && cursor.moveToNext()) {
+            Object[] row = new Object[columns];
+            for (int column = 0; column < columns; column++) {
+                row[column] = readValue(cursor, column);
+            }
+            block[index++] = row;
+            remaining--;
+            if (index == block.length) {
+                if (!publish(block)) {
+                    return;
+                }
+                block = new Object[Math.min(BLOCK_SIZE, remaining)][];
+                index = 0;
+            }
+        }
+    }
+
+    private static Object readValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return null;
+        }
+    }
+
+    private boolean publish(Object[][] block) {
+        try {
+            // the consumer may stop reading the cursor: in this case it is released
+            while (!mBlocks.offer(block, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (mReleased) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void awaitReady() {
+        try {
+            mReady.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLiteException("Interrupted while waiting for the query", e);
+        }
+        if (mError != null) {
+            throw mError;
+        }
+    }
+
+    private Object[][] takeBlock() {
+        try {
+            Object[][] block = mBlocks.take();
+            if (block == END_OF_CURSOR) {
+                throw mError != null ? mError : new SQLiteException("The cursor has less rows than expected");
+            }
+            return block;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLiteException("Interrupted while reading the cursor", e);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        awaitReady();
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        awaitReady();
+        return mColumnNames;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        awaitReady();
+        Integer index = mColumnIndexes.get(columnName);
+        return index != null ? index : super.getColumnIndex(columnName);
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        if (newPosition < mBlockStart) {
+            // the rows of the previous blocks are not stored anymore
+            return false;
+        }
+        while (newPosition >= mBlockStart + mBlock.length) {
+            mBlockStart += mBlock.length;
+            mBlock = takeBlock();
+        }
+        return true;
+    }
+
+    private Object getValue(int column) {
+        if (mPos < mBlockStart || mPos >= mBlockStart + mBlock.length) {
+            throw new IllegalStateException("The cursor is not positioned on a valid row");
+        }
+        return mBlock[mPos - mBlockStart][column];
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = getValue(column);
+        if (value instanceof byte[]) {
+            return new String((byte[]) value);
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Object value = getValue(column);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value instanceof String ? parseLong((String) value) : 0L;
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        Object value = getValue(column);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value instanceof String ? parseDouble((String) value) : 0d;
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        Object value = getValue(column);
+        if (value instanceof String) {
+            return ((String) value).getBytes();
+        }
+        return (byte[]) value;
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = getValue(column);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof Long) {
+            return FIELD_TYPE_INTEGER;
+        } else if (value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof String) {
+            return FIELD_TYPE_STRING;
+        }
+        return FIELD_TYPE_BLOB;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return getValue(column) == null;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        mReleased = true;
+        mBlocks.clear();
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return (long) parseDouble(value);
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0d;
+        }
+    }
+}
@@ -22,15 +22,18 @@ package com.oriondev.moneywallet.storage.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.os.Build;
 import android.text.TextUtils;
 import android.util.SparseLongArray;
 
 import com.oriondev.moneywallet.model.CurrencyUnit;
 import com.oriondev.moneywallet.utils.CurrencyManager;
+import com.oriondev.moneywallet.utils.DateCodec;
 import com.oriondev.moneywallet.utils.DateUtils;
 import com.oriondev.moneywallet.utils.MoneyFormatter;
 
@@ -47,6 +50,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -61,17 +65,65 @@ import java.util.UUID;
 /*package-local*/ class SQLDatabase extends SQLiteOpenHelper {
 
     /*package-local*/ static final String DATABASE_NAME = "database.db";
-    private static final int DATABASE_VERSION = 3;
+    /*package-local*/ static final int DATABASE_VERSION = 11;
 
     private static final String ENABLE_FOREIGN_KEYS = "PRAGMA foreign_keys=ON";
+    private static final String ENABLE_RECURSIVE_TRIGGERS = "PRAGMA recursive_triggers=ON";
+
+    private static final String[] TRANSACTION_CATEGORY_COLUMNS = new String[] {
+            Contract.Transaction.CATEGORY_NAME,
+            Contract.Transaction.CATEGORY_ICON,
+            Contract.Transaction.CATEGORY_PARENT_ID,
+            Contract.Transaction.CATEGORY_TYPE,
+            Contract.Transaction.CATEGORY_TAG,
+            Contract.Transaction.CATEGORY_SHOW_REPORT
+    };
+
+    private static final String[] TRANSACTION_PLACE_COLUMNS = new String[] {
+            Contract.Transaction.PLACE_NAME,
+            Contract.Transaction.PLACE_ICON,
+            Contract.Transaction.PLACE_ADDRESS,
+            Contract.Transaction.PLACE_LATITUDE,
+            Contract.Transaction.PLACE_LONGITUDE,
+            Contract.Transaction.PLACE_TAG
+    };
+
+    private static final String[] TRANSACTION_EVENT_COLUMNS = new String[] {
+            Contract.Transaction.EVENT_NAME,
+            Contract.Transaction.EVENT_ICON,
+            Contract.Transaction.EVENT_NOTE,
+            Contract.Transaction.EVENT_START_DATE,
+            Contract.Transaction.EVENT_END_DATE,
+            Contract.Transaction.EVENT_TAG
+    };
+
+    private static final String[] TRANSACTION_PEOPLE_COLUMNS = new String[] {
+            Contract.Transaction.PEOPLE_IDS
+    };
+
+    private static final Map<String, String> TRANSACTION_SEARCH_COLUMNS = new HashMap<>();
+
+    static {
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.DESCRIPTION, Schema.TransactionSearch.DESCRIPTION);
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.NOTE, Schema.TransactionSearch.NOTE);
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.CATEGORY_NAME, Schema.TransactionSearch.CATEGORY);
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.EVENT_NAME, Schema.TransactionSearch.EVENT);
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.PLACE_NAME, Schema.TransactionSearch.PLACE);
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.DATE, Schema.TransactionSearch.DATE);
+        TRANSACTION_SEARCH_COLUMNS.put(Contract.Transaction.MONEY, Schema.TransactionSearch.MONEY);
+    }
 
     private final Context mContext;
     private boolean mCacheDeletedObjects;
+    private QueryListener mQueryListener;
 
     /*package-local*/ SQLDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
         mContext = context;
         mCacheDeletedObjects = true;
+        // the write ahead log allows the readers to use more than one connection at the same
+        // time (for example when the tables are exported in parallel) without blocking the writer
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
@@ -84,9 +136,32 @@ import java.util.UUID;
         mCacheDeletedObjects = cacheEnabled;
     }
 
+    /**
+     * The listener receives the sql statement of each query executed through the sub queries:
+     * it is used by the tests to check the query plan of the real queries.
+     * @param queryListener to notify or null.
+     */
+    /*package-local*/ void setQueryListener(QueryListener queryListener) {
+        mQueryListener = queryListener;
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // create all tables
+        createTables(db);
+        createIndexes(db);
+        // create all triggers to ensure data consistency
+        createTriggers(db);
+        // insert default items
+        addSystemCategories(mContext, db);
+    }
+
+    /**
+     * Create all the tables of the last version of the database. The content of the
+     * materialized tables is not computed and no trigger is created.
+     *
+     * @param db where the tables should be created.
+     */
+    /*package-local*/ static void createTables(SQLiteDatabase db) {
         db.execSQL(Schema.CREATE_TABLE_CURRENCY);
         db.execSQL(Schema.CREATE_TABLE_WALLET);
         db.execSQL(Schema.CREATE_TABLE_CATEGORY);
@@ -110,10 +185,54 @@ import java.util.UUID;
         db.execSQL(Schema.CREATE_TABLE_ATTACHMENT);
         db.execSQL(Schema.CREATE_TABLE_TRANSACTION_ATTACHMENT);
         db.execSQL(Schema.CREATE_TABLE_TRANSFER_ATTACHMENT);
-        // create all triggers to ensure data consistency
-        // TODO [low] create triggers
-        // insert default items
-        addSystemCategories(db);
+        db.execSQL(Schema.CREATE_TABLE_DELETED_ITEM);
+        db.execSQL(Schema.CREATE_TABLE_WALLET_BALANCE);
+        db.execSQL(Schema.CREATE_TABLE_DAILY_TOTAL);
+        db.execSQL(Schema.CREATE_TABLE_BUDGET_PROGRESS);
+        db.execSQL(Schema.CREATE_TABLE_TRANSACTION_SEARCH);
+    }
+
+    /**
+     * Create all the secondary indexes of the tables. When a large amount of rows is going to
+     * be inserted it is faster to create the indexes at the end of the procedure.
+     *
+     * @param db where the indexes should be created.
+     */
+    /*package-local*/ static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRANSACTION_DATE_INDEX);
+        createTransactionIndexes(db);
+        createTransferIndexes(db);
+        db.execSQL(Schema.CREATE_TRANSACTION_PEOPLE_PERSON_INDEX);
+        db.execSQL(Schema.CREATE_DELETED_ITEM_TIME_INDEX);
+        db.execSQL(Schema.CREATE_ATTACHMENT_FILE_INDEX);
+    }
+
+    /**
+     * Create all the triggers that keep the materialized tables aligned with the content of
+     * the transactions table and the triggers that record the deleted items.
+     *
+     * @param db where the triggers should be created.
+     */
+    /*package-local*/ static void createTriggers(SQLiteDatabase db) {
+        createWalletBalanceTriggers(db);
+        createDailyTotalTriggers(db);
+        createBudgetProgressTriggers(db);
+        createTransactionSearchTriggers(db);
+        createDeletedItemTriggers(db);
+    }
+
+    /**
+     * Compute the content of all the materialized tables starting from the content of the
+     * other tables. The materialized tables must be empty and the triggers must not be created
+     * yet, otherwise the rows will be counted twice.
+     *
+     * @param db where the materialized tables should be filled.
+     */
+    /*package-local*/ static void fillMaterializedTables(SQLiteDatabase db) {
+        db.execSQL(Schema.FILL_WALLET_BALANCES);
+        db.execSQL(Schema.FILL_DAILY_TOTALS);
+        db.execSQL(Schema.FILL_BUDGET_PROGRESS);
+        db.execSQL(Schema.FILL_TRANSACTION_SEARCH);
     }
 
     @Override
@@ -124,6 +243,9 @@ import java.util.UUID;
         } else {
             db.execSQL(ENABLE_FOREIGN_KEYS);
         }
+        // rows replaced on conflict (sync provider) must fire the delete triggers
+        // otherwise the materialized tables will not be updated
+        db.execSQL(ENABLE_RECURSIVE_TRIGGERS);
     }
 
     @Override
@@ -146,6 +268,54 @@ import java.util.UUID;
             db.execSQL(Schema.CREATE_WALLET_INDEX_COLUMN);
             db.execSQL(Schema.CREATE_CATEGORY_INDEX_COLUMN);
         }
+        if (oldVersion < 4) {
+            // the balance of each wallet is now stored inside a materialized table that is
+            // kept updated by triggers: it must be filled with the existing transactions.
+            db.execSQL(Schema.CREATE_TABLE_WALLET_BALANCE);
+            db.execSQL(Schema.CREATE_TRANSACTION_DATE_INDEX);
+            createWalletBalanceTriggers(db);
+            rebuildWalletBalances(db);
+        }
+        if (oldVersion < 5) {
+            // the overview charts are now computed from a table that contains the totals of
+            // each day: it must be filled with the existing transactions.
+            db.execSQL(Schema.CREATE_TABLE_DAILY_TOTAL);
+            createDailyTotalTriggers(db);
+            rebuildDailyTotals(db);
+        }
+        if (oldVersion < 6) {
+            // the most frequent queries filter the transactions by one of the foreign keys
+            // and by date: these indexes let sqlite avoid a full scan of the table.
+            createTransactionIndexes(db);
+        }
+        if (oldVersion < 7) {
+            // the progress of the budgets is now stored inside a materialized table that is
+            // kept updated by triggers: it must be filled with the existing transactions.
+            db.execSQL(Schema.CREATE_TABLE_BUDGET_PROGRESS);
+            createTransferIndexes(db);
+            createBudgetProgressTriggers(db);
+            rebuildBudgetProgress(db);
+        }
+        if (oldVersion < 8) {
+            // the transactions of a person are filtered through the relation table
+            db.execSQL(Schema.CREATE_TRANSACTION_PEOPLE_PERSON_INDEX);
+        }
+        if (oldVersion < 9) {
+            // the search is now performed using a full-text index of the transactions
+            db.execSQL(Schema.CREATE_TABLE_TRANSACTION_SEARCH);
+            createTransactionSearchTriggers(db);
+            rebuildTransactionSearch(db);
+        }
+        if (oldVersion < 10) {
+            // the deletions are recorded to let the incremental backups propagate them
+            db.execSQL(Schema.CREATE_TABLE_DELETED_ITEM);
+            db.execSQL(Schema.CREATE_DELETED_ITEM_TIME_INDEX);
+            createDeletedItemTriggers(db);
+        }
+        if (oldVersion < 11) {
+            // the attachment files are shared between the attachments with the same content
+            db.execSQL(Schema.CREATE_ATTACHMENT_FILE_INDEX);
+        }
     }
 
     @Override
@@ -153,18 +323,253 @@ import java.util.UUID;
 
     }
 
+    private static void createTransactionIndexes(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRANSACTION_WALLET_INDEX);
+        db.execSQL(Schema.CREATE_TRANSACTION_CATEGORY_INDEX);
+        db.execSQL(Schema.CREATE_TRANSACTION_EVENT_INDEX);
+        db.execSQL(Schema.CREATE_TRANSACTION_DEBT_INDEX);
+        db.execSQL(Schema.CREATE_TRANSACTION_SAVING_INDEX);
+        db.execSQL(Schema.CREATE_TRANSACTION_RECURRENCE_INDEX);
+    }
+
+    private static void createTransferIndexes(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRANSFER_FROM_INDEX);
+        db.execSQL(Schema.CREATE_TRANSFER_TO_INDEX);
+    }
+
+    private static void createWalletBalanceTriggers(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRIGGER_WALLET_BALANCE_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_WALLET_BALANCE_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_WALLET_BALANCE_DELETE);
+    }
+
+    private static void createDailyTotalTriggers(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRIGGER_DAILY_TOTAL_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_DAILY_TOTAL_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_DAILY_TOTAL_DELETE);
+    }
+
+    private static void createBudgetProgressTriggers(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_BEFORE_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_AFTER_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_DELETE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_COUNTERPART_BEFORE_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_COUNTERPART_AFTER_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_BEFORE_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_AFTER_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_BEFORE_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_AFTER_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_BEFORE_DELETE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_AFTER_DELETE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_WALLET_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_WALLET_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_WALLET_DELETE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_WALLET_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_BUDGET_PROGRESS_CATEGORY_UPDATE);
+    }
+
+    private static void createTransactionSearchTriggers(SQLiteDatabase db) {
+        db.execSQL(Schema.CREATE_TRIGGER_TRANSACTION_SEARCH_INSERT);
+        db.execSQL(Schema.CREATE_TRIGGER_TRANSACTION_SEARCH_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_TRANSACTION_SEARCH_DELETE);
+        db.execSQL(Schema.CREATE_TRIGGER_TRANSACTION_SEARCH_CATEGORY_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_TRANSACTION_SEARCH_EVENT_UPDATE);
+        db.execSQL(Schema.CREATE_TRIGGER_TRANSACTION_SEARCH_PLACE_UPDATE);
+    }
+
+    private static void createDeletedItemTriggers(SQLiteDatabase db) {
+        for (String table : Schema.DELETED_ITEM_TABLES) {
+            db.execSQL(Schema.getCreateDeletedItemTrigger(table));
+        }
+    }
+
+    /**
+     * Drop the content of the materialized wallet balance table and compute it again from
+     * scratch using the transactions table. The operation is atomic.
+     *
+     * @param db where the balances should be rebuilt.
+     */
+    private void rebuildWalletBalances(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL(Schema.CLEAR_WALLET_BALANCES);
+            db.execSQL(Schema.FILL_WALLET_BALANCES);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compare the materialized wallet balances with the ones computed from the transactions
+     * table and rebuild them if they are not aligned. This method performs a full scan of the
+     * transactions table so it should be called only when the database has been replaced or
+     * modified outside the standard write paths (for example after a backup restore).
+     *
+     * @return true if the balances were already consistent, false if a rebuild was necessary.
+     */
+    /*package-local*/ boolean verifyWalletBalances() {
+        SQLiteDatabase db = getWritableDatabase();
+        SparseLongArray expected = new SparseLongArray();
+        Cursor cursor = db.rawQuery(Schema.COMPUTE_WALLET_BALANCES, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                expected.put(cursor.getInt(0), cursor.getLong(1));
+            }
+            cursor.close();
+        }
+        boolean consistent = true;
+        String[] projection = new String[] {Schema.WalletBalance.WALLET, Schema.WalletBalance.MONEY};
+        cursor = db.query(Schema.WalletBalance.TABLE, projection, null, null, null, null, null);
+        if (cursor != null) {
+            int found = 0;
+            while (consistent && cursor.moveToNext()) {
+                long money = cursor.getLong(1);
+                int index = expected.indexOfKey(cursor.getInt(0));
+                if (index >= 0) {
+                    consistent = expected.valueAt(index) == money;
+                    found++;
+                } else {
+                    consistent = money == 0L;
+                }
+            }
+            consistent = consistent && found == expected.size();
+            cursor.close();
+        }
+        if (!consistent) {
+            rebuildWalletBalances(db);
+        }
+        return consistent;
+    }
+
+    /**
+     * Drop the content of the materialized daily total table and compute it again from
+     * scratch using the transactions table. The operation is atomic.
+     *
+     * @param db where the daily totals should be rebuilt.
+     */
+    private void rebuildDailyTotals(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL(Schema.CLEAR_DAILY_TOTALS);
+            db.execSQL(Schema.FILL_DAILY_TOTALS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compare the materialized daily totals with the ones computed from the transactions table
+     * and rebuild them if they are not aligned. As for {@link #verifyWalletBalances()}, this
+     * method performs a full scan of the transactions table.
+     *
+     * @return true if the daily totals were already consistent, false if a rebuild was necessary.
+     */
+    /*package-local*/ boolean verifyDailyTotals() {
+        SQLiteDatabase db = getWritableDatabase();
+        boolean consistent = DatabaseUtils.longForQuery(db, Schema.COUNT_MISALIGNED_DAILY_TOTALS, null) == 0L;
+        if (!consistent) {
+            rebuildDailyTotals(db);
+        }
+        return consistent;
+    }
+
+    /**
+     * Drop the content of the materialized budget progress table and compute it again from
+     * scratch using the budgets and the transactions tables. The operation is atomic.
+     *
+     * @param db where the budget progress should be rebuilt.
+     */
+    private void rebuildBudgetProgress(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL(Schema.CLEAR_BUDGET_PROGRESS);
+            db.execSQL(Schema.FILL_BUDGET_PROGRESS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compare the materialized budget progress with the one computed from the budgets and the
+     * transactions tables and rebuild it if it is not aligned. As for {@link #verifyWalletBalances()},
+     * this method performs a full scan of the transactions of the budgets.
+     *
+     * @return true if the budget progress was already consistent, false if a rebuild was necessary.
+     */
+    /*package-local*/ boolean verifyBudgetProgress() {
+        SQLiteDatabase db = getWritableDatabase();
+        boolean consistent = DatabaseUtils.longForQuery(db, Schema.COUNT_MISALIGNED_BUDGET_PROGRESS, null) == 0L;
+        if (!consistent) {
+            rebuildBudgetProgress(db);
+        }
+        return consistent;
+    }
+
+    /**
+     * Drop the content of the full-text index of the transactions and build it again from
+     * scratch. The operation is atomic.
+     *
+     * @param db where the index should be rebuilt.
+     */
+    private void rebuildTransactionSearch(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL(Schema.CLEAR_TRANSACTION_SEARCH);
+            db.execSQL(Schema.FILL_TRANSACTION_SEARCH);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compare the full-text index with the content of the transactions and rebuild it if it is
+     * not aligned. This method performs a full scan of both the tables.
+     *
+     * @return true if the index was already consistent, false if a rebuild was necessary.
+     */
+    /*package-local*/ boolean verifyTransactionSearch() {
+        SQLiteDatabase db = getWritableDatabase();
+        boolean consistent = DatabaseUtils.longForQuery(db, Schema.COUNT_MISALIGNED_TRANSACTION_SEARCH, null) == 0L;
+        if (!consistent) {
+            rebuildTransactionSearch(db);
+        }
+        return consistent;
+    }
+
+    /**
+     * Verify all the tables that are derived from the transactions table and rebuild the ones
+     * that are not aligned.
+     *
+     * @return true if all the tables were already consistent.
+     */
+    /*package-local*/ boolean verifyMaterializedTables() {
+        boolean walletBalances = verifyWalletBalances();
+        boolean dailyTotals = verifyDailyTotals();
+        boolean budgetProgress = verifyBudgetProgress();
+        boolean transactionSearch = verifyTransactionSearch();
+        return walletBalances && dailyTotals && budgetProgress && transactionSearch;
+    }
+
     /**
      * Insert system categories inside the database. If a system category is already there,
      * the operation is aborted. This method must be called whenever a new database is created
      * or an update is performed in order to keep the system list updated.
      *
+     * @param context used to retrieve the localized names of the categories.
      * @param db instance of the database to write.
      */
-    private void addSystemCategories(SQLiteDatabase db) {
+    /*package-local*/ static void addSystemCategories(Context context, SQLiteDatabase db) {
         for (SystemCategory category : SystemCategory.mSystemCategories) {
             ContentValues contentValues = new ContentValues();
-            contentValues.put(Schema.Category.NAME, category.getName(mContext));
-            contentValues.put(Schema.Category.ICON, category.getIcon(mContext));
+            contentValues.put(Schema.Category.NAME, category.getName(context));
+            contentValues.put(Schema.Category.ICON, category.getIcon(context));
             contentValues.put(Schema.Category.TYPE, Contract.CategoryType.SYSTEM.getValue());
             contentValues.put(Schema.Category.SHOW_REPORT, true);
             contentValues.put(Schema.Category.INDEX, 0);
@@ -392,14 +797,18 @@ import java.util.UUID;
                 Schema.Wallet.ARCHIVED + " AS " + Contract.Wallet.ARCHIVED + ", " +
                 Schema.Wallet.INDEX + " AS " + Contract.Wallet.INDEX + ", " +
                 Schema.Wallet.TAG + " AS " + Contract.Wallet.TAG + ", " +
-                "total_money AS " + Contract.Wallet.TOTAL_MONEY + " FROM " + Schema.Wallet.TABLE +
-                " LEFT JOIN (SELECT " + Schema.Transaction.WALLET + " AS _wallet," +
+                "(" + Schema.WalletBalance.MONEY + " - IFNULL(future_money, 0)) AS " + Contract.Wallet.TOTAL_MONEY +
+                " FROM " + Schema.Wallet.TABLE + " LEFT JOIN " + Schema.WalletBalance.TABLE + " ON " +
+                Schema.Wallet.ID + " = " + Schema.WalletBalance.TABLE + "." + Schema.WalletBalance.WALLET +
+                // the unary plus prevents sqlite from scanning the whole wallet index to avoid
+                // sorting the groups: the future transactions are found through the date index
+                " LEFT JOIN (SELECT " + Schema.Transaction.WALLET + " AS _future_wallet," +
                 " SUM(((" + Schema.Transaction.DIRECTION + " * 2) - 1) * " + Schema.Transaction.MONEY +
-                ") AS total_money FROM " + Schema.Transaction.TABLE + " AS t WHERE t."
+                ") AS future_money FROM " + Schema.Transaction.TABLE + " AS t WHERE t."
                 + Schema.Transaction.DELETED + " = 0 AND " + Schema.Transaction.CONFIRMED + " = 1 AND " +
-                Schema.Transaction.COUNT_IN_TOTAL + " = 1 AND DATETIME(" + Schema.Transaction.DATE +
-                ") <= DATETIME('now', 'localtime') GROUP BY _wallet) ON " + Schema.Wallet.ID +
-                " = _wallet WHERE " + Schema.Wallet.DELETED + " = 0";
+                Schema.Transaction.COUNT_IN_TOTAL + " = 1 AND " + Schema.Transaction.DATE +
+                " > DATETIME('now', 'localtime') GROUP BY +_future_wallet) ON " + Schema.Wallet.ID +
+                " = _future_wallet WHERE " + Schema.Wallet.DELETED + " = 0";
         return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder);
     }
 
@@ -636,19 +1045,284 @@ import java.util.UUID;
      * @return a cursor with zero or more rows.
      */
     /*package-local*/ Cursor getTransactions(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
-        String subQuery = "SELECT " +
-                "t." + Schema.Transaction.ID + " AS " + Contract.Transaction.ID + ", " +
+        return getTransactions(projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * This method is called by the content provider when the user is querying the database for a
+     * page of transactions. When the page is requested using a keyset (the date and the id of the
+     * last row of the previous page) the query is resolved using the indexes of the transactions
+     * table without materializing the rows that are not part of the page.
+     *
+     * @param projection column names that are requested to be part of the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param selectionArgs string array that may contains the arguments for the selection string.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @param limit string that may contains the max number of rows to return.
+     * @return a cursor with zero or more rows.
+     */
+    /*package-local*/ Cursor getTransactions(String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit) {
+        String subQuery = getTransactionsSubQuery(projection, selection, sortOrder);
+        return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder, limit);
+    }
+
+    /**
+     * This method is called by the content provider when the user is querying the number of
+     * transactions and the total amount of money of each day, grouped by currency. The selection
+     * is applied to the same columns of the transactions query. Only the transactions that are
+     * confirmed and that should be counted in total are considered in the sum of money: if
+     * there are none of them, the money column is null.
+     *
+     * @param selection string that may contains additional filters for the query.
+     * @param selectionArgs string array that may contains the arguments for the selection string.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @return a cursor with zero or more rows.
+     */
+    /*package-local*/ Cursor getTransactionDays(String selection, String[] selectionArgs, String sortOrder) {
+        String[] projection = new String[] {
+                "DATE(" + Contract.Transaction.DATE + ") AS " + Contract.TransactionDay.DAY,
+                Contract.Transaction.WALLET_CURRENCY + " AS " + Contract.TransactionDay.CURRENCY,
+                "COUNT(*) AS " + Contract.TransactionDay.COUNT,
+                "SUM(CASE WHEN " + Contract.Transaction.CONFIRMED + " = 1 AND " +
+                        Contract.Transaction.COUNT_IN_TOTAL + " = 1 THEN (CASE WHEN " +
+                        Contract.Transaction.DIRECTION + " = " + Contract.Direction.INCOME + " THEN " +
+                        Contract.Transaction.MONEY + " ELSE -" + Contract.Transaction.MONEY +
+                        " END) END) AS " + Contract.TransactionDay.MONEY
+        };
+        String groupBy = Contract.TransactionDay.DAY + ", " + Contract.TransactionDay.CURRENCY;
+        String subQuery = getTransactionsSubQuery(projection, selection, null);
+        return getReadableDatabase().query("(" + subQuery + ")", projection, selection, selectionArgs, groupBy, null, sortOrder);
+    }
+
+    /**
+     * This method is called by the content provider when the forecast of the wallets should be
+     * computed. The forecast starts from the current balance of the wallets and it contains
+     * the transactions that are already scheduled in the future and all the occurrences of the
+     * recurrences that will happen before the end day. Only the money that is confirmed and that
+     * should be counted in total is considered, as for the balance of the wallets.
+     *
+     * @param startDay first day of the forecast as epoch day (usually the current day).
+     * @param endDay last day of the forecast as epoch day.
+     * @return the forecast of all the wallets.
+     */
+    /*package-local*/ ForecastEngine.Forecast getForecast(long startDay, long endDay) {
+        ForecastEngine engine = new ForecastEngine(startDay, endDay);
+        SQLiteDatabase database = getReadableDatabase();
+        String[] projection = new String[] {
+                Contract.Wallet.ID,
+                Contract.Wallet.CURRENCY,
+                Contract.Wallet.COUNT_IN_TOTAL,
+                Contract.Wallet.TOTAL_MONEY
+        };
+        Cursor cursor = getWallets(projection, null, null, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                engine.addWallet(cursor.getLong(0), cursor.getString(1), cursor.getInt(2) == 1, cursor.getLong(3));
+            }
+            cursor.close();
+        }
+        String query = "SELECT " + Schema.Transaction.WALLET + ", DATE(" + Schema.Transaction.DATE + "), " +
+                "SUM(((" + Schema.Transaction.DIRECTION + " * 2) - 1) * " + Schema.Transaction.MONEY + ") FROM " +
+                Schema.Transaction.TABLE + " WHERE " + Schema.Transaction.DELETED + " = 0 AND " +
+                Schema.Transaction.CONFIRMED + " = 1 AND " + Schema.Transaction.COUNT_IN_TOTAL + " = 1 AND " +
+                Schema.Transaction.DATE + " > DATETIME('now', 'localtime') GROUP BY 1, 2";
+        cursor = database.rawQuery(query, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                engine.addMoney(cursor.getLong(0), ForecastEngine.parseEpochDay(cursor.getString(1)), cursor.getLong(2));
+            }
+            cursor.close();
+        }
+        String endDate = DateCodec.formatEpochDay(endDay);
+        query = "SELECT " + Schema.RecurrentTransaction.WALLET + ", " + Schema.RecurrentTransaction.DIRECTION + ", " +
+                Schema.RecurrentTransaction.MONEY + ", " + Schema.RecurrentTransaction.RULE + ", " +
+                Schema.RecurrentTransaction.NEXT_OCCURRENCE + " FROM " + Schema.RecurrentTransaction.TABLE +
+                " WHERE " + Schema.RecurrentTransaction.DELETED + " = 0 AND " + Schema.RecurrentTransaction.CONFIRMED +
+                " = 1 AND " + Schema.RecurrentTransaction.COUNT_IN_TOTAL + " = 1 AND " +
+                Schema.RecurrentTransaction.NEXT_OCCURRENCE + " <= ?";
+        cursor = database.rawQuery(query, new String[] {endDate});
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                long money = cursor.getInt(1) == Contract.Direction.INCOME ? cursor.getLong(2) : -cursor.getLong(2);
+                engine.addRecurrentTransaction(cursor.getLong(0), money, cursor.getString(3), ForecastEngine.parseDateTime(cursor.getString(4)));
+            }
+            cursor.close();
+        }
+        query = "SELECT " + Schema.RecurrentTransfer.WALLET_FROM + ", " + Schema.RecurrentTransfer.MONEY_FROM + ", " +
+                Schema.RecurrentTransfer.MONEY_TAX + ", " + Schema.RecurrentTransfer.WALLET_TO + ", " +
+                Schema.RecurrentTransfer.MONEY_TO + ", " + Schema.RecurrentTransfer.RULE + ", " +
+                Schema.RecurrentTransfer.NEXT_OCCURRENCE + " FROM " + Schema.RecurrentTransfer.TABLE +
+                " WHERE " + Schema.RecurrentTransfer.DELETED + " = 0 AND " + Schema.RecurrentTransfer.CONFIRMED +
+                " = 1 AND " + Schema.RecurrentTransfer.COUNT_IN_TOTAL + " = 1 AND " +
+                Schema.RecurrentTransfer.NEXT_OCCURRENCE + " <= ?";
+        cursor = database.rawQuery(query, new String[] {endDate});
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                // the tax is a separate expense of the source wallet
+                long moneyFrom = cursor.getLong(1) + cursor.getLong(2);
+                engine.addRecurrentTransfer(cursor.getLong(0), moneyFrom, cursor.getLong(3), cursor.getLong(4), cursor.getString(5), ForecastEngine.parseDateTime(cursor.getString(6)));
+            }
+            cursor.close();
+        }
+        return engine.build();
+    }
+
+    /**
+     * This method is called by the content provider when the user is searching the transactions
+     * that contain some text. The text is matched against the full-text index of the transactions
+     * and every word is matched as a prefix, so the results can be updated while the user types.
+     * The matching transactions are returned with a rank column (the number of matched tokens)
+     * and they have the same columns of the transactions query.
+     *
+     * @param query text typed by the user: if it does not contain any word all the transactions
+     *              are returned.
+     * @param columns transaction columns where the words should be searched (only the description,
+     *                the category name, the date, the money, the note, the event name and the
+     *                place name are indexed) or null to search in all of them.
+     * @param projection column names that are requested to be part of the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param selectionArgs string array that may contains the arguments for the selection string.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @param limit string that may contains the max number of rows to return.
+     * @return a cursor with zero or more rows.
+     */
+    /*package-local*/ Cursor searchTransactions(String query, String[] columns, String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit) {
+        String transactions = getTransactionsSubQuery(projection, selection, sortOrder);
+        List<String> phrases = getSearchPhrases(query);
+        if (phrases.isEmpty()) {
+            String subQuery = "SELECT t.*, 0 AS " + Contract.Transaction.SEARCH_RANK + " FROM (" + transactions + ") AS t";
+            return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder, limit);
+        }
+        List<String> searchColumns = getSearchColumns(columns);
+        List<String> arguments = new ArrayList<>();
+        // the rank is the number of matched tokens: each match is described by four integers
+        // inside the string returned by the offsets function of the fts module.
+        String offsets = "offsets(" + Schema.TransactionSearch.TABLE + ")";
+        StringBuilder builder = new StringBuilder("SELECT " + Schema.TransactionSearch.ID + ", (LENGTH(" +
+                offsets + ") - LENGTH(REPLACE(" + offsets + ", ' ', '')) + 1) / 4 AS _rank FROM " +
+                Schema.TransactionSearch.TABLE + " WHERE " + Schema.TransactionSearch.TABLE + " MATCH ?");
+        arguments.add(TextUtils.join(" ", phrases));
+        if (searchColumns != null) {
+            // every word must be found inside at least one of the requested columns
+            for (String phrase : phrases) {
+                builder.append(" AND " + Schema.TransactionSearch.ID + " IN (");
+                for (int i = 0; i < searchColumns.size(); i++) {
+                    if (i != 0) {
+                        builder.append(" UNION ");
+                    }
+                    builder.append("SELECT " + Schema.TransactionSearch.ID + " FROM " + Schema.TransactionSearch.TABLE +
+                            " WHERE " + searchColumns.get(i) + " MATCH ?");
+                    arguments.add(phrase);
+                }
+                builder.append(")");
+            }
+        }
+        // the join order is forced to look up the transactions by id from the matched rows
+        String subQuery = "SELECT t.*, s._rank AS " + Contract.Transaction.SEARCH_RANK + " FROM (" +
+                builder + ") AS s CROSS JOIN (" + transactions + ") AS t ON t." + Contract.Transaction.ID +
+                " = s." + Schema.TransactionSearch.ID;
+        if (selectionArgs != null) {
+            Collections.addAll(arguments, selectionArgs);
+        }
+        return queryFrom(subQuery, projection, selection, arguments.toArray(new String[arguments.size()]), sortOrder, limit);
+    }
+
+    /**
+     * This is an internal method used to convert the text typed by the user into a list of fts
+     * phrases, one for each word. Each word is split into the same tokens generated by the fts
+     * tokenizer (sequences of ascii letters and digits or non ascii characters) and the last
+     * token is matched as a prefix: for example '2018-01' becomes the phrase "2018 01*".
+     *
+     * @param query text typed by the user.
+     * @return a list of phrases, empty if the text does not contain any token.
+     */
+    private static List<String> getSearchPhrases(String query) {
+        List<String> phrases = new ArrayList<>();
+        if (query == null) {
+            return phrases;
+        }
+        StringBuilder phrase = new StringBuilder();
+        boolean separator = false;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isWhitespace(c)) {
+                if (phrase.length() > 0) {
+                    phrases.add("\"" + phrase + "*\"");
+                    phrase.setLength(0);
+                }
+                separator = false;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c >= 128) {
+                if (separator && phrase.length() > 0) {
+                    phrase.append(' ');
+                }
+                phrase.append(c);
+                separator = false;
+            } else {
+                separator = true;
+            }
+        }
+        return phrases;
+    }
+
+    /**
+     * This is an internal method used to map the transaction columns requested by the caller
+     * to the columns of the full-text index.
+     *
+     * @param columns transaction columns or null.
+     * @return the list of the indexed columns or null if all of them should be used.
+     */
+    private static List<String> getSearchColumns(String[] columns) {
+        if (columns == null || columns.length == 0) {
+            return null;
+        }
+        List<String> searchColumns = new ArrayList<>();
+        for (String column : columns) {
+            String searchColumn = TRANSACTION_SEARCH_COLUMNS.get(column);
+            if (searchColumn != null && !searchColumns.contains(searchColumn)) {
+                searchColumns.add(searchColumn);
+            }
+        }
+        if (searchColumns.isEmpty() || searchColumns.size() == TRANSACTION_SEARCH_COLUMNS.size()) {
+            return null;
+        }
+        return searchColumns;
+    }
+
+    /**
+     * This is an internal method used to build the query of the transactions. The query is
+     * planned using the columns that are referenced by the caller: the categories, the places,
+     * the events and the people are joined only if at least one of their columns is part of the
+     * projection, of the selection or of the sort order (a null projection means all the columns).
+     * The people of each transaction are collected by a correlated sub query: in this way the
+     * query does not need to be grouped and sqlite is able to flatten it inside the outer query,
+     * using the indexes of the transactions table to resolve the filters, the sort order and
+     * the limit.
+     *
+     * @param projection column names that are requested to be part of the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @return the query that acts as a table of transactions.
+     */
+    private String getTransactionsSubQuery(String[] projection, String selection, String sortOrder) {
+        boolean joinCategory = isAnyColumnReferenced(TRANSACTION_CATEGORY_COLUMNS, projection, selection, sortOrder);
+        boolean joinPlace = isAnyColumnReferenced(TRANSACTION_PLACE_COLUMNS, projection, selection, sortOrder);
+        boolean joinEvent = isAnyColumnReferenced(TRANSACTION_EVENT_COLUMNS, projection, selection, sortOrder);
+        boolean joinPeople = isAnyColumnReferenced(TRANSACTION_PEOPLE_COLUMNS, projection, selection, sortOrder);
+        StringBuilder builder = new StringBuilder("SELECT ");
+        builder.append("t." + Schema.Transaction.ID + " AS " + Contract.Transaction.ID + ", " +
                 "t." + Schema.Transaction.MONEY + " AS " + Contract.Transaction.MONEY + ", " +
                 "t." + Schema.Transaction.DATE + " AS " + Contract.Transaction.DATE + ", " +
                 "t." + Schema.Transaction.DESCRIPTION + " AS " + Contract.Transaction.DESCRIPTION + ", " +
-                "t." + Schema.Transaction.CATEGORY + " AS " + Contract.Transaction.CATEGORY_ID + ", " +
-                "c." + Schema.Category.NAME + " AS " + Contract.Transaction.CATEGORY_NAME + ", " +
-                "c." + Schema.Category.ICON + " AS " + Contract.Transaction.CATEGORY_ICON + ", " +
-                "c." + Schema.Category.PARENT + " AS " + Contract.Transaction.CATEGORY_PARENT_ID + ", " +
-                "c." + Schema.Category.TYPE + " AS " + Contract.Transaction.CATEGORY_TYPE + ", " +
-                "c." + Schema.Category.TAG + " AS " + Contract.Transaction.CATEGORY_TAG + ", " +
-                "c." + Schema.Category.SHOW_REPORT + " AS " + Contract.Transaction.CATEGORY_SHOW_REPORT + ", " +
-                "t." + Schema.Transaction.DIRECTION + " AS " + Contract.Transaction.DIRECTION + ", " +
+                "t." + Schema.Transaction.CATEGORY + " AS " + Contract.Transaction.CATEGORY_ID + ", ");
+        if (joinCategory) {
+            builder.append("c." + Schema.Category.NAME + " AS " + Contract.Transaction.CATEGORY_NAME + ", " +
+                    "c." + Schema.Category.ICON + " AS " + Contract.Transaction.CATEGORY_ICON + ", " +
+                    "c." + Schema.Category.PARENT + " AS " + Contract.Transaction.CATEGORY_PARENT_ID + ", " +
+                    "c." + Schema.Category.TYPE + " AS " + Contract.Transaction.CATEGORY_TYPE + ", " +
+                    "c." + Schema.Category.TAG + " AS " + Contract.Transaction.CATEGORY_TAG + ", " +
+                    "c." + Schema.Category.SHOW_REPORT + " AS " + Contract.Transaction.CATEGORY_SHOW_REPORT + ", ");
+        }
+        builder.append("t." + Schema.Transaction.DIRECTION + " AS " + Contract.Transaction.DIRECTION + ", " +
                 "t." + Schema.Transaction.TYPE + " AS " + Contract.Transaction.TYPE + ", " +
                 "t." + Schema.Transaction.WALLET + " AS " + Contract.Transaction.WALLET_ID + ", " +
                 "w." + Schema.Wallet.NAME + " AS " + Contract.Transaction.WALLET_NAME + ", " +
@@ -657,41 +1331,131 @@ import java.util.UUID;
                 "w." + Schema.Wallet.COUNT_IN_TOTAL + " AS " + Contract.Transaction.WALLET_COUNT_IN_TOTAL + ", " +
                 "w." + Schema.Wallet.ARCHIVED + " AS " + Contract.Transaction.WALLET_ARCHIVED + ", " +
                 "w." + Schema.Wallet.TAG + " AS " + Contract.Transaction.WALLET_TAG + ", " +
-                "t." + Schema.Transaction.PLACE + " AS " + Contract.Transaction.PLACE_ID + ", " +
-                "p." + Schema.Place.NAME + " AS " + Contract.Transaction.PLACE_NAME + ", " +
-                "p." + Schema.Place.ICON + " AS " + Contract.Transaction.PLACE_ICON + ", " +
-                "p." + Schema.Place.ADDRESS + " AS " + Contract.Transaction.PLACE_ADDRESS + ", " +
-                "p." + Schema.Place.LATITUDE + " AS " + Contract.Transaction.PLACE_LATITUDE + ", " +
-                "p." + Schema.Place.LONGITUDE + " AS " + Contract.Transaction.PLACE_LONGITUDE + ", " +
-                "p." + Schema.Place.TAG + " AS " + Contract.Transaction.PLACE_TAG + ", " +
-                "t." + Schema.Transaction.EVENT + " AS " + Contract.Transaction.EVENT_ID + ", " +
-                "e." + Schema.Event.NAME + " AS " + Contract.Transaction.EVENT_NAME + ", " +
-                "e." + Schema.Event.ICON + " AS " + Contract.Transaction.EVENT_ICON + ", " +
-                "e." + Schema.Event.NOTE + " AS " + Contract.Transaction.EVENT_NOTE + ", " +
-                "e." + Schema.Event.START_DATE + " AS " + Contract.Transaction.EVENT_START_DATE + ", " +
-                "e." + Schema.Event.END_DATE + " AS " + Contract.Transaction.EVENT_END_DATE + ", " +
-                "e." + Schema.Event.TAG + " AS " + Contract.Transaction.EVENT_TAG + ", " +
-                "t." + Schema.Transaction.NOTE + " AS " + Contract.Transaction.NOTE + ", " +
+                "t." + Schema.Transaction.PLACE + " AS " + Contract.Transaction.PLACE_ID + ", ");
+        if (joinPlace) {
+            builder.append("p." + Schema.Place.NAME + " AS " + Contract.Transaction.PLACE_NAME + ", " +
+                    "p." + Schema.Place.ICON + " AS " + Contract.Transaction.PLACE_ICON + ", " +
+                    "p." + Schema.Place.ADDRESS + " AS " + Contract.Transaction.PLACE_ADDRESS + ", " +
+                    "p." + Schema.Place.LATITUDE + " AS " + Contract.Transaction.PLACE_LATITUDE + ", " +
+                    "p." + Schema.Place.LONGITUDE + " AS " + Contract.Transaction.PLACE_LONGITUDE + ", " +
+                    "p." + Schema.Place.TAG + " AS " + Contract.Transaction.PLACE_TAG + ", ");
+        }
+        builder.append("t." + Schema.Transaction.EVENT + " AS " + Contract.Transaction.EVENT_ID + ", ");
+        if (joinEvent) {
+            builder.append("e." + Schema.Event.NAME + " AS " + Contract.Transaction.EVENT_NAME + ", " +
+                    "e." + Schema.Event.ICON + " AS " + Contract.Transaction.EVENT_ICON + ", " +
+                    "e." + Schema.Event.NOTE + " AS " + Contract.Transaction.EVENT_NOTE + ", " +
+                    "e." + Schema.Event.START_DATE + " AS " + Contract.Transaction.EVENT_START_DATE + ", " +
+                    "e." + Schema.Event.END_DATE + " AS " + Contract.Transaction.EVENT_END_DATE + ", " +
+                    "e." + Schema.Event.TAG + " AS " + Contract.Transaction.EVENT_TAG + ", ");
+        }
+        builder.append("t." + Schema.Transaction.NOTE + " AS " + Contract.Transaction.NOTE + ", " +
                 "t." + Schema.Transaction.DEBT + " AS " + Contract.Transaction.DEBT_ID + ", " +
                 "t." + Schema.Transaction.SAVING + " AS " + Contract.Transaction.SAVING_ID + ", " +
                 "t." + Schema.Transaction.RECURRENCE + " AS " + Contract.Transaction.RECURRENCE_ID + ", " +
                 "t." + Schema.Transaction.CONFIRMED + " AS " + Contract.Transaction.CONFIRMED + ", " +
                 "t." + Schema.Transaction.COUNT_IN_TOTAL + " AS " + Contract.Transaction.COUNT_IN_TOTAL + ", " +
-                "t." + Schema.Transaction.TAG + " AS " + Contract.Transaction.TAG + ", " +
-                "GROUP_CONCAT('<' || pe." + Schema.Person.ID + " || '>') AS " + Contract.Transaction.PEOPLE_IDS + " " +
+                "t." + Schema.Transaction.TAG + " AS " + Contract.Transaction.TAG);
+        if (joinPeople) {
+            builder.append(", (SELECT GROUP_CONCAT('<' || pe." + Schema.Person.ID + " || '>') FROM " +
+                    Schema.TransactionPeople.TABLE + " AS tp JOIN " + Schema.Person.TABLE + " AS pe ON tp." +
+                    Schema.TransactionPeople.PERSON + " = pe." + Schema.Person.ID + " AND pe." +
+                    Schema.Person.DELETED + " = 0 WHERE tp." + Schema.TransactionPeople.TRANSACTION + " = t." +
+                    Schema.Transaction.ID + " AND tp." + Schema.TransactionPeople.DELETED + " = 0) AS " +
+                    Contract.Transaction.PEOPLE_IDS);
+        }
+        builder.append(" FROM " + Schema.Transaction.TABLE + " AS t");
+        if (joinCategory) {
+            builder.append(" LEFT JOIN " + Schema.Category.TABLE + " AS c ON t." + Schema.Transaction.CATEGORY +
+                    " = c." + Schema.Category.ID + " AND c." + Schema.Category.DELETED + " = 0");
+        }
+        builder.append(" JOIN " + Schema.Wallet.TABLE + " AS w ON t." + Schema.Transaction.WALLET + " = w." +
+                Schema.Wallet.ID + " AND w." + Schema.Wallet.DELETED + " = 0");
+        if (joinPlace) {
+            builder.append(" LEFT JOIN " + Schema.Place.TABLE + " AS p ON t." + Schema.Transaction.PLACE +
+                    " = " + Schema.Place.ID + " AND p." + Schema.Place.DELETED + " = 0");
+        }
+        if (joinEvent) {
+            builder.append(" LEFT JOIN " + Schema.Event.TABLE + " AS e ON t." + Schema.Transaction.EVENT +
+                    " = e." + Schema.Event.ID + " AND e." + Schema.Event.DELETED + " = 0");
+        }
+        builder.append(" WHERE t." + Schema.Transaction.DELETED + " = 0");
+        return builder.toString();
+    }
+
+    /**
+     * This is an internal method used to check if at least one of the columns is referenced by
+     * the caller of a query. The selection and the sort order are checked as plain strings, so
+     * the method may return true also when the column is not really used (never the opposite).
+     *
+     * @param columns that should be checked.
+     * @param projection column names that are requested to be part of the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @return true if at least one of the columns is referenced.
+     */
+    private boolean isAnyColumnReferenced(String[] columns, String[] projection, String selection, String sortOrder) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : columns) {
+            for (String requested : projection) {
+                if (requested != null && requested.contains(column)) {
+                    return true;
+                }
+            }
+            if ((selection != null && selection.contains(column)) || (sortOrder != null && sortOrder.contains(column))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method is called by the content provider when the user is querying the totals of the
+     * transactions grouped by day. The totals are read from the materialized daily table for all
+     * the past days while the transactions of the current day are read directly from the
+     * transactions table to exclude the ones that are in the future. Each row contains the total
+     * of a single day, wallet, category and direction.
+     *
+     * @param projection column names to include in the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param selectionArgs string array that may contains the arguments of the selection string.
+     * @param sortOrder string that may contains column names to use to sort the cursor.
+     * @return a cursor with zero or more rows.
+     */
+    /*package-local*/ Cursor getDailyTotals(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        String subQuery = "SELECT " +
+                "d." + Schema.DailyTotal.DAY + " AS " + Contract.DailyTotal.DAY + ", " +
+                "d." + Schema.DailyTotal.WALLET + " AS " + Contract.DailyTotal.WALLET_ID + ", " +
+                "w." + Schema.Wallet.CURRENCY + " AS " + Contract.DailyTotal.WALLET_CURRENCY + ", " +
+                "w." + Schema.Wallet.COUNT_IN_TOTAL + " AS " + Contract.DailyTotal.WALLET_COUNT_IN_TOTAL + ", " +
+                "d." + Schema.DailyTotal.CATEGORY + " AS " + Contract.DailyTotal.CATEGORY_ID + ", " +
+                "c." + Schema.Category.PARENT + " AS " + Contract.DailyTotal.CATEGORY_PARENT_ID + ", " +
+                "c." + Schema.Category.SHOW_REPORT + " AS " + Contract.DailyTotal.CATEGORY_SHOW_REPORT + ", " +
+                "d." + Schema.DailyTotal.DIRECTION + " AS " + Contract.DailyTotal.DIRECTION + ", " +
+                "d." + Schema.DailyTotal.MONEY + " AS " + Contract.DailyTotal.MONEY + " " +
+                "FROM " + Schema.DailyTotal.TABLE + " AS d LEFT JOIN " + Schema.Category.TABLE +
+                " AS c ON d." + Schema.DailyTotal.CATEGORY + " = c." + Schema.Category.ID + " AND c." +
+                Schema.Category.DELETED + " = 0 JOIN " + Schema.Wallet.TABLE + " AS w ON d." +
+                Schema.DailyTotal.WALLET + " = w." + Schema.Wallet.ID + " AND w." + Schema.Wallet.DELETED +
+                " = 0 WHERE d." + Schema.DailyTotal.DAY + " < DATE('now', 'localtime') UNION ALL SELECT " +
+                "DATE(t." + Schema.Transaction.DATE + "), " +
+                "t." + Schema.Transaction.WALLET + ", " +
+                "w." + Schema.Wallet.CURRENCY + ", " +
+                "w." + Schema.Wallet.COUNT_IN_TOTAL + ", " +
+                "t." + Schema.Transaction.CATEGORY + ", " +
+                "c." + Schema.Category.PARENT + ", " +
+                "c." + Schema.Category.SHOW_REPORT + ", " +
+                "t." + Schema.Transaction.DIRECTION + ", " +
+                "t." + Schema.Transaction.MONEY + " " +
                 "FROM " + Schema.Transaction.TABLE + " AS t LEFT JOIN " + Schema.Category.TABLE +
                 " AS c ON t." + Schema.Transaction.CATEGORY + " = c." + Schema.Category.ID + " AND c." +
                 Schema.Category.DELETED + " = 0 JOIN " + Schema.Wallet.TABLE + " AS w ON t." +
-                Schema.Transaction.WALLET + " = w." + Schema.Wallet.ID + " AND w." +
-                Schema.Wallet.DELETED + " = 0 LEFT JOIN " + Schema.TransactionPeople.TABLE + " AS tp ON t." +
-                Schema.Transaction.ID + " = tp." + Schema.TransactionPeople.TRANSACTION + " AND tp." +
-                Schema.TransactionPeople.DELETED + " = 0 LEFT JOIN " + Schema.Person.TABLE + " AS pe ON tp." +
-                Schema.TransactionPeople.PERSON + " = pe." + Schema.Person.ID + " AND pe." +
-                Schema.Person.DELETED + " = 0 LEFT JOIN " + Schema.Place.TABLE + " AS p ON t." +
-                Schema.Transaction.PLACE + " = " + Schema.Place.ID + " AND p." + Schema.Place.DELETED +
-                " = 0 LEFT JOIN " + Schema.Event.TABLE + " AS e ON t." + Schema.Transaction.EVENT +
-                " = e." + Schema.Event.ID + " AND e." + Schema.Event.DELETED + " = 0 WHERE t." +
-                Schema.Transaction.DELETED + " = 0 GROUP BY t." + Schema.Transaction.ID;
+                Schema.Transaction.WALLET + " = w." + Schema.Wallet.ID + " AND w." + Schema.Wallet.DELETED +
+                " = 0 WHERE t." + Schema.Transaction.DELETED + " = 0 AND t." + Schema.Transaction.CONFIRMED +
+                " = 1 AND t." + Schema.Transaction.COUNT_IN_TOTAL + " = 1 AND t." + Schema.Transaction.DATE +
+                " >= DATE('now', 'localtime') AND t." + Schema.Transaction.DATE + " <= DATETIME('now', 'localtime')";
         return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder);
     }
 
@@ -707,7 +1471,13 @@ import java.util.UUID;
         // the uuid of the transaction to be uniquely identified across different devices
         String transactionUUID = UUID.randomUUID().toString();
         long lastEdit = System.currentTimeMillis();
-        if (contentValues.containsKey(Contract.Transaction.RECURRENCE_ID)) {
+        if (contentValues.containsKey(Contract.Transaction.RECURRENCE_UUID)) {
+            // the uuid of the recurrence has already been provided (batch of occurrences)
+            String recurrenceUUID = contentValues.getAsString(Contract.Transaction.RECURRENCE_UUID);
+            Date date = DateUtils.getDateFromSQLDateTimeString(contentValues.getAsString(Contract.Transaction.DATE));
+            transactionUUID = getRecurrentItemUUID(recurrenceUUID, date);
+            lastEdit = date.getTime();
+        } else if (contentValues.containsKey(Contract.Transaction.RECURRENCE_ID)) {
             long recurrenceId = contentValues.getAsLong(Contract.Transaction.RECURRENCE_ID);
             String table = Schema.RecurrentTransaction.TABLE;
             String[] projection = new String[] {Schema.RecurrentTransaction.UUID};
@@ -1271,7 +2041,13 @@ import java.util.UUID;
         // the uuid of the transaction to be uniquely identified across different devices
         String transferUUID = UUID.randomUUID().toString();
         long lastEdit = System.currentTimeMillis();
-        if (contentValues.containsKey(Contract.Transfer.RECURRENCE_ID)) {
+        if (contentValues.containsKey(Contract.Transfer.RECURRENCE_UUID)) {
+            // the uuid of the recurrence has already been provided (batch of occurrences)
+            String recurrenceUUID = contentValues.getAsString(Contract.Transfer.RECURRENCE_UUID);
+            Date date = DateUtils.getDateFromSQLDateTimeString(contentValues.getAsString(Contract.Transfer.DATE));
+            transferUUID = getRecurrentItemUUID(recurrenceUUID, date);
+            lastEdit = date.getTime();
+        } else if (contentValues.containsKey(Contract.Transfer.RECURRENCE_ID)) {
             long recurrenceId = contentValues.getAsLong(Contract.Transfer.RECURRENCE_ID);
             String table = Schema.RecurrentTransfer.TABLE;
             String[] projection = new String[] {Schema.RecurrentTransfer.UUID};
@@ -2108,10 +2884,10 @@ import java.util.UUID;
                 "\t\t\tSUM(((transaction_direction * 2) - 1) * transaction_money) AS _debt_progress\n" +
                 "\t\t\tFROM transactions AS t\n" +
                 "\t\t\tLEFT JOIN categories AS c ON t.transaction_category = c.category_id AND c.deleted = 0\n" +
-                "\t\t\tWHERE t.deleted = 0 AND t.transaction_confirmed = 1 AND (\n" +
+                "\t\t\tWHERE t.transaction_debt IS NOT NULL AND t.deleted = 0 AND t.transaction_confirmed = 1 AND (\n" +
                 "\t\t\tc.category_tag = 'system::paid_debt' OR \n" +
                 "\t\t\tc.category_tag = 'system::paid_credit'\n" +
-                "\t\t\t) AND DATETIME(t.transaction_date) <= DATETIME('now', 'localtime')\n" +
+                "\t\t\t) AND t.transaction_date <= DATETIME('now', 'localtime')\n" +
                 "\t\t\tGROUP BY _debt_id\n" +
                 "\t\t) AS t ON t._debt_id = d.debt_id\n" +
                 "\t\tWHERE d.deleted = 0\n" +
@@ -2446,8 +3222,12 @@ import java.util.UUID;
         // The percentage will than vary in future when the exchange rates varies because we have no
         // way to persist them somewhere. The simpler solution is to avoid to have different currencies
         // inside the same budget. If we found a simple solution for this in future we only need to
-        // modify the part of the query where we sum the transaction amounts using the already provided
-        // '_wallet_currency' column internal to the query (at the moment unused).
+        // modify the part of the query where we sum the progress of the wallets using the currency
+        // of each wallet that is already joined inside the query (at the moment unused).
+        // The progress of each wallet of the budget is read from the materialized budget progress
+        // table that also contains the future transactions: their contribution is computed on the
+        // fly (they are a few rows found through the date index) and subtracted from the total.
+        // If all the transactions of a wallet are in the future, the progress of the wallet is null.
         String subQuery = "SELECT " +
                 "b." + Schema.Budget.ID + " AS " + Contract.Budget.ID + ", " +
                 "b." + Schema.Budget.TYPE + " AS " + Contract.Budget.TYPE + ", " +
@@ -2462,96 +3242,55 @@ import java.util.UUID;
                 "b." + Schema.Budget.MONEY + " AS " + Contract.Budget.MONEY + ", " +
                 "b." + Schema.Budget.CURRENCY + " AS " + Contract.Budget.CURRENCY + ", " +
                 "b." + Schema.Budget.TAG + " AS " + Contract.Budget.TAG + ", " +
-                "SUM(_progress) AS " + Contract.Budget.PROGRESS + "," +
-                "GROUP_CONCAT('<' || _wallet_id || '>') AS " + Contract.Budget.WALLET_IDS + "," +
-                "MAX(_wallet_total) AS " + Contract.Budget.HAS_WALLET_IN_TOTAL + " FROM(" +
-
-                // query all budgets of type expenses
-                "SELECT b.*, SUM(t." + Schema.Transaction.MONEY + ") AS _progress " +
-                "FROM(SELECT b.*, w." + Schema.Wallet.ID + " AS _wallet_id, " +
-                "w." + Schema.Wallet.CURRENCY + " AS _wallet_currency, " +
-                "w." + Schema.Wallet.COUNT_IN_TOTAL + " AS _wallet_total FROM " +
-                Schema.BudgetWallet.TABLE + " AS bw JOIN " + Schema.Budget.TABLE + " AS b ON " +
-                "bw._budget = b." + Schema.Budget.ID + " JOIN " + Schema.Wallet.TABLE + " AS w ON " +
-                "bw._wallet = w." + Schema.Wallet.ID + " WHERE bw. " + Schema.BudgetWallet.DELETED +
-                " = 0 AND b." + Schema.Budget.DELETED + " = 0 AND w." + Schema.Wallet.DELETED +
-                " = 0 AND b." + Schema.Budget.TYPE + " = " + Schema.BudgetType.EXPENSES +
-                " ) AS b LEFT JOIN " + Schema.Transaction.TABLE + " AS t ON b._wallet_id = t." +
-                Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DELETED + " = 0 AND t." +
-                Schema.Transaction.DIRECTION + " = 0 AND DATETIME(t." + Schema.Transaction.DATE +
-                ") <= DATETIME('now', 'localtime') AND DATE(t." + Schema.Transaction.DATE +
-                ") >= DATE(b." + Schema.Budget.START_DATE + ") AND DATE(t." + Schema.Transaction.DATE +
-                ") <=  DATE(b." + Schema.Budget.END_DATE + ") " +
-                // exclude transfers within the budget
-                "AND t." + Schema.Transaction.ID + " NOT IN ( " +
-                "SELECT tf." + Schema.Transfer.TRANSACTION_FROM + " " +
-                "FROM " + Schema.Transfer.TABLE + " AS tf " +
-                "LEFT JOIN " + Schema.Transaction.TABLE + " AS t2 " +
-                "ON tf." + Schema.Transfer.TRANSACTION_TO + " = t2." + Schema.Transaction.ID + " " +
-                "LEFT JOIN " + Schema.BudgetWallet.TABLE + " AS bw2 " +
-                "ON t2." + Schema.Transaction.WALLET + " = bw2." + Schema.BudgetWallet.WALLET + " " +
-                "WHERE bw2." + Schema.BudgetWallet.BUDGET + " = b." + Schema.Budget.ID + " " +
-                "AND bw2." + Schema.BudgetWallet.WALLET + " != b._wallet_id " +
-                ") " +
-                "GROUP BY b." + Schema.Budget.ID + ",b._wallet_id " +
-                "UNION " +
-
-                // query all budgets of type incomes
-                "SELECT b.*, SUM(t." + Schema.Transaction.MONEY + ") AS _progress " +
-                "FROM(SELECT b.*, w." + Schema.Wallet.ID + " AS _wallet_id, " +
-                "w." + Schema.Wallet.CURRENCY + " AS _wallet_currency, " +
-                "w." + Schema.Wallet.COUNT_IN_TOTAL + " AS _wallet_total FROM " +
-                Schema.BudgetWallet.TABLE + " AS bw JOIN " + Schema.Budget.TABLE + " AS b ON " +
-                "bw._budget = b." + Schema.Budget.ID + " JOIN " + Schema.Wallet.TABLE + " AS w ON " +
-                "bw._wallet = w." + Schema.Wallet.ID + " WHERE bw. " + Schema.BudgetWallet.DELETED +
-                " = 0 AND b." + Schema.Budget.DELETED + " = 0 AND w." + Schema.Wallet.DELETED +
-                " = 0 AND b." + Schema.Budget.TYPE + " = " + Schema.BudgetType.INCOMES +
-                " ) AS b LEFT JOIN " + Schema.Transaction.TABLE + " AS t ON b._wallet_id = t." +
-                Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DELETED + " = 0 AND t." +
-                Schema.Transaction.DIRECTION + " = 1 AND DATETIME(t." + Schema.Transaction.DATE +
-                ") <= DATETIME('now', 'localtime') AND DATE(t." + Schema.Transaction.DATE +
-                ") >= DATE(b." + Schema.Budget.START_DATE + ") AND DATE(t." +
-                Schema.Transaction.DATE + ") <= DATE(b." + Schema.Budget.END_DATE + ") " +
-                // exclude transfers within the budget
-                "AND t." + Schema.Transaction.ID + " NOT IN ( " +
-                "SELECT tf." + Schema.Transfer.TRANSACTION_TO + " " +
-                "FROM " + Schema.Transfer.TABLE + " AS tf " +
-                "LEFT JOIN " + Schema.Transaction.TABLE + " AS t2 " +
-                "ON tf." + Schema.Transfer.TRANSACTION_FROM + " = t2." + Schema.Transaction.ID + " " +
-                "LEFT JOIN " + Schema.BudgetWallet.TABLE + " AS bw2 " +
-                "ON t2." + Schema.Transaction.WALLET + " = bw2." + Schema.BudgetWallet.WALLET + " " +
-                "WHERE bw2." + Schema.BudgetWallet.BUDGET + " = b." + Schema.Budget.ID + " " +
-                "AND bw2." + Schema.BudgetWallet.WALLET + " != b._wallet_id " +
-                ") " +
-
-                "GROUP BY b."
-                + Schema.Budget.ID + ", _wallet_id UNION " +
-                // query all budgets of type category
-                "SELECT b.*, SUM(((t." + Schema.Transaction.DIRECTION + " * 2) - 1) * t." +
-                Schema.Transaction.MONEY + ") AS _progress FROM(SELECT b.*, w." + Schema.Wallet.ID +
-                " AS _wallet_id, w." + Schema.Wallet.CURRENCY + " AS _wallet_currency, w." +
-                Schema.Wallet.COUNT_IN_TOTAL + " AS _wallet_total FROM " + Schema.BudgetWallet.TABLE +
-                " AS bw JOIN " + Schema.Budget.TABLE + " AS b ON bw._budget = b." + Schema.Budget.ID +
-                " JOIN " + Schema.Wallet.TABLE + " AS w ON bw._wallet = w." + Schema.Wallet.ID +
-                " WHERE bw. " + Schema.BudgetWallet.DELETED + " = 0 AND b." + Schema.Budget.DELETED +
-                " = 0 AND w." + Schema.Wallet.DELETED + " = 0 AND b." + Schema.Budget.TYPE + " = " +
-                Schema.BudgetType.CATEGORY + ") AS b LEFT JOIN (SELECT tr.*, tc." +
-                Schema.Category.PARENT + " AS _parent_category FROM " + Schema.Transaction.TABLE +
-                " AS tr JOIN " + Schema.Category.TABLE + " AS tc ON tr." + Schema.Transaction.CATEGORY +
-                " = tc." + Schema.Category.ID + " WHERE tr." + Schema.Transaction.DELETED + " = 0 " +
-                " AND tc." + Schema.Category.DELETED + " = 0) AS t ON (b._wallet_id = t." +
-                Schema.Transaction.WALLET + " AND DATETIME(t." + Schema.Transaction.DATE +
-                ") <= DATETIME('now', 'localtime') AND DATE(t." + Schema.Transaction.DATE +
-                ") >= DATE(b." + Schema.Budget.START_DATE + ") AND DATE(t." +
-                Schema.Transaction.DATE + ") <=  DATE(b." + Schema.Budget.END_DATE + ") AND (b."
-                + Schema.Budget.CATEGORY + " = t." + Schema.Transaction.CATEGORY + " OR b." +
-                Schema.Budget.CATEGORY + " = t._parent_category)) GROUP BY b." + Schema.Budget.ID +
-                ", _wallet_id) AS b LEFT JOIN " + Schema.Category.TABLE + " AS c ON b." +
-                Schema.Budget.CATEGORY + " = c." + Schema.Category.ID + " AND c." +
-                Schema.Category.DELETED + " = 0 GROUP BY b." + Schema.Budget.ID;
+                "SUM(CASE WHEN bp." + Schema.BudgetProgress.COUNT + " > IFNULL(f." +
+                Schema.BudgetProgress.COUNT + ", 0) THEN bp." + Schema.BudgetProgress.MONEY + " - IFNULL(f." +
+                Schema.BudgetProgress.MONEY + ", 0) END) AS " + Contract.Budget.PROGRESS + ", " +
+                "GROUP_CONCAT('<' || w." + Schema.Wallet.ID + " || '>') AS " + Contract.Budget.WALLET_IDS + ", " +
+                "MAX(w." + Schema.Wallet.COUNT_IN_TOTAL + ") AS " + Contract.Budget.HAS_WALLET_IN_TOTAL + " " +
+                "FROM " + Schema.Budget.TABLE + " AS b JOIN " + Schema.BudgetWallet.TABLE + " AS bw ON bw." +
+                Schema.BudgetWallet.BUDGET + " = b." + Schema.Budget.ID + " AND bw." +
+                Schema.BudgetWallet.DELETED + " = 0 JOIN " + Schema.Wallet.TABLE + " AS w ON bw." +
+                Schema.BudgetWallet.WALLET + " = w." + Schema.Wallet.ID + " AND w." + Schema.Wallet.DELETED +
+                " = 0 LEFT JOIN " + Schema.BudgetProgress.TABLE + " AS bp ON bp." + Schema.BudgetProgress.BUDGET +
+                " = bw." + Schema.BudgetWallet.BUDGET + " AND bp." + Schema.BudgetProgress.WALLET + " = bw." +
+                Schema.BudgetWallet.WALLET + " LEFT JOIN (" + Schema.COMPUTE_FUTURE_BUDGET_PROGRESS + ") AS f ON f." +
+                Schema.BudgetProgress.BUDGET + " = bw." + Schema.BudgetWallet.BUDGET + " AND f." +
+                Schema.BudgetProgress.WALLET + " = bw." + Schema.BudgetWallet.WALLET + " LEFT JOIN " +
+                Schema.Category.TABLE + " AS c ON b." + Schema.Budget.CATEGORY + " = c." + Schema.Category.ID +
+                " AND c." + Schema.Category.DELETED + " = 0 WHERE b." + Schema.Budget.DELETED + " = 0 " +
+                "GROUP BY b." + Schema.Budget.ID;
         return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder);
     }
 
+    /**
+     * This method is called by the content provider when the user is querying all the budgets
+     * that contain a given wallet.
+     *
+     * @param walletId id of the wallet.
+     * @param projection column names that are requested to be part of the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param selectionArgs string array that may contains the arguments for the selection string.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @return a cursor with zero or more rows.
+     */
+    /*package-local*/ Cursor getWalletBudgets(long walletId, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        // the relation is checked using the primary key of the budget wallets table instead of
+        // searching the id inside the WALLET_IDS column.
+        String _selection = "EXISTS (SELECT 1 FROM " + Schema.BudgetWallet.TABLE + " AS bw WHERE bw." +
+                Schema.BudgetWallet.BUDGET + " = " + Contract.Budget.ID + " AND bw." +
+                Schema.BudgetWallet.WALLET + " = ? AND bw." + Schema.BudgetWallet.DELETED + " = 0)";
+        if (!TextUtils.isEmpty(selection)) {
+            _selection += " AND " + selection;
+        }
+        int size = selectionArgs != null ? selectionArgs.length : 0;
+        String[] _selectionArgs = new String[size + 1];
+        _selectionArgs[0] = String.valueOf(walletId);
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, _selectionArgs, 1, size);
+        }
+        return getBudgets(projection, _selection, _selectionArgs, sortOrder);
+    }
+
     /**
      * This method is called by the content provider when the user is querying all the wallets
      * related to a given budget.
@@ -2647,10 +3386,10 @@ import java.util.UUID;
                 " = 0 AND b." + Schema.Budget.TYPE + " = " + Schema.BudgetType.EXPENSES +
                 " ) AS b LEFT JOIN " + Schema.Transaction.TABLE + " AS t ON b._wallet_id = t." +
                 Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DELETED + " = 0 AND t." +
-                Schema.Transaction.DIRECTION + " = 0 AND DATETIME(t." + Schema.Transaction.DATE +
-                ") <= DATETIME('now', 'localtime') AND DATE(t." + Schema.Transaction.DATE +
-                ") >= DATE(b." + Schema.Budget.START_DATE + ") AND DATE(t." + Schema.Transaction.DATE +
-                ") <= DATE(b." + Schema.Budget.END_DATE + ") WHERE b." + Schema.Budget.ID + " = " +
+                Schema.Transaction.DIRECTION + " = 0 AND t." + Schema.Transaction.DATE +
+                " <= DATETIME('now', 'localtime') AND t." + Schema.Transaction.DATE +
+                " >= b." + Schema.Budget.START_DATE + " AND t." + Schema.Transaction.DATE +
+                " < DATE(b." + Schema.Budget.END_DATE + ", '+1 day') WHERE b." + Schema.Budget.ID + " = " +
                 budgetId + " " +
                 // exclude transfers within the budget
                 "AND t." + Schema.Transaction.ID + " NOT IN ( " +
@@ -2675,10 +3414,10 @@ import java.util.UUID;
                 " = 0 AND b." + Schema.Budget.TYPE + " = " + Schema.BudgetType.INCOMES +
                 " ) AS b LEFT JOIN " + Schema.Transaction.TABLE + " AS t ON b._wallet_id = t." +
                 Schema.Transaction.WALLET + " AND t." + Schema.Transaction.DELETED + " = 0 AND t." +
-                Schema.Transaction.DIRECTION + " = 1 AND DATETIME(t." + Schema.Transaction.DATE +
-                ") <= DATETIME('now', 'localtime') AND DATE(t." + Schema.Transaction.DATE +
-                ") >= DATE(b." + Schema.Budget.START_DATE + ") AND DATE(t." +
-                Schema.Transaction.DATE + ") <= DATE(b." + Schema.Budget.END_DATE + ") WHERE b."
+                Schema.Transaction.DIRECTION + " = 1 AND t." + Schema.Transaction.DATE +
+                " <= DATETIME('now', 'localtime') AND t." + Schema.Transaction.DATE +
+                " >= b." + Schema.Budget.START_DATE + " AND t." +
+                Schema.Transaction.DATE + " < DATE(b." + Schema.Budget.END_DATE + ", '+1 day') WHERE b."
                 + Schema.Budget.ID + " = " + budgetId + " " +
                 // exclude transfers within the budget
                 "AND t." + Schema.Transaction.ID + " NOT IN ( " +
@@ -2707,10 +3446,10 @@ import java.util.UUID;
                 Schema.Category.ID + " AND tc." + Schema.Category.DELETED + " = 0 WHERE (b." +
                 Schema.Budget.CATEGORY + " = " + Schema.Transaction.CATEGORY + " OR b." +
                 Schema.Budget.CATEGORY + " = tc."+ Schema.Category.PARENT + ") " +
-                "AND DATETIME(t." + Schema.Transaction.DATE + ") <= DATETIME('now', 'localtime') " +
-                "AND DATE(t." + Schema.Transaction.DATE + ") >= DATE(b." +
-                Schema.Budget.START_DATE + ") AND DATE(t." + Schema.Transaction.DATE +
-                ") <=  DATE(b." + Schema.Budget.END_DATE + ") " + "AND b." + Schema.Budget.ID +
+                "AND t." + Schema.Transaction.DATE + " <= DATETIME('now', 'localtime') " +
+                "AND t." + Schema.Transaction.DATE + " >= b." +
+                Schema.Budget.START_DATE + " AND t." + Schema.Transaction.DATE +
+                " < DATE(b." + Schema.Budget.END_DATE + ", '+1 day') " + "AND b." + Schema.Budget.ID +
                 " = " + budgetId + " " +
 
                 ") AS t " +
@@ -2948,11 +3687,12 @@ import java.util.UUID;
                 Schema.Wallet.ID + " LEFT JOIN (SELECT " + Schema.Transaction.SAVING + " AS _saving, " +
                 " SUM(((" + Schema.Transaction.DIRECTION + " * -2) + 1) * " + Schema.Transaction.MONEY +
                 ") AS _progress FROM " + Schema.Transaction.TABLE + " AS j LEFT JOIN " + Schema.Category.TABLE +
-                " ON " + Schema.Transaction.CATEGORY + " = " + Schema.Category.ID + " WHERE j." +
+                " ON " + Schema.Transaction.CATEGORY + " = " + Schema.Category.ID + " WHERE " +
+                Schema.Transaction.SAVING + " IS NOT NULL AND j." +
                 Schema.Transaction.DELETED + " = 0 AND " + Schema.Transaction.CONFIRMED +
                 " = 1 AND (" + Schema.Category.TAG + " = '" + Schema.CategoryTag.SAVING_DEPOSIT + "' OR " +
-                Schema.Category.TAG + " = '" + Schema.CategoryTag.SAVING_WITHDRAW + "') AND DATETIME(" +
-                Schema.Transaction.DATE + ") <= DATETIME('now', 'localtime') GROUP BY _saving) ON " +
+                Schema.Category.TAG + " = '" + Schema.CategoryTag.SAVING_WITHDRAW + "') AND " +
+                Schema.Transaction.DATE + " <= DATETIME('now', 'localtime') GROUP BY _saving) ON " +
                 Schema.Saving.ID + " = _saving WHERE s." + Schema.Saving.DELETED + " = 0";
         return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder);
     }
@@ -3107,7 +3847,7 @@ import java.util.UUID;
                 Schema.Transaction.MONEY + ") AS _currency_money FROM " + Schema.Transaction.TABLE +
                 " AS t JOIN " + Schema.Wallet.TABLE + " AS w ON " + Schema.Transaction.WALLET + " = " +
                 Schema.Wallet.ID + " WHERE " + Schema.Transaction.EVENT + " IS NOT NULL AND " +
-                "DATETIME(" + Schema.Transaction.DATE + ") <= DATETIME('now', 'localtime')" +
+                Schema.Transaction.DATE + " <= DATETIME('now', 'localtime')" +
                 " AND " + Schema.Transaction.CONFIRMED + " = 1 AND t." + Schema.Transaction.DELETED +
                 " = 0 AND w." + Schema.Wallet.DELETED + " = 0 GROUP BY " + Schema.Transaction.EVENT +
                 ", wallet_currency) GROUP BY " + Schema.Transaction.EVENT + ") ON " + Schema.Event.ID +
@@ -3303,7 +4043,8 @@ import java.util.UUID;
                 "rt." + Schema.RecurrentTransaction.LAST_OCCURRENCE + " AS " + Contract.RecurrentTransaction.LAST_OCCURRENCE + ", " +
                 "rt." + Schema.RecurrentTransaction.NEXT_OCCURRENCE + " AS " + Contract.RecurrentTransaction.NEXT_OCCURRENCE + ", " +
                 "rt." + Schema.RecurrentTransaction.RULE + " AS " + Contract.RecurrentTransaction.RULE + ", " +
-                "rt." + Schema.RecurrentTransaction.TAG + " AS " + Contract.RecurrentTransaction.TAG + " " +
+                "rt." + Schema.RecurrentTransaction.TAG + " AS " + Contract.RecurrentTransaction.TAG + ", " +
+                "rt." + Schema.RecurrentTransaction.UUID + " AS " + Contract.RecurrentTransaction.UUID + " " +
                 "FROM " + Schema.RecurrentTransaction.TABLE + " AS rt JOIN " + Schema.Wallet.TABLE +
                 " AS w ON rt." + Schema.RecurrentTransaction.WALLET + " = w." + Schema.Wallet.ID + " AND w." +
                 Schema.Wallet.DELETED + " = 0 JOIN " + Schema.Category.TABLE + " AS c ON rt." +
@@ -3493,7 +4234,8 @@ import java.util.UUID;
                 "rt." + Schema.RecurrentTransfer.LAST_OCCURRENCE + " AS " + Contract.RecurrentTransfer.LAST_OCCURRENCE + ", " +
                 "rt." + Schema.RecurrentTransfer.NEXT_OCCURRENCE + " AS " + Contract.RecurrentTransfer.NEXT_OCCURRENCE + ", " +
                 "rt." + Schema.RecurrentTransfer.RULE + " AS " + Contract.RecurrentTransfer.RULE + ", " +
-                "rt." + Schema.RecurrentTransfer.TAG + " AS " + Contract.RecurrentTransfer.TAG + " " +
+                "rt." + Schema.RecurrentTransfer.TAG + " AS " + Contract.RecurrentTransfer.TAG + ", " +
+                "rt." + Schema.RecurrentTransfer.UUID + " AS " + Contract.RecurrentTransfer.UUID + " " +
                 "FROM " + Schema.RecurrentTransfer.TABLE + " AS rt JOIN " + Schema.Wallet.TABLE + " AS " +
                 "wf ON rt." + Schema.RecurrentTransfer.WALLET_FROM + " = wf." + Schema.Wallet.ID +
                 " AND wf." + Schema.Wallet.DELETED + " = 0 JOIN " + Schema.Wallet.TABLE + " AS " +
@@ -4221,15 +4963,17 @@ import java.util.UUID;
      * @return a cursor with zero or more rows.
      */
     /*package-local*/ Cursor getPeopleTransactions(long personId, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
-        // this query make a simple lookup over PEOPLE_IDS column and looks for <id> inside it
-        // TODO: [LOW] Maybe try to optimize this query and replace the LIKE operator with a WHERE
-        String _selection = Contract.Transaction.PEOPLE_IDS + " LIKE ?";
+        // the transactions of the person are looked up in the relation table (using the index on
+        // the person column) instead of searching the id inside the PEOPLE_IDS column.
+        String _selection = Contract.Transaction.ID + " IN (SELECT tp." + Schema.TransactionPeople.TRANSACTION +
+                " FROM " + Schema.TransactionPeople.TABLE + " AS tp WHERE tp." + Schema.TransactionPeople.PERSON +
+                " = ? AND tp." + Schema.TransactionPeople.DELETED + " = 0)";
         if (!TextUtils.isEmpty(selection)) {
             _selection += " AND " + selection;
         }
         int size = selectionArgs != null ? selectionArgs.length : 0;
         String[] _selectionArgs = new String[size + 1];
-        _selectionArgs[0] = "%<" + String.valueOf(personId) + ">%";
+        _selectionArgs[0] = String.valueOf(personId);
         if (selectionArgs != null) {
             System.arraycopy(selectionArgs, 0, _selectionArgs, 1, size);
         }
@@ -4446,7 +5190,26 @@ import java.util.UUID;
      * @return a cursor with zero or more rows.
      */
     private Cursor queryFrom(String subQuery, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
-        return getReadableDatabase().query("(" + subQuery + ")", projection, selection, selectionArgs, null, null, sortOrder);
+        return queryFrom(subQuery, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * This is an internal method used to query a sub query limiting the number of returned rows.
+     *
+     * @param subQuery query that acts as a table.
+     * @param projection column names that are requested to be part of the cursor.
+     * @param selection string that may contains additional filters for the query.
+     * @param selectionArgs string array that may contains the arguments for the selection string.
+     * @param sortOrder string that may contains column name to use to sort the cursor.
+     * @param limit string that may contains the max number of rows to return.
+     * @return a cursor with zero or more rows.
+     */
+    private Cursor queryFrom(String subQuery, String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit) {
+        String query = SQLiteQueryBuilder.buildQueryString(false, "(" + subQuery + ")", projection, selection, null, null, sortOrder, limit);
+        if (mQueryListener != null) {
+            mQueryListener.onQuery(query, selectionArgs);
+        }
+        return getReadableDatabase().rawQuery(query, selectionArgs);
     }
 
     /**
@@ -4459,22 +5222,11 @@ import java.util.UUID;
      * @throws SQLiteException if the string is not well formatted.
      */
     private long[] parseIds(String list) {
-        if (!TextUtils.isEmpty(list)) {
-            System.out.println(list);
-            String[] encodedIds = list.split(",");
-            long[] ids = new long[encodedIds.length];
-            for (int i = 0; i < encodedIds.length; i++) {
-                String encodedId = encodedIds[i];
-                if (encodedId.startsWith("<") && encodedId.endsWith(">")) {
-                    ids[i] = Long.parseLong(encodedId.substring(1, encodedId.length() - 1));
-                } else {
-                    String message = "The ids column not follow the pattern at index %d. Content: %s";
-                    throw new SQLiteException(String.format(Locale.ENGLISH, message, i, list));
-                }
-            }
-            return ids;
+        try {
+            return IdSetReader.decode(list);
+        } catch (IllegalArgumentException e) {
+            throw new SQLiteException(e.getMessage());
         }
-        return null;
     }
 
     /**
@@ -4777,4 +5529,12 @@ import java.util.UUID;
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Listener of the queries executed by the database.
+     */
+    /*package-local*/ interface QueryListener {
+
+        void onQuery(String query, String[] selectionArgs);
+    }
+}
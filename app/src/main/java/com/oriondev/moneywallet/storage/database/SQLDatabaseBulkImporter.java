@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import com.oriondev.moneywallet.storage.database.model.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class restores a large amount of rows directly inside a new database file instead of
+ * sending each row to the sync content provider. All the rows are written inside a single
+ * transaction using one compiled statement for each table, while the secondary indexes, the
+ * content of the materialized tables and the triggers are created only once at the end of the
+ * procedure. The foreign keys are checked when the data is committed, so the rows can be
+ * inserted in any order.
+ * The new file replaces the current database only when the whole procedure succeed: if
+ * something goes wrong the current data is left untouched.
+ * When a chain of incremental backups is restored, the merge mode must be enabled after the
+ * full backup has been imported: the deleted items are removed and the rows that already exist
+ * are updated in place instead of being replaced, because the replacement of a row would also
+ * delete all the rows that reference it.
+ */
+public class SQLDatabaseBulkImporter {
+
+    private static final String RESTORE_DATABASE_NAME = "restore.db";
+
+    private static final String DISABLE_JOURNAL = "PRAGMA journal_mode=OFF";
+    private static final String DEFER_FOREIGN_KEYS = "PRAGMA defer_foreign_keys=ON";
+    private static final String CHECK_FOREIGN_KEYS = "PRAGMA foreign_key_check";
+
+    /**
+     * Column that identifies the same item inside all the backups of a chain.
+     */
+    private static final String UUID = "uuid";
+
+    private static final String[] JOURNAL_FILE_SUFFIXES = new String[] {"-journal", "-wal", "-shm"};
+
+    private final Context mContext;
+    private final File mDatabaseFile;
+    private final File mRestoreFile;
+    private final Map<String, InsertStatement> mStatements;
+    private final Map<String, MergeStatement> mMergeStatements;
+    private final Map<String, SQLiteStatement> mDeleteStatements;
+
+    private SQLiteDatabase mDatabase;
+    private boolean mMergeEnabled;
+
+    public SQLDatabaseBulkImporter(Context context) {
+        mContext = context;
+        mDatabaseFile = context.getDatabasePath(SQLDatabase.DATABASE_NAME);
+        mRestoreFile = new File(mDatabaseFile.getParentFile(), RESTORE_DATABASE_NAME);
+        mStatements = new HashMap<>();
+        mMergeStatements = new HashMap<>();
+        mDeleteStatements = new HashMap<>();
+    }
+
+    /**
+     * Create a new empty database file and start the transaction that will contain all the
+     * imported rows. The system categories are inserted in advance: the rows of the backup
+     * with the same uuid will replace them.
+     * @throws ImportException if the database file cannot be created.
+     */
+    public void begin() throws ImportException {
+        if (mDatabase != null) {
+            throw new IllegalStateException("The import is already started");
+        }
+        try {
+            SQLiteDatabase.deleteDatabase(mRestoreFile);
+            File folder = mRestoreFile.getParentFile();
+            if (folder != null && !folder.exists() && !folder.mkdirs()) {
+                throw new ImportException("Cannot create the database folder");
+            }
+            mDatabase = SQLiteDatabase.openOrCreateDatabase(mRestoreFile, null);
+            // the file is deleted if the import fails, so there is
+            // no need to write a rollback journal for each page
+            DatabaseUtils.stringForQuery(mDatabase, DISABLE_JOURNAL, null);
+            mDatabase.setForeignKeyConstraintsEnabled(true);
+            mDatabase.beginTransaction();
+            mDatabase.execSQL(DEFER_FOREIGN_KEYS);
+            SQLDatabase.createTables(mDatabase);
+            SQLDatabase.addSystemCategories(mContext, mDatabase);
+        } catch (SQLiteException e) {
+            close();
+            throw new ImportException(e.getMessage());
+        }
+    }
+
+    public long insert(Currency currency) throws ImportException {
+        return insert(Schema.Currency.TABLE, SQLDatabaseImporter.getContentValues(currency));
+    }
+
+    public long insert(Wallet wallet) throws ImportException {
+        return insert(Schema.Wallet.TABLE, SQLDatabaseImporter.getContentValues(wallet));
+    }
+
+    public long insert(Category category) throws ImportException {
+        return insert(Schema.Category.TABLE, SQLDatabaseImporter.getContentValues(category));
+    }
+
+    public long insert(Event event) throws ImportException {
+        return insert(Schema.Event.TABLE, SQLDatabaseImporter.getContentValues(event));
+    }
+
+    public long insert(Place place) throws ImportException {
+        return insert(Schema.Place.TABLE, SQLDatabaseImporter.getContentValues(place));
+    }
+
+    public long insert(Person person) throws ImportException {
+        return insert(Schema.Person.TABLE, SQLDatabaseImporter.getContentValues(person));
+    }
+
+    public long insert(EventPerson eventPerson) throws ImportException {
+        return insert(Schema.EventPeople.TABLE, SQLDatabaseImporter.getContentValues(eventPerson));
+    }
+
+    public long insert(Debt debt) throws ImportException {
+        return insert(Schema.Debt.TABLE, SQLDatabaseImporter.getContentValues(debt));
+    }
+
+    public long insert(DebtPerson debtPerson) throws ImportException {
+        return insert(Schema.DebtPeople.TABLE, SQLDatabaseImporter.getContentValues(debtPerson));
+    }
+
+    public long insert(Budget budget) throws ImportException {
+        return insert(Schema.Budget.TABLE, SQLDatabaseImporter.getContentValues(budget));
+    }
+
+    public long insert(BudgetWallet budgetWallet) throws ImportException {
+        return insert(Schema.BudgetWallet.TABLE, SQLDatabaseImporter.getContentValues(budgetWallet));
+    }
+
+    public long insert(Saving saving) throws ImportException {
+        return insert(Schema.Saving.TABLE, SQLDatabaseImporter.getContentValues(saving));
+    }
+
+    public long insert(RecurrentTransaction recurrentTransaction) throws ImportException {
+        return insert(Schema.RecurrentTransaction.TABLE, SQLDatabaseImporter.getContentValues(recurrentTransaction));
+    }
+
+    public long insert(RecurrentTransfer recurrentTransfer) throws ImportException {
+        return insert(Schema.RecurrentTransfer.TABLE, SQLDatabaseImporter.getContentValues(recurrentTransfer));
+    }
+
+    public long insert(Transaction transaction) throws ImportException {
+        return insert(Schema.Transaction.TABLE, SQLDatabaseImporter.getContentValues(transaction));
+    }
+
+    public long insert(TransactionPerson transactionPerson) throws ImportException {
+        return insert(Schema.TransactionPeople.TABLE, SQLDatabaseImporter.getContentValues(transactionPerson));
+    }
+
+    public long insert(TransactionModel transactionModel) throws ImportException {
+        return insert(Schema.TransactionModel.TABLE, SQLDatabaseImporter.getContentValues(transactionModel));
+    }
+
+    public long insert(Transfer transfer) throws ImportException {
+        return insert(Schema.Transfer.TABLE, SQLDatabaseImporter.getContentValues(transfer));
+    }
+
+    public long insert(TransferPerson transferPerson) throws ImportException {
+        return insert(Schema.TransferPeople.TABLE, SQLDatabaseImporter.getContentValues(transferPerson));
+    }
+
+    public long insert(TransferModel transferModel) throws ImportException {
+        return insert(Schema.TransferModel.TABLE, SQLDatabaseImporter.getContentValues(transferModel));
+    }
+
+    public long insert(Attachment attachment) throws ImportException {
+        return insert(Schema.Attachment.TABLE, SQLDatabaseImporter.getContentValues(attachment));
+    }
+
+    public long insert(TransactionAttachment transactionAttachment) throws ImportException {
+        return insert(Schema.TransactionAttachment.TABLE, SQLDatabaseImporter.getContentValues(transactionAttachment));
+    }
+
+    public long insert(TransferAttachment transferAttachment) throws ImportException {
+        return insert(Schema.TransferAttachment.TABLE, SQLDatabaseImporter.getContentValues(transferAttachment));
+    }
+
+    /**
+     * Enable or disable the merge mode. It must be enabled before the import of an incremental
+     * backup: the rows of the backup are matched to the existing ones using their uuid.
+     * @param enabled true to merge the next rows with the existing ones.
+     */
+    public void setMergeEnabled(boolean enabled) {
+        mMergeEnabled = enabled;
+    }
+
+    /**
+     * Remove an item that has been deleted after the previous backup of the chain. The items
+     * that reference it are removed or updated by the foreign keys.
+     * @param deletedItem to remove.
+     * @throws ImportException if the table is not a table of the backup.
+     */
+    public void delete(DeletedItem deletedItem) throws ImportException {
+        if (mDatabase == null) {
+            throw new IllegalStateException("The import is not started");
+        }
+        SQLiteStatement statement = mDeleteStatements.get(deletedItem.mTable);
+        if (statement == null) {
+            if (!isBackupTable(deletedItem.mTable)) {
+                throw new ImportException("Invalid backup file: unknown table '" + deletedItem.mTable + "'");
+            }
+            statement = mDatabase.compileStatement("DELETE FROM " + deletedItem.mTable + " WHERE " + UUID + " = ?");
+            mDeleteStatements.put(deletedItem.mTable, statement);
+        }
+        try {
+            DatabaseUtils.bindObjectToProgram(statement, 1, deletedItem.mUUID);
+            statement.executeUpdateDelete();
+        } catch (SQLiteException e) {
+            throw new ImportException(e.getMessage());
+        }
+    }
+
+    private static boolean isBackupTable(String table) {
+        for (String backupTable : Schema.DELETED_ITEM_TABLES) {
+            if (backupTable.equals(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long insert(String table, ContentValues contentValues) throws ImportException {
+        if (mDatabase == null) {
+            throw new IllegalStateException("The import is not started");
+        }
+        InsertStatement statement = mStatements.get(table);
+        if (statement == null) {
+            statement = new InsertStatement(mDatabase, table, contentValues.keySet());
+            mStatements.put(table, statement);
+        }
+        try {
+            if (mMergeEnabled) {
+                MergeStatement mergeStatement = mMergeStatements.get(table);
+                if (mergeStatement == null) {
+                    mergeStatement = new MergeStatement(mDatabase, table, contentValues.keySet());
+                    mMergeStatements.put(table, mergeStatement);
+                }
+                long id = mergeStatement.execute(contentValues);
+                if (id >= 0) {
+                    return id;
+                }
+            }
+            return statement.execute(contentValues);
+        } catch (SQLiteException e) {
+            throw new ImportException(e.getMessage());
+        }
+    }
+
+    /**
+     * Check the foreign keys, build the indexes, the materialized tables and the triggers and
+     * commit the transaction. The new database file then replaces the current one: the content
+     * providers must not have any open connection to the current file at this point.
+     * @throws ImportException if the imported data is not consistent or if the current
+     * database file cannot be replaced.
+     */
+    public void commit() throws ImportException {
+        if (mDatabase == null) {
+            throw new IllegalStateException("The import is not started");
+        }
+        try {
+            checkForeignKeys();
+            SQLDatabase.createIndexes(mDatabase);
+            SQLDatabase.fillMaterializedTables(mDatabase);
+            SQLDatabase.createTriggers(mDatabase);
+            mDatabase.setVersion(SQLDatabase.DATABASE_VERSION);
+            mDatabase.setTransactionSuccessful();
+            mDatabase.endTransaction();
+        } catch (SQLiteException e) {
+            throw new ImportException(e.getMessage());
+        } finally {
+            releaseDatabase();
+        }
+        replaceDatabaseFile();
+    }
+
+    private void checkForeignKeys() throws ImportException {
+        Cursor cursor = mDatabase.rawQuery(CHECK_FOREIGN_KEYS, null);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    throw new ImportException("Invalid backup file: an item of the table '" +
+                            cursor.getString(0) + "' references an item that does not exist");
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private void replaceDatabaseFile() throws ImportException {
+        // the journal of the old database must not be applied to the new file
+        for (String suffix : JOURNAL_FILE_SUFFIXES) {
+            File journal = new File(mDatabaseFile.getPath() + suffix);
+            if (journal.exists() && !journal.delete()) {
+                throw new ImportException("Cannot remove the journal of the old database");
+            }
+        }
+        if (!mRestoreFile.renameTo(mDatabaseFile)) {
+            throw new ImportException("Cannot replace the old database file");
+        }
+    }
+
+    private void releaseDatabase() {
+        if (mDatabase != null) {
+            for (InsertStatement statement : mStatements.values()) {
+                statement.close();
+            }
+            mStatements.clear();
+            for (MergeStatement statement : mMergeStatements.values()) {
+                statement.close();
+            }
+            mMergeStatements.clear();
+            for (SQLiteStatement statement : mDeleteStatements.values()) {
+                statement.close();
+            }
+            mDeleteStatements.clear();
+            if (mDatabase.inTransaction()) {
+                mDatabase.endTransaction();
+            }
+            mDatabase.close();
+            mDatabase = null;
+        }
+    }
+
+    /**
+     * Release all the resources. If the import has not been committed, the new database file
+     * is deleted and the current one is left untouched.
+     */
+    public void close() {
+        releaseDatabase();
+        SQLiteDatabase.deleteDatabase(mRestoreFile);
+    }
+
+    /**
+     * Compiled insert statement of a table. The columns are taken from the first row that is
+     * inserted and the values of the next rows are bound by column name.
+     */
+    private static class InsertStatement {
+
+        private final String[] mColumns;
+        private final SQLiteStatement mStatement;
+
+        private InsertStatement(SQLiteDatabase database, String table, Set<String> columns) {
+            mColumns = columns.toArray(new String[columns.size()]);
+            String[] placeholders = new String[mColumns.length];
+            for (int i = 0; i < placeholders.length; i++) {
+                placeholders[i] = "?";
+            }
+            String sql = "INSERT OR REPLACE INTO " + table + " (" + TextUtils.join(", ", mColumns) +
+                    ") VALUES (" + TextUtils.join(", ", placeholders) + ")";
+            mStatement = database.compileStatement(sql);
+        }
+
+        private long execute(ContentValues contentValues) {
+            for (int i = 0; i < mColumns.length; i++) {
+                DatabaseUtils.bindObjectToProgram(mStatement, i + 1, contentValues.get(mColumns[i]));
+            }
+            return mStatement.executeInsert();
+        }
+
+        private void close() {
+            mStatement.close();
+        }
+    }
+
+    /**
+     * Compiled statements that update the existing row of a table with the same uuid of the
+     * merged row. The columns are taken from the first row that is merged.
+     */
+    private static class MergeStatement {
+
+        private final String[] mColumns;
+        private final SQLiteStatement mUpdateStatement;
+        private final SQLiteStatement mSelectStatement;
+
+        private MergeStatement(SQLiteDatabase database, String table, Set<String> columns) {
+            mColumns = columns.toArray(new String[columns.size()]);
+            String[] assignments = new String[mColumns.length];
+            for (int i = 0; i < assignments.length; i++) {
+                assignments[i] = mColumns[i] + " = ?";
+            }
+            mUpdateStatement = database.compileStatement("UPDATE " + table + " SET " +
+                    TextUtils.join(", ", assignments) + " WHERE " + UUID + " = ?");
+            mSelectStatement = database.compileStatement("SELECT rowid FROM " + table + " WHERE " + UUID + " = ?");
+        }
+
+        /**
+         * Update the existing row.
+         * @param contentValues of the merged row.
+         * @return the id of the updated row or -1 if the row does not exist yet.
+         */
+        private long execute(ContentValues contentValues) {
+            for (int i = 0; i < mColumns.length; i++) {
+                DatabaseUtils.bindObjectToProgram(mUpdateStatement, i + 1, contentValues.get(mColumns[i]));
+            }
+            DatabaseUtils.bindObjectToProgram(mUpdateStatement, mColumns.length + 1, contentValues.get(UUID));
+            if (mUpdateStatement.executeUpdateDelete() == 0) {
+                return -1L;
+            }
+            DatabaseUtils.bindObjectToProgram(mSelectStatement, 1, contentValues.get(UUID));
+            return mSelectStatement.simpleQueryForLong();
+        }
+
+        private void close() {
+            mUpdateStatement.close();
+            mSelectStatement.close();
+        }
+    }
+}
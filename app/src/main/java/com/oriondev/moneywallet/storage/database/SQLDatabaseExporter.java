@@ -30,6 +30,7 @@ import com.oriondev.moneywallet.storage.database.model.Category;
 import com.oriondev.moneywallet.storage.database.model.Currency;
 import com.oriondev.moneywallet.storage.database.model.Debt;
 import com.oriondev.moneywallet.storage.database.model.DebtPerson;
+import com.oriondev.moneywallet.storage.database.model.DeletedItem;
 import com.oriondev.moneywallet.storage.database.model.Event;
 import com.oriondev.moneywallet.storage.database.model.EventPerson;
 import com.oriondev.moneywallet.storage.database.model.Person;
@@ -47,11 +48,39 @@ import com.oriondev.moneywallet.storage.database.model.TransferModel;
 import com.oriondev.moneywallet.storage.database.model.TransferPerson;
 import com.oriondev.moneywallet.storage.database.model.Wallet;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Created by andrea on 28/10/18.
  */
 public class SQLDatabaseExporter {
 
+    /**
+     * Value of the 'since' parameter used to export all the existing items.
+     */
+    public static final long ALL_ITEMS = -1L;
+
+    private static final Map<Uri, String> ID_COLUMNS = new HashMap<>();
+
+    static {
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_WALLETS, Schema.Wallet.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_CATEGORIES, Schema.Category.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_EVENTS, Schema.Event.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_PLACES, Schema.Place.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_PEOPLE, Schema.Person.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_DEBT, Schema.Debt.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_BUDGET, Schema.Budget.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_SAVING, Schema.Saving.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_RECURRENT_TRANSACTION, Schema.RecurrentTransaction.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_RECURRENT_TRANSFER, Schema.RecurrentTransfer.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_TRANSACTION, Schema.Transaction.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_TRANSFER, Schema.Transfer.ID);
+        ID_COLUMNS.put(SyncContentProvider.CONTENT_ATTACHMENT, Schema.Attachment.ID);
+    }
+
     public static Currency getCurrency(Cursor cursor) {
         Currency object = new Currency();
         object.mIso = cursor.getString(cursor.getColumnIndex(Schema.Currency.ISO));
@@ -410,6 +439,13 @@ public class SQLDatabaseExporter {
         return object;
     }
 
+    public static DeletedItem getDeletedItem(Cursor cursor) {
+        DeletedItem object = new DeletedItem();
+        object.mTable = cursor.getString(cursor.getColumnIndex(Schema.DeletedItem.ITEM_TABLE));
+        object.mUUID = cursor.getString(cursor.getColumnIndex(Schema.DeletedItem.ITEM_UUID));
+        return object;
+    }
+
     public static TransferAttachment getTransferAttachment(Cursor cursor) {
         TransferAttachment object = new TransferAttachment();
         object.mTransfer = cursor.isNull(cursor.getColumnIndex(Schema.TransferAttachment.TRANSFER)) ? null : cursor.getLong(cursor.getColumnIndex(Schema.TransferAttachment.TRANSFER));
@@ -420,158 +456,244 @@ public class SQLDatabaseExporter {
         return object;
     }
 
-    public static Cursor getAllCurrencies(ContentResolver contentResolver) {
+    /**
+     * Build the selection of the items to export. When the export is incremental all the items
+     * edited after the given time are exported, including the ones flagged as deleted.
+     * @param deletedColumn name of the deleted column of the table.
+     * @param lastEditColumn name of the last edit column of the table.
+     * @param since time in millis of the previous backup or {@link #ALL_ITEMS}.
+     * @return the selection string.
+     */
+    private static String getSelection(String deletedColumn, String lastEditColumn, long since) {
+        if (since == ALL_ITEMS) {
+            return deletedColumn + " = 0";
+        }
+        return lastEditColumn + " > " + since;
+    }
+
+    public static Cursor getAllCurrencies(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_CURRENCIES;
-        String selection = Schema.Currency.DELETED + " = 0";
+        String selection = getSelection(Schema.Currency.DELETED, Schema.Currency.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
-    public static Cursor getAllWallets(ContentResolver contentResolver) {
+    public static Cursor getAllWallets(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_WALLETS;
-        String selection = Schema.Wallet.DELETED + " = 0";
+        String selection = getSelection(Schema.Wallet.DELETED, Schema.Wallet.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
-    public static Cursor getAllCategories(ContentResolver contentResolver) {
+    public static Cursor getAllCategories(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_CATEGORIES;
-        String selection = Schema.Category.DELETED + " = 0";
+        String selection = getSelection(Schema.Category.DELETED, Schema.Category.LAST_EDIT, since);
         String sortOrder = Schema.Category.PARENT + " ASC";
         return contentResolver.query(uri, null, selection, null, sortOrder);
     }
 
-    public static Cursor getAllEvents(ContentResolver contentResolver) {
+    public static Cursor getAllEvents(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_EVENTS;
-        String selection = Schema.Event.DELETED + " = 0";
+        String selection = getSelection(Schema.Event.DELETED, Schema.Event.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
-    public static Cursor getAllPlaces(ContentResolver contentResolver) {
+    public static Cursor getAllPlaces(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_PLACES;
-        String selection = Schema.Place.DELETED + " = 0";
+        String selection = getSelection(Schema.Place.DELETED, Schema.Place.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllPeople(ContentResolver contentResolver) {
+    public static Cursor getAllPeople(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_PEOPLE;
-        String selection = Schema.Person.DELETED + " = 0";
+        String selection = getSelection(Schema.Person.DELETED, Schema.Person.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllEventPeople(ContentResolver contentResolver) {
+    public static Cursor getAllEventPeople(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_EVENT_PEOPLE;
-        String selection = Schema.EventPeople.DELETED + " = 0";
+        String selection = getSelection(Schema.EventPeople.DELETED, Schema.EventPeople.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllDebt(ContentResolver contentResolver) {
+    public static Cursor getAllDebt(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_DEBT;
-        String selection = Schema.Debt.DELETED + " = 0";
+        String selection = getSelection(Schema.Debt.DELETED, Schema.Debt.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllDebtPeople(ContentResolver contentResolver) {
+    public static Cursor getAllDebtPeople(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_DEBT_PEOPLE;
-        String selection = Schema.DebtPeople.DELETED + " = 0";
+        String selection = getSelection(Schema.DebtPeople.DELETED, Schema.DebtPeople.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllBudget(ContentResolver contentResolver) {
+    public static Cursor getAllBudget(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_BUDGET;
-        String selection = Schema.Budget.DELETED + " = 0";
+        String selection = getSelection(Schema.Budget.DELETED, Schema.Budget.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllBudgetWallets(ContentResolver contentResolver) {
+    public static Cursor getAllBudgetWallets(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_BUDGET_WALLET;
-        String selection = Schema.BudgetWallet.DELETED + " = 0";
+        String selection = getSelection(Schema.BudgetWallet.DELETED, Schema.BudgetWallet.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllSavings(ContentResolver contentResolver) {
+    public static Cursor getAllSavings(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_SAVING;
-        String selection = Schema.Saving.DELETED + " = 0";
+        String selection = getSelection(Schema.Saving.DELETED, Schema.Saving.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
-    public static Cursor getAllRecurrentTransactions(ContentResolver contentResolver) {
+    public static Cursor getAllRecurrentTransactions(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_RECURRENT_TRANSACTION;
-        String selection = Schema.RecurrentTransaction.DELETED + " = 0";
+        String selection = getSelection(Schema.RecurrentTransaction.DELETED, Schema.RecurrentTransaction.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
-    public static Cursor getAllRecurrentTransfers(ContentResolver contentResolver) {
+    public static Cursor getAllRecurrentTransfers(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_RECURRENT_TRANSFER;
-        String selection = Schema.RecurrentTransfer.DELETED + " = 0";
+        String selection = getSelection(Schema.RecurrentTransfer.DELETED, Schema.RecurrentTransfer.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
-    public static Cursor getAllTransactions(ContentResolver contentResolver) {
+    public static Cursor getAllTransactions(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSACTION;
-        String selection = Schema.Transaction.DELETED + " = 0";
+        String selection = getSelection(Schema.Transaction.DELETED, Schema.Transaction.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllTransactionPeople(ContentResolver contentResolver) {
+    public static Cursor getAllTransactionPeople(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSACTION_PEOPLE;
-        String selection = Schema.TransactionPeople.DELETED + " = 0";
+        String selection = getSelection(Schema.TransactionPeople.DELETED, Schema.TransactionPeople.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllTransactionModels(ContentResolver contentResolver) {
+    public static Cursor getAllTransactionModels(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSACTION_MODEL;
-        String selection = Schema.TransactionModel.DELETED + " = 0";
+        String selection = getSelection(Schema.TransactionModel.DELETED, Schema.TransactionModel.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllTransfers(ContentResolver contentResolver) {
+    public static Cursor getAllTransfers(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSFER;
-        String selection = Schema.Transfer.DELETED + " = 0";
+        String selection = getSelection(Schema.Transfer.DELETED, Schema.Transfer.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllTransferPeople(ContentResolver contentResolver) {
+    public static Cursor getAllTransferPeople(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSFER_PEOPLE;
-        String selection = Schema.TransferPeople.DELETED + " = 0";
+        String selection = getSelection(Schema.TransferPeople.DELETED, Schema.TransferPeople.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllTransferModels(ContentResolver contentResolver) {
+    public static Cursor getAllTransferModels(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSFER_MODEL;
-        String selection = Schema.TransferModel.DELETED + " = 0";
+        String selection = getSelection(Schema.TransferModel.DELETED, Schema.TransferModel.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllAttachments(ContentResolver contentResolver) {
+    public static Cursor getAllAttachments(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_ATTACHMENT;
-        String selection = Schema.Attachment.DELETED + " = 0";
+        String selection = getSelection(Schema.Attachment.DELETED, Schema.Attachment.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
+    /**
+     * Collect the names of the files used by the attachments that have not been changed after
+     * the given time. The files are named using the hash of their content, so the same file
+     * can be shared by many attachments.
+     * @param contentResolver used to query the database.
+     * @param until time of the last edit (included) or {@link Long#MAX_VALUE} for all.
+     * @return the set of the file names.
+     */
+    public static Set<String> getAttachmentFiles(ContentResolver contentResolver, long until) {
+        Uri uri = SyncContentProvider.CONTENT_ATTACHMENT;
+        String[] projection = new String[] {Schema.Attachment.FILE};
+        String selection = Schema.Attachment.DELETED + " = 0 AND " + Schema.Attachment.LAST_EDIT + " <= " + until;
+        Set<String> files = new HashSet<>();
+        Cursor cursor = contentResolver.query(uri, projection, selection, null, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                files.add(cursor.getString(0));
+            }
+            cursor.close();
+        }
+        return files;
+    }
+
 
-    public static Cursor getAllTransactionAttachments(ContentResolver contentResolver) {
+    public static Cursor getAllTransactionAttachments(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSACTION_ATTACHMENT;
-        String selection = Schema.TransactionAttachment.DELETED + " = 0";
+        String selection = getSelection(Schema.TransactionAttachment.DELETED, Schema.TransactionAttachment.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
 
-    public static Cursor getAllTransferAttachments(ContentResolver contentResolver) {
+    public static Cursor getAllTransferAttachments(ContentResolver contentResolver, long since) {
         Uri uri = SyncContentProvider.CONTENT_TRANSFER_ATTACHMENT;
-        String selection = Schema.TransferAttachment.DELETED + " = 0";
+        String selection = getSelection(Schema.TransferAttachment.DELETED, Schema.TransferAttachment.LAST_EDIT, since);
         return contentResolver.query(uri, null, selection, null, null);
     }
 
+    /**
+     * Read the uuid of an item of the database.
+     * @param contentResolver used to access the database.
+     * @param uri of the table of the item.
+     * @param id of the item.
+     * @return the uuid of the item or null if it does not exist.
+     */
+    public static String getUUID(ContentResolver contentResolver, Uri uri, long id) {
+        String idColumn = ID_COLUMNS.get(uri);
+        if (idColumn == null) {
+            throw new IllegalArgumentException("Unknown uri: " + uri);
+        }
+        String[] projection = new String[] {Schema.Wallet.UUID};
+        String selection = idColumn + " = ?";
+        String[] selectionArgs = new String[] {String.valueOf(id)};
+        Cursor cursor = contentResolver.query(uri, projection, selection, selectionArgs, null);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    return cursor.getString(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return null;
+    }
+
+    public static Cursor getDeletedItems(ContentResolver contentResolver, long since) {
+        Uri uri = SyncContentProvider.CONTENT_DELETED_ITEMS;
+        String selection = Schema.DeletedItem.TIME + " > " + since;
+        String sortOrder = Schema.DeletedItem.ID + " ASC";
+        return contentResolver.query(uri, null, selection, null, sortOrder);
+    }
+
+    /**
+     * Remove the deleted items that are already saved inside all the backups that can still be
+     * extended by an incremental backup.
+     * @param contentResolver used to access the database.
+     * @param watermark time in millis of the oldest of these backups.
+     * @return the number of removed items.
+     */
+    public static int pruneDeletedItems(ContentResolver contentResolver, long watermark) {
+        Uri uri = SyncContentProvider.CONTENT_DELETED_ITEMS;
+        String selection = Schema.DeletedItem.TIME + " <= " + watermark;
+        return contentResolver.delete(uri, selection, null);
+    }
+
 }
\ No newline at end of file
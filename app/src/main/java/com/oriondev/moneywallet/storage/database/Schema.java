@@ -317,6 +317,50 @@ package com.oriondev.moneywallet.storage.database;
         /*package-local*/ static final String ATTACHMENT = "_attachment";
     }
 
+    /*package-local*/ static final class DeletedItem {
+        /*package-local*/ static final String TABLE = "deleted_items";
+        /*package-local*/ static final String ID = "deleted_item_id";
+        /*package-local*/ static final String ITEM_TABLE = "deleted_item_table";
+        /*package-local*/ static final String ITEM_UUID = "deleted_item_uuid";
+        /*package-local*/ static final String TIME = "deleted_item_time";
+    }
+
+    /*package-local*/ static final class WalletBalance {
+        /*package-local*/ static final String TABLE = "wallet_balances";
+        /*package-local*/ static final String WALLET = "_wallet";
+        /*package-local*/ static final String MONEY = "wallet_balance_money";
+    }
+
+    /*package-local*/ static final class DailyTotal {
+        /*package-local*/ static final String TABLE = "transaction_daily_totals";
+        /*package-local*/ static final String DAY = "daily_total_day";
+        /*package-local*/ static final String WALLET = "_wallet";
+        /*package-local*/ static final String CATEGORY = "_category";
+        /*package-local*/ static final String DIRECTION = "daily_total_direction";
+        /*package-local*/ static final String MONEY = "daily_total_money";
+        /*package-local*/ static final String COUNT = "daily_total_count";
+    }
+
+    /*package-local*/ static final class TransactionSearch {
+        /*package-local*/ static final String TABLE = "transaction_search";
+        /*package-local*/ static final String ID = "docid";
+        /*package-local*/ static final String DESCRIPTION = "search_description";
+        /*package-local*/ static final String NOTE = "search_note";
+        /*package-local*/ static final String CATEGORY = "search_category";
+        /*package-local*/ static final String EVENT = "search_event";
+        /*package-local*/ static final String PLACE = "search_place";
+        /*package-local*/ static final String DATE = "search_date";
+        /*package-local*/ static final String MONEY = "search_money";
+    }
+
+    /*package-local*/ static final class BudgetProgress {
+        /*package-local*/ static final String TABLE = "budget_progress";
+        /*package-local*/ static final String BUDGET = "_budget";
+        /*package-local*/ static final String WALLET = "_wallet";
+        /*package-local*/ static final String MONEY = "budget_progress_money";
+        /*package-local*/ static final String COUNT = "budget_progress_count";
+    }
+
     /*package-local*/ static final class CategoryType {
         /*package-local*/ static final int INCOME = 0;
         /*package-local*/ static final int EXPENSE = 1;
@@ -767,9 +811,631 @@ package com.oriondev.moneywallet.storage.database;
             "(" + Attachment.ID + ") ON UPDATE NO ACTION ON DELETE CASCADE " +
             ")";
 
+    /**
+     * The items are physically removed from the database: this table keeps track of the uuid of
+     * the deleted items (filled by triggers) to let an incremental backup propagate the deletions.
+     * The time is expressed in milliseconds like the last edit column of the other tables.
+     */
+    /*package-local*/ static final String CREATE_TABLE_DELETED_ITEM = "CREATE TABLE IF NOT EXISTS " + DeletedItem.TABLE + " (" +
+            DeletedItem.ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            DeletedItem.ITEM_TABLE + " TEXT NOT NULL, " +
+            DeletedItem.ITEM_UUID + " TEXT NOT NULL, " +
+            DeletedItem.TIME + " INTEGER NOT NULL" +
+            ")";
+
     /*package-local*/ static final String CREATE_CATEGORY_INDEX_COLUMN = "ALTER TABLE " +
             Category.TABLE + " ADD COLUMN " + Category.INDEX + " INTEGER NOT NULL DEFAULT 0";
 
     /*package-local*/ static final String CREATE_WALLET_INDEX_COLUMN = "ALTER TABLE " +
             Wallet.TABLE + " ADD COLUMN " + Wallet.INDEX + " INTEGER NOT NULL DEFAULT 0";
-}
\ No newline at end of file
+
+    /*package-local*/ static final String CREATE_TABLE_WALLET_BALANCE = "CREATE TABLE " + WalletBalance.TABLE + " (" +
+            WalletBalance.WALLET + " INTEGER PRIMARY KEY, " +
+            WalletBalance.MONEY + " INTEGER NOT NULL DEFAULT 0, " +
+            "FOREIGN KEY (" + WalletBalance.WALLET + ") REFERENCES " + Wallet.TABLE +
+            "(" + Wallet.ID + ") ON UPDATE NO ACTION ON DELETE CASCADE " +
+            ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_DATE_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_date_index ON " + Transaction.TABLE + " (" + Transaction.DATE + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_WALLET_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_wallet_index ON " + Transaction.TABLE + " (" + Transaction.WALLET + ", " +
+            Transaction.DELETED + ", " + Transaction.DATE + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_CATEGORY_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_category_index ON " + Transaction.TABLE + " (" + Transaction.CATEGORY + ", " +
+            Transaction.DATE + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_EVENT_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_event_index ON " + Transaction.TABLE + " (" + Transaction.EVENT + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_DEBT_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_debt_index ON " + Transaction.TABLE + " (" + Transaction.DEBT + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_SAVING_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_saving_index ON " + Transaction.TABLE + " (" + Transaction.SAVING + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_RECURRENCE_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transactions_recurrence_index ON " + Transaction.TABLE + " (" + Transaction.RECURRENCE + ")";
+
+    /*package-local*/ static final String CREATE_TRANSACTION_PEOPLE_PERSON_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transaction_people_person_index ON " + TransactionPeople.TABLE + " (" + TransactionPeople.PERSON + ")";
+
+    /*package-local*/ static final String CREATE_DELETED_ITEM_TIME_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "deleted_items_time_index ON " + DeletedItem.TABLE + " (" + DeletedItem.TIME + ")";
+
+    /*package-local*/ static final String CREATE_ATTACHMENT_FILE_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "attachments_file_index ON " + Attachment.TABLE + " (" + Attachment.FILE + ")";
+
+    /*package-local*/ static final String CREATE_TRANSFER_FROM_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transfers_from_index ON " + Transfer.TABLE + " (" + Transfer.TRANSACTION_FROM + ")";
+
+    /*package-local*/ static final String CREATE_TRANSFER_TO_INDEX = "CREATE INDEX IF NOT EXISTS " +
+            "transfers_to_index ON " + Transfer.TABLE + " (" + Transfer.TRANSACTION_TO + ")";
+
+    /**
+     * The wallet balance table is a materialized view of the transactions table: the triggers
+     * below keep it aligned for every write operation that is performed on the transactions,
+     * including the ones issued by transfers, debts, savings, recurrences and backup restores.
+     * A transaction contributes to the balance only if it is not deleted, it is confirmed and
+     * it is counted in total. Future transactions are included: they are subtracted at query time.
+     */
+    /*package-local*/ static final String CREATE_TRIGGER_WALLET_BALANCE_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "wallet_balance_after_insert AFTER INSERT ON " + Transaction.TABLE + " BEGIN " +
+            getWalletBalanceIncrement("NEW", "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_WALLET_BALANCE_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "wallet_balance_after_update AFTER UPDATE OF " + Transaction.MONEY + ", " + Transaction.DIRECTION +
+            ", " + Transaction.WALLET + ", " + Transaction.CONFIRMED + ", " + Transaction.COUNT_IN_TOTAL + ", " +
+            Transaction.DELETED + " ON " + Transaction.TABLE + " BEGIN " +
+            getWalletBalanceIncrement("OLD", "-") + " " + getWalletBalanceIncrement("NEW", "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_WALLET_BALANCE_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "wallet_balance_after_delete AFTER DELETE ON " + Transaction.TABLE + " BEGIN " +
+            getWalletBalanceIncrement("OLD", "-") + " END";
+
+    /**
+     * Build the trigger statements that apply the contribution of a transaction row to the
+     * balance of its wallet. When the contribution is added, the balance row is created on the
+     * fly if it does not exist yet. When it is removed, the row is never created because the
+     * trigger may be fired by the cascade deletion of the wallet itself.
+     * @param row reference to the transaction row inside the trigger (NEW or OLD).
+     * @param operator "+" to add the contribution, "-" to remove it.
+     * @return the trigger statements.
+     */
+    private static String getWalletBalanceIncrement(String row, String operator) {
+        String statements = "";
+        if ("+".equals(operator)) {
+            statements += "INSERT OR IGNORE INTO " + WalletBalance.TABLE + " (" + WalletBalance.WALLET + ", " +
+                    WalletBalance.MONEY + ") VALUES (" + row + "." + Transaction.WALLET + ", 0); ";
+        }
+        return statements + "UPDATE " + WalletBalance.TABLE + " SET " + WalletBalance.MONEY + " = " +
+                WalletBalance.MONEY + " " + operator + " (((" + row + "." + Transaction.DIRECTION +
+                " * 2) - 1) * " + row + "." + Transaction.MONEY + ") WHERE " + WalletBalance.WALLET +
+                " = " + row + "." + Transaction.WALLET + " AND " + getTotalCondition(row) + ";";
+    }
+
+    /**
+     * Build the condition that a transaction row must satisfy to be part of the totals:
+     * it must not be deleted, it must be confirmed and it must be counted in total.
+     * @param row reference to the transaction row inside the trigger (NEW or OLD).
+     * @return the sql condition.
+     */
+    private static String getTotalCondition(String row) {
+        return row + "." + Transaction.DELETED + " = 0 AND " + row + "." + Transaction.CONFIRMED +
+                " = 1 AND " + row + "." + Transaction.COUNT_IN_TOTAL + " = 1";
+    }
+
+    /*package-local*/ static final String CLEAR_WALLET_BALANCES = "DELETE FROM " + WalletBalance.TABLE;
+
+    /*package-local*/ static final String COMPUTE_WALLET_BALANCES = "SELECT " + Transaction.WALLET + ", " +
+            "SUM(((" + Transaction.DIRECTION + " * 2) - 1) * " + Transaction.MONEY + ") FROM " +
+            Transaction.TABLE + " WHERE " + Transaction.DELETED + " = 0 AND " + Transaction.CONFIRMED +
+            " = 1 AND " + Transaction.COUNT_IN_TOTAL + " = 1 GROUP BY " + Transaction.WALLET;
+
+    /*package-local*/ static final String FILL_WALLET_BALANCES = "INSERT INTO " + WalletBalance.TABLE +
+            " (" + WalletBalance.WALLET + ", " + WalletBalance.MONEY + ") " + COMPUTE_WALLET_BALANCES;
+
+    /*package-local*/ static final String CREATE_TABLE_DAILY_TOTAL = "CREATE TABLE " + DailyTotal.TABLE + " (" +
+            DailyTotal.DAY + " TEXT NOT NULL, " +
+            DailyTotal.WALLET + " INTEGER NOT NULL, " +
+            DailyTotal.CATEGORY + " INTEGER NOT NULL, " +
+            DailyTotal.DIRECTION + " INTEGER NOT NULL, " +
+            DailyTotal.MONEY + " INTEGER NOT NULL DEFAULT 0, " +
+            DailyTotal.COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+            "PRIMARY KEY (" + DailyTotal.DAY + ", " + DailyTotal.WALLET + ", " + DailyTotal.CATEGORY +
+            ", " + DailyTotal.DIRECTION + "), " +
+            "FOREIGN KEY (" + DailyTotal.WALLET + ") REFERENCES " + Wallet.TABLE +
+            "(" + Wallet.ID + ") ON UPDATE NO ACTION ON DELETE CASCADE, " +
+            "FOREIGN KEY (" + DailyTotal.CATEGORY + ") REFERENCES " + Category.TABLE +
+            "(" + Category.ID + ") ON UPDATE NO ACTION ON DELETE CASCADE " +
+            ")";
+
+    /**
+     * The daily total table contains the sum of the money of the transactions grouped by day,
+     * wallet, category and direction. As for the wallet balances, it is kept updated by triggers
+     * and the rows that do not contain any transaction are removed to keep the table compact.
+     */
+    /*package-local*/ static final String CREATE_TRIGGER_DAILY_TOTAL_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "daily_total_after_insert AFTER INSERT ON " + Transaction.TABLE + " BEGIN " +
+            getDailyTotalIncrement("NEW", "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_DAILY_TOTAL_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "daily_total_after_update AFTER UPDATE OF " + Transaction.MONEY + ", " + Transaction.DATE + ", " +
+            Transaction.CATEGORY + ", " + Transaction.DIRECTION + ", " + Transaction.WALLET + ", " +
+            Transaction.CONFIRMED + ", " + Transaction.COUNT_IN_TOTAL + ", " + Transaction.DELETED +
+            " ON " + Transaction.TABLE + " BEGIN " + getDailyTotalIncrement("OLD", "-") + " " +
+            getDailyTotalIncrement("NEW", "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_DAILY_TOTAL_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "daily_total_after_delete AFTER DELETE ON " + Transaction.TABLE + " BEGIN " +
+            getDailyTotalIncrement("OLD", "-") + " END";
+
+    /**
+     * Build the trigger statements that apply the contribution of a transaction row to the
+     * daily total it belongs to. Empty rows are created when the contribution is added and
+     * they are removed as soon as the last transaction is removed.
+     * @param row reference to the transaction row inside the trigger (NEW or OLD).
+     * @param operator "+" to add the contribution, "-" to remove it.
+     * @return the trigger statements.
+     */
+    private static String getDailyTotalIncrement(String row, String operator) {
+        String key = DailyTotal.DAY + " = DATE(" + row + "." + Transaction.DATE + ") AND " +
+                DailyTotal.WALLET + " = " + row + "." + Transaction.WALLET + " AND " +
+                DailyTotal.CATEGORY + " = " + row + "." + Transaction.CATEGORY + " AND " +
+                DailyTotal.DIRECTION + " = " + row + "." + Transaction.DIRECTION;
+        String condition = getTotalCondition(row);
+        String statements = "";
+        if ("+".equals(operator)) {
+            statements += "INSERT OR IGNORE INTO " + DailyTotal.TABLE + " (" + DailyTotal.DAY + ", " +
+                    DailyTotal.WALLET + ", " + DailyTotal.CATEGORY + ", " + DailyTotal.DIRECTION + ") " +
+                    "SELECT DATE(" + row + "." + Transaction.DATE + "), " + row + "." + Transaction.WALLET +
+                    ", " + row + "." + Transaction.CATEGORY + ", " + row + "." + Transaction.DIRECTION +
+                    " WHERE " + condition + "; ";
+        }
+        statements += "UPDATE " + DailyTotal.TABLE + " SET " + DailyTotal.MONEY + " = " + DailyTotal.MONEY +
+                " " + operator + " " + row + "." + Transaction.MONEY + ", " + DailyTotal.COUNT + " = " +
+                DailyTotal.COUNT + " " + operator + " 1 WHERE " + key + " AND " + condition + ";";
+        if ("-".equals(operator)) {
+            statements += " DELETE FROM " + DailyTotal.TABLE + " WHERE " + key + " AND " +
+                    DailyTotal.COUNT + " <= 0;";
+        }
+        return statements;
+    }
+
+    /*package-local*/ static final String CLEAR_DAILY_TOTALS = "DELETE FROM " + DailyTotal.TABLE;
+
+    /*package-local*/ static final String COMPUTE_DAILY_TOTALS = "SELECT DATE(" + Transaction.DATE + "), " +
+            Transaction.WALLET + ", " + Transaction.CATEGORY + ", " + Transaction.DIRECTION + ", SUM(" +
+            Transaction.MONEY + "), COUNT(*) FROM " + Transaction.TABLE + " WHERE " + Transaction.DELETED +
+            " = 0 AND " + Transaction.CONFIRMED + " = 1 AND " + Transaction.COUNT_IN_TOTAL + " = 1 GROUP BY " +
+            "DATE(" + Transaction.DATE + "), " + Transaction.WALLET + ", " + Transaction.CATEGORY + ", " +
+            Transaction.DIRECTION;
+
+    /*package-local*/ static final String FILL_DAILY_TOTALS = "INSERT INTO " + DailyTotal.TABLE + " (" +
+            DailyTotal.DAY + ", " + DailyTotal.WALLET + ", " + DailyTotal.CATEGORY + ", " + DailyTotal.DIRECTION +
+            ", " + DailyTotal.MONEY + ", " + DailyTotal.COUNT + ") " + COMPUTE_DAILY_TOTALS;
+
+    private static final String SELECT_DAILY_TOTALS = "SELECT " + DailyTotal.DAY + ", " + DailyTotal.WALLET +
+            ", " + DailyTotal.CATEGORY + ", " + DailyTotal.DIRECTION + ", " + DailyTotal.MONEY + ", " +
+            DailyTotal.COUNT + " FROM " + DailyTotal.TABLE;
+
+    /*package-local*/ static final String COUNT_MISALIGNED_DAILY_TOTALS = "SELECT " +
+            "(SELECT COUNT(*) FROM (" + COMPUTE_DAILY_TOTALS + " EXCEPT " + SELECT_DAILY_TOTALS + ")) + " +
+            "(SELECT COUNT(*) FROM (" + SELECT_DAILY_TOTALS + " EXCEPT " + COMPUTE_DAILY_TOTALS + "))";
+
+    /*package-local*/ static final String CREATE_TABLE_BUDGET_PROGRESS = "CREATE TABLE " + BudgetProgress.TABLE + " (" +
+            BudgetProgress.BUDGET + " INTEGER NOT NULL, " +
+            BudgetProgress.WALLET + " INTEGER NOT NULL, " +
+            BudgetProgress.MONEY + " INTEGER NOT NULL DEFAULT 0, " +
+            BudgetProgress.COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+            "PRIMARY KEY (" + BudgetProgress.BUDGET + ", " + BudgetProgress.WALLET + "), " +
+            "FOREIGN KEY (" + BudgetProgress.BUDGET + ") REFERENCES " + Budget.TABLE +
+            "(" + Budget.ID + ") ON UPDATE NO ACTION ON DELETE CASCADE, " +
+            "FOREIGN KEY (" + BudgetProgress.WALLET + ") REFERENCES " + Wallet.TABLE +
+            "(" + Wallet.ID + ") ON UPDATE NO ACTION ON DELETE CASCADE " +
+            ")";
+
+    /**
+     * Build the query that computes the progress of the budgets for each of their wallets using
+     * the transactions that satisfy the given condition. The rules are the same ones that were
+     * applied by the original budget query:
+     * - expenses budgets sum the expenses of the wallets, excluding the transfers between two
+     *   wallets of the same budget;
+     * - incomes budgets sum the incomes of the wallets, excluding the transfers between two
+     *   wallets of the same budget;
+     * - category budgets sum the incomes and subtract the expenses of the category and of its
+     *   children.
+     * Future transactions are included: they are subtracted at query time.
+     * When a condition on the transactions is provided, the query starts from the transactions
+     * table (the join order is forced because the tables are not analyzed and sqlite would prefer
+     * to scan all the transactions of each wallet), otherwise it starts from the budget wallets.
+     * @param transactionCondition sql condition on the transactions (alias 't') or null.
+     * @param budgetCondition sql condition on the budgets (alias 'b').
+     * @param ignoredTransaction reference to a transaction that is going to be deleted: the
+     *                           transfers it is part of are ignored (it may be null).
+     * @return the query that returns budget, wallet, money and count.
+     */
+    private static String getBudgetProgressQuery(String transactionCondition, String budgetCondition,
+                                                 String ignoredTransaction) {
+        String tables;
+        if (transactionCondition != null) {
+            tables = Transaction.TABLE + " AS t CROSS JOIN " + BudgetWallet.TABLE + " AS bw ON t." +
+                    Transaction.WALLET + " = bw." + BudgetWallet.WALLET + " CROSS JOIN " + Budget.TABLE +
+                    " AS b ON bw." + BudgetWallet.BUDGET + " = b." + Budget.ID + " CROSS JOIN " +
+                    Wallet.TABLE + " AS w ON bw." + BudgetWallet.WALLET + " = w." + Wallet.ID;
+        } else {
+            tables = BudgetWallet.TABLE + " AS bw JOIN " + Budget.TABLE + " AS b ON bw." +
+                    BudgetWallet.BUDGET + " = b." + Budget.ID + " JOIN " + Wallet.TABLE + " AS w ON bw." +
+                    BudgetWallet.WALLET + " = w." + Wallet.ID + " JOIN " + Transaction.TABLE + " AS t ON t." +
+                    Transaction.WALLET + " = bw." + BudgetWallet.WALLET;
+        }
+        return "SELECT bw." + BudgetWallet.BUDGET + " AS " + BudgetProgress.BUDGET + ", bw." +
+                BudgetWallet.WALLET + " AS " + BudgetProgress.WALLET + ", SUM(CASE WHEN b." + Budget.TYPE +
+                " = " + BudgetType.CATEGORY + " THEN ((t." + Transaction.DIRECTION + " * 2) - 1) * t." +
+                Transaction.MONEY + " ELSE t." + Transaction.MONEY + " END) AS " + BudgetProgress.MONEY +
+                ", COUNT(*) AS " + BudgetProgress.COUNT + " FROM " + tables + " LEFT JOIN " + Category.TABLE +
+                " AS tc ON t." + Transaction.CATEGORY + " = tc." +
+                Category.ID + " WHERE bw." + BudgetWallet.DELETED + " = 0 AND b." + Budget.DELETED +
+                " = 0 AND w." + Wallet.DELETED + " = 0 AND t." + Transaction.DELETED + " = 0 AND t." +
+                Transaction.DATE + " >= b." + Budget.START_DATE + " AND t." + Transaction.DATE +
+                " < DATE(b." + Budget.END_DATE + ", '+1 day') AND ((b." + Budget.TYPE + " = " +
+                BudgetType.EXPENSES + " AND t." + Transaction.DIRECTION + " = 0 AND NOT " +
+                getInternalTransferCondition(Transfer.TRANSACTION_FROM, Transfer.TRANSACTION_TO, ignoredTransaction) + ") OR (b." +
+                Budget.TYPE + " = " + BudgetType.INCOMES + " AND t." + Transaction.DIRECTION + " = 1 AND NOT " +
+                getInternalTransferCondition(Transfer.TRANSACTION_TO, Transfer.TRANSACTION_FROM, ignoredTransaction) + ") OR (b." +
+                Budget.TYPE + " = " + BudgetType.CATEGORY + " AND tc." + Category.DELETED + " = 0 AND (b." +
+                Budget.CATEGORY + " = t." + Transaction.CATEGORY + " OR b." + Budget.CATEGORY + " = tc." +
+                Category.PARENT + "))) AND (" + (transactionCondition != null ? transactionCondition : "1") +
+                ") AND (" + budgetCondition + ") " +
+                "GROUP BY bw." + BudgetWallet.BUDGET + ", bw." + BudgetWallet.WALLET;
+    }
+
+    /**
+     * Build the condition that is true when the transaction 't' is one side of a transfer whose
+     * other side belongs to another wallet of the same budget.
+     * @param side column of the transfer that references the transaction.
+     * @param otherSide column of the transfer that references the other transaction.
+     * @param ignoredTransaction reference to a transaction whose transfers are ignored (may be null).
+     * @return the sql condition.
+     */
+    private static String getInternalTransferCondition(String side, String otherSide, String ignoredTransaction) {
+        String condition = "EXISTS (SELECT 1 FROM " + Transfer.TABLE + " AS tf JOIN " + Transaction.TABLE + " AS t2 ON " +
+                "tf." + otherSide + " = t2." + Transaction.ID + " JOIN " + BudgetWallet.TABLE + " AS bw2 ON " +
+                "t2." + Transaction.WALLET + " = bw2." + BudgetWallet.WALLET + " WHERE tf." + side + " = t." +
+                Transaction.ID + " AND bw2." + BudgetWallet.BUDGET + " = b." + Budget.ID + " AND bw2." +
+                BudgetWallet.WALLET + " != bw." + BudgetWallet.WALLET;
+        if (ignoredTransaction != null) {
+            condition += " AND t2." + Transaction.ID + " != " + ignoredTransaction;
+        }
+        return condition + ")";
+    }
+
+    /**
+     * Build the trigger statements that apply the contribution of some transactions to the
+     * progress of the budgets they belong to. Rows are created when the contribution is added
+     * and they are removed as soon as the last transaction is removed.
+     * @param transactionCondition sql condition that selects the transactions (alias 't').
+     * @param operator "+" to add the contribution, "-" to remove it.
+     * @return the trigger statements.
+     */
+    private static String getBudgetProgressIncrement(String transactionCondition, String operator) {
+        return getBudgetProgressIncrement(transactionCondition, operator, null);
+    }
+
+    /**
+     * Build the trigger statements that apply the contribution of some transactions to the
+     * progress of the budgets they belong to, as if a transaction was already deleted.
+     * @param transactionCondition sql condition that selects the transactions (alias 't').
+     * @param operator "+" to add the contribution, "-" to remove it.
+     * @param ignoredTransaction reference to a transaction whose transfers are ignored (may be null).
+     * @return the trigger statements.
+     */
+    private static String getBudgetProgressIncrement(String transactionCondition, String operator,
+                                                     String ignoredTransaction) {
+        String statements = "REPLACE INTO " + BudgetProgress.TABLE + " (" + BudgetProgress.BUDGET + ", " +
+                BudgetProgress.WALLET + ", " + BudgetProgress.MONEY + ", " + BudgetProgress.COUNT + ") " +
+                "SELECT c." + BudgetProgress.BUDGET + ", c." + BudgetProgress.WALLET + ", IFNULL(bp." +
+                BudgetProgress.MONEY + ", 0) " + operator + " c." + BudgetProgress.MONEY + ", IFNULL(bp." +
+                BudgetProgress.COUNT + ", 0) " + operator + " c." + BudgetProgress.COUNT + " FROM (" +
+                getBudgetProgressQuery(transactionCondition, "1", ignoredTransaction) + ") AS c LEFT JOIN " + BudgetProgress.TABLE +
+                " AS bp ON c." + BudgetProgress.BUDGET + " = bp." + BudgetProgress.BUDGET + " AND c." +
+                BudgetProgress.WALLET + " = bp." + BudgetProgress.WALLET + ";";
+        if ("-".equals(operator)) {
+            statements += " DELETE FROM " + BudgetProgress.TABLE + " WHERE " + BudgetProgress.COUNT + " <= 0;";
+        }
+        return statements;
+    }
+
+    /**
+     * Build the trigger statements that compute again from scratch the progress of the budgets
+     * that satisfy the given condition. They are used when a budget, its wallets or the tree of
+     * the categories are changed because the change may affect all the transactions of a budget.
+     * @param budgetCondition sql condition on the budgets (alias 'b').
+     * @return the trigger statements.
+     */
+    private static String getBudgetProgressRecompute(String budgetCondition) {
+        return "DELETE FROM " + BudgetProgress.TABLE + " WHERE " + BudgetProgress.BUDGET + " IN (SELECT b." +
+                Budget.ID + " FROM " + Budget.TABLE + " AS b WHERE " + budgetCondition + "); INSERT INTO " +
+                BudgetProgress.TABLE + " (" + BudgetProgress.BUDGET + ", " + BudgetProgress.WALLET + ", " +
+                BudgetProgress.MONEY + ", " + BudgetProgress.COUNT + ") " +
+                getBudgetProgressQuery(null, budgetCondition, null) + ";";
+    }
+
+    private static String getTransactionIdCondition(String row) {
+        return "t." + Transaction.ID + " = " + row + "." + Transaction.ID;
+    }
+
+    private static String getTransferSidesCondition(String... rows) {
+        StringBuilder builder = new StringBuilder("t." + Transaction.ID + " IN (");
+        for (int i = 0; i < rows.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(rows[i]).append(".").append(Transfer.TRANSACTION_FROM).append(", ")
+                    .append(rows[i]).append(".").append(Transfer.TRANSACTION_TO);
+        }
+        return builder.append(")").toString();
+    }
+
+    private static String getTransferCounterpartCondition(String row) {
+        return "t." + Transaction.ID + " IN (SELECT " + Transfer.TRANSACTION_FROM + " FROM " + Transfer.TABLE +
+                " WHERE " + Transfer.TRANSACTION_TO + " = " + row + "." + Transaction.ID + " UNION SELECT " +
+                Transfer.TRANSACTION_TO + " FROM " + Transfer.TABLE + " WHERE " + Transfer.TRANSACTION_FROM +
+                " = " + row + "." + Transaction.ID + ")";
+    }
+
+    private static final String BUDGET_PROGRESS_TRANSACTION_COLUMNS = Transaction.MONEY + ", " +
+            Transaction.DATE + ", " + Transaction.CATEGORY + ", " + Transaction.DIRECTION + ", " +
+            Transaction.WALLET + ", " + Transaction.DELETED;
+
+    /**
+     * The budget progress table contains, for each wallet of each budget, the sum of the money
+     * of the transactions that are part of the budget. The contribution of a transaction is
+     * removed before it is modified (BEFORE triggers, because the rules depend on the rows of
+     * the other tables) and it is added again after the modification. Transfers change the
+     * contribution of both their transactions, and so does the wallet of one of the two sides.
+     * When a transaction is deleted, its transfer is deleted by the cascade only after the row
+     * is gone: the other side of the transfer is updated in advance by the delete trigger.
+     */
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_transaction_insert AFTER INSERT ON " + Transaction.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransactionIdCondition("NEW"), "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_BEFORE_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_before_transaction_update BEFORE UPDATE OF " + BUDGET_PROGRESS_TRANSACTION_COLUMNS +
+            " ON " + Transaction.TABLE + " BEGIN " + getBudgetProgressIncrement(getTransactionIdCondition("OLD"), "-") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_AFTER_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_transaction_update AFTER UPDATE OF " + BUDGET_PROGRESS_TRANSACTION_COLUMNS +
+            " ON " + Transaction.TABLE + " BEGIN " + getBudgetProgressIncrement(getTransactionIdCondition("NEW"), "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSACTION_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_before_transaction_delete BEFORE DELETE ON " + Transaction.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransactionIdCondition("OLD") + " OR " +
+                    getTransferCounterpartCondition("OLD"), "-") + " " +
+            getBudgetProgressIncrement(getTransferCounterpartCondition("OLD"), "+", "OLD." +
+                    Transaction.ID) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_COUNTERPART_BEFORE_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_before_counterpart_update BEFORE UPDATE OF " + Transaction.WALLET + " ON " +
+            Transaction.TABLE + " BEGIN " + getBudgetProgressIncrement(getTransferCounterpartCondition("OLD"), "-") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_COUNTERPART_AFTER_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_counterpart_update AFTER UPDATE OF " + Transaction.WALLET + " ON " +
+            Transaction.TABLE + " BEGIN " + getBudgetProgressIncrement(getTransferCounterpartCondition("NEW"), "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_BEFORE_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_before_transfer_insert BEFORE INSERT ON " + Transfer.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransferSidesCondition("NEW"), "-") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_AFTER_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_transfer_insert AFTER INSERT ON " + Transfer.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransferSidesCondition("NEW"), "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_BEFORE_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_before_transfer_update BEFORE UPDATE OF " + Transfer.TRANSACTION_FROM + ", " +
+            Transfer.TRANSACTION_TO + " ON " + Transfer.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransferSidesCondition("OLD", "NEW"), "-") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_AFTER_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_transfer_update AFTER UPDATE OF " + Transfer.TRANSACTION_FROM + ", " +
+            Transfer.TRANSACTION_TO + " ON " + Transfer.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransferSidesCondition("OLD", "NEW"), "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_BEFORE_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_before_transfer_delete BEFORE DELETE ON " + Transfer.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransferSidesCondition("OLD"), "-") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_TRANSFER_AFTER_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_transfer_delete AFTER DELETE ON " + Transfer.TABLE + " BEGIN " +
+            getBudgetProgressIncrement(getTransferSidesCondition("OLD"), "+") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_budget_insert AFTER INSERT ON " + Budget.TABLE + " BEGIN " +
+            getBudgetProgressRecompute("b." + Budget.ID + " = NEW." + Budget.ID) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_budget_update AFTER UPDATE OF " + Budget.TYPE + ", " + Budget.CATEGORY + ", " +
+            Budget.START_DATE + ", " + Budget.END_DATE + ", " + Budget.DELETED + " ON " + Budget.TABLE + " BEGIN " +
+            getBudgetProgressRecompute("b." + Budget.ID + " = NEW." + Budget.ID) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_WALLET_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_budget_wallet_insert AFTER INSERT ON " + BudgetWallet.TABLE + " BEGIN " +
+            getBudgetProgressRecompute("b." + Budget.ID + " = NEW." + BudgetWallet.BUDGET) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_WALLET_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_budget_wallet_update AFTER UPDATE OF " + BudgetWallet.BUDGET + ", " +
+            BudgetWallet.WALLET + ", " + BudgetWallet.DELETED + " ON " + BudgetWallet.TABLE + " BEGIN " +
+            getBudgetProgressRecompute("b." + Budget.ID + " IN (OLD." + BudgetWallet.BUDGET + ", NEW." +
+                    BudgetWallet.BUDGET + ")") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_BUDGET_WALLET_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_budget_wallet_delete AFTER DELETE ON " + BudgetWallet.TABLE + " BEGIN " +
+            getBudgetProgressRecompute("b." + Budget.ID + " = OLD." + BudgetWallet.BUDGET) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_WALLET_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_wallet_update AFTER UPDATE OF " + Wallet.DELETED + " ON " + Wallet.TABLE +
+            " BEGIN " + getBudgetProgressRecompute("b." + Budget.ID + " IN (SELECT " + BudgetWallet.BUDGET +
+            " FROM " + BudgetWallet.TABLE + " WHERE " + BudgetWallet.WALLET + " = NEW." + Wallet.ID + ")") + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_BUDGET_PROGRESS_CATEGORY_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "budget_progress_after_category_update AFTER UPDATE OF " + Category.PARENT + ", " + Category.DELETED +
+            " ON " + Category.TABLE + " BEGIN " + getBudgetProgressRecompute("b." + Budget.TYPE + " = " +
+            BudgetType.CATEGORY) + " END";
+
+    /*package-local*/ static final String CLEAR_BUDGET_PROGRESS = "DELETE FROM " + BudgetProgress.TABLE;
+
+    /*package-local*/ static final String COMPUTE_BUDGET_PROGRESS = getBudgetProgressQuery(null, "1", null);
+
+    /*package-local*/ static final String COMPUTE_FUTURE_BUDGET_PROGRESS = getBudgetProgressQuery("t." +
+            Transaction.DATE + " > DATETIME('now', 'localtime')", "1", null);
+
+    /*package-local*/ static final String FILL_BUDGET_PROGRESS = "INSERT INTO " + BudgetProgress.TABLE + " (" +
+            BudgetProgress.BUDGET + ", " + BudgetProgress.WALLET + ", " + BudgetProgress.MONEY + ", " +
+            BudgetProgress.COUNT + ") " + COMPUTE_BUDGET_PROGRESS;
+
+    private static final String SELECT_BUDGET_PROGRESS = "SELECT " + BudgetProgress.BUDGET + ", " +
+            BudgetProgress.WALLET + ", " + BudgetProgress.MONEY + ", " + BudgetProgress.COUNT + " FROM " +
+            BudgetProgress.TABLE;
+
+    /*package-local*/ static final String COUNT_MISALIGNED_BUDGET_PROGRESS = "SELECT " +
+            "(SELECT COUNT(*) FROM (" + COMPUTE_BUDGET_PROGRESS + " EXCEPT " + SELECT_BUDGET_PROGRESS + ")) + " +
+            "(SELECT COUNT(*) FROM (" + SELECT_BUDGET_PROGRESS + " EXCEPT " + COMPUTE_BUDGET_PROGRESS + "))";
+
+    /**
+     * The transaction search table is a full-text index (fts4 is used because it is available in
+     * every version of the platform sqlite library) over the text of the transactions and over
+     * the names of their category, event and place. The docid of each row is the id of the
+     * transaction. It is kept updated by triggers: every time a transaction, or the name of one
+     * of the linked items, is changed the affected rows are removed and indexed again.
+     */
+    /*package-local*/ static final String CREATE_TABLE_TRANSACTION_SEARCH = "CREATE VIRTUAL TABLE IF NOT EXISTS " +
+            TransactionSearch.TABLE + " USING fts4(" + TransactionSearch.DESCRIPTION + ", " +
+            TransactionSearch.NOTE + ", " + TransactionSearch.CATEGORY + ", " + TransactionSearch.EVENT + ", " +
+            TransactionSearch.PLACE + ", " + TransactionSearch.DATE + ", " + TransactionSearch.MONEY + ")";
+
+    /**
+     * Build the query that returns the indexed content of the transactions.
+     * @param condition sql condition on the transactions (alias 't').
+     * @return the query in the same column order of the transaction search table.
+     */
+    private static String getTransactionSearchQuery(String condition) {
+        return "SELECT t." + Transaction.ID + ", t." + Transaction.DESCRIPTION + ", t." + Transaction.NOTE +
+                ", c." + Category.NAME + ", e." + Event.NAME + ", p." + Place.NAME + ", t." + Transaction.DATE +
+                ", t." + Transaction.MONEY + " FROM " + Transaction.TABLE + " AS t LEFT JOIN " + Category.TABLE +
+                " AS c ON t." + Transaction.CATEGORY + " = c." + Category.ID + " AND c." + Category.DELETED +
+                " = 0 LEFT JOIN " + Event.TABLE + " AS e ON t." + Transaction.EVENT + " = e." + Event.ID +
+                " AND e." + Event.DELETED + " = 0 LEFT JOIN " + Place.TABLE + " AS p ON t." + Transaction.PLACE +
+                " = p." + Place.ID + " AND p." + Place.DELETED + " = 0 WHERE t." + Transaction.DELETED +
+                " = 0 AND " + condition;
+    }
+
+    /**
+     * Build the trigger statements that index again the transactions that match a condition.
+     * @param removeCondition sql condition on the docid of the rows to remove from the index.
+     * @param indexCondition sql condition on the transactions (alias 't') to index.
+     * @return the trigger statements.
+     */
+    private static String getTransactionSearchUpdate(String removeCondition, String indexCondition) {
+        return "DELETE FROM " + TransactionSearch.TABLE + " WHERE " + removeCondition + "; " +
+                getTransactionSearchInsert(indexCondition) + ";";
+    }
+
+    private static String getTransactionSearchInsert(String condition) {
+        return "INSERT INTO " + TransactionSearch.TABLE + " (" + TransactionSearch.ID + ", " +
+                TransactionSearch.DESCRIPTION + ", " + TransactionSearch.NOTE + ", " + TransactionSearch.CATEGORY +
+                ", " + TransactionSearch.EVENT + ", " + TransactionSearch.PLACE + ", " + TransactionSearch.DATE +
+                ", " + TransactionSearch.MONEY + ") " + getTransactionSearchQuery(condition);
+    }
+
+    /*package-local*/ static final String CREATE_TRIGGER_TRANSACTION_SEARCH_INSERT = "CREATE TRIGGER IF NOT EXISTS " +
+            "transaction_search_after_insert AFTER INSERT ON " + Transaction.TABLE + " BEGIN " +
+            getTransactionSearchInsert("t." + Transaction.ID + " = NEW." + Transaction.ID) + "; END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_TRANSACTION_SEARCH_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "transaction_search_after_update AFTER UPDATE OF " + Transaction.DESCRIPTION + ", " +
+            Transaction.NOTE + ", " + Transaction.CATEGORY + ", " + Transaction.EVENT + ", " + Transaction.PLACE +
+            ", " + Transaction.DATE + ", " + Transaction.MONEY + ", " + Transaction.DELETED + " ON " +
+            Transaction.TABLE + " BEGIN " + getTransactionSearchUpdate(TransactionSearch.ID + " = OLD." +
+            Transaction.ID, "t." + Transaction.ID + " = NEW." + Transaction.ID) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_TRANSACTION_SEARCH_DELETE = "CREATE TRIGGER IF NOT EXISTS " +
+            "transaction_search_after_delete AFTER DELETE ON " + Transaction.TABLE + " BEGIN " +
+            "DELETE FROM " + TransactionSearch.TABLE + " WHERE " + TransactionSearch.ID + " = OLD." +
+            Transaction.ID + "; END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_TRANSACTION_SEARCH_CATEGORY_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "transaction_search_after_category_update AFTER UPDATE OF " + Category.NAME + ", " + Category.DELETED +
+            " ON " + Category.TABLE + " BEGIN " + getTransactionSearchUpdate(TransactionSearch.ID + " IN (SELECT " +
+            Transaction.ID + " FROM " + Transaction.TABLE + " WHERE " + Transaction.CATEGORY + " = NEW." +
+            Category.ID + ")", "t." + Transaction.CATEGORY + " = NEW." + Category.ID) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_TRANSACTION_SEARCH_EVENT_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "transaction_search_after_event_update AFTER UPDATE OF " + Event.NAME + ", " + Event.DELETED +
+            " ON " + Event.TABLE + " BEGIN " + getTransactionSearchUpdate(TransactionSearch.ID + " IN (SELECT " +
+            Transaction.ID + " FROM " + Transaction.TABLE + " WHERE " + Transaction.EVENT + " = NEW." +
+            Event.ID + ")", "t." + Transaction.EVENT + " = NEW." + Event.ID) + " END";
+
+    /*package-local*/ static final String CREATE_TRIGGER_TRANSACTION_SEARCH_PLACE_UPDATE = "CREATE TRIGGER IF NOT EXISTS " +
+            "transaction_search_after_place_update AFTER UPDATE OF " + Place.NAME + ", " + Place.DELETED +
+            " ON " + Place.TABLE + " BEGIN " + getTransactionSearchUpdate(TransactionSearch.ID + " IN (SELECT " +
+            Transaction.ID + " FROM " + Transaction.TABLE + " WHERE " + Transaction.PLACE + " = NEW." +
+            Place.ID + ")", "t." + Transaction.PLACE + " = NEW." + Place.ID) + " END";
+
+    /*package-local*/ static final String CLEAR_TRANSACTION_SEARCH = "DELETE FROM " + TransactionSearch.TABLE;
+
+    /*package-local*/ static final String FILL_TRANSACTION_SEARCH = getTransactionSearchInsert("1");
+
+    private static final String SELECT_TRANSACTION_SEARCH = "SELECT " + TransactionSearch.ID + ", " +
+            TransactionSearch.DESCRIPTION + ", " + TransactionSearch.NOTE + ", " + TransactionSearch.CATEGORY +
+            ", " + TransactionSearch.EVENT + ", " + TransactionSearch.PLACE + ", " + TransactionSearch.DATE +
+            ", " + TransactionSearch.MONEY + " FROM " + TransactionSearch.TABLE;
+
+    /*package-local*/ static final String COUNT_MISALIGNED_TRANSACTION_SEARCH = "SELECT " +
+            "(SELECT COUNT(*) FROM (" + getTransactionSearchQuery("1") + " EXCEPT " + SELECT_TRANSACTION_SEARCH + ")) + " +
+            "(SELECT COUNT(*) FROM (" + SELECT_TRANSACTION_SEARCH + " EXCEPT " + getTransactionSearchQuery("1") + "))";
+
+    /**
+     * List of the tables that are saved inside a backup: the deletion of each row of these
+     * tables is recorded inside the deleted items table.
+     */
+    /*package-local*/ static final String[] DELETED_ITEM_TABLES = new String[] {
+            Currency.TABLE,
+            Wallet.TABLE,
+            Category.TABLE,
+            Event.TABLE,
+            Place.TABLE,
+            Person.TABLE,
+            EventPeople.TABLE,
+            Debt.TABLE,
+            DebtPeople.TABLE,
+            Budget.TABLE,
+            BudgetWallet.TABLE,
+            Saving.TABLE,
+            Transaction.TABLE,
+            TransactionPeople.TABLE,
+            Transfer.TABLE,
+            TransferPeople.TABLE,
+            TransactionModel.TABLE,
+            TransferModel.TABLE,
+            RecurrentTransaction.TABLE,
+            RecurrentTransfer.TABLE,
+            Attachment.TABLE,
+            TransactionAttachment.TABLE,
+            TransferAttachment.TABLE
+    };
+
+    /**
+     * Build the trigger that records the deletion of the rows of a table.
+     * @param table where the rows are deleted.
+     * @return the trigger statement.
+     */
+    /*package-local*/ static String getCreateDeletedItemTrigger(String table) {
+        return "CREATE TRIGGER IF NOT EXISTS deleted_item_after_" + table + "_delete AFTER DELETE ON " +
+                table + " BEGIN INSERT INTO " + DeletedItem.TABLE + " (" + DeletedItem.ITEM_TABLE + ", " +
+                DeletedItem.ITEM_UUID + ", " + DeletedItem.TIME + ") VALUES ('" + table + "', OLD." +
+                BaseTable.UUID + ", CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)); END";
+    }
+}
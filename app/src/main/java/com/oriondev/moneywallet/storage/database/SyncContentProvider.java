@@ -22,19 +22,27 @@ package com.oriondev.moneywallet.storage.database;
 import android.annotation.SuppressLint;
 import android.content.ContentProvider;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.oriondev.moneywallet.BuildConfig;
 
+import java.util.ArrayList;
+
 /**
  * This content provider exposes the full SQLiteDatabase structure.
  * The goal is to make the full tables available to backup and sync components.
@@ -66,6 +74,7 @@ public class SyncContentProvider extends ContentProvider {
     public static final Uri CONTENT_ATTACHMENT = Uri.parse("content://" + AUTHORITY + "/attachments");
     public static final Uri CONTENT_TRANSACTION_ATTACHMENT = Uri.parse("content://" + AUTHORITY + "/transaction_attachments");
     public static final Uri CONTENT_TRANSFER_ATTACHMENT = Uri.parse("content://" + AUTHORITY + "/transfer_attachments");
+    public static final Uri CONTENT_DELETED_ITEMS = Uri.parse("content://" + AUTHORITY + "/deleted_items");
 
     private static final int TABLE_CURRENCIES = 1;
     private static final int TABLE_WALLETS = 2;
@@ -90,6 +99,7 @@ public class SyncContentProvider extends ContentProvider {
     private static final int TABLE_ATTACHMENTS = 21;
     private static final int TABLE_TRANSACTION_ATTACHMENTS = 22;
     private static final int TABLE_TRANSFER_ATTACHMENTS = 23;
+    private static final int TABLE_DELETED_ITEMS = 24;
 
     private static final UriMatcher mUriMatcher = createUriMatcher();
 
@@ -118,6 +128,7 @@ public class SyncContentProvider extends ContentProvider {
         matcher.addURI(AUTHORITY, "attachments", TABLE_ATTACHMENTS);
         matcher.addURI(AUTHORITY, "transaction_attachments", TABLE_TRANSACTION_ATTACHMENTS);
         matcher.addURI(AUTHORITY, "transfer_attachments", TABLE_TRANSFER_ATTACHMENTS);
+        matcher.addURI(AUTHORITY, "deleted_items", TABLE_DELETED_ITEMS);
         return matcher;
     }
 
@@ -178,6 +189,8 @@ public class SyncContentProvider extends ContentProvider {
                 return Schema.TransactionAttachment.TABLE;
             case TABLE_TRANSFER_ATTACHMENTS:
                 return Schema.TransferAttachment.TABLE;
+            case TABLE_DELETED_ITEMS:
+                return Schema.DeletedItem.TABLE;
             default:
                 return null;
         }
@@ -228,6 +241,117 @@ public class SyncContentProvider extends ContentProvider {
         return 0;
     }
 
+    /**
+     * Apply all the operations inside a single database transaction: if one of them fails, all
+     * the changes are rolled back.
+     * @param operations to apply.
+     * @return the results of the operations.
+     * @throws OperationApplicationException if one of the operations fails.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            return results;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Insert (or replace) all the rows inside a single database transaction. The insert statement
+     * is compiled only once and it is reused for all the rows that contain the same columns.
+     * If one of the rows cannot be inserted, all the changes are rolled back.
+     * @param uri of the table.
+     * @param values of the rows.
+     * @return the number of inserted rows.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        String table = getTable(uri);
+        if (table == null || values.length == 0) {
+            return 0;
+        }
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        String[] columns = values[0].keySet().toArray(new String[0]);
+        SQLiteStatement statement = database.compileStatement(getInsertOrReplaceSql(table, columns));
+        database.beginTransaction();
+        try {
+            int count = 0;
+            for (ContentValues contentValues : values) {
+                long id;
+                if (hasColumns(contentValues, columns)) {
+                    statement.clearBindings();
+                    for (int i = 0; i < columns.length; i++) {
+                        DatabaseUtils.bindObjectToProgram(statement, i + 1, contentValues.get(columns[i]));
+                    }
+                    id = statement.executeInsert();
+                } else {
+                    id = database.insertWithOnConflict(table, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                if (id == -1L) {
+                    // the exception prevents the commit: the whole batch is rolled back
+                    throw new SQLException("Failed to insert a row into " + table);
+                }
+                count++;
+            }
+            database.setTransactionSuccessful();
+            return count;
+        } finally {
+            database.endTransaction();
+            statement.close();
+        }
+    }
+
+    private static String getInsertOrReplaceSql(String table, String[] columns) {
+        StringBuilder builder = new StringBuilder("INSERT OR REPLACE INTO ");
+        builder.append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            builder.append(i > 0 ? ", " : "").append(columns[i]);
+        }
+        builder.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            builder.append(i > 0 ? ", ?" : "?");
+        }
+        return builder.append(")").toString();
+    }
+
+    private static boolean hasColumns(ContentValues contentValues, String[] columns) {
+        if (contentValues.size() != columns.length) {
+            return false;
+        }
+        for (String column : columns) {
+            if (!contentValues.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Close the connections of the provider to the current database file. It must be called
+     * before the file is moved or replaced: the provider is reopened by
+     * {@link #notifyDatabaseIsChanged(Context)} when the new file is in place.
+     */
+    @SuppressLint("Recycle")
+    public static void closeDatabase(Context context) {
+        ContentResolver contentResolver = context.getContentResolver();
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(AUTHORITY);
+        if (client != null) {
+            ContentProvider contentProvider = client.getLocalContentProvider();
+            if (contentProvider instanceof SyncContentProvider) {
+                if (((SyncContentProvider) contentProvider).mDatabase != null) {
+                    ((SyncContentProvider) contentProvider).mDatabase.close();
+                }
+            }
+            client.close();
+        }
+    }
+
     @SuppressLint("Recycle")
     public static void notifyDatabaseIsChanged(Context context) {
         ContentResolver contentResolver = context.getContentResolver();
@@ -26,49 +26,90 @@ import androidx.annotation.NonNull;
 import com.oriondev.moneywallet.storage.database.ExportException;
 import com.oriondev.moneywallet.storage.database.SQLDatabaseExporter;
 import com.oriondev.moneywallet.storage.database.model.Attachment;
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by andrea on 28/10/18.
+ *
+ * A backup exporter writes the backup in a single pass: the database and the attachments are
+ * streamed to the destination in the order they are exported, without intermediate files.
+ * The exporter must be closed to complete the backup.
  */
 public abstract class AbstractBackupExporter {
 
     private final ContentResolver mContentResolver;
-    private final File mBackupFile;
+    private final BackupHeader mHeader;
 
-    /*package-local*/ AbstractBackupExporter(ContentResolver contentResolver, File backupFile) {
+    /*package-local*/ AbstractBackupExporter(ContentResolver contentResolver, @NonNull BackupHeader header) {
         mContentResolver = contentResolver;
-        mBackupFile = backupFile;
+        mHeader = header;
     }
 
-    public abstract void exportDatabase(@NonNull File tempFolder) throws ExportException;
+    public abstract void exportDatabase() throws ExportException;
 
+    /**
+     * Export the files of the attachments. Each file is named using the hash of its content, so
+     * a file shared by many attachments is exported only once. An incremental backup does not
+     * contain the files that are already stored inside the previous backups of the chain.
+     * @param attachmentFolder folder where the attachment files are located.
+     * @throws ExportException if an attachment file cannot be exported.
+     */
     public void exportAttachments(@NonNull File attachmentFolder) throws ExportException {
-        Cursor cursor = SQLDatabaseExporter.getAllAttachments(mContentResolver);
+        long since = getSince();
+        Set<String> exportedFiles;
+        if (since != SQLDatabaseExporter.ALL_ITEMS) {
+            exportedFiles = SQLDatabaseExporter.getAttachmentFiles(mContentResolver, since);
+        } else {
+            exportedFiles = new HashSet<>();
+        }
+        Cursor cursor = SQLDatabaseExporter.getAllAttachments(mContentResolver, since);
         if (cursor != null) {
-            List<File> fileList = new ArrayList<>();
+            List<Attachment> attachmentList = new ArrayList<>();
             while (cursor.moveToNext()) {
                 Attachment attachment = SQLDatabaseExporter.getAttachment(cursor);
+                if (attachment.mDeleted || exportedFiles.contains(attachment.mFile)) {
+                    continue;
+                }
                 File file = new File(attachmentFolder, attachment.mFile);
                 if (file.exists()) {
-                    fileList.add(file);
+                    exportedFiles.add(attachment.mFile);
+                    attachmentList.add(attachment);
                 }
             }
             cursor.close();
-            exportAttachmentFiles(fileList);
+            exportAttachmentFiles(attachmentFolder, attachmentList);
         }
     }
 
-    protected abstract void exportAttachmentFiles(@NonNull List<File> fileList) throws ExportException;
+    protected abstract void exportAttachmentFiles(@NonNull File attachmentFolder, @NonNull List<Attachment> attachmentList) throws ExportException;
 
-    /*package-local*/ File getBackupFile() {
-        return mBackupFile;
-    }
+    /**
+     * Complete the backup and release the destination. It must be called even if the export
+     * failed: in that case the content of the destination is not a valid backup.
+     * @throws ExportException if the backup cannot be completed.
+     */
+    public abstract void close() throws ExportException;
 
     protected ContentResolver getContentResolver() {
         return mContentResolver;
     }
+
+    protected BackupHeader getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * An incremental backup only contains the items that have been changed after the previous
+     * backup of the chain, while a full backup contains all the items.
+     * @return the time of the previous backup or {@link SQLDatabaseExporter#ALL_ITEMS}.
+     */
+    protected long getSince() {
+        return mHeader.mBase != null ? mHeader.mSince : SQLDatabaseExporter.ALL_ITEMS;
+    }
 }
\ No newline at end of file
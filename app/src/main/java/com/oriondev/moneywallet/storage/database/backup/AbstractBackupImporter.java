@@ -25,6 +25,7 @@ import androidx.annotation.NonNull;
 
 import com.oriondev.moneywallet.storage.database.DataContentProvider;
 import com.oriondev.moneywallet.storage.database.ImportException;
+import com.oriondev.moneywallet.storage.database.SQLDatabaseExporter;
 import com.oriondev.moneywallet.storage.database.SQLDatabaseImporter;
 import com.oriondev.moneywallet.storage.database.SyncContentProvider;
 
@@ -32,6 +33,7 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
 
 /**
  * Created by andrea on 25/10/18.
@@ -39,6 +41,7 @@ import java.io.IOException;
 public abstract class AbstractBackupImporter {
 
     private static final String TEMP_BACKUP_FILE = "database.bk";
+    private static final String[] DATABASE_LOG_SUFFIXES = new String[] {"-wal", "-shm"};
 
     private final Context mContext;
     private final File mBackupFile;
@@ -57,27 +60,38 @@ public abstract class AbstractBackupImporter {
      * @throws ImportException if an error occur while importing the backup file.
      */
     public void importDatabase(@NonNull File temporaryFolder, @NonNull File databaseFolder) throws ImportException {
-        File temporary = createBackupCopyOfCurrentDatabase(databaseFolder);
+        notifyImportStarted();
         try {
-            importDatabase(temporaryFolder);
-        } catch (ImportException e) {
-            restoreBackupCopyOfDatabase(databaseFolder, temporary);
-            throw e;
+            File temporary = createBackupCopyOfCurrentDatabase(databaseFolder);
+            try {
+                importDatabase(temporaryFolder);
+            } catch (ImportException e) {
+                // the providers may have been opened on the new file by the importer
+                notifyImportStarted();
+                restoreBackupCopyOfDatabase(databaseFolder, temporary);
+                throw e;
+            } finally {
+                deleteDatabaseFile(temporary);
+            }
         } finally {
-            FileUtils.deleteQuietly(temporary);
+            notifyDatabaseIsChanged();
         }
     }
 
     protected abstract void importDatabase(@NonNull File temporaryFolder) throws ImportException;
 
+    /**
+     * This method imports the attachment files of the backup. The files that are already
+     * present inside the attachment folder are kept, while the files that are no more used
+     * by the attachments of the imported database are removed at the end.
+     * @param attachmentFolder folder where the attachment files are located.
+     * @throws ImportException if an error occur while importing the attachment files.
+     */
     public void importAttachments(@NonNull File attachmentFolder) throws ImportException {
         try {
-            if (attachmentFolder.exists()) {
-                FileUtils.cleanDirectory(attachmentFolder);
-            } else {
-                FileUtils.forceMkdir(attachmentFolder);
-            }
+            FileUtils.forceMkdir(attachmentFolder);
             importAttachmentFiles(attachmentFolder);
+            removeUnusedAttachmentFiles(attachmentFolder);
         } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
@@ -85,16 +99,40 @@ public abstract class AbstractBackupImporter {
 
     protected abstract void importAttachmentFiles(File attachmentFolder) throws IOException, ImportException;
 
+    private void removeUnusedAttachmentFiles(@NonNull File attachmentFolder) {
+        Set<String> usedFiles = SQLDatabaseExporter.getAttachmentFiles(getContentResolver(), Long.MAX_VALUE);
+        File[] files = attachmentFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!usedFiles.contains(file.getName())) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+    }
+
     /*package-local*/ File getBackupFile() {
         return mBackupFile;
     }
 
+    /*package-local*/ Context getContext() {
+        return mContext;
+    }
+
     protected ContentResolver getContentResolver() {
         return mContext.getContentResolver();
     }
 
     /*package-local*/ void notifyImportStarted() {
-        // Before starting to write the database file, it is necessary to notify both the providers
+        // Before moving or replacing the database file, it is necessary to close the connections
+        // of both the providers: a connection that is closed later would checkpoint its write
+        // ahead log and delete the log files that may already belong to the new database
+        DataContentProvider.closeDatabase(mContext);
+        SyncContentProvider.closeDatabase(mContext);
+    }
+
+    /*package-local*/ void notifyDatabaseIsChanged() {
+        // When the database file is created or replaced, it is necessary to notify both the providers
         // to ensure that they point to the new file (and not the old reference)
         DataContentProvider.notifyDatabaseIsChanged(mContext);
         SyncContentProvider.notifyDatabaseIsChanged(mContext);
@@ -103,10 +141,10 @@ public abstract class AbstractBackupImporter {
     private File createBackupCopyOfCurrentDatabase(@NonNull File databaseFolder) throws ImportException {
         File temporary = new File(databaseFolder, TEMP_BACKUP_FILE);
         if (temporary.exists()) {
-            FileUtils.deleteQuietly(temporary);
+            deleteDatabaseFile(temporary);
         }
         File database = new File(databaseFolder, SQLDatabaseImporter.DATABASE_NAME);
-        if (database.exists() && !database.renameTo(temporary)) {
+        if (database.exists() && !renameDatabaseFile(database, temporary)) {
             throw new ImportException("Cannot backup the old database file");
         }
         return temporary;
@@ -115,10 +153,31 @@ public abstract class AbstractBackupImporter {
     private void restoreBackupCopyOfDatabase(@NonNull File databaseFolder, @NonNull File backup) throws ImportException {
         File database = new File(databaseFolder, SQLDatabaseImporter.DATABASE_NAME);
         if (database.exists()) {
-            FileUtils.deleteQuietly(database);
+            deleteDatabaseFile(database);
         }
-        if (backup.exists() && !backup.renameTo(database)) {
+        if (backup.exists() && !renameDatabaseFile(backup, database)) {
             throw new ImportException("Rollback failed, all data is lost");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The database uses a write ahead log: the changes that have not been checkpointed yet are
+     * only stored inside the log file, so it must be moved together with the database file.
+     */
+    private static boolean renameDatabaseFile(File source, File destination) {
+        for (String suffix : DATABASE_LOG_SUFFIXES) {
+            File log = new File(source.getPath() + suffix);
+            if (log.exists() && !log.renameTo(new File(destination.getPath() + suffix))) {
+                return false;
+            }
+        }
+        return source.renameTo(destination);
+    }
+
+    private static void deleteDatabaseFile(File database) {
+        FileUtils.deleteQuietly(database);
+        for (String suffix : DATABASE_LOG_SUFFIXES) {
+            FileUtils.deleteQuietly(new File(database.getPath() + suffix));
+        }
+    }
+}
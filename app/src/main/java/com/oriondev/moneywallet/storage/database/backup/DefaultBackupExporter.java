@@ -20,78 +20,136 @@
 package com.oriondev.moneywallet.storage.database.backup;
 
 import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import androidx.annotation.NonNull;
 import android.text.TextUtils;
 
 import com.oriondev.moneywallet.storage.database.DatabaseExporter;
 import com.oriondev.moneywallet.storage.database.ExportException;
+import com.oriondev.moneywallet.storage.database.ParallelTableReader;
 import com.oriondev.moneywallet.storage.database.SQLDatabaseExporter;
 import com.oriondev.moneywallet.storage.database.json.JSONDatabaseExporter;
+import com.oriondev.moneywallet.storage.database.model.Attachment;
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
 
-import net.lingala.zip4j.core.ZipFile;
 import net.lingala.zip4j.exception.ZipException;
+import net.lingala.zip4j.io.ZipOutputStream;
 import net.lingala.zip4j.model.ZipParameters;
 import net.lingala.zip4j.util.Zip4jConstants;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Created by andrea on 28/10/18.
+ *
+ * The backup is a zip file (encrypted with AES if a password is provided) that is written as a
+ * stream: the json of the database is compressed and encrypted while it is generated and the
+ * attachments are copied one after the other through a fixed size buffer. The memory used by
+ * the exporter does not depend on the size of the database and no temporary file is created.
+ * The attachments that are already compressed (like photos) are stored without deflate, because
+ * compressing them again takes time without reducing their size.
  */
 public class DefaultBackupExporter extends AbstractBackupExporter {
 
     private static final String INTERNAL_BACKUP_DATABASE = BackupManager.FileStructure.FILE_DATABASE;
-    
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] COMPRESSED_TYPES = new String[] {
+            "image/jpeg",
+            "image/jpg",
+            "image/png",
+            "image/gif",
+            "image/webp",
+            "application/zip",
+            "application/gzip"
+    };
+
+    private final ZipOutputStream mZipOutputStream;
     private final String mPassword;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
 
-    public DefaultBackupExporter(ContentResolver contentResolver, File backupFile, String password) throws ExportException {
-        super(contentResolver, backupFile);
+    public DefaultBackupExporter(ContentResolver contentResolver, File backupFile, String password,
+                                 BackupHeader header) throws ExportException {
+        this(contentResolver, openOutputStream(backupFile), password, header);
+    }
+
+    /**
+     * Create an exporter that writes the backup to a generic stream (for example a stream that
+     * is directly uploaded to a backend service). The stream is closed by the exporter.
+     * @param contentResolver used to query the database.
+     * @param outputStream where the backup is written.
+     * @param password used to encrypt the backup or null.
+     * @param header of the backup: if it has a base only the changed items are exported.
+     */
+    public DefaultBackupExporter(ContentResolver contentResolver, OutputStream outputStream, String password,
+                                 BackupHeader header) {
+        super(contentResolver, header);
+        mZipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
         mPassword = password;
     }
 
+    private static OutputStream openOutputStream(File backupFile) throws ExportException {
+        try {
+            return new FileOutputStream(backupFile);
+        } catch (FileNotFoundException e) {
+            throw new ExportException("Failed to create the backup file. Probably the storage of the device is full.");
+        }
+    }
+
     @Override
-    public void exportDatabase(@NonNull File tempFolder) throws ExportException {
+    public void exportDatabase() throws ExportException {
         DatabaseExporter exporter = null;
-        File tempFile = new File(tempFolder, INTERNAL_BACKUP_DATABASE);
+        ParallelTableReader reader = new ParallelTableReader();
         try {
-            if (!tempFile.exists() && !tempFile.createNewFile()) {
-                throw new ExportException("Failed to create temporary file. Probably the internal storage of the device is full.");
-            }
-            exporter = new JSONDatabaseExporter(new FileOutputStream(tempFile));
+            mZipOutputStream.putNextEntry(null, generateZipParameters(BackupManager.FileStructure.FOLDER_DATABASES, INTERNAL_BACKUP_DATABASE));
+            // the json writer must not close the zip stream: the entry is closed when the
+            // database has been completely written
             ContentResolver contentResolver = getContentResolver();
-            exporter.exportHeader();
-            exporter.exportCurrencies(SQLDatabaseExporter.getAllCurrencies(contentResolver));
-            exporter.exportWallets(SQLDatabaseExporter.getAllWallets(contentResolver));
-            exporter.exportCategories(SQLDatabaseExporter.getAllCategories(contentResolver));
-            exporter.exportEvents(SQLDatabaseExporter.getAllEvents(contentResolver));
-            exporter.exportPlaces(SQLDatabaseExporter.getAllPlaces(contentResolver));
-            exporter.exportPeople(SQLDatabaseExporter.getAllPeople(contentResolver));
-            exporter.exportEventPeople(SQLDatabaseExporter.getAllEventPeople(contentResolver));
-            exporter.exportDebts(SQLDatabaseExporter.getAllDebt(contentResolver));
-            exporter.exportDebtPeople(SQLDatabaseExporter.getAllDebtPeople(contentResolver));
-            exporter.exportBudgets(SQLDatabaseExporter.getAllBudget(contentResolver));
-            exporter.exportBudgetWallets(SQLDatabaseExporter.getAllBudgetWallets(contentResolver));
-            exporter.exportSavings(SQLDatabaseExporter.getAllSavings(contentResolver));
-            exporter.exportRecurrentTransactions(SQLDatabaseExporter.getAllRecurrentTransactions(contentResolver));
-            exporter.exportRecurrentTransfers(SQLDatabaseExporter.getAllRecurrentTransfers(contentResolver));
-            exporter.exportTransactions(SQLDatabaseExporter.getAllTransactions(contentResolver));
-            exporter.exportTransactionPeople(SQLDatabaseExporter.getAllTransactionPeople(contentResolver));
-            exporter.exportTransactionModels(SQLDatabaseExporter.getAllTransactionModels(contentResolver));
-            exporter.exportTransfers(SQLDatabaseExporter.getAllTransfers(contentResolver));
-            exporter.exportTransferPeople(SQLDatabaseExporter.getAllTransferPeople(contentResolver));
-            exporter.exportTransferModels(SQLDatabaseExporter.getAllTransferModels(contentResolver));
-            exporter.exportAttachments(SQLDatabaseExporter.getAllAttachments(contentResolver));
-            exporter.exportTransactionAttachments(SQLDatabaseExporter.getAllTransactionAttachments(contentResolver));
-            exporter.exportTransferAttachments(SQLDatabaseExporter.getAllTransferAttachments(contentResolver));
+            exporter = new JSONDatabaseExporter(new CloseShieldOutputStream(mZipOutputStream), contentResolver);
+            long since = getSince();
+            exporter.exportHeader(getHeader());
+            // the tables are read at the same time by the workers, but they are written one
+            // after the other by this thread in the order defined by the backup specification
+            List<Table> tables = new ArrayList<>(Arrays.asList(Table.values()));
+            if (since == SQLDatabaseExporter.ALL_ITEMS) {
+                tables.remove(Table.DELETED_ITEMS);
+            }
+            List<Cursor> cursors = new ArrayList<>(tables.size());
+            for (Table table : tables) {
+                cursors.add(reader.read(new TableQuery(contentResolver, table, since)));
+            }
+            for (int i = 0; i < tables.size(); i++) {
+                Cursor cursor = cursors.get(i);
+                exportTable(exporter, tables.get(i), cursor);
+                cursor.close();
+            }
+            exporter.close();
+            exporter = null;
+            mZipOutputStream.closeEntry();
+        } catch (ZipException e) {
+            throw new ExportException(e.getMessage());
         } catch (IOException e) {
             e.printStackTrace();
             throw new ExportException(e.getMessage());
+        } catch (SQLiteException e) {
+            throw new ExportException(e.getMessage());
         } finally {
+            reader.close();
             if (exporter != null) {
                 try {
                     exporter.close();
@@ -100,36 +158,157 @@ public class DefaultBackupExporter extends AbstractBackupExporter {
                 }
             }
         }
-        try {
-            ZipFile zipFile = new ZipFile(getBackupFile());
-            zipFile.addFile(tempFile, generateZipParameters(BackupManager.FileStructure.FOLDER_DATABASES));
-        } catch (ZipException e) {
-            throw new ExportException(e.getMessage());
+    }
+
+    private static void exportTable(DatabaseExporter exporter, Table table, Cursor cursor) throws ExportException {
+        switch (table) {
+            case DELETED_ITEMS:
+                // the deleted items must be removed before the changed items are restored
+                exporter.exportDeletedItems(cursor);
+                break;
+            case CURRENCIES:
+                exporter.exportCurrencies(cursor);
+                break;
+            case WALLETS:
+                exporter.exportWallets(cursor);
+                break;
+            case CATEGORIES:
+                exporter.exportCategories(cursor);
+                break;
+            case EVENTS:
+                exporter.exportEvents(cursor);
+                break;
+            case PLACES:
+                exporter.exportPlaces(cursor);
+                break;
+            case PEOPLE:
+                exporter.exportPeople(cursor);
+                break;
+            case EVENT_PEOPLE:
+                exporter.exportEventPeople(cursor);
+                break;
+            case DEBTS:
+                exporter.exportDebts(cursor);
+                break;
+            case DEBT_PEOPLE:
+                exporter.exportDebtPeople(cursor);
+                break;
+            case BUDGETS:
+                exporter.exportBudgets(cursor);
+                break;
+            case BUDGET_WALLETS:
+                exporter.exportBudgetWallets(cursor);
+                break;
+            case SAVINGS:
+                exporter.exportSavings(cursor);
+                break;
+            case RECURRENT_TRANSACTIONS:
+                exporter.exportRecurrentTransactions(cursor);
+                break;
+            case RECURRENT_TRANSFERS:
+                exporter.exportRecurrentTransfers(cursor);
+                break;
+            case TRANSACTIONS:
+                exporter.exportTransactions(cursor);
+                break;
+            case TRANSACTION_PEOPLE:
+                exporter.exportTransactionPeople(cursor);
+                break;
+            case TRANSACTION_MODELS:
+                exporter.exportTransactionModels(cursor);
+                break;
+            case TRANSFERS:
+                exporter.exportTransfers(cursor);
+                break;
+            case TRANSFER_PEOPLE:
+                exporter.exportTransferPeople(cursor);
+                break;
+            case TRANSFER_MODELS:
+                exporter.exportTransferModels(cursor);
+                break;
+            case ATTACHMENTS:
+                exporter.exportAttachments(cursor);
+                break;
+            case TRANSACTION_ATTACHMENTS:
+                exporter.exportTransactionAttachments(cursor);
+                break;
+            case TRANSFER_ATTACHMENTS:
+                exporter.exportTransferAttachments(cursor);
+                break;
         }
-        FileUtils.deleteQuietly(tempFile);
     }
 
     @Override
-    protected void exportAttachmentFiles(@NonNull List<File> attachmentList) throws ExportException {
-        try {
-            ZipFile zipFile = new ZipFile(getBackupFile());
-            if (!zipFile.isValidZipFile()) {
-                throw new ExportException("Invalid backup file: not a zip file");
-            }
-            ZipParameters zipParameters = generateZipParameters(BackupManager.FileStructure.FOLDER_ATTACHMENTS);
-            for (File attachment : attachmentList) {
-                zipFile.addFile(attachment, zipParameters);
+    protected void exportAttachmentFiles(@NonNull File attachmentFolder, @NonNull List<Attachment> attachmentList) throws ExportException {
+        for (Attachment attachment : attachmentList) {
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(new File(attachmentFolder, attachment.mFile));
+                boolean compress = !isCompressedType(attachment.mType);
+                mZipOutputStream.putNextEntry(null, generateZipParameters(BackupManager.FileStructure.FOLDER_ATTACHMENTS, attachment.mFile, compress));
+                int read;
+                while ((read = inputStream.read(mBuffer)) != -1) {
+                    mZipOutputStream.write(mBuffer, 0, read);
+                }
+                mZipOutputStream.closeEntry();
+            } catch (ZipException e) {
+                throw new ExportException(e.getMessage());
+            } catch (IOException e) {
+                throw new ExportException(e.getMessage());
+            } finally {
+                if (inputStream != null) {
+                    try {
+                        inputStream.close();
+                    } catch (IOException ignore) {
+                        // nothing to do
+                    }
+                }
             }
+        }
+    }
+
+    @Override
+    public void close() throws ExportException {
+        try {
+            mZipOutputStream.finish();
         } catch (ZipException e) {
             throw new ExportException(e.getMessage());
+        } catch (IOException e) {
+            throw new ExportException(e.getMessage());
+        } finally {
+            try {
+                mZipOutputStream.close();
+            } catch (IOException ignore) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static boolean isCompressedType(String type) {
+        if (type != null) {
+            for (String compressedType : COMPRESSED_TYPES) {
+                if (compressedType.equalsIgnoreCase(type)) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 
-    private ZipParameters generateZipParameters(@NonNull String root) {
+    private ZipParameters generateZipParameters(@NonNull String root, @NonNull String fileName) {
+        return generateZipParameters(root, fileName, true);
+    }
+
+    private ZipParameters generateZipParameters(@NonNull String root, @NonNull String fileName, boolean compress) {
         ZipParameters parameters = new ZipParameters();
-        parameters.setRootFolderInZip(root);
-        parameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-        parameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
+        parameters.setSourceExternalStream(true);
+        parameters.setFileNameInZip(root + fileName);
+        if (compress) {
+            parameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
+            parameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
+        } else {
+            parameters.setCompressionMethod(Zip4jConstants.COMP_STORE);
+        }
         if (!TextUtils.isEmpty(mPassword)) {
             parameters.setEncryptFiles(true);
             parameters.setEncryptionMethod(Zip4jConstants.ENC_METHOD_AES);
@@ -138,4 +317,104 @@ public class DefaultBackupExporter extends AbstractBackupExporter {
         }
         return parameters;
     }
+
+    /**
+     * The tables of the database in the order they are written inside the backup: the referenced
+     * items are always written before the items that reference them.
+     */
+    private enum Table {
+        DELETED_ITEMS,
+        CURRENCIES,
+        WALLETS,
+        CATEGORIES,
+        EVENTS,
+        PLACES,
+        PEOPLE,
+        EVENT_PEOPLE,
+        DEBTS,
+        DEBT_PEOPLE,
+        BUDGETS,
+        BUDGET_WALLETS,
+        SAVINGS,
+        RECURRENT_TRANSACTIONS,
+        RECURRENT_TRANSFERS,
+        TRANSACTIONS,
+        TRANSACTION_PEOPLE,
+        TRANSACTION_MODELS,
+        TRANSFERS,
+        TRANSFER_PEOPLE,
+        TRANSFER_MODELS,
+        ATTACHMENTS,
+        TRANSACTION_ATTACHMENTS,
+        TRANSFER_ATTACHMENTS
+    }
+
+    private static class TableQuery implements Callable<Cursor> {
+
+        private final ContentResolver mContentResolver;
+        private final Table mTable;
+        private final long mSince;
+
+        private TableQuery(ContentResolver contentResolver, Table table, long since) {
+            mContentResolver = contentResolver;
+            mTable = table;
+            mSince = since;
+        }
+
+        @Override
+        public Cursor call() {
+            switch (mTable) {
+                case DELETED_ITEMS:
+                    return SQLDatabaseExporter.getDeletedItems(mContentResolver, mSince);
+                case CURRENCIES:
+                    return SQLDatabaseExporter.getAllCurrencies(mContentResolver, mSince);
+                case WALLETS:
+                    return SQLDatabaseExporter.getAllWallets(mContentResolver, mSince);
+                case CATEGORIES:
+                    return SQLDatabaseExporter.getAllCategories(mContentResolver, mSince);
+                case EVENTS:
+                    return SQLDatabaseExporter.getAllEvents(mContentResolver, mSince);
+                case PLACES:
+                    return SQLDatabaseExporter.getAllPlaces(mContentResolver, mSince);
+                case PEOPLE:
+                    return SQLDatabaseExporter.getAllPeople(mContentResolver, mSince);
+                case EVENT_PEOPLE:
+                    return SQLDatabaseExporter.getAllEventPeople(mContentResolver, mSince);
+                case DEBTS:
+                    return SQLDatabaseExporter.getAllDebt(mContentResolver, mSince);
+                case DEBT_PEOPLE:
+                    return SQLDatabaseExporter.getAllDebtPeople(mContentResolver, mSince);
+                case BUDGETS:
+                    return SQLDatabaseExporter.getAllBudget(mContentResolver, mSince);
+                case BUDGET_WALLETS:
+                    return SQLDatabaseExporter.getAllBudgetWallets(mContentResolver, mSince);
+                case SAVINGS:
+                    return SQLDatabaseExporter.getAllSavings(mContentResolver, mSince);
+                case RECURRENT_TRANSACTIONS:
+                    return SQLDatabaseExporter.getAllRecurrentTransactions(mContentResolver, mSince);
+                case RECURRENT_TRANSFERS:
+                    return SQLDatabaseExporter.getAllRecurrentTransfers(mContentResolver, mSince);
+                case TRANSACTIONS:
+                    return SQLDatabaseExporter.getAllTransactions(mContentResolver, mSince);
+                case TRANSACTION_PEOPLE:
+                    return SQLDatabaseExporter.getAllTransactionPeople(mContentResolver, mSince);
+                case TRANSACTION_MODELS:
+                    return SQLDatabaseExporter.getAllTransactionModels(mContentResolver, mSince);
+                case TRANSFERS:
+                    return SQLDatabaseExporter.getAllTransfers(mContentResolver, mSince);
+                case TRANSFER_PEOPLE:
+                    return SQLDatabaseExporter.getAllTransferPeople(mContentResolver, mSince);
+                case TRANSFER_MODELS:
+                    return SQLDatabaseExporter.getAllTransferModels(mContentResolver, mSince);
+                case ATTACHMENTS:
+                    return SQLDatabaseExporter.getAllAttachments(mContentResolver, mSince);
+                case TRANSACTION_ATTACHMENTS:
+                    return SQLDatabaseExporter.getAllTransactionAttachments(mContentResolver, mSince);
+                case TRANSFER_ATTACHMENTS:
+                    return SQLDatabaseExporter.getAllTransferAttachments(mContentResolver, mSince);
+                default:
+                    return null;
+            }
+        }
+    }
 }
\ No newline at end of file
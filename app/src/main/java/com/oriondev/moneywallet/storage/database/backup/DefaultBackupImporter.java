@@ -22,36 +22,78 @@ package com.oriondev.moneywallet.storage.database.backup;
 import android.content.ContentResolver;
 import android.content.Context;
 import androidx.annotation.NonNull;
+import android.text.TextUtils;
 
 import com.oriondev.moneywallet.storage.database.DatabaseImporter;
 import com.oriondev.moneywallet.storage.database.ImportException;
+import com.oriondev.moneywallet.storage.database.SQLDatabaseBulkImporter;
 import com.oriondev.moneywallet.storage.database.json.JSONDatabaseImporter;
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
 
 import net.lingala.zip4j.core.ZipFile;
 import net.lingala.zip4j.exception.ZipException;
 import net.lingala.zip4j.io.ZipInputStream;
 import net.lingala.zip4j.model.FileHeader;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by andrea on 25/10/18.
+ *
+ * An incremental backup only contains the changes since the previous backup of its chain: to
+ * restore it, all the backups of the chain (starting from the full one) are applied in order
+ * to the same new database file.
  */
 public class DefaultBackupImporter extends AbstractBackupImporter {
 
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final List<File> mBackupFiles;
     private final String mPassword;
 
     public DefaultBackupImporter(Context context, File backupFile, String password) {
-        super(context, backupFile);
+        this(context, Collections.singletonList(backupFile), password);
+    }
+
+    /**
+     * Create an importer for a chain of backups.
+     * @param context of the application.
+     * @param backupFiles ordered list of backup files: the first one must be a full backup and
+     *                    each of the others must be based on the previous one.
+     * @param password used to decrypt the backups or null.
+     */
+    public DefaultBackupImporter(Context context, List<File> backupFiles, String password) {
+        super(context, backupFiles.get(backupFiles.size() - 1));
+        mBackupFiles = backupFiles;
         mPassword = password;
     }
-    
-    @Override
-    public void importDatabase(@NonNull File temporaryFolder) throws ImportException {
-        DatabaseImporter importer = null;
+
+    /**
+     * Read only the header of a backup file, for example to find the backup it is based on.
+     * @param backupFile to read.
+     * @param password used to decrypt the backup or null.
+     * @return the header of the backup.
+     * @throws ImportException if the backup file is not valid.
+     */
+    public static BackupHeader readBackupHeader(File backupFile, String password) throws ImportException {
+        JSONDatabaseImporter importer = new JSONDatabaseImporter(openDatabaseStream(backupFile, password));
+        try {
+            importer.importHeader();
+            return importer.getBackupHeader();
+        } finally {
+            importer.close();
+        }
+    }
+
+    private static ZipInputStream openDatabaseStream(File backupFile, String password) throws ImportException {
         try {
-            ZipFile zipFile = new ZipFile(getBackupFile());
+            ZipFile zipFile = new ZipFile(backupFile);
             if (!zipFile.isValidZipFile()) {
                 throw new ImportException("Invalid backup file: not a zip file");
             }
@@ -61,53 +103,103 @@ public class DefaultBackupImporter extends AbstractBackupImporter {
                 throw new ImportException("Invalid backup file: database file not found");
             }
             if (header.isEncrypted()) {
-                if (mPassword != null) {
-                    header.setPassword(mPassword.toCharArray());
+                if (password != null) {
+                    header.setPassword(password.toCharArray());
                 } else {
                     throw new ImportException("Decryption filed: missing user password");
                 }
             }
-            notifyImportStarted();
-            ZipInputStream inputStream = zipFile.getInputStream(header);
-            importer = new JSONDatabaseImporter(inputStream);
-            ContentResolver contentResolver = getContentResolver();
-            importer.importHeader();
-            importer.importCurrencies(contentResolver);
-            importer.importWallets(contentResolver);
-            importer.importCategories(contentResolver);
-            importer.importEvents(contentResolver);
-            importer.importPlaces(contentResolver);
-            importer.importPeople(contentResolver);
-            importer.importEventPeople(contentResolver);
-            importer.importDebts(contentResolver);
-            importer.importDebtPeople(contentResolver);
-            importer.importBudgets(contentResolver);
-            importer.importBudgetWallets(contentResolver);
-            importer.importSavings(contentResolver);
-            importer.importRecurrentTransactions(contentResolver);
-            importer.importRecurrentTransfers(contentResolver);
-            importer.importTransactions(contentResolver);
-            importer.importTransactionPeople(contentResolver);
-            importer.importTransactionModels(contentResolver);
-            importer.importTransfers(contentResolver);
-            importer.importTransferPeople(contentResolver);
-            importer.importTransferModels(contentResolver);
-            importer.importAttachments(contentResolver);
-            importer.importTransactionAttachments(contentResolver);
-            importer.importTransferAttachments(contentResolver);
+            return zipFile.getInputStream(header);
         } catch (ZipException e) {
             throw new ImportException(e.getMessage());
+        }
+    }
+
+    /**
+     * The backup is restored inside a new database file that replaces the current one only at
+     * the end of the procedure, so there is no need to create a copy of the current database.
+     * @param temporaryFolder folder where temporary data can be stored.
+     * @param databaseFolder folder where the database is located.
+     * @throws ImportException if an error occur while importing the backup file.
+     */
+    @Override
+    public void importDatabase(@NonNull File temporaryFolder, @NonNull File databaseFolder) throws ImportException {
+        importDatabase(temporaryFolder);
+    }
+
+    @Override
+    public void importDatabase(@NonNull File temporaryFolder) throws ImportException {
+        SQLDatabaseBulkImporter bulkImporter = new SQLDatabaseBulkImporter(getContext());
+        List<JSONDatabaseImporter> importers = new ArrayList<>();
+        notifyImportStarted();
+        try {
+            bulkImporter.begin();
+            String previousId = null;
+            for (File backupFile : mBackupFiles) {
+                JSONDatabaseImporter previousImporter = importers.isEmpty() ? null : importers.get(importers.size() - 1);
+                JSONDatabaseImporter importer = new JSONDatabaseImporter(openDatabaseStream(backupFile, mPassword), bulkImporter, previousImporter);
+                importers.add(importer);
+                importer.importHeader();
+                BackupHeader header = importer.getBackupHeader();
+                if (!TextUtils.equals(header.mBase, previousId)) {
+                    throw new ImportException("The backup chain is broken: the backup '" +
+                            backupFile.getName() + "' cannot be applied");
+                }
+                previousId = header.mId;
+                bulkImporter.setMergeEnabled(previousImporter != null);
+                importBackup(importer);
+            }
+            bulkImporter.commit();
         } finally {
-            if (importer != null) {
+            bulkImporter.close();
+            for (DatabaseImporter importer : importers) {
                 importer.close();
             }
+            // the providers are reopened on the new file or, if the
+            // import failed, on the current one that was left untouched
+            notifyDatabaseIsChanged();
         }
     }
 
+    private void importBackup(DatabaseImporter importer) throws ImportException {
+        ContentResolver contentResolver = getContentResolver();
+        importer.importDeletedItems(contentResolver);
+        importer.importCurrencies(contentResolver);
+        importer.importWallets(contentResolver);
+        importer.importCategories(contentResolver);
+        importer.importEvents(contentResolver);
+        importer.importPlaces(contentResolver);
+        importer.importPeople(contentResolver);
+        importer.importEventPeople(contentResolver);
+        importer.importDebts(contentResolver);
+        importer.importDebtPeople(contentResolver);
+        importer.importBudgets(contentResolver);
+        importer.importBudgetWallets(contentResolver);
+        importer.importSavings(contentResolver);
+        importer.importRecurrentTransactions(contentResolver);
+        importer.importRecurrentTransfers(contentResolver);
+        importer.importTransactions(contentResolver);
+        importer.importTransactionPeople(contentResolver);
+        importer.importTransactionModels(contentResolver);
+        importer.importTransfers(contentResolver);
+        importer.importTransferPeople(contentResolver);
+        importer.importTransferModels(contentResolver);
+        importer.importAttachments(contentResolver);
+        importer.importTransactionAttachments(contentResolver);
+        importer.importTransferAttachments(contentResolver);
+    }
+
     @Override
     public void importAttachmentFiles(@NonNull File attachmentFolder) throws IOException, ImportException {
+        // each backup of the chain only contains the attachments that have been changed
+        for (File backupFile : mBackupFiles) {
+            importAttachmentFiles(backupFile, attachmentFolder);
+        }
+    }
+
+    private void importAttachmentFiles(File backupFile, File attachmentFolder) throws ImportException {
         try {
-            ZipFile zipFile = new ZipFile(getBackupFile());
+            ZipFile zipFile = new ZipFile(backupFile);
             if (!zipFile.isValidZipFile()) {
                 throw new ImportException("Invalid backup file: not a zip file");
             }
@@ -124,7 +216,7 @@ public class DefaultBackupImporter extends AbstractBackupImporter {
                 if (path.startsWith(BackupManager.FileStructure.FOLDER_ATTACHMENTS)) {
                     String name = path.substring(BackupManager.FileStructure.FOLDER_ATTACHMENTS.length());
                     if (!name.contains("/")) {
-                        zipFile.extractFile(header, attachmentFolder.getPath(), null, name);
+                        extractAttachmentFile(zipFile, header, attachmentFolder, name);
                     }
                 }
             }
@@ -132,4 +224,23 @@ public class DefaultBackupImporter extends AbstractBackupImporter {
             throw new ImportException(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The attachment files are named using the hash of their content: if a file with the same
+     * name already exists it has the same content and it is not extracted again. The file is
+     * extracted with a temporary name to never leave a partial file with a valid name.
+     */
+    private void extractAttachmentFile(ZipFile zipFile, FileHeader header, File attachmentFolder, String name) throws ZipException, ImportException {
+        File attachment = new File(attachmentFolder, name);
+        if (attachment.exists()) {
+            return;
+        }
+        String temporaryName = name + TEMPORARY_FILE_SUFFIX;
+        zipFile.extractFile(header, attachmentFolder.getPath(), null, temporaryName);
+        File temporary = new File(attachmentFolder, temporaryName);
+        if (!temporary.renameTo(attachment)) {
+            FileUtils.deleteQuietly(temporary);
+            throw new ImportException("Failed to extract the attachment: " + name);
+        }
+    }
+}
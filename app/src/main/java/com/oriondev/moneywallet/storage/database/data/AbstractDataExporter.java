@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.Cursor;
 import androidx.collection.LongSparseArray;
 
+import com.oriondev.moneywallet.model.Money;
 import com.oriondev.moneywallet.model.Wallet;
 import com.oriondev.moneywallet.storage.database.Contract;
 import com.oriondev.moneywallet.utils.DateUtils;
@@ -54,6 +55,24 @@ public abstract class AbstractDataExporter {
         return mPeopleCache.get(id);
     }
 
+    /**
+     * An exporter that computes the balance of the wallets while writing the rows should return
+     * true: the rows are sorted from the oldest to the newest one and the balance of the wallets
+     * before the first exported row is provided through {@link #setOpeningBalance(Money)}.
+     * @return true if the opening balance should be loaded before each export.
+     */
+    public boolean shouldLoadOpeningBalance() {
+        return false;
+    }
+
+    /**
+     * Called before each call of exportData() when {@link #shouldLoadOpeningBalance()} is true.
+     * @param openingBalance of the exported wallets before the first row of the cursor.
+     */
+    public void setOpeningBalance(Money openingBalance) {
+        // not used by default
+    }
+
     protected Context getContext() {
         return mContext;
     }
@@ -0,0 +1,180 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+
+import com.oriondev.moneywallet.model.ColorIcon;
+import com.oriondev.moneywallet.model.Icon;
+import com.oriondev.moneywallet.picker.IconPicker;
+import com.oriondev.moneywallet.storage.database.Contract;
+import com.oriondev.moneywallet.storage.database.DataContentProvider;
+import com.oriondev.moneywallet.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of the import store that works through the content provider: the entities
+ * are created with a single batch of operations and the transactions with a single bulk insert,
+ * so each group is written inside one database transaction.
+ */
+/*package-local*/ class ContentResolverImportStore implements IImportStore {
+
+    private final ContentResolver mContentResolver;
+
+    /*package-local*/ ContentResolverImportStore(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    @Override
+    public void loadEntities(Entity entity, EntityListener listener) {
+        Uri uri = getUri(entity);
+        String[] projection;
+        switch (entity) {
+            case WALLET:
+                projection = new String[] {Contract.Wallet.ID, Contract.Wallet.NAME, Contract.Wallet.CURRENCY};
+                break;
+            case CATEGORY:
+                projection = new String[] {Contract.Category.ID, Contract.Category.NAME, Contract.Category.TYPE};
+                break;
+            case EVENT:
+                projection = new String[] {Contract.Event.ID, Contract.Event.NAME};
+                break;
+            case PLACE:
+                projection = new String[] {Contract.Place.ID, Contract.Place.NAME};
+                break;
+            case PERSON:
+                projection = new String[] {Contract.Person.ID, Contract.Person.NAME};
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown entity: " + entity);
+        }
+        Cursor cursor = mContentResolver.query(uri, projection, null, null, projection[0] + " ASC");
+        if (cursor != null) {
+            try {
+                int indexId = cursor.getColumnIndex(projection[0]);
+                int indexName = cursor.getColumnIndex(projection[1]);
+                int indexDetail = projection.length > 2 ? cursor.getColumnIndex(projection[2]) : -1;
+                while (cursor.moveToNext()) {
+                    String detail = indexDetail != -1 ? cursor.getString(indexDetail) : null;
+                    listener.onEntityLoaded(cursor.getLong(indexId), cursor.getString(indexName), detail);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    @Override
+    public long[] createEntities(Entity entity, List<String> names, List<String> details) {
+        Uri uri = getUri(entity);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            ContentValues contentValues = new ContentValues();
+            switch (entity) {
+                case WALLET:
+                    contentValues.put(Contract.Wallet.NAME, name);
+                    contentValues.put(Contract.Wallet.ICON, generateRandomIcon(name));
+                    contentValues.put(Contract.Wallet.CURRENCY, details.get(i));
+                    contentValues.put(Contract.Wallet.COUNT_IN_TOTAL, true);
+                    contentValues.put(Contract.Wallet.START_MONEY, 0L);
+                    contentValues.put(Contract.Wallet.ARCHIVED, false);
+                    break;
+                case CATEGORY:
+                    contentValues.put(Contract.Category.NAME, name);
+                    contentValues.put(Contract.Category.ICON, generateRandomIcon(name));
+                    contentValues.put(Contract.Category.TYPE, Integer.parseInt(details.get(i)));
+                    contentValues.putNull(Contract.Category.PARENT);
+                    contentValues.put(Contract.Category.SHOW_REPORT, true);
+                    break;
+                case PLACE:
+                    contentValues.put(Contract.Place.NAME, name);
+                    contentValues.put(Contract.Place.ICON, generateRandomIcon(name));
+                    contentValues.putNull(Contract.Place.ADDRESS);
+                    contentValues.putNull(Contract.Place.LATITUDE);
+                    contentValues.putNull(Contract.Place.LONGITUDE);
+                    break;
+                case PERSON:
+                    contentValues.put(Contract.Person.NAME, name);
+                    contentValues.put(Contract.Person.ICON, name);
+                    contentValues.putNull(Contract.Person.NOTE);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Entity cannot be created: " + entity);
+            }
+            operations.add(ContentProviderOperation.newInsert(uri).withValues(contentValues).build());
+        }
+        try {
+            ContentProviderResult[] results = mContentResolver.applyBatch(uri.getAuthority(), operations);
+            long[] ids = new long[results.length];
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].uri == null) {
+                    throw new RuntimeException("Failed to create the new entity (" + entity + ")");
+                }
+                ids[i] = ContentUris.parseId(results[i].uri);
+            }
+            return ids;
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new RuntimeException("Failed to create the new entities (" + entity + ")", e);
+        }
+    }
+
+    @Override
+    public void insertTransactions(List<ImportedTransaction> transactions) {
+        ContentValues[] values = new ContentValues[transactions.size()];
+        for (int i = 0; i < values.length; i++) {
+            ImportedTransaction transaction = transactions.get(i);
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contract.Transaction.WALLET_ID, transaction.mWalletId);
+            contentValues.put(Contract.Transaction.CATEGORY_ID, transaction.mCategoryId);
+            contentValues.put(Contract.Transaction.DATE, transaction.mDateTime);
+            contentValues.put(Contract.Transaction.DIRECTION, transaction.mDirection);
+            contentValues.put(Contract.Transaction.MONEY, transaction.mMoney);
+            contentValues.put(Contract.Transaction.DESCRIPTION, transaction.mDescription);
+            contentValues.put(Contract.Transaction.NOTE, transaction.mNote);
+            contentValues.put(Contract.Transaction.EVENT_ID, transaction.mEventId);
+            contentValues.put(Contract.Transaction.PLACE_ID, transaction.mPlaceId);
+            contentValues.put(Contract.Transaction.PEOPLE_IDS, transaction.mPeopleIds);
+            contentValues.put(Contract.Transaction.TYPE, Contract.TransactionType.STANDARD);
+            contentValues.put(Contract.Transaction.CONFIRMED, true);
+            contentValues.put(Contract.Transaction.COUNT_IN_TOTAL, true);
+            values[i] = contentValues;
+        }
+        int count = mContentResolver.bulkInsert(DataContentProvider.CONTENT_TRANSACTIONS, values);
+        if (count != values.length) {
+            throw new RuntimeException("Failed to insert the transactions");
+        }
+    }
+
+    private Uri getUri(Entity entity) {
+        switch (entity) {
+            case WALLET:
+                return DataContentProvider.CONTENT_WALLETS;
+            case CATEGORY:
+                return DataContentProvider.CONTENT_CATEGORIES;
+            case EVENT:
+                return DataContentProvider.CONTENT_EVENTS;
+            case PLACE:
+                return DataContentProvider.CONTENT_PLACES;
+            case PERSON:
+                return DataContentProvider.CONTENT_PEOPLE;
+            default:
+                throw new IllegalArgumentException("Unknown entity: " + entity);
+        }
+    }
+
+    private String generateRandomIcon(String name) {
+        int randomColor = Utils.getRandomMDColor();
+        String iconText = IconPicker.getColorIconString(name);
+        Icon icon = new ColorIcon(randomColor, iconText);
+        return icon.toString();
+    }
+}
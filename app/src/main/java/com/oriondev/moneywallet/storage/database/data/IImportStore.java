@@ -0,0 +1,49 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+import java.util.List;
+
+/**
+ * Storage used by the {@link ImportEngine} to read the existing entities and to write the
+ * imported ones. Each write method is expected to be executed inside a single transaction.
+ */
+public interface IImportStore {
+
+    enum Entity {
+        WALLET,
+        CATEGORY,
+        EVENT,
+        PLACE,
+        PERSON
+    }
+
+    interface EntityListener {
+
+        /**
+         * Called for each existing entity.
+         * @param id of the entity.
+         * @param name of the entity.
+         * @param detail the iso code of the currency for a wallet, the type for a category
+         *               or null for the other entities.
+         */
+        void onEntityLoaded(long id, String name, String detail);
+    }
+
+    /**
+     * Load all the existing entities of the given type in ascending order of id.
+     */
+    void loadEntities(Entity entity, EntityListener listener);
+
+    /**
+     * Create a group of new entities of the same type.
+     * @param entity type of the entities (events are never created).
+     * @param names of the entities.
+     * @param details of the entities (see {@link EntityListener#onEntityLoaded}).
+     * @return the ids of the new entities in the same order.
+     */
+    long[] createEntities(Entity entity, List<String> names, List<String> details);
+
+    /**
+     * Insert a group of transactions whose references have already been resolved.
+     */
+    void insertTransactions(List<ImportedTransaction> transactions);
+}
@@ -0,0 +1,362 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+import com.oriondev.moneywallet.storage.database.Contract;
+import com.oriondev.moneywallet.utils.DateUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class imports a large number of transactions. The existing wallets, categories, events,
+ * places and people are loaded only once inside maps that link each name to its id. The
+ * transactions are collected in batches: for each batch the missing entities are created
+ * together and then all the transactions are inserted together.
+ * The time spent in each phase is recorded to report the throughput of the import.
+ */
+public class ImportEngine {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final int MAX_FAST_DIGITS = 18;
+
+    public enum Phase {
+        PRELOAD,
+        PARSE,
+        RESOLVE,
+        COMMIT
+    }
+
+    private final IImportStore mStore;
+    private final int mBatchSize;
+
+    private final Map<String, Long> mWallets = new HashMap<>();
+    private final Map<String, Long> mCategories = new HashMap<>();
+    private final Map<String, Long> mEvents = new HashMap<>();
+    private final Map<String, Long> mPlaces = new HashMap<>();
+    private final Map<String, Long> mPeople = new HashMap<>();
+
+    private final List<ImportedTransaction> mPendingTransactions;
+    private final long[] mPhaseTimes = new long[Phase.values().length];
+    private final long[] mPhaseItems = new long[Phase.values().length];
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    private boolean mPreloaded = false;
+    private int mCreatedEntities = 0;
+
+    public ImportEngine(IImportStore store) {
+        this(store, DEFAULT_BATCH_SIZE);
+    }
+
+    public ImportEngine(IImportStore store, int batchSize) {
+        mStore = store;
+        mBatchSize = batchSize;
+        mPendingTransactions = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Add a transaction to the current batch. The batch is committed when it is full.
+     */
+    public void addTransaction(ImportedTransaction transaction) {
+        if (!mPreloaded) {
+            preload();
+        }
+        mPendingTransactions.add(transaction);
+        if (mPendingTransactions.size() >= mBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Commit the transactions of the current batch (if any).
+     */
+    public void flush() {
+        if (mPendingTransactions.isEmpty()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        resolveReferences(mPendingTransactions);
+        recordPhase(Phase.RESOLVE, startTime, mPendingTransactions.size());
+        startTime = System.nanoTime();
+        mStore.insertTransactions(mPendingTransactions);
+        recordPhase(Phase.COMMIT, startTime, mPendingTransactions.size());
+        mPendingTransactions.clear();
+    }
+
+    /**
+     * Add the time spent by a phase to the statistics of the import.
+     * @param phase to update.
+     * @param startTime of the phase (obtained with {@link System#nanoTime()}).
+     * @param items processed during the phase.
+     */
+    public void recordPhase(Phase phase, long startTime, int items) {
+        mPhaseTimes[phase.ordinal()] += System.nanoTime() - startTime;
+        mPhaseItems[phase.ordinal()] += items;
+    }
+
+    public long getPhaseTime(Phase phase) {
+        return mPhaseTimes[phase.ordinal()];
+    }
+
+    public long getPhaseItems(Phase phase) {
+        return mPhaseItems[phase.ordinal()];
+    }
+
+    public int getCreatedEntities() {
+        return mCreatedEntities;
+    }
+
+    /**
+     * @return a human readable report of the time spent and of the throughput of each phase.
+     */
+    public String getReport() {
+        StringBuilder builder = new StringBuilder("Import report:");
+        for (Phase phase : Phase.values()) {
+            long time = mPhaseTimes[phase.ordinal()];
+            long items = mPhaseItems[phase.ordinal()];
+            long throughput = time > 0 ? items * 1000000000L / time : 0L;
+            builder.append(String.format(Locale.ENGLISH, " %s %d ms (%d items, %d/s);",
+                    phase.name().toLowerCase(Locale.ENGLISH), time / 1000000L, items, throughput));
+        }
+        builder.append(" created entities: ").append(mCreatedEntities);
+        return builder.toString();
+    }
+
+    private void preload() {
+        long startTime = System.nanoTime();
+        int items = loadEntities(IImportStore.Entity.WALLET, mWallets);
+        items += loadEntities(IImportStore.Entity.CATEGORY, mCategories);
+        items += loadEntities(IImportStore.Entity.EVENT, mEvents);
+        items += loadEntities(IImportStore.Entity.PLACE, mPlaces);
+        items += loadEntities(IImportStore.Entity.PERSON, mPeople);
+        mPreloaded = true;
+        recordPhase(Phase.PRELOAD, startTime, items);
+    }
+
+    private int loadEntities(IImportStore.Entity entity, final Map<String, Long> map) {
+        final int[] count = new int[1];
+        mStore.loadEntities(entity, new IImportStore.EntityListener() {
+
+            @Override
+            public void onEntityLoaded(long id, String name, String detail) {
+                // the entities are loaded in ascending order of id: when more entities share
+                // the same key, the most recent one is used
+                map.put(getKey(name, detail), id);
+                count[0]++;
+            }
+
+        });
+        return count[0];
+    }
+
+    private void resolveReferences(List<ImportedTransaction> transactions) {
+        // collect the entities that do not exist yet and create them together
+        Map<String, String[]> missingWallets = new LinkedHashMap<>();
+        Map<String, String[]> missingCategories = new LinkedHashMap<>();
+        Map<String, String[]> missingPlaces = new LinkedHashMap<>();
+        Map<String, String[]> missingPeople = new LinkedHashMap<>();
+        for (ImportedTransaction transaction : transactions) {
+            addIfMissing(mWallets, missingWallets, transaction.mWallet, transaction.mCurrency);
+            addIfMissing(mCategories, missingCategories, transaction.mCategory, getCategoryType(transaction.mDirection));
+            if (!isEmpty(transaction.mPlace)) {
+                addIfMissing(mPlaces, missingPlaces, transaction.mPlace, null);
+            }
+            if (!isEmpty(transaction.mPeople)) {
+                for (String person : transaction.mPeople.split(",")) {
+                    String name = person.trim();
+                    if (!name.isEmpty()) {
+                        addIfMissing(mPeople, missingPeople, name, null);
+                    }
+                }
+            }
+        }
+        createEntities(IImportStore.Entity.WALLET, mWallets, missingWallets);
+        createEntities(IImportStore.Entity.CATEGORY, mCategories, missingCategories);
+        createEntities(IImportStore.Entity.PLACE, mPlaces, missingPlaces);
+        createEntities(IImportStore.Entity.PERSON, mPeople, missingPeople);
+        // now each name can be replaced with the id of the entity
+        for (ImportedTransaction transaction : transactions) {
+            transaction.mWalletId = mWallets.get(getKey(transaction.mWallet, transaction.mCurrency));
+            transaction.mCategoryId = mCategories.get(getKey(transaction.mCategory, getCategoryType(transaction.mDirection)));
+            transaction.mEventId = isEmpty(transaction.mEvent) ? null : mEvents.get(getKey(transaction.mEvent, null));
+            transaction.mPlaceId = isEmpty(transaction.mPlace) ? null : mPlaces.get(getKey(transaction.mPlace, null));
+            transaction.mPeopleIds = getPeopleIds(transaction.mPeople);
+        }
+    }
+
+    private void addIfMissing(Map<String, Long> map, Map<String, String[]> missing, String name, String detail) {
+        String key = getKey(name, detail);
+        if (!map.containsKey(key) && !missing.containsKey(key)) {
+            missing.put(key, new String[] {name, detail});
+        }
+    }
+
+    private void createEntities(IImportStore.Entity entity, Map<String, Long> map, Map<String, String[]> missing) {
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<>(missing.size());
+        List<String> details = new ArrayList<>(missing.size());
+        for (String[] values : missing.values()) {
+            names.add(values[0]);
+            details.add(values[1]);
+        }
+        long[] ids = mStore.createEntities(entity, names, details);
+        if (ids == null || ids.length != names.size()) {
+            throw new RuntimeException("Failed to create the new entities (" + entity + ")");
+        }
+        int index = 0;
+        for (String key : missing.keySet()) {
+            map.put(key, ids[index++]);
+        }
+        mCreatedEntities += ids.length;
+    }
+
+    private String getPeopleIds(String people) {
+        if (isEmpty(people)) {
+            return null;
+        }
+        mBuilder.setLength(0);
+        for (String person : people.split(",")) {
+            String name = person.trim();
+            if (!name.isEmpty()) {
+                if (mBuilder.length() > 0) {
+                    mBuilder.append(',');
+                }
+                mBuilder.append('<').append(mPeople.get(getKey(name, null))).append('>');
+            }
+        }
+        return mBuilder.length() > 0 ? mBuilder.toString() : null;
+    }
+
+    private static String getCategoryType(int direction) {
+        Contract.CategoryType type = direction == Contract.Direction.INCOME ? Contract.CategoryType.INCOME : Contract.CategoryType.EXPENSE;
+        return String.valueOf(type.getValue());
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static String getKey(String name, String detail) {
+        return detail != null ? name + KEY_SEPARATOR + detail : name;
+    }
+
+    /**
+     * Convert an amount of money into the number of minimum units of the currency. Both the
+     * dot and the comma are accepted as decimal separator. The decimals that exceed the
+     * precision of the currency are truncated.
+     * @param value to parse.
+     * @param decimals of the currency.
+     * @return the amount of money multiplied by 10^decimals.
+     * @throws NumberFormatException if the value is not a valid number.
+     */
+    public static long parseMoney(String value, int decimals) {
+        int length = value.length();
+        int position = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            position++;
+        }
+        long result = 0L;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; position < length; position++) {
+            char c = value.charAt(position);
+            if (c >= '0' && c <= '9') {
+                if (fractionDigits >= 0) {
+                    if (fractionDigits == decimals) {
+                        // truncate the exceeding decimals
+                        continue;
+                    }
+                    fractionDigits++;
+                }
+                if (++digits > MAX_FAST_DIGITS) {
+                    return parseMoneySlow(value, decimals);
+                }
+                result = result * 10L + (c - '0');
+            } else if ((c == '.' || c == ',') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                // exponents and other unusual formats
+                return parseMoneySlow(value, decimals);
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid number: " + value);
+        }
+        for (int i = Math.max(fractionDigits, 0); i < decimals; i++) {
+            if (result > Long.MAX_VALUE / 10L) {
+                return parseMoneySlow(value, decimals);
+            }
+            result *= 10L;
+        }
+        return negative ? -result : result;
+    }
+
+    private static long parseMoneySlow(String value, int decimals) {
+        BigDecimal moneyDecimal = new BigDecimal(value.replace(',', '.'));
+        return moneyDecimal.movePointRight(decimals).longValue();
+    }
+
+    /**
+     * Normalize a date time string to the format used by the database. The strings that are
+     * already well formatted are returned without being parsed.
+     * @param value to normalize.
+     * @return the normalized date time.
+     */
+    public static String parseDateTime(String value) {
+        if (isSQLDateTime(value)) {
+            return value;
+        }
+        return DateUtils.getSQLDateTimeString(DateUtils.getDateFromSQLDateTimeString(value));
+    }
+
+    private static boolean isSQLDateTime(String value) {
+        if (value.length() != 19 || value.charAt(4) != '-' || value.charAt(7) != '-' ||
+                value.charAt(10) != ' ' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return false;
+        }
+        int year = getField(value, 0, 4);
+        int month = getField(value, 5, 7);
+        int day = getField(value, 8, 10);
+        int hour = getField(value, 11, 13);
+        int minute = getField(value, 14, 16);
+        int second = getField(value, 17, 19);
+        return year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= getDaysOfMonth(year, month) &&
+                hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59;
+    }
+
+    private static int getField(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int getDaysOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
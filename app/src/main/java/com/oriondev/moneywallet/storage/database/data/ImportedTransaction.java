@@ -0,0 +1,27 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+/**
+ * Transaction read by a data importer. The names of the referenced entities are replaced by
+ * their ids by the {@link ImportEngine} before the transaction is inserted.
+ */
+public class ImportedTransaction {
+
+    public String mWallet;
+    public String mCurrency;
+    public String mCategory;
+    public String mDateTime;
+    public long mMoney;
+    public int mDirection;
+    public String mDescription;
+    public String mEvent;
+    public String mPlace;
+    public String mPeople;
+    public String mNote;
+
+    // resolved references
+    public long mWalletId;
+    public long mCategoryId;
+    public Long mEventId;
+    public Long mPlaceId;
+    public String mPeopleIds;
+}
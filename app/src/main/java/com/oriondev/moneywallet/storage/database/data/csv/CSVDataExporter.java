@@ -9,6 +9,7 @@ import com.opencsv.CSVWriter;
 import com.oriondev.moneywallet.model.CurrencyUnit;
 import com.oriondev.moneywallet.model.Wallet;
 import com.oriondev.moneywallet.storage.database.Contract;
+import com.oriondev.moneywallet.storage.database.IdSetReader;
 import com.oriondev.moneywallet.storage.database.data.AbstractDataExporter;
 import com.oriondev.moneywallet.utils.CurrencyManager;
 import com.oriondev.moneywallet.utils.MoneyFormatter;
@@ -27,6 +28,7 @@ public class CSVDataExporter extends AbstractDataExporter {
     private final File mOutputFile;
     private final CSVWriter mWriter;
     private final MoneyFormatter mMoneyFormatter;
+    private final IdSetReader mIdSetReader = new IdSetReader();
 
     private boolean mShouldLoadPeople = false;
 
@@ -121,10 +123,10 @@ public class CSVDataExporter extends AbstractDataExporter {
                         csvRow[i] = cursor.getString(cursor.getColumnIndex(Contract.Transaction.EVENT_NAME));
                         break;
                     case Constants.COLUMN_PEOPLE:
-                        List<Long> peopleIds = Contract.parseObjectIds(cursor.getString(cursor.getColumnIndex(Contract.Transaction.PEOPLE_IDS)));
-                        if (peopleIds != null && !peopleIds.isEmpty()) {
+                        long[] peopleIds = mIdSetReader.read(cursor, cursor.getColumnIndex(Contract.Transaction.PEOPLE_IDS));
+                        if (peopleIds != null && peopleIds.length > 0) {
                             StringBuilder builder = new StringBuilder();
-                            for (Long personId : peopleIds) {
+                            for (long personId : peopleIds) {
                                 String name = getPersonName(personId);
                                 if (!TextUtils.isEmpty(name)) {
                                     if (builder.length() > 0) {
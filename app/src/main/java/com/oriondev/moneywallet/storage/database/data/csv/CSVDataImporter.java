@@ -7,14 +7,12 @@ import com.opencsv.CSVReaderHeaderAware;
 import com.oriondev.moneywallet.model.CurrencyUnit;
 import com.oriondev.moneywallet.storage.database.Contract;
 import com.oriondev.moneywallet.storage.database.data.AbstractDataImporter;
+import com.oriondev.moneywallet.storage.database.data.ImportEngine;
 import com.oriondev.moneywallet.utils.CurrencyManager;
-import com.oriondev.moneywallet.utils.DateUtils;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.util.Date;
 import java.util.Map;
 
 /**
@@ -31,9 +29,13 @@ public class CSVDataImporter extends AbstractDataImporter {
 
     @Override
     public void importData() throws IOException {
+        ImportEngine importEngine = getImportEngine();
+        // the last parsed currency is kept to avoid a lookup for each line
+        String lastCurrency = null;
+        CurrencyUnit currencyUnit = null;
+        long startTime = System.nanoTime();
         Map<String, String> lineMap = mReader.readMap();
         while (lineMap != null) {
-            System.out.println("Importing line");
             // extract required information from the csv file
             String wallet = getTrimmedString(lineMap.get(Constants.COLUMN_WALLET));
             String currency = getTrimmedString(lineMap.get(Constants.COLUMN_CURRENCY));
@@ -52,24 +54,27 @@ public class CSVDataImporter extends AbstractDataImporter {
             String place = getTrimmedString(lineMap.get(Constants.COLUMN_PLACE));
             String note = getTrimmedString(lineMap.get(Constants.COLUMN_NOTE));
             // try to build the internal transaction state starting from strings
-            CurrencyUnit currencyUnit = CurrencyManager.getCurrency(currency);
-            if (currencyUnit == null) {
-                throw new RuntimeException("Unknown currency unit (" + currency + ")");
+            if (!currency.equals(lastCurrency)) {
+                currencyUnit = CurrencyManager.getCurrency(currency);
+                if (currencyUnit == null) {
+                    throw new RuntimeException("Unknown currency unit (" + currency + ")");
+                }
+                lastCurrency = currency;
             }
-            BigDecimal moneyDecimal;
+            long money;
             try {
-                moneyDecimal = new BigDecimal(moneyString.replaceAll(",", "."));
+                money = ImportEngine.parseMoney(moneyString, currencyUnit.getDecimals());
             } catch (NumberFormatException e) {
                 throw new RuntimeException("Invalid money amount (" + e.getMessage() + ")");
             }
-            BigDecimal decimalMultiply = new BigDecimal(Math.pow(10, currencyUnit.getDecimals()));
-            moneyDecimal = moneyDecimal.multiply(decimalMultiply);
-            long money = moneyDecimal.longValue();
             int direction = money < 0 ? Contract.Direction.EXPENSE : Contract.Direction.INCOME;
-            Date datetime = DateUtils.getDateFromSQLDateTimeString(datetimeString);
+            String datetime = ImportEngine.parseDateTime(datetimeString);
+            importEngine.recordPhase(ImportEngine.Phase.PARSE, startTime, 1);
             insertTransaction(wallet, currencyUnit, category, datetime, Math.abs(money), direction, description, event, place, people, note);
+            startTime = System.nanoTime();
             lineMap = mReader.readMap();
         }
+        finishImport();
     }
 
     private String getTrimmedString(String source) {
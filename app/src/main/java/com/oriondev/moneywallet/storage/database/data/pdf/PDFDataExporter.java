@@ -14,12 +14,16 @@ import com.itextpdf.text.Font;
 import com.itextpdf.text.FontFactory;
 import com.itextpdf.text.PageSize;
 import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
 import com.oriondev.moneywallet.R;
 import com.oriondev.moneywallet.model.CurrencyUnit;
+import com.oriondev.moneywallet.model.Money;
 import com.oriondev.moneywallet.model.Wallet;
 import com.oriondev.moneywallet.storage.database.Contract;
+import com.oriondev.moneywallet.storage.database.IdSetReader;
 import com.oriondev.moneywallet.storage.database.data.AbstractDataExporter;
 import com.oriondev.moneywallet.utils.CurrencyManager;
 import com.oriondev.moneywallet.utils.MoneyFormatter;
@@ -32,20 +36,34 @@ import java.util.List;
 
 /**
  * Created by andrea on 22/12/18.
+ * The rows are rendered in pages with a fixed number of transactions: at the end of each page
+ * the table is flushed to the document, so only the rows of the current page are kept in
+ * memory. Each page ends with the subtotal of its transactions and with the running balance
+ * computed in the same pass: the rows are written from the oldest to the newest one and the
+ * balance starts from the balance of the wallets before the first exported transaction.
  */
 public class PDFDataExporter extends AbstractDataExporter {
 
+    private static final int ROWS_PER_PAGE = 40;
+    private static final float ROW_FONT_SIZE = 9f;
+
     private final File mOutputFile;
     private final Document mDocument;
     private final MoneyFormatter mMoneyFormatter;
+    private final IdSetReader mIdSetReader = new IdSetReader();
+    private final Font mRowFont;
+    private final Font mSummaryFont;
 
     private boolean mShouldLoadPeople = false;
     private int mChapterCount = 0;
+    private Money mOpeningBalance = null;
 
     public PDFDataExporter(Context context, File folder) throws IOException {
         super(context, folder);
         mOutputFile = new File(folder, getDefaultFileName(".pdf"));
         mMoneyFormatter = MoneyFormatter.getInstance();
+        mRowFont = FontFactory.getFont(FontFactory.HELVETICA, ROW_FONT_SIZE);
+        mSummaryFont = FontFactory.getFont(FontFactory.HELVETICA, ROW_FONT_SIZE, Font.BOLD);
         mDocument = new Document(PageSize.A4);
         try {
             PdfWriter.getInstance(mDocument, new FileOutputStream(mOutputFile));
@@ -98,12 +116,22 @@ public class PDFDataExporter extends AbstractDataExporter {
         return mShouldLoadPeople;
     }
 
+    @Override
+    public boolean shouldLoadOpeningBalance() {
+        return true;
+    }
+
+    @Override
+    public void setOpeningBalance(Money openingBalance) {
+        mOpeningBalance = openingBalance;
+    }
+
     @Override
     public void exportData(Cursor cursor, String[] columns, Wallet... wallets) throws IOException {
         try {
-            Chapter chapter = createChapter(wallets);
-            chapter.add(createTable(cursor, columns));
-            mDocument.add(chapter);
+            // the chapter contains only the title: the rows are flushed page by page
+            mDocument.add(createChapter(wallets));
+            writeTable(cursor, columns);
         } catch (DocumentException e) {
             throw new IOException(e);
         }
@@ -128,74 +156,178 @@ public class PDFDataExporter extends AbstractDataExporter {
         return new Chapter(paragraph, ++mChapterCount);
     }
 
-    private PdfPTable createTable(Cursor cursor, String[] columns) throws DocumentException {
+    private void writeTable(Cursor cursor, String[] columns) throws DocumentException {
         PdfPTable table = createTable(columns);
-        for (int i = 0; i < cursor.getCount(); i++) {
-            // move the cursor to the fixed position
-            cursor.moveToPosition(i);
-            // for each line of the cursor, write a line in the sheet
-            for (String column : columns) {
-                String label = null;
-                switch (column) {
-                    case Constants.COLUMN_DATETIME:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.DATE));
-                        break;
-                    case Constants.COLUMN_CATEGORY:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.CATEGORY_NAME));
-                        break;
+        // the indexes of the columns are resolved only once for the whole cursor
+        int[] indexes = getColumnIndexes(cursor, columns);
+        int indexMoney = cursor.getColumnIndex(Contract.Transaction.MONEY);
+        int indexDirection = cursor.getColumnIndex(Contract.Transaction.DIRECTION);
+        int indexCurrency = cursor.getColumnIndex(Contract.Transaction.WALLET_CURRENCY);
+        int indexConfirmed = cursor.getColumnIndex(Contract.Transaction.CONFIRMED);
+        int indexCountInTotal = cursor.getColumnIndex(Contract.Transaction.COUNT_IN_TOTAL);
+        Money pageSubtotal = new Money();
+        Money runningBalance = new Money();
+        if (mOpeningBalance != null) {
+            runningBalance.addMoney(mOpeningBalance);
+        }
+        int pageRows = 0;
+        boolean pageFlushed = false;
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            if (pageFlushed && pageRows == 0) {
+                // the new page is started only when it will contain at least one row
+                mDocument.newPage();
+            }
+            String currency = cursor.getString(indexCurrency);
+            long money = cursor.getLong(indexMoney);
+            if (cursor.getInt(indexDirection) == Contract.Direction.EXPENSE) {
+                money *= -1;
+            }
+            pageSubtotal.addMoney(currency, money);
+            if (cursor.getInt(indexConfirmed) == 1 && cursor.getInt(indexCountInTotal) == 1) {
+                // the balance of the wallet ignores the same transactions ignored by the wallet
+                runningBalance.addMoney(currency, money);
+            }
+            // for each line of the cursor, write a line in the table
+            for (int i = 0; i < columns.length; i++) {
+                String label;
+                switch (columns[i]) {
                     case Constants.COLUMN_MONEY:
-                        CurrencyUnit currencyUnit = CurrencyManager.getCurrency(cursor.getString(cursor.getColumnIndex(Contract.Transaction.WALLET_CURRENCY)));
-                        long money = cursor.getLong(cursor.getColumnIndex(Contract.Transaction.MONEY));
-                        int direction = cursor.getInt(cursor.getColumnIndex(Contract.Transaction.DIRECTION));
-                        if (direction == Contract.Direction.EXPENSE) {
-                            money *= -1;
-                        }
+                        CurrencyUnit currencyUnit = CurrencyManager.getCurrency(currency);
                         label = mMoneyFormatter.getNotTintedString(currencyUnit, money);
                         break;
-                    case Constants.COLUMN_WALLET:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.WALLET_NAME));
-                        break;
-                    case Constants.COLUMN_DESCRIPTION:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.DESCRIPTION));
-                        break;
-                    case Constants.COLUMN_EVENT:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.EVENT_NAME));
-                        break;
                     case Constants.COLUMN_PEOPLE:
-                        List<Long> peopleIds = Contract.parseObjectIds(cursor.getString(cursor.getColumnIndex(Contract.Transaction.PEOPLE_IDS)));
-                        if (peopleIds != null && !peopleIds.isEmpty()) {
-                            StringBuilder builder = new StringBuilder();
-                            for (Long personId : peopleIds) {
-                                String name = getPersonName(personId);
-                                if (!TextUtils.isEmpty(name)) {
-                                    if (builder.length() > 0) {
-                                        builder.append(", ");
-                                    }
-                                    builder.append(name);
-                                }
-                            }
-                            label = builder.toString();
-                        } else {
-                            label = null;
-                        }
-                        break;
-                    case Constants.COLUMN_PLACE:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.PLACE_NAME));
+                        label = getPeopleNames(cursor, indexes[i]);
                         break;
-                    case Constants.COLUMN_NOTE:
-                        label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.NOTE));
+                    default:
+                        label = indexes[i] != -1 ? cursor.getString(indexes[i]) : null;
                         break;
                 }
-                table.addCell(label);
+                table.addCell(new Phrase(label != null ? label : "", mRowFont));
+            }
+            if (++pageRows == ROWS_PER_PAGE) {
+                // close the page: the completed rows are written and released by the document
+                addSummaryRows(table, columns, pageSubtotal, runningBalance);
+                mDocument.add(table);
+                pageSubtotal = new Money();
+                pageFlushed = true;
+                pageRows = 0;
             }
         }
-        return table;
+        table.setComplete(true);
+        if (pageRows > 0) {
+            addSummaryRows(table, columns, pageSubtotal, runningBalance);
+            mDocument.add(table);
+        } else if (!pageFlushed) {
+            // empty cursor: write only the header of the table
+            mDocument.add(table);
+        }
+    }
+
+    private void addSummaryRows(PdfPTable table, String[] columns, Money pageSubtotal, Money runningBalance) {
+        Context context = getContext();
+        addSummaryRow(table, columns, context.getString(R.string.hint_page_subtotal), pageSubtotal);
+        addSummaryRow(table, columns, context.getString(R.string.hint_running_balance), runningBalance);
+    }
+
+    private void addSummaryRow(PdfPTable table, String[] columns, String label, Money money) {
+        int moneyColumn = -1;
+        for (int i = 0; i < columns.length; i++) {
+            if (Constants.COLUMN_MONEY.equals(columns[i])) {
+                moneyColumn = i;
+                break;
+            }
+        }
+        String moneyString = mMoneyFormatter.getNotTintedString(money);
+        if (moneyColumn > 0) {
+            // the label fills the columns before the money, the money is aligned with its column
+            PdfPCell labelCell = new PdfPCell(new Phrase(label, mSummaryFont));
+            labelCell.setColspan(moneyColumn);
+            labelCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            table.addCell(labelCell);
+            table.addCell(new PdfPCell(new Phrase(moneyString, mSummaryFont)));
+        } else if (moneyColumn == 0) {
+            // there is no room for the label before the money: it is written inside the same cell
+            table.addCell(new PdfPCell(new Phrase(label + ": " + moneyString, mSummaryFont)));
+        } else {
+            // the money is not exported: the summary is written in a row that spans the table
+            PdfPCell summaryCell = new PdfPCell(new Phrase(label + ": " + moneyString, mSummaryFont));
+            summaryCell.setColspan(columns.length);
+            summaryCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            table.addCell(summaryCell);
+            return;
+        }
+        int remainingColumns = columns.length - moneyColumn - 1;
+        if (remainingColumns > 0) {
+            PdfPCell emptyCell = new PdfPCell(new Phrase("", mSummaryFont));
+            emptyCell.setColspan(remainingColumns);
+            table.addCell(emptyCell);
+        }
+    }
+
+    private int[] getColumnIndexes(Cursor cursor, String[] columns) {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String contractColumn = null;
+            switch (columns[i]) {
+                case Constants.COLUMN_DATETIME:
+                    contractColumn = Contract.Transaction.DATE;
+                    break;
+                case Constants.COLUMN_CATEGORY:
+                    contractColumn = Contract.Transaction.CATEGORY_NAME;
+                    break;
+                case Constants.COLUMN_MONEY:
+                    contractColumn = Contract.Transaction.MONEY;
+                    break;
+                case Constants.COLUMN_WALLET:
+                    contractColumn = Contract.Transaction.WALLET_NAME;
+                    break;
+                case Constants.COLUMN_DESCRIPTION:
+                    contractColumn = Contract.Transaction.DESCRIPTION;
+                    break;
+                case Constants.COLUMN_EVENT:
+                    contractColumn = Contract.Transaction.EVENT_NAME;
+                    break;
+                case Constants.COLUMN_PEOPLE:
+                    contractColumn = Contract.Transaction.PEOPLE_IDS;
+                    break;
+                case Constants.COLUMN_PLACE:
+                    contractColumn = Contract.Transaction.PLACE_NAME;
+                    break;
+                case Constants.COLUMN_NOTE:
+                    contractColumn = Contract.Transaction.NOTE;
+                    break;
+            }
+            indexes[i] = contractColumn != null ? cursor.getColumnIndex(contractColumn) : -1;
+        }
+        return indexes;
+    }
+
+    private String getPeopleNames(Cursor cursor, int columnIndex) {
+        long[] peopleIds = mIdSetReader.read(cursor, columnIndex);
+        if (peopleIds != null && peopleIds.length > 0) {
+            StringBuilder builder = new StringBuilder();
+            for (long personId : peopleIds) {
+                String name = getPersonName(personId);
+                if (!TextUtils.isEmpty(name)) {
+                    if (builder.length() > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(name);
+                }
+            }
+            return builder.toString();
+        }
+        return null;
     }
 
     private PdfPTable createTable(String[] columns) throws DocumentException {
         // create the table with a fixed number of columns
         PdfPTable table = new PdfPTable(columns.length);
         table.setWidthPercentage(100f);
+        // the header is repeated on each page and the table is added to the document in parts
+        table.setHeaderRows(1);
+        table.setComplete(false);
         table.getDefaultCell().setBackgroundColor(BaseColor.YELLOW);
         table.getDefaultCell().setHorizontalAlignment(Element.ALIGN_CENTER);
         // initialize the table creating the header line
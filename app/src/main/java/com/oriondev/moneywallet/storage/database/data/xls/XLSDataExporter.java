@@ -8,40 +8,37 @@ import com.oriondev.moneywallet.R;
 import com.oriondev.moneywallet.model.CurrencyUnit;
 import com.oriondev.moneywallet.model.Wallet;
 import com.oriondev.moneywallet.storage.database.Contract;
+import com.oriondev.moneywallet.storage.database.IdSetReader;
 import com.oriondev.moneywallet.storage.database.data.AbstractDataExporter;
 import com.oriondev.moneywallet.utils.CurrencyManager;
-import com.oriondev.moneywallet.utils.MoneyFormatter;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import jxl.CellView;
-import jxl.Workbook;
-import jxl.write.Label;
-import jxl.write.WritableCellFormat;
-import jxl.write.WritableFont;
-import jxl.write.WritableSheet;
-import jxl.write.WritableWorkbook;
-import jxl.write.WriteException;
-
 /**
  * Created by andrea on 22/12/18.
+ * The workbook is streamed to the output file one row at a time (office open xml format) so the
+ * memory used does not depend on the number of exported transactions. The money is written as a
+ * numeric cell to allow calculations inside the spreadsheet.
  */
 public class XLSDataExporter extends AbstractDataExporter {
 
+    private static final int DEFAULT_DECIMALS = 2;
+
     private final File mOutputFile;
-    private final WritableWorkbook mWorkbook;
-    private final MoneyFormatter mMoneyFormatter;
+    private final XLSXStreamWriter mWriter;
+    private final IdSetReader mIdSetReader = new IdSetReader();
 
     private boolean mShouldLoadPeople = false;
 
     public XLSDataExporter(Context context, File folder) throws IOException {
         super(context, folder);
-        mOutputFile = new File(folder, getDefaultFileName(".xls"));
-        mWorkbook = Workbook.createWorkbook(mOutputFile);
-        mMoneyFormatter = MoneyFormatter.getInstance();
+        mOutputFile = new File(folder, getDefaultFileName(".xlsx"));
+        mWriter = new XLSXStreamWriter(new BufferedOutputStream(new FileOutputStream(mOutputFile)));
     }
 
     @Override
@@ -88,79 +85,127 @@ public class XLSDataExporter extends AbstractDataExporter {
 
     @Override
     public void exportData(Cursor cursor, String[] columns, Wallet... wallets) throws IOException {
-        WritableSheet sheet = mWorkbook.createSheet(getSheetName(wallets), getSheetIndex());
-        try {
-            // write the header of each column
-            writeSheetHeader(sheet, columns);
-            // write the body of the wallet
-            for (int r = 1; r <= cursor.getCount(); r++) {
-                // move the cursor to the fixed position
-                cursor.moveToPosition(r - 1);
-                // for each line of the cursor, write a line in the sheet
-                for (int i = 0; i < columns.length; i++) {
-                    String label = null;
-                    switch (columns[i]) {
-                        case Constants.COLUMN_DATETIME:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.DATE));
-                            break;
-                        case Constants.COLUMN_CATEGORY:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.CATEGORY_NAME));
-                            break;
-                        case Constants.COLUMN_MONEY:
-                            CurrencyUnit currencyUnit = CurrencyManager.getCurrency(cursor.getString(cursor.getColumnIndex(Contract.Transaction.WALLET_CURRENCY)));
-                            long money = cursor.getLong(cursor.getColumnIndex(Contract.Transaction.MONEY));
-                            int direction = cursor.getInt(cursor.getColumnIndex(Contract.Transaction.DIRECTION));
-                            if (direction == Contract.Direction.EXPENSE) {
-                                money *= -1;
-                            }
-                            label = mMoneyFormatter.getNotTintedString(currencyUnit, money);
-                            break;
-                        case Constants.COLUMN_WALLET:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.WALLET_NAME));
-                            break;
-                        case Constants.COLUMN_DESCRIPTION:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.DESCRIPTION));
-                            break;
-                        case Constants.COLUMN_EVENT:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.EVENT_NAME));
-                            break;
-                        case Constants.COLUMN_PEOPLE:
-                            List<Long> peopleIds = Contract.parseObjectIds(cursor.getString(cursor.getColumnIndex(Contract.Transaction.PEOPLE_IDS)));
-                            if (peopleIds != null && !peopleIds.isEmpty()) {
-                                StringBuilder builder = new StringBuilder();
-                                for (Long personId : peopleIds) {
-                                    String name = getPersonName(personId);
-                                    if (!TextUtils.isEmpty(name)) {
-                                        if (builder.length() > 0) {
-                                            builder.append(", ");
-                                        }
-                                        builder.append(name);
-                                    }
-                                }
-                                label = builder.toString();
-                            } else {
-                                label = null;
-                            }
-                            break;
-                        case Constants.COLUMN_PLACE:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.PLACE_NAME));
-                            break;
-                        case Constants.COLUMN_NOTE:
-                            label = cursor.getString(cursor.getColumnIndex(Contract.Transaction.NOTE));
-                            break;
-                    }
-                    sheet.addCell(new Label(i, r, label));
+        mWriter.beginSheet(getSheetName(wallets), getColumnWidths(columns));
+        // write the header of each column
+        writeSheetHeader(columns);
+        // the indexes of the columns are resolved only once for the whole cursor
+        int[] indexes = getColumnIndexes(cursor, columns);
+        int indexMoney = cursor.getColumnIndex(Contract.Transaction.MONEY);
+        int indexDirection = cursor.getColumnIndex(Contract.Transaction.DIRECTION);
+        int indexCurrency = cursor.getColumnIndex(Contract.Transaction.WALLET_CURRENCY);
+        String lastCurrency = null;
+        int decimals = DEFAULT_DECIMALS;
+        // write the body of the wallet: only the current row is kept in memory
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            mWriter.beginRow();
+            for (int i = 0; i < columns.length; i++) {
+                switch (columns[i]) {
+                    case Constants.COLUMN_DATETIME:
+                        mWriter.writeDateTime(cursor.getString(indexes[i]));
+                        break;
+                    case Constants.COLUMN_MONEY:
+                        String currency = cursor.getString(indexCurrency);
+                        if (lastCurrency == null || !lastCurrency.equals(currency)) {
+                            CurrencyUnit currencyUnit = CurrencyManager.getCurrency(currency);
+                            decimals = currencyUnit != null ? currencyUnit.getDecimals() : DEFAULT_DECIMALS;
+                            lastCurrency = currency;
+                        }
+                        long money = cursor.getLong(indexMoney);
+                        if (cursor.getInt(indexDirection) == Contract.Direction.EXPENSE) {
+                            money *= -1;
+                        }
+                        mWriter.writeNumber(money, decimals);
+                        break;
+                    case Constants.COLUMN_PEOPLE:
+                        mWriter.writeString(getPeopleNames(cursor, indexes[i]));
+                        break;
+                    default:
+                        mWriter.writeString(indexes[i] != -1 ? cursor.getString(indexes[i]) : null);
+                        break;
                 }
             }
-            // calculate the width of each column to fit the values
-            for (int i = 0; i < columns.length; i++) {
-                CellView cellView = sheet.getColumnView(i);
-                cellView.setAutosize(true);
-                sheet.setColumnView(i, cellView);
+            mWriter.endRow();
+        }
+        mWriter.endSheet();
+    }
+
+    private int[] getColumnIndexes(Cursor cursor, String[] columns) {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String contractColumn = null;
+            switch (columns[i]) {
+                case Constants.COLUMN_DATETIME:
+                    contractColumn = Contract.Transaction.DATE;
+                    break;
+                case Constants.COLUMN_CATEGORY:
+                    contractColumn = Contract.Transaction.CATEGORY_NAME;
+                    break;
+                case Constants.COLUMN_MONEY:
+                    contractColumn = Contract.Transaction.MONEY;
+                    break;
+                case Constants.COLUMN_WALLET:
+                    contractColumn = Contract.Transaction.WALLET_NAME;
+                    break;
+                case Constants.COLUMN_DESCRIPTION:
+                    contractColumn = Contract.Transaction.DESCRIPTION;
+                    break;
+                case Constants.COLUMN_EVENT:
+                    contractColumn = Contract.Transaction.EVENT_NAME;
+                    break;
+                case Constants.COLUMN_PEOPLE:
+                    contractColumn = Contract.Transaction.PEOPLE_IDS;
+                    break;
+                case Constants.COLUMN_PLACE:
+                    contractColumn = Contract.Transaction.PLACE_NAME;
+                    break;
+                case Constants.COLUMN_NOTE:
+                    contractColumn = Contract.Transaction.NOTE;
+                    break;
+            }
+            indexes[i] = contractColumn != null ? cursor.getColumnIndex(contractColumn) : -1;
+        }
+        return indexes;
+    }
+
+    private int[] getColumnWidths(String[] columns) {
+        int[] widths = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case Constants.COLUMN_DATETIME:
+                    widths[i] = 20;
+                    break;
+                case Constants.COLUMN_MONEY:
+                    widths[i] = 14;
+                    break;
+                case Constants.COLUMN_DESCRIPTION:
+                case Constants.COLUMN_NOTE:
+                    widths[i] = 40;
+                    break;
+                default:
+                    widths[i] = 20;
+                    break;
+            }
+        }
+        return widths;
+    }
+
+    private String getPeopleNames(Cursor cursor, int columnIndex) {
+        long[] peopleIds = mIdSetReader.read(cursor, columnIndex);
+        if (peopleIds != null && peopleIds.length > 0) {
+            StringBuilder builder = new StringBuilder();
+            for (long personId : peopleIds) {
+                String name = getPersonName(personId);
+                if (!TextUtils.isEmpty(name)) {
+                    if (builder.length() > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(name);
+                }
             }
-        } catch (WriteException e) {
-            throw new IOException(e);
+            return builder.toString();
         }
+        return null;
     }
 
     private String getSheetName(Wallet... wallets) {
@@ -177,12 +222,9 @@ public class XLSDataExporter extends AbstractDataExporter {
         return getContext().getString(R.string.hint_unknown);
     }
 
-    private int getSheetIndex() {
-        return mWorkbook.getNumberOfSheets();
-    }
-
-    private void writeSheetHeader(WritableSheet sheet, String[] columns) throws WriteException {
+    private void writeSheetHeader(String[] columns) throws IOException {
         Context context = getContext();
+        mWriter.beginRow();
         for (int i = 0; i < columns.length; i++) {
             String label = null;
             switch (columns[i]) {
@@ -214,21 +256,14 @@ public class XLSDataExporter extends AbstractDataExporter {
                     label = context.getString(R.string.hint_note);
                     break;
             }
-            WritableFont cellFont = new WritableFont(WritableFont.TAHOMA, 10);
-            cellFont.setBoldStyle(WritableFont.BOLD);
-            WritableCellFormat cellFormat = new WritableCellFormat(cellFont);
-            sheet.addCell(new Label(i, 0, label, cellFormat));
+            mWriter.writeHeader(label);
         }
+        mWriter.endRow();
     }
 
     @Override
     public void close() throws IOException {
-        try {
-            mWorkbook.write();
-            mWorkbook.close();
-        } catch (WriteException e) {
-            throw new IOException(e);
-        }
+        mWriter.close();
     }
 
     @Override
@@ -238,6 +273,6 @@ public class XLSDataExporter extends AbstractDataExporter {
 
     @Override
     public String getResultType() {
-        return "application/vnd.ms-excel";
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
     }
 }
\ No newline at end of file
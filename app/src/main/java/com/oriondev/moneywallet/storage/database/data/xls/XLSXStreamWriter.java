@@ -0,0 +1,395 @@
+package com.oriondev.moneywallet.storage.database.data.xls;
+
+import com.oriondev.moneywallet.utils.DateCodec;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streaming writer of an office open xml workbook (xlsx). Each row is written to the zip stream
+ * as soon as it is completed, the strings are written inline (without a table of shared strings)
+ * and the only state kept in memory is the list of the names of the sheets: the memory used does
+ * not depend on the number of rows. The sheets must be written one after the other.
+ */
+/*package-local*/ class XLSXStreamWriter implements Closeable {
+
+    /*package-local*/ static final int MAX_DECIMALS = 8;
+
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // index of the cell formats declared inside the style sheet
+    private static final int STYLE_HEADER = 1;
+    private static final int STYLE_DATETIME = 2;
+    private static final int STYLE_NUMBER = 3;
+
+    // the excel dates are the number of days since 1899-12-30
+    private static final long EXCEL_EPOCH_DAYS = DateCodec.toEpochDay(1899, 12, 30);
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PACKAGE_RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    private final ZipOutputStream mZipOutputStream;
+    private final Writer mWriter;
+    private final List<String> mSheetNames = new ArrayList<>();
+    private final Set<String> mLowerCaseSheetNames = new HashSet<>();
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    private String[] mColumnNames;
+    private boolean mSheetOpen;
+    private int mRow;
+    private int mColumn;
+
+    /*package-local*/ XLSXStreamWriter(OutputStream outputStream) {
+        mZipOutputStream = new ZipOutputStream(outputStream);
+        mWriter = new BufferedWriter(new OutputStreamWriter(mZipOutputStream, Charset.forName("UTF-8")), BUFFER_SIZE);
+    }
+
+    /**
+     * Start a new sheet. The previous sheet must be ended before calling this method.
+     * @param name of the sheet: it is adapted to the constraints of the format.
+     * @param columnWidths width of each column (in characters).
+     */
+    /*package-local*/ void beginSheet(String name, int[] columnWidths) throws IOException {
+        if (mSheetOpen) {
+            throw new IllegalStateException("The previous sheet has not been ended");
+        }
+        mSheetNames.add(getUniqueSheetName(name));
+        mColumnNames = new String[columnWidths.length];
+        for (int i = 0; i < columnWidths.length; i++) {
+            mColumnNames[i] = getColumnName(i);
+        }
+        mZipOutputStream.putNextEntry(new ZipEntry("xl/worksheets/sheet" + mSheetNames.size() + ".xml"));
+        mWriter.write(XML_HEADER);
+        mWriter.write("<worksheet xmlns=\"" + NS_MAIN + "\">");
+        // the first row contains the header: it is frozen
+        mWriter.write("<sheetViews><sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/></sheetView></sheetViews>");
+        if (columnWidths.length > 0) {
+            mWriter.write("<cols>");
+            for (int i = 0; i < columnWidths.length; i++) {
+                mWriter.write("<col min=\"" + (i + 1) + "\" max=\"" + (i + 1) + "\" width=\"" + columnWidths[i] + "\" customWidth=\"1\"/>");
+            }
+            mWriter.write("</cols>");
+        }
+        mWriter.write("<sheetData>");
+        mSheetOpen = true;
+        mRow = 0;
+    }
+
+    /*package-local*/ void beginRow() throws IOException {
+        mRow++;
+        mColumn = 0;
+        mWriter.write("<row r=\"");
+        mWriter.write(Integer.toString(mRow));
+        mWriter.write("\">");
+    }
+
+    /*package-local*/ void endRow() throws IOException {
+        mWriter.write("</row>");
+    }
+
+    /**
+     * Write a cell of the header of the sheet (bold text).
+     */
+    /*package-local*/ void writeHeader(String value) throws IOException {
+        writeString(value, STYLE_HEADER);
+    }
+
+    /*package-local*/ void writeString(String value) throws IOException {
+        writeString(value, 0);
+    }
+
+    private void writeString(String value, int style) throws IOException {
+        if (value == null || value.isEmpty()) {
+            skipCell();
+            return;
+        }
+        beginCell(style, "inlineStr");
+        mWriter.write("<is><t xml:space=\"preserve\">");
+        writeEscaped(value);
+        mWriter.write("</t></is></c>");
+    }
+
+    /**
+     * Write a numeric cell: the value is written with its exact decimal representation and the
+     * cell is formatted with the same number of decimals.
+     * @param unscaledValue value multiplied by 10^decimals (for example the money in cents).
+     * @param decimals number of decimals of the value.
+     */
+    /*package-local*/ void writeNumber(long unscaledValue, int decimals) throws IOException {
+        decimals = Math.max(0, Math.min(decimals, MAX_DECIMALS));
+        beginCell(STYLE_NUMBER + decimals, null);
+        mWriter.write("<v>");
+        mBuilder.setLength(0);
+        mBuilder.append(Math.abs(unscaledValue));
+        if (unscaledValue == Long.MIN_VALUE) {
+            // the absolute value overflows: remove the sign added by the conversion
+            mBuilder.deleteCharAt(0);
+        }
+        if (decimals > 0) {
+            while (mBuilder.length() <= decimals) {
+                mBuilder.insert(0, '0');
+            }
+            mBuilder.insert(mBuilder.length() - decimals, '.');
+        }
+        if (unscaledValue < 0) {
+            mBuilder.insert(0, '-');
+        }
+        mWriter.append(mBuilder);
+        mWriter.write("</v></c>");
+    }
+
+    /**
+     * Write a date cell.
+     * @param sqlDateTime date with the format used by the database (yyyy-MM-dd HH:mm:ss).
+     * If it cannot be parsed, it is written as a string.
+     */
+    /*package-local*/ void writeDateTime(String sqlDateTime) throws IOException {
+        if (sqlDateTime == null || sqlDateTime.length() < 10) {
+            writeString(sqlDateTime);
+            return;
+        }
+        try {
+            int year = parseField(sqlDateTime, 0, 4);
+            int month = parseField(sqlDateTime, 5, 7);
+            int day = parseField(sqlDateTime, 8, 10);
+            int seconds = 0;
+            if (sqlDateTime.length() >= 19) {
+                seconds = parseField(sqlDateTime, 11, 13) * 3600 + parseField(sqlDateTime, 14, 16) * 60 + parseField(sqlDateTime, 17, 19);
+            }
+            long days = DateCodec.toEpochDay(year, month, day) - EXCEL_EPOCH_DAYS;
+            beginCell(STYLE_DATETIME, null);
+            mWriter.write("<v>");
+            mWriter.write(Double.toString(days + seconds / 86400d));
+            mWriter.write("</v></c>");
+        } catch (NumberFormatException e) {
+            writeString(sqlDateTime);
+        }
+    }
+
+    /*package-local*/ void skipCell() {
+        mColumn++;
+    }
+
+    /*package-local*/ void endSheet() throws IOException {
+        mWriter.write("</sheetData></worksheet>");
+        mWriter.flush();
+        mZipOutputStream.closeEntry();
+        mSheetOpen = false;
+    }
+
+    private void beginCell(int style, String type) throws IOException {
+        mWriter.write("<c r=\"");
+        mWriter.write(mColumnNames[mColumn++]);
+        mWriter.write(Integer.toString(mRow));
+        if (style != 0) {
+            mWriter.write("\" s=\"");
+            mWriter.write(Integer.toString(style));
+        }
+        if (type != null) {
+            mWriter.write("\" t=\"");
+            mWriter.write(type);
+        }
+        mWriter.write("\">");
+    }
+
+    private void writeEscaped(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    mWriter.write("&lt;");
+                    break;
+                case '>':
+                    mWriter.write("&gt;");
+                    break;
+                case '&':
+                    mWriter.write("&amp;");
+                    break;
+                case '"':
+                    mWriter.write("&quot;");
+                    break;
+                default:
+                    // the control characters are not allowed inside an xml document
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        mWriter.write(c);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Write the workbook, the relationships and the styles and close the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (mSheetOpen) {
+                endSheet();
+            }
+            if (mSheetNames.isEmpty()) {
+                // a workbook must contain at least one sheet
+                beginSheet("Sheet1", new int[0]);
+                endSheet();
+            }
+            writeEntry("[Content_Types].xml", getContentTypes());
+            writeEntry("_rels/.rels", XML_HEADER + "<Relationships xmlns=\"" + NS_PACKAGE_RELATIONSHIPS + "\">" +
+                    "<Relationship Id=\"rId1\" Type=\"" + NS_RELATIONSHIPS + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+                    "</Relationships>");
+            writeEntry("xl/workbook.xml", getWorkbook());
+            writeEntry("xl/_rels/workbook.xml.rels", getWorkbookRelationships());
+            writeEntry("xl/styles.xml", getStyles());
+            mWriter.flush();
+            mZipOutputStream.finish();
+        } finally {
+            mWriter.close();
+        }
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        mZipOutputStream.putNextEntry(new ZipEntry(name));
+        mWriter.write(content);
+        mWriter.flush();
+        mZipOutputStream.closeEntry();
+    }
+
+    private String getContentTypes() {
+        StringBuilder builder = new StringBuilder(XML_HEADER);
+        builder.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        builder.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        builder.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        builder.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        builder.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= mSheetNames.size(); i++) {
+            builder.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        builder.append("</Types>");
+        return builder.toString();
+    }
+
+    private String getWorkbook() {
+        StringBuilder builder = new StringBuilder(XML_HEADER);
+        builder.append("<workbook xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_RELATIONSHIPS).append("\"><sheets>");
+        for (int i = 1; i <= mSheetNames.size(); i++) {
+            builder.append("<sheet name=\"").append(escapeAttribute(mSheetNames.get(i - 1)))
+                    .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        builder.append("</sheets></workbook>");
+        return builder.toString();
+    }
+
+    private String getWorkbookRelationships() {
+        StringBuilder builder = new StringBuilder(XML_HEADER);
+        builder.append("<Relationships xmlns=\"").append(NS_PACKAGE_RELATIONSHIPS).append("\">");
+        for (int i = 1; i <= mSheetNames.size(); i++) {
+            builder.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(NS_RELATIONSHIPS)
+                    .append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        builder.append("<Relationship Id=\"rId").append(mSheetNames.size() + 1).append("\" Type=\"")
+                .append(NS_RELATIONSHIPS).append("/styles\" Target=\"styles.xml\"/>");
+        builder.append("</Relationships>");
+        return builder.toString();
+    }
+
+    private static String getStyles() {
+        StringBuilder builder = new StringBuilder(XML_HEADER);
+        builder.append("<styleSheet xmlns=\"").append(NS_MAIN).append("\">");
+        // custom number formats: the date and one format for each number of decimals
+        builder.append("<numFmts count=\"").append(MAX_DECIMALS + 2).append("\">");
+        builder.append("<numFmt numFmtId=\"164\" formatCode=\"yyyy-mm-dd hh:mm:ss\"/>");
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            builder.append("<numFmt numFmtId=\"").append(165 + decimals).append("\" formatCode=\"#,##0");
+            if (decimals > 0) {
+                builder.append('.');
+                for (int i = 0; i < decimals; i++) {
+                    builder.append('0');
+                }
+            }
+            builder.append("\"/>");
+        }
+        builder.append("</numFmts>");
+        builder.append("<fonts count=\"2\"><font><sz val=\"10\"/><name val=\"Tahoma\"/></font>");
+        builder.append("<font><b/><sz val=\"10\"/><name val=\"Tahoma\"/></font></fonts>");
+        builder.append("<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>");
+        builder.append("<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>");
+        builder.append("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+        builder.append("<cellXfs count=\"").append(STYLE_NUMBER + MAX_DECIMALS + 1).append("\">");
+        builder.append("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+        builder.append("<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>");
+        builder.append("<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            builder.append("<xf numFmtId=\"").append(165 + decimals)
+                    .append("\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+        }
+        builder.append("</cellXfs>");
+        builder.append("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+        builder.append("</styleSheet>");
+        return builder.toString();
+    }
+
+    /**
+     * The name of a sheet cannot contain some characters, it is limited to 31 characters and it
+     * must be unique (ignoring the case) inside the workbook.
+     */
+    private String getUniqueSheetName(String name) {
+        String baseName = name != null ? name.replaceAll("[\\[\\]:*?/\\\\]", " ").trim() : "";
+        if (baseName.isEmpty()) {
+            baseName = "Sheet" + (mSheetNames.size() + 1);
+        }
+        String uniqueName = truncate(baseName, MAX_SHEET_NAME_LENGTH);
+        int counter = 2;
+        while (mLowerCaseSheetNames.contains(uniqueName.toLowerCase(Locale.ENGLISH))) {
+            String suffix = " (" + counter++ + ")";
+            uniqueName = truncate(baseName, MAX_SHEET_NAME_LENGTH - suffix.length()) + suffix;
+        }
+        mLowerCaseSheetNames.add(uniqueName.toLowerCase(Locale.ENGLISH));
+        return uniqueName;
+    }
+
+    private static String truncate(String value, int length) {
+        return value.length() > length ? value.substring(0, length) : value;
+    }
+
+    private static String escapeAttribute(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /*package-local*/ static String getColumnName(int index) {
+        StringBuilder builder = new StringBuilder();
+        int value = index + 1;
+        while (value > 0) {
+            int remainder = (value - 1) % 26;
+            builder.insert(0, (char) ('A' + remainder));
+            value = (value - 1) / 26;
+        }
+        return builder.toString();
+    }
+
+    private static int parseField(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid date: " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
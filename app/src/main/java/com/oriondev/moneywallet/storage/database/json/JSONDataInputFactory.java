@@ -21,16 +21,17 @@ package com.oriondev.moneywallet.storage.database.json;
 
 import com.oriondev.moneywallet.storage.database.model.*;
 
-import org.json.JSONObject;
-
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * This class acts as object factory and mapping between the JSONObjects and
- * the native database objects. It also uses an internal cache to correctly
- * handle the mapping between the UUID that are used as identifiers in the
- * json file and native longs that are used as id inside the database.
+ * This class acts as object factory and mapping between the json stream and
+ * the native database objects. Each object is decoded field by field directly
+ * from the tokens of the stream, without building an intermediate JSONObject.
+ * It also uses an internal cache to correctly handle the mapping between the
+ * UUID that are used as identifiers in the json file and native longs that are
+ * used as id inside the database.
  */
 /*package-local*/ class JSONDataInputFactory {
 
@@ -100,352 +101,1060 @@ import java.util.Map;
         mCacheAttachments.put(uuid, id);
     }
 
-    /*package-local*/ Currency getCurrency(JSONObject object) {
+    /*package-local*/ Currency readCurrency(JSONDataStreamReader reader) throws IOException {
         Currency currency = new Currency();
-        currency.mIso = object.optString(JSONDatabase.Currency.ISO, null);
-        currency.mName = object.optString(JSONDatabase.Currency.NAME, null);
-        currency.mSymbol = object.optString(JSONDatabase.Currency.SYMBOL, null);
-        currency.mDecimals = object.optInt(JSONDatabase.Currency.DECIMALS, 2);
-        currency.mFavourite = object.optBoolean(JSONDatabase.Currency.FAVOURITE, false);
-        currency.mUUID = "currency_" + object.optString(JSONDatabase.Currency.ISO, null);
-        currency.mLastEdit = object.optLong(JSONDatabase.Currency.LAST_EDIT, 0L);
-        currency.mDeleted = object.optBoolean(JSONDatabase.Currency.DELETED, false);
+        currency.mDecimals = 2;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Currency.ISO:
+                    currency.mIso = reader.readString();
+                    break;
+                case JSONDatabase.Currency.NAME:
+                    currency.mName = reader.readString();
+                    break;
+                case JSONDatabase.Currency.SYMBOL:
+                    currency.mSymbol = reader.readString();
+                    break;
+                case JSONDatabase.Currency.DECIMALS:
+                    currency.mDecimals = reader.readInt(2);
+                    break;
+                case JSONDatabase.Currency.FAVOURITE:
+                    currency.mFavourite = reader.readBoolean(false);
+                    break;
+                case JSONDatabase.Currency.LAST_EDIT:
+                    currency.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Currency.DELETED:
+                    currency.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        currency.mUUID = "currency_" + currency.mIso;
         return currency;
     }
 
-    /*package-local*/ Wallet getWallet(JSONObject object) {
+    /*package-local*/ Wallet readWallet(JSONDataStreamReader reader) throws IOException {
         Wallet wallet = new Wallet();
-        wallet.mName = object.optString(JSONDatabase.Wallet.NAME, null);
-        wallet.mIcon = object.optString(JSONDatabase.Wallet.ICON, null);
-        wallet.mCurrency = object.optString(JSONDatabase.Wallet.CURRENCY, null);
-        wallet.mStartMoney = object.optLong(JSONDatabase.Wallet.START_MONEY, 0L);
-        wallet.mCountInTotal = object.optBoolean(JSONDatabase.Wallet.COUNT_IN_TOTAL, true);
-        wallet.mArchived = object.optBoolean(JSONDatabase.Wallet.ARCHIVED, false);
-        wallet.mNote = object.optString(JSONDatabase.Wallet.NOTE, null);
-        wallet.mTag = object.optString(JSONDatabase.Wallet.TAG, null);
-        wallet.mIndex = object.optInt(JSONDatabase.Wallet.INDEX, 0);
-        wallet.mUUID = object.optString(JSONDatabase.Wallet.ID, null);
-        wallet.mLastEdit = object.optLong(JSONDatabase.Wallet.LAST_EDIT, 0L);
-        wallet.mDeleted = object.optBoolean(JSONDatabase.Wallet.DELETED, false);
+        wallet.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Wallet.NAME:
+                    wallet.mName = reader.readString();
+                    break;
+                case JSONDatabase.Wallet.ICON:
+                    wallet.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Wallet.CURRENCY:
+                    wallet.mCurrency = reader.readString();
+                    break;
+                case JSONDatabase.Wallet.START_MONEY:
+                    wallet.mStartMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Wallet.COUNT_IN_TOTAL:
+                    wallet.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.Wallet.ARCHIVED:
+                    wallet.mArchived = reader.readBoolean(false);
+                    break;
+                case JSONDatabase.Wallet.NOTE:
+                    wallet.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Wallet.TAG:
+                    wallet.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Wallet.INDEX:
+                    wallet.mIndex = reader.readInt(0);
+                    break;
+                case JSONDatabase.Wallet.ID:
+                    wallet.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Wallet.LAST_EDIT:
+                    wallet.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Wallet.DELETED:
+                    wallet.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return wallet;
     }
 
-    /*package-local*/ Category getCategory(JSONObject object) {
+    /*package-local*/ Category readCategory(JSONDataStreamReader reader) throws IOException {
         Category category = new Category();
-        category.mName = object.optString(JSONDatabase.Category.NAME, null);
-        category.mIcon = object.optString(JSONDatabase.Category.ICON, null);
-        category.mType = object.optInt(JSONDatabase.Category.TYPE, 0);
-        category.mParent = mCacheCategories.get(object.optString(JSONDatabase.Category.PARENT, null));
-        category.mTag = object.optString(JSONDatabase.Category.TAG, null);
-        category.mShowReport = object.optBoolean(JSONDatabase.Category.SHOW_REPORT, true);
-        category.mIndex = object.optInt(JSONDatabase.Category.INDEX, 0);
-        category.mUUID = object.optString(JSONDatabase.Category.ID, null);
-        category.mLastEdit = object.optLong(JSONDatabase.Category.LAST_EDIT, 0L);
-        category.mDeleted = object.optBoolean(JSONDatabase.Category.DELETED, false);
+        category.mShowReport = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Category.NAME:
+                    category.mName = reader.readString();
+                    break;
+                case JSONDatabase.Category.ICON:
+                    category.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Category.TYPE:
+                    category.mType = reader.readInt(0);
+                    break;
+                case JSONDatabase.Category.PARENT:
+                    category.mParent = mCacheCategories.get(reader.readString());
+                    break;
+                case JSONDatabase.Category.TAG:
+                    category.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Category.SHOW_REPORT:
+                    category.mShowReport = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.Category.INDEX:
+                    category.mIndex = reader.readInt(0);
+                    break;
+                case JSONDatabase.Category.ID:
+                    category.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Category.LAST_EDIT:
+                    category.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Category.DELETED:
+                    category.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return category;
     }
 
-    /*package-local*/ Event getEvent(JSONObject object) {
+    /*package-local*/ Event readEvent(JSONDataStreamReader reader) throws IOException {
         Event event = new Event();
-        event.mName = object.optString(JSONDatabase.Event.NAME, null);
-        event.mIcon = object.optString(JSONDatabase.Event.ICON, null);
-        event.mNote = object.optString(JSONDatabase.Event.NOTE, null);
-        event.mStartDate = object.optString(JSONDatabase.Event.START_DATE, null);
-        event.mEndDate = object.optString(JSONDatabase.Event.END_DATE, null);
-        event.mTag = object.optString(JSONDatabase.Event.TAG, null);
-        event.mUUID = object.optString(JSONDatabase.Event.ID, null);
-        event.mLastEdit = object.optLong(JSONDatabase.Event.LAST_EDIT, 0L);
-        event.mDeleted = object.optBoolean(JSONDatabase.Event.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Event.NAME:
+                    event.mName = reader.readString();
+                    break;
+                case JSONDatabase.Event.ICON:
+                    event.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Event.NOTE:
+                    event.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Event.START_DATE:
+                    event.mStartDate = reader.readString();
+                    break;
+                case JSONDatabase.Event.END_DATE:
+                    event.mEndDate = reader.readString();
+                    break;
+                case JSONDatabase.Event.TAG:
+                    event.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Event.ID:
+                    event.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Event.LAST_EDIT:
+                    event.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Event.DELETED:
+                    event.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return event;
     }
 
-    /*package-local*/ Place getPlace(JSONObject object) {
+    /*package-local*/ Place readPlace(JSONDataStreamReader reader) throws IOException {
         Place place = new Place();
-        place.mName = object.optString(JSONDatabase.Place.NAME, null);
-        place.mIcon = object.optString(JSONDatabase.Place.ICON, null);
-        place.mAddress = object.optString(JSONDatabase.Place.ADDRESS, null);
-        place.mLatitude = object.has(JSONDatabase.Place.LATITUDE) ? object.optDouble(JSONDatabase.Place.LATITUDE, 0d) : null;
-        place.mLongitude = object.has(JSONDatabase.Place.LONGITUDE) ? object.optDouble(JSONDatabase.Place.LONGITUDE, 0d) : null;
-        place.mTag = object.optString(JSONDatabase.Place.TAG, null);
-        place.mUUID = object.optString(JSONDatabase.Place.ID, null);
-        place.mLastEdit = object.optLong(JSONDatabase.Place.LAST_EDIT, 0L);
-        place.mDeleted = object.optBoolean(JSONDatabase.Place.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Place.NAME:
+                    place.mName = reader.readString();
+                    break;
+                case JSONDatabase.Place.ICON:
+                    place.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Place.ADDRESS:
+                    place.mAddress = reader.readString();
+                    break;
+                case JSONDatabase.Place.LATITUDE:
+                    place.mLatitude = reader.readDouble(0d);
+                    break;
+                case JSONDatabase.Place.LONGITUDE:
+                    place.mLongitude = reader.readDouble(0d);
+                    break;
+                case JSONDatabase.Place.TAG:
+                    place.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Place.ID:
+                    place.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Place.LAST_EDIT:
+                    place.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Place.DELETED:
+                    place.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return place;
     }
 
-    /*package-local*/ Person getPerson(JSONObject object) {
+    /*package-local*/ Person readPerson(JSONDataStreamReader reader) throws IOException {
         Person person = new Person();
-        person.mName = object.optString(JSONDatabase.Person.NAME, null);
-        person.mIcon = object.optString(JSONDatabase.Person.ICON, null);
-        person.mNote = object.optString(JSONDatabase.Person.NOTE, null);
-        person.mTag = object.optString(JSONDatabase.Person.TAG, null);
-        person.mUUID = object.optString(JSONDatabase.Person.ID, null);
-        person.mLastEdit = object.optLong(JSONDatabase.Person.LAST_EDIT, 0L);
-        person.mDeleted = object.optBoolean(JSONDatabase.Person.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Person.NAME:
+                    person.mName = reader.readString();
+                    break;
+                case JSONDatabase.Person.ICON:
+                    person.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Person.NOTE:
+                    person.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Person.TAG:
+                    person.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Person.ID:
+                    person.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Person.LAST_EDIT:
+                    person.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Person.DELETED:
+                    person.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return person;
     }
 
-    /*package-local*/ EventPerson getEventPerson(JSONObject object) {
+    /*package-local*/ EventPerson readEventPerson(JSONDataStreamReader reader) throws IOException {
         EventPerson eventPerson = new EventPerson();
-        eventPerson.mEvent = mCacheEvents.get(object.optString(JSONDatabase.EventPeople.EVENT, null));
-        eventPerson.mPerson = mCachePeople.get(object.optString(JSONDatabase.EventPeople.PERSON, null));
-        eventPerson.mUUID = object.optString(JSONDatabase.EventPeople.ID, null);
-        eventPerson.mLastEdit = object.optLong(JSONDatabase.EventPeople.LAST_EDIT, 0L);
-        eventPerson.mDeleted = object.optBoolean(JSONDatabase.EventPeople.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.EventPeople.EVENT:
+                    eventPerson.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.EventPeople.PERSON:
+                    eventPerson.mPerson = mCachePeople.get(reader.readString());
+                    break;
+                case JSONDatabase.EventPeople.ID:
+                    eventPerson.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.EventPeople.LAST_EDIT:
+                    eventPerson.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.EventPeople.DELETED:
+                    eventPerson.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return eventPerson;
     }
 
-    /*package-local*/ Debt getDebt(JSONObject object) {
+    /*package-local*/ Debt readDebt(JSONDataStreamReader reader) throws IOException {
         Debt debt = new Debt();
-        debt.mType = object.optInt(JSONDatabase.Debt.TYPE, 0);
-        debt.mIcon = object.optString(JSONDatabase.Debt.ICON, null);
-        debt.mDescription = object.optString(JSONDatabase.Debt.DESCRIPTION, null);
-        debt.mDate = object.optString(JSONDatabase.Debt.DATE, null);
-        debt.mExpirationDate = object.optString(JSONDatabase.Debt.EXPIRATION_DATE, null);
-        debt.mWallet = mCacheWallets.get(object.optString(JSONDatabase.Debt.WALLET, null));
-        debt.mNote = object.optString(JSONDatabase.Debt.NOTE, null);
-        debt.mPlace = mCachePlaces.get(object.optString(JSONDatabase.Debt.PLACE, null));
-        debt.mMoney = object.optLong(JSONDatabase.Debt.MONEY, 0L);
-        debt.mArchived = object.optBoolean(JSONDatabase.Debt.ARCHIVED, false);
-        debt.mTag = object.optString(JSONDatabase.Debt.TAG, null);
-        debt.mUUID = object.optString(JSONDatabase.Debt.ID, null);
-        debt.mLastEdit = object.optLong(JSONDatabase.Debt.LAST_EDIT, 0L);
-        debt.mDeleted = object.optBoolean(JSONDatabase.Debt.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Debt.TYPE:
+                    debt.mType = reader.readInt(0);
+                    break;
+                case JSONDatabase.Debt.ICON:
+                    debt.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Debt.DESCRIPTION:
+                    debt.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.Debt.DATE:
+                    debt.mDate = reader.readString();
+                    break;
+                case JSONDatabase.Debt.EXPIRATION_DATE:
+                    debt.mExpirationDate = reader.readString();
+                    break;
+                case JSONDatabase.Debt.WALLET:
+                    debt.mWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.Debt.NOTE:
+                    debt.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Debt.PLACE:
+                    debt.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.Debt.MONEY:
+                    debt.mMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Debt.ARCHIVED:
+                    debt.mArchived = reader.readBoolean(false);
+                    break;
+                case JSONDatabase.Debt.TAG:
+                    debt.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Debt.ID:
+                    debt.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Debt.LAST_EDIT:
+                    debt.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Debt.DELETED:
+                    debt.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return debt;
     }
 
-    /*package-local*/ DebtPerson getDebtPerson(JSONObject object) {
+    /*package-local*/ DebtPerson readDebtPerson(JSONDataStreamReader reader) throws IOException {
         DebtPerson debtPerson = new DebtPerson();
-        debtPerson.mDebt = mCacheDebts.get(object.optString(JSONDatabase.DebtPeople.DEBT, null));
-        debtPerson.mPerson = mCachePeople.get(object.optString(JSONDatabase.DebtPeople.PERSON, null));
-        debtPerson.mUUID = object.optString(JSONDatabase.DebtPeople.ID, null);
-        debtPerson.mLastEdit = object.optLong(JSONDatabase.DebtPeople.LAST_EDIT, 0L);
-        debtPerson.mDeleted = object.optBoolean(JSONDatabase.DebtPeople.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.DebtPeople.DEBT:
+                    debtPerson.mDebt = mCacheDebts.get(reader.readString());
+                    break;
+                case JSONDatabase.DebtPeople.PERSON:
+                    debtPerson.mPerson = mCachePeople.get(reader.readString());
+                    break;
+                case JSONDatabase.DebtPeople.ID:
+                    debtPerson.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.DebtPeople.LAST_EDIT:
+                    debtPerson.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.DebtPeople.DELETED:
+                    debtPerson.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return debtPerson;
     }
 
-    /*package-local*/ Budget getBudget(JSONObject object) {
+    /*package-local*/ Budget readBudget(JSONDataStreamReader reader) throws IOException {
         Budget budget = new Budget();
-        budget.mType = object.optInt(JSONDatabase.Budget.TYPE, 0);
-        budget.mCategory = mCacheCategories.get(object.optString(JSONDatabase.Budget.CATEGORY, null));
-        budget.mStartDate = object.optString(JSONDatabase.Budget.START_DATE, null);
-        budget.mEndDate = object.optString(JSONDatabase.Budget.END_DATE, null);
-        budget.mMoney = object.optLong(JSONDatabase.Budget.MONEY, 0L);
-        budget.mCurrency = object.optString(JSONDatabase.Budget.CURRENCY, null);
-        budget.mTag = object.optString(JSONDatabase.Budget.TAG, null);
-        budget.mUUID = object.optString(JSONDatabase.Budget.ID, null);
-        budget.mLastEdit = object.optLong(JSONDatabase.Budget.LAST_EDIT, 0L);
-        budget.mDeleted = object.optBoolean(JSONDatabase.Budget.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Budget.TYPE:
+                    budget.mType = reader.readInt(0);
+                    break;
+                case JSONDatabase.Budget.CATEGORY:
+                    budget.mCategory = mCacheCategories.get(reader.readString());
+                    break;
+                case JSONDatabase.Budget.START_DATE:
+                    budget.mStartDate = reader.readString();
+                    break;
+                case JSONDatabase.Budget.END_DATE:
+                    budget.mEndDate = reader.readString();
+                    break;
+                case JSONDatabase.Budget.MONEY:
+                    budget.mMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Budget.CURRENCY:
+                    budget.mCurrency = reader.readString();
+                    break;
+                case JSONDatabase.Budget.TAG:
+                    budget.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Budget.ID:
+                    budget.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Budget.LAST_EDIT:
+                    budget.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Budget.DELETED:
+                    budget.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return budget;
     }
 
-    /*package-local*/ BudgetWallet getBudgetWallet(JSONObject object) {
+    /*package-local*/ BudgetWallet readBudgetWallet(JSONDataStreamReader reader) throws IOException {
         BudgetWallet budgetWallet = new BudgetWallet();
-        budgetWallet.mBudget = mCacheBudgets.get(object.optString(JSONDatabase.BudgetWallet.BUDGET, null));
-        budgetWallet.mWallet = mCacheWallets.get(object.optString(JSONDatabase.BudgetWallet.WALLET, null));
-        budgetWallet.mUUID = object.optString(JSONDatabase.BudgetWallet.ID, null);
-        budgetWallet.mLastEdit = object.optLong(JSONDatabase.BudgetWallet.LAST_EDIT, 0L);
-        budgetWallet.mDeleted = object.optBoolean(JSONDatabase.BudgetWallet.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.BudgetWallet.BUDGET:
+                    budgetWallet.mBudget = mCacheBudgets.get(reader.readString());
+                    break;
+                case JSONDatabase.BudgetWallet.WALLET:
+                    budgetWallet.mWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.BudgetWallet.ID:
+                    budgetWallet.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.BudgetWallet.LAST_EDIT:
+                    budgetWallet.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.BudgetWallet.DELETED:
+                    budgetWallet.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return budgetWallet;
     }
 
-    /*package-local*/ Saving getSaving(JSONObject object) {
+    /*package-local*/ Saving readSaving(JSONDataStreamReader reader) throws IOException {
         Saving saving = new Saving();
-        saving.mDescription = object.optString(JSONDatabase.Saving.DESCRIPTION, null);
-        saving.mIcon = object.optString(JSONDatabase.Saving.ICON, null);
-        saving.mStartMoney = object.optLong(JSONDatabase.Saving.START_MONEY, 0L);
-        saving.mEndMoney = object.optLong(JSONDatabase.Saving.END_MONEY, 0L);
-        saving.mWallet = mCacheWallets.get(object.optString(JSONDatabase.Saving.WALLET, null));
-        saving.mEndDate = object.optString(JSONDatabase.Saving.END_DATE, null);
-        saving.mComplete = object.optBoolean(JSONDatabase.Saving.COMPLETE, false);
-        saving.mNote = object.optString(JSONDatabase.Saving.NOTE, null);
-        saving.mTag = object.optString(JSONDatabase.Saving.TAG, null);
-        saving.mUUID = object.optString(JSONDatabase.Saving.ID, null);
-        saving.mLastEdit = object.optLong(JSONDatabase.Saving.LAST_EDIT, 0L);
-        saving.mDeleted = object.optBoolean(JSONDatabase.Saving.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Saving.DESCRIPTION:
+                    saving.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.Saving.ICON:
+                    saving.mIcon = reader.readString();
+                    break;
+                case JSONDatabase.Saving.START_MONEY:
+                    saving.mStartMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Saving.END_MONEY:
+                    saving.mEndMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Saving.WALLET:
+                    saving.mWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.Saving.END_DATE:
+                    saving.mEndDate = reader.readString();
+                    break;
+                case JSONDatabase.Saving.COMPLETE:
+                    saving.mComplete = reader.readBoolean(false);
+                    break;
+                case JSONDatabase.Saving.NOTE:
+                    saving.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Saving.TAG:
+                    saving.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Saving.ID:
+                    saving.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Saving.LAST_EDIT:
+                    saving.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Saving.DELETED:
+                    saving.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return saving;
     }
 
-    /*package-local*/ RecurrentTransaction getRecurrentTransaction(JSONObject object) {
+    /*package-local*/ RecurrentTransaction readRecurrentTransaction(JSONDataStreamReader reader) throws IOException {
         RecurrentTransaction transaction = new RecurrentTransaction();
-        transaction.mMoney = object.optLong(JSONDatabase.RecurrentTransaction.MONEY, 0L);
-        transaction.mDescription = object.optString(JSONDatabase.RecurrentTransaction.DESCRIPTION, null);
-        transaction.mCategory = mCacheCategories.get(object.optString(JSONDatabase.RecurrentTransaction.CATEGORY, null));
-        transaction.mDirection = object.optInt(JSONDatabase.RecurrentTransaction.DIRECTION, 0);
-        transaction.mWallet = mCacheWallets.get(object.optString(JSONDatabase.RecurrentTransaction.WALLET, null));
-        transaction.mPlace = mCachePlaces.get(object.optString(JSONDatabase.RecurrentTransaction.PLACE, null));
-        transaction.mNote = object.optString(JSONDatabase.RecurrentTransaction.NOTE, null);
-        transaction.mEvent = mCacheEvents.get(object.optString(JSONDatabase.RecurrentTransaction.EVENT, null));
-        transaction.mConfirmed = object.optBoolean(JSONDatabase.RecurrentTransaction.CONFIRMED, true);
-        transaction.mCountInTotal = object.optBoolean(JSONDatabase.RecurrentTransaction.COUNT_IN_TOTAL, true);
-        transaction.mStartDate = object.optString(JSONDatabase.RecurrentTransaction.START_DATE, null);
-        transaction.mLastOccurrence = object.optString(JSONDatabase.RecurrentTransaction.LAST_OCCURRENCE, null);
-        transaction.mNextOccurrence = object.optString(JSONDatabase.RecurrentTransaction.NEXT_OCCURRENCE, null);
-        transaction.mRule = object.optString(JSONDatabase.RecurrentTransaction.RULE, null);
-        transaction.mTag = object.optString(JSONDatabase.RecurrentTransaction.TAG, null);
-        transaction.mUUID = object.optString(JSONDatabase.RecurrentTransaction.ID, null);
-        transaction.mLastEdit = object.optLong(JSONDatabase.RecurrentTransaction.LAST_EDIT, 0L);
-        transaction.mDeleted = object.optBoolean(JSONDatabase.RecurrentTransaction.DELETED, false);
+        transaction.mConfirmed = true;
+        transaction.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.RecurrentTransaction.MONEY:
+                    transaction.mMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.RecurrentTransaction.DESCRIPTION:
+                    transaction.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.CATEGORY:
+                    transaction.mCategory = mCacheCategories.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransaction.DIRECTION:
+                    transaction.mDirection = reader.readInt(0);
+                    break;
+                case JSONDatabase.RecurrentTransaction.WALLET:
+                    transaction.mWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransaction.PLACE:
+                    transaction.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransaction.NOTE:
+                    transaction.mNote = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.EVENT:
+                    transaction.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransaction.CONFIRMED:
+                    transaction.mConfirmed = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.RecurrentTransaction.COUNT_IN_TOTAL:
+                    transaction.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.RecurrentTransaction.START_DATE:
+                    transaction.mStartDate = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.LAST_OCCURRENCE:
+                    transaction.mLastOccurrence = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.NEXT_OCCURRENCE:
+                    transaction.mNextOccurrence = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.RULE:
+                    transaction.mRule = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.TAG:
+                    transaction.mTag = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.ID:
+                    transaction.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransaction.LAST_EDIT:
+                    transaction.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.RecurrentTransaction.DELETED:
+                    transaction.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transaction;
     }
 
-    /*package-local*/ RecurrentTransfer getRecurrentTransfer(JSONObject object) {
+    /*package-local*/ RecurrentTransfer readRecurrentTransfer(JSONDataStreamReader reader) throws IOException {
         RecurrentTransfer transfer = new RecurrentTransfer();
-        transfer.mDescription = object.optString(JSONDatabase.RecurrentTransfer.DESCRIPTION, null);
-        transfer.mFromWallet = mCacheWallets.get(object.optString(JSONDatabase.RecurrentTransfer.WALLET_FROM, null));
-        transfer.mToWallet = mCacheWallets.get(object.optString(JSONDatabase.RecurrentTransfer.WALLET_TO, null));
-        transfer.mFromMoney = object.optLong(JSONDatabase.RecurrentTransfer.MONEY_FROM, 0L);
-        transfer.mToMoney = object.optLong(JSONDatabase.RecurrentTransfer.MONEY_TO, 0L);
-        transfer.mTaxMoney = object.optLong(JSONDatabase.RecurrentTransfer.MONEY_TAX, 0L);
-        transfer.mNote = object.optString(JSONDatabase.RecurrentTransfer.NOTE, null);
-        transfer.mEvent = mCacheEvents.get(object.optString(JSONDatabase.RecurrentTransfer.EVENT, null));
-        transfer.mPlace = mCachePlaces.get(object.optString(JSONDatabase.RecurrentTransfer.PLACE, null));
-        transfer.mConfirmed = object.optBoolean(JSONDatabase.RecurrentTransfer.CONFIRMED, true);
-        transfer.mCountInTotal = object.optBoolean(JSONDatabase.RecurrentTransfer.COUNT_IN_TOTAL, true);
-        transfer.mStartDate = object.optString(JSONDatabase.RecurrentTransfer.START_DATE, null);
-        transfer.mLastOccurrence = object.optString(JSONDatabase.RecurrentTransfer.LAST_OCCURRENCE, null);
-        transfer.mNextOccurrence = object.optString(JSONDatabase.RecurrentTransfer.NEXT_OCCURRENCE, null);
-        transfer.mRule = object.optString(JSONDatabase.RecurrentTransfer.RULE, null);
-        transfer.mTag = object.optString(JSONDatabase.RecurrentTransfer.TAG, null);
-        transfer.mUUID = object.optString(JSONDatabase.RecurrentTransfer.ID, null);
-        transfer.mLastEdit = object.optLong(JSONDatabase.RecurrentTransfer.LAST_EDIT, 0L);
-        transfer.mDeleted = object.optBoolean(JSONDatabase.RecurrentTransfer.DELETED, false);
+        transfer.mConfirmed = true;
+        transfer.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.RecurrentTransfer.DESCRIPTION:
+                    transfer.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.WALLET_FROM:
+                    transfer.mFromWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransfer.WALLET_TO:
+                    transfer.mToWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransfer.MONEY_FROM:
+                    transfer.mFromMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.RecurrentTransfer.MONEY_TO:
+                    transfer.mToMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.RecurrentTransfer.MONEY_TAX:
+                    transfer.mTaxMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.RecurrentTransfer.NOTE:
+                    transfer.mNote = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.EVENT:
+                    transfer.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransfer.PLACE:
+                    transfer.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.RecurrentTransfer.CONFIRMED:
+                    transfer.mConfirmed = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.RecurrentTransfer.COUNT_IN_TOTAL:
+                    transfer.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.RecurrentTransfer.START_DATE:
+                    transfer.mStartDate = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.LAST_OCCURRENCE:
+                    transfer.mLastOccurrence = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.NEXT_OCCURRENCE:
+                    transfer.mNextOccurrence = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.RULE:
+                    transfer.mRule = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.TAG:
+                    transfer.mTag = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.ID:
+                    transfer.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.RecurrentTransfer.LAST_EDIT:
+                    transfer.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.RecurrentTransfer.DELETED:
+                    transfer.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transfer;
     }
 
-    /*package-local*/ Transaction getTransaction(JSONObject object) {
+    /*package-local*/ Transaction readTransaction(JSONDataStreamReader reader) throws IOException {
         Transaction transaction = new Transaction();
-        transaction.mMoney = object.optLong(JSONDatabase.Transaction.MONEY, 0L);
-        transaction.mDate = object.optString(JSONDatabase.Transaction.DATE, null);
-        transaction.mDescription = object.optString(JSONDatabase.Transaction.DESCRIPTION, null);
-        transaction.mCategory = mCacheCategories.get(object.optString(JSONDatabase.Transaction.CATEGORY, null));
-        transaction.mDirection = object.optInt(JSONDatabase.Transaction.DIRECTION, 0);
-        transaction.mType = object.optInt(JSONDatabase.Transaction.TYPE, 0);
-        transaction.mWallet = mCacheWallets.get(object.optString(JSONDatabase.Transaction.WALLET, null));
-        transaction.mPlace = mCachePlaces.get(object.optString(JSONDatabase.Transaction.PLACE, null));
-        transaction.mNote = object.optString(JSONDatabase.Transaction.NOTE, null);
-        transaction.mSaving = mCacheSavings.get(object.optString(JSONDatabase.Transaction.SAVING, null));
-        transaction.mDebt = mCacheDebts.get(object.optString(JSONDatabase.Transaction.DEBT, null));
-        transaction.mEvent = mCacheEvents.get(object.optString(JSONDatabase.Transaction.EVENT, null));
-        transaction.mRecurrence = mCacheRecurrentTransactions.get(object.optString(JSONDatabase.Transaction.RECURRENCE, null));
-        transaction.mConfirmed = object.optBoolean(JSONDatabase.Transaction.CONFIRMED, true);
-        transaction.mCountInTotal = object.optBoolean(JSONDatabase.Transaction.COUNT_IN_TOTAL, true);
-        transaction.mTag = object.optString(JSONDatabase.Transaction.TAG, null);
-        transaction.mUUID = object.optString(JSONDatabase.Transaction.ID, null);
-        transaction.mLastEdit = object.optLong(JSONDatabase.Transaction.LAST_EDIT, 0L);
-        transaction.mDeleted = object.optBoolean(JSONDatabase.Transaction.DELETED, false);
+        transaction.mConfirmed = true;
+        transaction.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Transaction.MONEY:
+                    transaction.mMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Transaction.DATE:
+                    transaction.mDate = reader.readString();
+                    break;
+                case JSONDatabase.Transaction.DESCRIPTION:
+                    transaction.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.Transaction.CATEGORY:
+                    transaction.mCategory = mCacheCategories.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.DIRECTION:
+                    transaction.mDirection = reader.readInt(0);
+                    break;
+                case JSONDatabase.Transaction.TYPE:
+                    transaction.mType = reader.readInt(0);
+                    break;
+                case JSONDatabase.Transaction.WALLET:
+                    transaction.mWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.PLACE:
+                    transaction.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.NOTE:
+                    transaction.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Transaction.SAVING:
+                    transaction.mSaving = mCacheSavings.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.DEBT:
+                    transaction.mDebt = mCacheDebts.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.EVENT:
+                    transaction.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.RECURRENCE:
+                    transaction.mRecurrence = mCacheRecurrentTransactions.get(reader.readString());
+                    break;
+                case JSONDatabase.Transaction.CONFIRMED:
+                    transaction.mConfirmed = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.Transaction.COUNT_IN_TOTAL:
+                    transaction.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.Transaction.TAG:
+                    transaction.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Transaction.ID:
+                    transaction.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Transaction.LAST_EDIT:
+                    transaction.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Transaction.DELETED:
+                    transaction.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transaction;
     }
 
-    /*package-local*/ TransactionPerson getTransactionPerson(JSONObject object) {
+    /*package-local*/ TransactionPerson readTransactionPerson(JSONDataStreamReader reader) throws IOException {
         TransactionPerson transactionPerson = new TransactionPerson();
-        transactionPerson.mTransaction = mCacheTransactions.get(object.optString(JSONDatabase.TransactionPeople.TRANSACTION, null));
-        transactionPerson.mPerson = mCachePeople.get(object.optString(JSONDatabase.TransactionPeople.PERSON, null));
-        transactionPerson.mUUID = object.optString(JSONDatabase.TransactionPeople.ID, null);
-        transactionPerson.mLastEdit = object.optLong(JSONDatabase.TransactionPeople.LAST_EDIT, 0L);
-        transactionPerson.mDeleted = object.optBoolean(JSONDatabase.TransactionPeople.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.TransactionPeople.TRANSACTION:
+                    transactionPerson.mTransaction = mCacheTransactions.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionPeople.PERSON:
+                    transactionPerson.mPerson = mCachePeople.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionPeople.ID:
+                    transactionPerson.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.TransactionPeople.LAST_EDIT:
+                    transactionPerson.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransactionPeople.DELETED:
+                    transactionPerson.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transactionPerson;
     }
 
-    /*package-local*/ TransactionModel getTransactionModel(JSONObject object) {
+    /*package-local*/ TransactionModel readTransactionModel(JSONDataStreamReader reader) throws IOException {
         TransactionModel transactionModel = new TransactionModel();
-        transactionModel.mMoney = object.optLong(JSONDatabase.TransactionModel.MONEY, 0L);
-        transactionModel.mDescription = object.optString(JSONDatabase.TransactionModel.DESCRIPTION, null);
-        transactionModel.mCategory = mCacheCategories.get(object.optString(JSONDatabase.TransactionModel.CATEGORY, null));
-        transactionModel.mDirection = object.optInt(JSONDatabase.TransactionModel.DIRECTION, 0);
-        transactionModel.mWallet = mCacheWallets.get(object.optString(JSONDatabase.TransactionModel.WALLET, null));
-        transactionModel.mPlace = mCachePlaces.get(object.optString(JSONDatabase.TransactionModel.PLACE, null));
-        transactionModel.mNote = object.optString(JSONDatabase.TransactionModel.NOTE, null);
-        transactionModel.mEvent = mCacheEvents.get(object.optString(JSONDatabase.TransactionModel.EVENT, null));
-        transactionModel.mConfirmed = object.optBoolean(JSONDatabase.TransactionModel.CONFIRMED, true);
-        transactionModel.mCountInTotal = object.optBoolean(JSONDatabase.TransactionModel.COUNT_IN_TOTAL, true);
-        transactionModel.mTag = object.optString(JSONDatabase.TransactionModel.TAG, null);
-        transactionModel.mUUID = object.optString(JSONDatabase.TransactionModel.ID, null);
-        transactionModel.mLastEdit = object.optLong(JSONDatabase.TransactionModel.LAST_EDIT, 0L);
-        transactionModel.mDeleted = object.optBoolean(JSONDatabase.TransactionModel.DELETED, false);
+        transactionModel.mConfirmed = true;
+        transactionModel.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.TransactionModel.MONEY:
+                    transactionModel.mMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransactionModel.DESCRIPTION:
+                    transactionModel.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.TransactionModel.CATEGORY:
+                    transactionModel.mCategory = mCacheCategories.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionModel.DIRECTION:
+                    transactionModel.mDirection = reader.readInt(0);
+                    break;
+                case JSONDatabase.TransactionModel.WALLET:
+                    transactionModel.mWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionModel.PLACE:
+                    transactionModel.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionModel.NOTE:
+                    transactionModel.mNote = reader.readString();
+                    break;
+                case JSONDatabase.TransactionModel.EVENT:
+                    transactionModel.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionModel.CONFIRMED:
+                    transactionModel.mConfirmed = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.TransactionModel.COUNT_IN_TOTAL:
+                    transactionModel.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.TransactionModel.TAG:
+                    transactionModel.mTag = reader.readString();
+                    break;
+                case JSONDatabase.TransactionModel.ID:
+                    transactionModel.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.TransactionModel.LAST_EDIT:
+                    transactionModel.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransactionModel.DELETED:
+                    transactionModel.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transactionModel;
     }
 
-    /*package-local*/ Transfer getTransfer(JSONObject object) {
+    /*package-local*/ Transfer readTransfer(JSONDataStreamReader reader) throws IOException {
         Transfer transfer = new Transfer();
-        transfer.mDescription = object.optString(JSONDatabase.Transfer.DESCRIPTION, null);
-        transfer.mDate = object.optString(JSONDatabase.Transfer.DATE, null);
-        transfer.mTransactionFrom = mCacheTransactions.get(object.optString(JSONDatabase.Transfer.FROM, null));
-        transfer.mTransactionTo = mCacheTransactions.get(object.optString(JSONDatabase.Transfer.TO, null));
-        transfer.mTransactionTax = mCacheTransactions.get(object.optString(JSONDatabase.Transfer.TAX, null));
-        transfer.mNote = object.optString(JSONDatabase.Transfer.NOTE, null);
-        transfer.mPlace = mCachePlaces.get(object.optString(JSONDatabase.Transfer.PLACE, null));
-        transfer.mEvent = mCacheEvents.get(object.optString(JSONDatabase.Transfer.EVENT, null));
-        transfer.mRecurrence = mCacheRecurrentTransfers.get(object.optString(JSONDatabase.Transfer.RECURRENCE, null));
-        transfer.mConfirmed = object.optBoolean(JSONDatabase.Transfer.CONFIRMED, true);
-        transfer.mCountInTotal = object.optBoolean(JSONDatabase.Transfer.COUNT_IN_TOTAL, true);
-        transfer.mTag = object.optString(JSONDatabase.Transfer.TAG, null);
-        transfer.mUUID = object.optString(JSONDatabase.Transfer.ID, null);
-        transfer.mLastEdit = object.optLong(JSONDatabase.Transfer.LAST_EDIT, 0L);
-        transfer.mDeleted = object.optBoolean(JSONDatabase.Transfer.DELETED, false);
+        transfer.mConfirmed = true;
+        transfer.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Transfer.DESCRIPTION:
+                    transfer.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.Transfer.DATE:
+                    transfer.mDate = reader.readString();
+                    break;
+                case JSONDatabase.Transfer.FROM:
+                    transfer.mTransactionFrom = mCacheTransactions.get(reader.readString());
+                    break;
+                case JSONDatabase.Transfer.TO:
+                    transfer.mTransactionTo = mCacheTransactions.get(reader.readString());
+                    break;
+                case JSONDatabase.Transfer.TAX:
+                    transfer.mTransactionTax = mCacheTransactions.get(reader.readString());
+                    break;
+                case JSONDatabase.Transfer.NOTE:
+                    transfer.mNote = reader.readString();
+                    break;
+                case JSONDatabase.Transfer.PLACE:
+                    transfer.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.Transfer.EVENT:
+                    transfer.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.Transfer.RECURRENCE:
+                    transfer.mRecurrence = mCacheRecurrentTransfers.get(reader.readString());
+                    break;
+                case JSONDatabase.Transfer.CONFIRMED:
+                    transfer.mConfirmed = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.Transfer.COUNT_IN_TOTAL:
+                    transfer.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.Transfer.TAG:
+                    transfer.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Transfer.ID:
+                    transfer.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Transfer.LAST_EDIT:
+                    transfer.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Transfer.DELETED:
+                    transfer.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transfer;
     }
 
-    /*package-local*/ TransferPerson getTransferPerson(JSONObject object) {
+    /*package-local*/ TransferPerson readTransferPerson(JSONDataStreamReader reader) throws IOException {
         TransferPerson transferPerson = new TransferPerson();
-        transferPerson.mTransfer = mCacheTransfers.get(object.optString(JSONDatabase.TransferPeople.TRANSFER, null));
-        transferPerson.mPerson = mCachePeople.get(object.optString(JSONDatabase.TransferPeople.PERSON, null));
-        transferPerson.mUUID = object.optString(JSONDatabase.TransferPeople.ID, null);
-        transferPerson.mLastEdit = object.optLong(JSONDatabase.TransferPeople.LAST_EDIT, 0L);
-        transferPerson.mDeleted = object.optBoolean(JSONDatabase.TransferPeople.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.TransferPeople.TRANSFER:
+                    transferPerson.mTransfer = mCacheTransfers.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferPeople.PERSON:
+                    transferPerson.mPerson = mCachePeople.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferPeople.ID:
+                    transferPerson.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.TransferPeople.LAST_EDIT:
+                    transferPerson.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransferPeople.DELETED:
+                    transferPerson.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transferPerson;
     }
 
-    /*package-local*/ TransferModel getTransferModel(JSONObject object) {
+    /*package-local*/ TransferModel readTransferModel(JSONDataStreamReader reader) throws IOException {
         TransferModel transferModel = new TransferModel();
-        transferModel.mDescription = object.optString(JSONDatabase.TransferModel.DESCRIPTION, null);
-        transferModel.mFromWallet = mCacheWallets.get(object.optString(JSONDatabase.TransferModel.WALLET_FROM, null));
-        transferModel.mToWallet = mCacheWallets.get(object.optString(JSONDatabase.TransferModel.WALLET_TO, null));
-        transferModel.mFromMoney = object.optLong(JSONDatabase.TransferModel.MONEY_FROM, 0L);
-        transferModel.mToMoney = object.optLong(JSONDatabase.TransferModel.MONEY_TO, 0L);
-        transferModel.mTaxMoney = object.optLong(JSONDatabase.TransferModel.MONEY_TAX, 0L);
-        transferModel.mNote = object.optString(JSONDatabase.TransferModel.NOTE, null);
-        transferModel.mEvent = mCacheEvents.get(object.optString(JSONDatabase.TransferModel.EVENT, null));
-        transferModel.mPlace = mCachePlaces.get(object.optString(JSONDatabase.TransferModel.PLACE, null));
-        transferModel.mConfirmed = object.optBoolean(JSONDatabase.TransferModel.CONFIRMED, true);
-        transferModel.mCountInTotal = object.optBoolean(JSONDatabase.TransferModel.COUNT_IN_TOTAL, true);
-        transferModel.mTag = object.optString(JSONDatabase.TransferModel.TAG, null);
-        transferModel.mUUID = object.optString(JSONDatabase.TransferModel.ID, null);
-        transferModel.mLastEdit = object.optLong(JSONDatabase.TransferModel.LAST_EDIT, 0L);
-        transferModel.mDeleted = object.optBoolean(JSONDatabase.TransferModel.DELETED, false);
+        transferModel.mConfirmed = true;
+        transferModel.mCountInTotal = true;
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.TransferModel.DESCRIPTION:
+                    transferModel.mDescription = reader.readString();
+                    break;
+                case JSONDatabase.TransferModel.WALLET_FROM:
+                    transferModel.mFromWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferModel.WALLET_TO:
+                    transferModel.mToWallet = mCacheWallets.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferModel.MONEY_FROM:
+                    transferModel.mFromMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransferModel.MONEY_TO:
+                    transferModel.mToMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransferModel.MONEY_TAX:
+                    transferModel.mTaxMoney = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransferModel.NOTE:
+                    transferModel.mNote = reader.readString();
+                    break;
+                case JSONDatabase.TransferModel.EVENT:
+                    transferModel.mEvent = mCacheEvents.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferModel.PLACE:
+                    transferModel.mPlace = mCachePlaces.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferModel.CONFIRMED:
+                    transferModel.mConfirmed = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.TransferModel.COUNT_IN_TOTAL:
+                    transferModel.mCountInTotal = reader.readBoolean(true);
+                    break;
+                case JSONDatabase.TransferModel.TAG:
+                    transferModel.mTag = reader.readString();
+                    break;
+                case JSONDatabase.TransferModel.ID:
+                    transferModel.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.TransferModel.LAST_EDIT:
+                    transferModel.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransferModel.DELETED:
+                    transferModel.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transferModel;
     }
 
-    /*package-local*/ Attachment getAttachment(JSONObject object) {
+    /*package-local*/ Attachment readAttachment(JSONDataStreamReader reader) throws IOException {
         Attachment attachment = new Attachment();
-        attachment.mFile = object.optString(JSONDatabase.Attachment.FILE, null);
-        attachment.mName = object.optString(JSONDatabase.Attachment.NAME, null);
-        attachment.mType = object.optString(JSONDatabase.Attachment.TYPE, null);
-        attachment.mSize = object.optLong(JSONDatabase.Attachment.SIZE, 0L);
-        attachment.mTag = object.optString(JSONDatabase.Attachment.TAG, null);
-        attachment.mUUID = object.optString(JSONDatabase.Attachment.ID, null);
-        attachment.mLastEdit = object.optLong(JSONDatabase.Attachment.LAST_EDIT, 0L);
-        attachment.mDeleted = object.optBoolean(JSONDatabase.Attachment.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.Attachment.FILE:
+                    attachment.mFile = reader.readString();
+                    break;
+                case JSONDatabase.Attachment.NAME:
+                    attachment.mName = reader.readString();
+                    break;
+                case JSONDatabase.Attachment.TYPE:
+                    attachment.mType = reader.readString();
+                    break;
+                case JSONDatabase.Attachment.SIZE:
+                    attachment.mSize = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Attachment.TAG:
+                    attachment.mTag = reader.readString();
+                    break;
+                case JSONDatabase.Attachment.ID:
+                    attachment.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.Attachment.LAST_EDIT:
+                    attachment.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.Attachment.DELETED:
+                    attachment.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return attachment;
     }
 
-    /*package-local*/ TransactionAttachment getTransactionAttachment(JSONObject object) {
+    /*package-local*/ TransactionAttachment readTransactionAttachment(JSONDataStreamReader reader) throws IOException {
         TransactionAttachment transactionAttachment = new TransactionAttachment();
-        transactionAttachment.mTransaction = mCacheTransactions.get(object.optString(JSONDatabase.TransactionAttachment.TRANSACTION, null));
-        transactionAttachment.mAttachment = mCacheAttachments.get(object.optString(JSONDatabase.TransactionAttachment.ATTACHMENT, null));
-        transactionAttachment.mUUID = object.optString(JSONDatabase.TransactionAttachment.ID, null);
-        transactionAttachment.mLastEdit = object.optLong(JSONDatabase.TransactionAttachment.LAST_EDIT, 0L);
-        transactionAttachment.mDeleted = object.optBoolean(JSONDatabase.TransactionAttachment.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.TransactionAttachment.TRANSACTION:
+                    transactionAttachment.mTransaction = mCacheTransactions.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionAttachment.ATTACHMENT:
+                    transactionAttachment.mAttachment = mCacheAttachments.get(reader.readString());
+                    break;
+                case JSONDatabase.TransactionAttachment.ID:
+                    transactionAttachment.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.TransactionAttachment.LAST_EDIT:
+                    transactionAttachment.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransactionAttachment.DELETED:
+                    transactionAttachment.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transactionAttachment;
     }
 
-    /*package-local*/ TransferAttachment getTransferAttachment(JSONObject object) {
+    /*package-local*/ TransferAttachment readTransferAttachment(JSONDataStreamReader reader) throws IOException {
         TransferAttachment transferAttachment = new TransferAttachment();
-        transferAttachment.mTransfer = mCacheTransfers.get(object.optString(JSONDatabase.TransferAttachment.TRANSFER, null));
-        transferAttachment.mAttachment = mCacheAttachments.get(object.optString(JSONDatabase.TransferAttachment.ATTACHMENT, null));
-        transferAttachment.mUUID = object.optString(JSONDatabase.TransferAttachment.ID, null);
-        transferAttachment.mLastEdit = object.optLong(JSONDatabase.TransferAttachment.LAST_EDIT, 0L);
-        transferAttachment.mDeleted = object.optBoolean(JSONDatabase.TransferAttachment.DELETED, false);
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.TransferAttachment.TRANSFER:
+                    transferAttachment.mTransfer = mCacheTransfers.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferAttachment.ATTACHMENT:
+                    transferAttachment.mAttachment = mCacheAttachments.get(reader.readString());
+                    break;
+                case JSONDatabase.TransferAttachment.ID:
+                    transferAttachment.mUUID = reader.readString();
+                    break;
+                case JSONDatabase.TransferAttachment.LAST_EDIT:
+                    transferAttachment.mLastEdit = reader.readLong(0L);
+                    break;
+                case JSONDatabase.TransferAttachment.DELETED:
+                    transferAttachment.mDeleted = reader.readBoolean(false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
         return transferAttachment;
     }
+
+    /*package-local*/ DeletedItem readDeletedItem(JSONDataStreamReader reader) throws IOException {
+        DeletedItem deletedItem = new DeletedItem();
+        reader.beginObject();
+        while (reader.hasObjectAnotherField()) {
+            switch (reader.readName()) {
+                case JSONDatabase.DeletedItem.TABLE:
+                    deletedItem.mTable = reader.readString();
+                    break;
+                case JSONDatabase.DeletedItem.UUID:
+                    deletedItem.mUUID = reader.readString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return deletedItem;
+    }
 }
\ No newline at end of file
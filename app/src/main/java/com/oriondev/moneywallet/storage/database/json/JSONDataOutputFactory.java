@@ -19,6 +19,12 @@
 
 package com.oriondev.moneywallet.storage.database.json;
 
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.LongSparseArray;
+
+import com.oriondev.moneywallet.storage.database.SQLDatabaseExporter;
+import com.oriondev.moneywallet.storage.database.SyncContentProvider;
 import com.oriondev.moneywallet.storage.database.model.Attachment;
 import com.oriondev.moneywallet.storage.database.model.Budget;
 import com.oriondev.moneywallet.storage.database.model.BudgetWallet;
@@ -26,6 +32,7 @@ import com.oriondev.moneywallet.storage.database.model.Category;
 import com.oriondev.moneywallet.storage.database.model.Currency;
 import com.oriondev.moneywallet.storage.database.model.Debt;
 import com.oriondev.moneywallet.storage.database.model.DebtPerson;
+import com.oriondev.moneywallet.storage.database.model.DeletedItem;
 import com.oriondev.moneywallet.storage.database.model.Event;
 import com.oriondev.moneywallet.storage.database.model.EventPerson;
 import com.oriondev.moneywallet.storage.database.model.Person;
@@ -43,388 +50,425 @@ import com.oriondev.moneywallet.storage.database.model.TransferModel;
 import com.oriondev.moneywallet.storage.database.model.TransferPerson;
 import com.oriondev.moneywallet.storage.database.model.Wallet;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.HashMap;
+import java.io.IOException;
 
 /**
  * Created by andrea on 28/10/18.
+ *
+ * This class writes the native database objects directly to the json stream, field by field,
+ * and keeps track of the UUID of the exported items to encode the references between them.
+ * Null fields are not written, as they were never part of the json file.
  */
 /*package-local*/ class JSONDataOutputFactory {
 
-    private final HashMap<Long, String> mCacheWallets = new HashMap<>();
-    private final HashMap<Long, String> mCacheCategories = new HashMap<>();
-    private final HashMap<Long, String> mCacheEvents = new HashMap<>();
-    private final HashMap<Long, String> mCachePlaces = new HashMap<>();
-    private final HashMap<Long, String> mCachePeople = new HashMap<>();
-    private final HashMap<Long, String> mCacheDebts = new HashMap<>();
-    private final HashMap<Long, String> mCacheBudgets = new HashMap<>();
-    private final HashMap<Long, String> mCacheSavings = new HashMap<>();
-    private final HashMap<Long, String> mCacheRecurrentTransactions = new HashMap<>();
-    private final HashMap<Long, String> mCacheRecurrentTransfers = new HashMap<>();
-    private final HashMap<Long, String> mCacheTransactions = new HashMap<>();
-    private final HashMap<Long, String> mCacheTransfers = new HashMap<>();
-    private final HashMap<Long, String> mCacheAttachments = new HashMap<>();
-
-    /*package-local*/ JSONObject getObject(Currency currency) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Currency.ISO, currency.mIso);
-        object.put(JSONDatabase.Currency.NAME, currency.mName);
-        object.put(JSONDatabase.Currency.SYMBOL, currency.mSymbol);
-        object.put(JSONDatabase.Currency.DECIMALS, currency.mDecimals);
-        object.put(JSONDatabase.Currency.FAVOURITE, currency.mFavourite);
-        object.put(JSONDatabase.Currency.LAST_EDIT, currency.mLastEdit);
-        object.put(JSONDatabase.Currency.DELETED, currency.mDeleted);
-        return object;
+    private final LongSparseArray<String> mCacheWallets = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheCategories = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheEvents = new LongSparseArray<>();
+    private final LongSparseArray<String> mCachePlaces = new LongSparseArray<>();
+    private final LongSparseArray<String> mCachePeople = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheDebts = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheBudgets = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheSavings = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheRecurrentTransactions = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheRecurrentTransfers = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheTransactions = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheTransfers = new LongSparseArray<>();
+    private final LongSparseArray<String> mCacheAttachments = new LongSparseArray<>();
+
+    private final ContentResolver mContentResolver;
+
+    /*package-local*/ JSONDataOutputFactory() {
+        this(null);
+    }
+
+    /**
+     * Create a new factory that resolves the references to the items that have not been written
+     * to the stream using the content resolver.
+     * @param contentResolver used to read the uuid of the referenced items or null.
+     */
+    /*package-local*/ JSONDataOutputFactory(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
     }
 
-    /*package-local*/ JSONObject getObject(Wallet wallet) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Wallet.NAME, wallet.mName);
-        object.put(JSONDatabase.Wallet.ICON, wallet.mIcon);
-        object.put(JSONDatabase.Wallet.CURRENCY, wallet.mCurrency);
-        object.put(JSONDatabase.Wallet.START_MONEY, wallet.mStartMoney);
-        object.put(JSONDatabase.Wallet.COUNT_IN_TOTAL, wallet.mCountInTotal);
-        object.put(JSONDatabase.Wallet.ARCHIVED, wallet.mArchived);
-        object.put(JSONDatabase.Wallet.NOTE, wallet.mNote);
-        object.put(JSONDatabase.Wallet.TAG, wallet.mTag);
-        object.put(JSONDatabase.Wallet.ID, wallet.mUUID);
-        object.put(JSONDatabase.Wallet.INDEX, wallet.mIndex);
-        object.put(JSONDatabase.Wallet.LAST_EDIT, wallet.mLastEdit);
-        object.put(JSONDatabase.Wallet.DELETED, wallet.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Currency currency) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Currency.ISO, currency.mIso);
+        writer.writeString(JSONDatabase.Currency.NAME, currency.mName);
+        writer.writeString(JSONDatabase.Currency.SYMBOL, currency.mSymbol);
+        writer.writeLong(JSONDatabase.Currency.DECIMALS, currency.mDecimals);
+        writer.writeBoolean(JSONDatabase.Currency.FAVOURITE, currency.mFavourite);
+        writer.writeLong(JSONDatabase.Currency.LAST_EDIT, currency.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Currency.DELETED, currency.mDeleted);
+        writer.endObject();
+    }
+
+    /*package-local*/ void write(JSONDataStreamWriter writer, Wallet wallet) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Wallet.NAME, wallet.mName);
+        writer.writeString(JSONDatabase.Wallet.ICON, wallet.mIcon);
+        writer.writeString(JSONDatabase.Wallet.CURRENCY, wallet.mCurrency);
+        writer.writeLong(JSONDatabase.Wallet.START_MONEY, wallet.mStartMoney);
+        writer.writeBoolean(JSONDatabase.Wallet.COUNT_IN_TOTAL, wallet.mCountInTotal);
+        writer.writeBoolean(JSONDatabase.Wallet.ARCHIVED, wallet.mArchived);
+        writer.writeString(JSONDatabase.Wallet.NOTE, wallet.mNote);
+        writer.writeString(JSONDatabase.Wallet.TAG, wallet.mTag);
+        writer.writeString(JSONDatabase.Wallet.ID, wallet.mUUID);
+        writer.writeLong(JSONDatabase.Wallet.INDEX, wallet.mIndex);
+        writer.writeLong(JSONDatabase.Wallet.LAST_EDIT, wallet.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Wallet.DELETED, wallet.mDeleted);
+        writer.endObject();
         mCacheWallets.put(wallet.mId, wallet.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(Category category) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Category.NAME, category.mName);
-        object.put(JSONDatabase.Category.ICON, category.mIcon);
-        object.put(JSONDatabase.Category.TYPE, category.mType);
-        object.put(JSONDatabase.Category.PARENT, mCacheCategories.get(category.mParent));
-        object.put(JSONDatabase.Category.TAG, category.mTag);
-        object.put(JSONDatabase.Category.SHOW_REPORT, category.mShowReport);
-        object.put(JSONDatabase.Category.INDEX, category.mIndex);
-        object.put(JSONDatabase.Category.ID, category.mUUID);
-        object.put(JSONDatabase.Category.LAST_EDIT, category.mLastEdit);
-        object.put(JSONDatabase.Category.DELETED, category.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Category category) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Category.NAME, category.mName);
+        writer.writeString(JSONDatabase.Category.ICON, category.mIcon);
+        writer.writeLong(JSONDatabase.Category.TYPE, category.mType);
+        writer.writeString(JSONDatabase.Category.PARENT, getUUID(mCacheCategories, SyncContentProvider.CONTENT_CATEGORIES, category.mParent));
+        writer.writeString(JSONDatabase.Category.TAG, category.mTag);
+        writer.writeBoolean(JSONDatabase.Category.SHOW_REPORT, category.mShowReport);
+        writer.writeLong(JSONDatabase.Category.INDEX, category.mIndex);
+        writer.writeString(JSONDatabase.Category.ID, category.mUUID);
+        writer.writeLong(JSONDatabase.Category.LAST_EDIT, category.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Category.DELETED, category.mDeleted);
+        writer.endObject();
         mCacheCategories.put(category.mId, category.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(Event event) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Event.NAME, event.mName);
-        object.put(JSONDatabase.Event.ICON, event.mIcon);
-        object.put(JSONDatabase.Event.NOTE, event.mNote);
-        object.put(JSONDatabase.Event.START_DATE, event.mStartDate);
-        object.put(JSONDatabase.Event.END_DATE, event.mEndDate);
-        object.put(JSONDatabase.Event.TAG, event.mTag);
-        object.put(JSONDatabase.Event.ID, event.mUUID);
-        object.put(JSONDatabase.Event.LAST_EDIT, event.mLastEdit);
-        object.put(JSONDatabase.Event.DELETED, event.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Event event) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Event.NAME, event.mName);
+        writer.writeString(JSONDatabase.Event.ICON, event.mIcon);
+        writer.writeString(JSONDatabase.Event.NOTE, event.mNote);
+        writer.writeString(JSONDatabase.Event.START_DATE, event.mStartDate);
+        writer.writeString(JSONDatabase.Event.END_DATE, event.mEndDate);
+        writer.writeString(JSONDatabase.Event.TAG, event.mTag);
+        writer.writeString(JSONDatabase.Event.ID, event.mUUID);
+        writer.writeLong(JSONDatabase.Event.LAST_EDIT, event.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Event.DELETED, event.mDeleted);
+        writer.endObject();
         mCacheEvents.put(event.mId, event.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(Place place) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Place.NAME, place.mName);
-        object.put(JSONDatabase.Place.ICON, place.mIcon);
-        object.put(JSONDatabase.Place.ADDRESS, place.mAddress);
-        object.put(JSONDatabase.Place.LATITUDE, place.mLatitude);
-        object.put(JSONDatabase.Place.LONGITUDE, place.mLongitude);
-        object.put(JSONDatabase.Place.TAG, place.mTag);
-        object.put(JSONDatabase.Place.ID, place.mUUID);
-        object.put(JSONDatabase.Place.LAST_EDIT, place.mLastEdit);
-        object.put(JSONDatabase.Place.DELETED, place.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Place place) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Place.NAME, place.mName);
+        writer.writeString(JSONDatabase.Place.ICON, place.mIcon);
+        writer.writeString(JSONDatabase.Place.ADDRESS, place.mAddress);
+        writer.writeDouble(JSONDatabase.Place.LATITUDE, place.mLatitude);
+        writer.writeDouble(JSONDatabase.Place.LONGITUDE, place.mLongitude);
+        writer.writeString(JSONDatabase.Place.TAG, place.mTag);
+        writer.writeString(JSONDatabase.Place.ID, place.mUUID);
+        writer.writeLong(JSONDatabase.Place.LAST_EDIT, place.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Place.DELETED, place.mDeleted);
+        writer.endObject();
         mCachePlaces.put(place.mId, place.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(Person person) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Person.NAME, person.mName);
-        object.put(JSONDatabase.Person.ICON, person.mIcon);
-        object.put(JSONDatabase.Person.NOTE, person.mNote);
-        object.put(JSONDatabase.Person.TAG, person.mTag);
-        object.put(JSONDatabase.Person.ID, person.mUUID);
-        object.put(JSONDatabase.Person.LAST_EDIT, person.mLastEdit);
-        object.put(JSONDatabase.Person.DELETED, person.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Person person) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Person.NAME, person.mName);
+        writer.writeString(JSONDatabase.Person.ICON, person.mIcon);
+        writer.writeString(JSONDatabase.Person.NOTE, person.mNote);
+        writer.writeString(JSONDatabase.Person.TAG, person.mTag);
+        writer.writeString(JSONDatabase.Person.ID, person.mUUID);
+        writer.writeLong(JSONDatabase.Person.LAST_EDIT, person.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Person.DELETED, person.mDeleted);
+        writer.endObject();
         mCachePeople.put(person.mId, person.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(EventPerson eventPerson) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.EventPeople.EVENT, mCacheEvents.get(eventPerson.mEvent));
-        object.put(JSONDatabase.EventPeople.PERSON, mCachePeople.get(eventPerson.mPerson));
-        object.put(JSONDatabase.EventPeople.ID, eventPerson.mUUID);
-        object.put(JSONDatabase.EventPeople.LAST_EDIT, eventPerson.mLastEdit);
-        object.put(JSONDatabase.EventPeople.DELETED, eventPerson.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, EventPerson eventPerson) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.EventPeople.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, eventPerson.mEvent));
+        writer.writeString(JSONDatabase.EventPeople.PERSON, getUUID(mCachePeople, SyncContentProvider.CONTENT_PEOPLE, eventPerson.mPerson));
+        writer.writeString(JSONDatabase.EventPeople.ID, eventPerson.mUUID);
+        writer.writeLong(JSONDatabase.EventPeople.LAST_EDIT, eventPerson.mLastEdit);
+        writer.writeBoolean(JSONDatabase.EventPeople.DELETED, eventPerson.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(Debt debt) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Debt.TYPE, debt.mType);
-        object.put(JSONDatabase.Debt.ICON, debt.mIcon);
-        object.put(JSONDatabase.Debt.DESCRIPTION, debt.mDescription);
-        object.put(JSONDatabase.Debt.DATE, debt.mDate);
-        object.put(JSONDatabase.Debt.EXPIRATION_DATE, debt.mExpirationDate);
-        object.put(JSONDatabase.Debt.WALLET, mCacheWallets.get(debt.mWallet));
-        object.put(JSONDatabase.Debt.NOTE, debt.mNote);
-        object.put(JSONDatabase.Debt.PLACE, mCachePlaces.get(debt.mPlace));
-        object.put(JSONDatabase.Debt.MONEY, debt.mMoney);
-        object.put(JSONDatabase.Debt.ARCHIVED, debt.mArchived);
-        object.put(JSONDatabase.Debt.TAG, debt.mTag);
-        object.put(JSONDatabase.Debt.ID, debt.mUUID);
-        object.put(JSONDatabase.Debt.LAST_EDIT, debt.mLastEdit);
-        object.put(JSONDatabase.Debt.DELETED, debt.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Debt debt) throws IOException {
+        writer.beginObject();
+        writer.writeLong(JSONDatabase.Debt.TYPE, debt.mType);
+        writer.writeString(JSONDatabase.Debt.ICON, debt.mIcon);
+        writer.writeString(JSONDatabase.Debt.DESCRIPTION, debt.mDescription);
+        writer.writeString(JSONDatabase.Debt.DATE, debt.mDate);
+        writer.writeString(JSONDatabase.Debt.EXPIRATION_DATE, debt.mExpirationDate);
+        writer.writeString(JSONDatabase.Debt.WALLET, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, debt.mWallet));
+        writer.writeString(JSONDatabase.Debt.NOTE, debt.mNote);
+        writer.writeString(JSONDatabase.Debt.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, debt.mPlace));
+        writer.writeLong(JSONDatabase.Debt.MONEY, debt.mMoney);
+        writer.writeBoolean(JSONDatabase.Debt.ARCHIVED, debt.mArchived);
+        writer.writeString(JSONDatabase.Debt.TAG, debt.mTag);
+        writer.writeString(JSONDatabase.Debt.ID, debt.mUUID);
+        writer.writeLong(JSONDatabase.Debt.LAST_EDIT, debt.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Debt.DELETED, debt.mDeleted);
+        writer.endObject();
         mCacheDebts.put(debt.mId, debt.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(DebtPerson debtPerson) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.DebtPeople.DEBT, mCacheDebts.get(debtPerson.mDebt));
-        object.put(JSONDatabase.DebtPeople.PERSON, mCachePeople.get(debtPerson.mPerson));
-        object.put(JSONDatabase.DebtPeople.ID, debtPerson.mUUID);
-        object.put(JSONDatabase.DebtPeople.LAST_EDIT, debtPerson.mLastEdit);
-        object.put(JSONDatabase.DebtPeople.DELETED, debtPerson.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, DebtPerson debtPerson) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.DebtPeople.DEBT, getUUID(mCacheDebts, SyncContentProvider.CONTENT_DEBT, debtPerson.mDebt));
+        writer.writeString(JSONDatabase.DebtPeople.PERSON, getUUID(mCachePeople, SyncContentProvider.CONTENT_PEOPLE, debtPerson.mPerson));
+        writer.writeString(JSONDatabase.DebtPeople.ID, debtPerson.mUUID);
+        writer.writeLong(JSONDatabase.DebtPeople.LAST_EDIT, debtPerson.mLastEdit);
+        writer.writeBoolean(JSONDatabase.DebtPeople.DELETED, debtPerson.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(Budget budget) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Budget.TYPE, budget.mType);
-        object.put(JSONDatabase.Budget.CATEGORY, mCacheCategories.get(budget.mCategory));
-        object.put(JSONDatabase.Budget.START_DATE, budget.mStartDate);
-        object.put(JSONDatabase.Budget.END_DATE, budget.mEndDate);
-        object.put(JSONDatabase.Budget.MONEY, budget.mMoney);
-        object.put(JSONDatabase.Budget.CURRENCY, budget.mCurrency);
-        object.put(JSONDatabase.Budget.TAG, budget.mTag);
-        object.put(JSONDatabase.Budget.ID, budget.mUUID);
-        object.put(JSONDatabase.Budget.LAST_EDIT, budget.mLastEdit);
-        object.put(JSONDatabase.Budget.DELETED, budget.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Budget budget) throws IOException {
+        writer.beginObject();
+        writer.writeLong(JSONDatabase.Budget.TYPE, budget.mType);
+        writer.writeString(JSONDatabase.Budget.CATEGORY, getUUID(mCacheCategories, SyncContentProvider.CONTENT_CATEGORIES, budget.mCategory));
+        writer.writeString(JSONDatabase.Budget.START_DATE, budget.mStartDate);
+        writer.writeString(JSONDatabase.Budget.END_DATE, budget.mEndDate);
+        writer.writeLong(JSONDatabase.Budget.MONEY, budget.mMoney);
+        writer.writeString(JSONDatabase.Budget.CURRENCY, budget.mCurrency);
+        writer.writeString(JSONDatabase.Budget.TAG, budget.mTag);
+        writer.writeString(JSONDatabase.Budget.ID, budget.mUUID);
+        writer.writeLong(JSONDatabase.Budget.LAST_EDIT, budget.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Budget.DELETED, budget.mDeleted);
+        writer.endObject();
         mCacheBudgets.put(budget.mId, budget.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(BudgetWallet budgetWallet) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.BudgetWallet.BUDGET, mCacheBudgets.get(budgetWallet.mBudget));
-        object.put(JSONDatabase.BudgetWallet.WALLET, mCacheWallets.get(budgetWallet.mWallet));
-        object.put(JSONDatabase.BudgetWallet.ID, budgetWallet.mUUID);
-        object.put(JSONDatabase.BudgetWallet.LAST_EDIT, budgetWallet.mLastEdit);
-        object.put(JSONDatabase.BudgetWallet.DELETED, budgetWallet.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, BudgetWallet budgetWallet) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.BudgetWallet.BUDGET, getUUID(mCacheBudgets, SyncContentProvider.CONTENT_BUDGET, budgetWallet.mBudget));
+        writer.writeString(JSONDatabase.BudgetWallet.WALLET, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, budgetWallet.mWallet));
+        writer.writeString(JSONDatabase.BudgetWallet.ID, budgetWallet.mUUID);
+        writer.writeLong(JSONDatabase.BudgetWallet.LAST_EDIT, budgetWallet.mLastEdit);
+        writer.writeBoolean(JSONDatabase.BudgetWallet.DELETED, budgetWallet.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(Saving saving) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Saving.DESCRIPTION, saving.mDescription);
-        object.put(JSONDatabase.Saving.ICON, saving.mIcon);
-        object.put(JSONDatabase.Saving.START_MONEY, saving.mStartMoney);
-        object.put(JSONDatabase.Saving.END_MONEY, saving.mEndMoney);
-        object.put(JSONDatabase.Saving.WALLET, mCacheWallets.get(saving.mWallet));
-        object.put(JSONDatabase.Saving.END_DATE, saving.mEndDate);
-        object.put(JSONDatabase.Saving.COMPLETE, saving.mComplete);
-        object.put(JSONDatabase.Saving.NOTE, saving.mNote);
-        object.put(JSONDatabase.Saving.TAG, saving.mTag);
-        object.put(JSONDatabase.Saving.ID, saving.mUUID);
-        object.put(JSONDatabase.Saving.LAST_EDIT, saving.mLastEdit);
-        object.put(JSONDatabase.Saving.DELETED, saving.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Saving saving) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Saving.DESCRIPTION, saving.mDescription);
+        writer.writeString(JSONDatabase.Saving.ICON, saving.mIcon);
+        writer.writeLong(JSONDatabase.Saving.START_MONEY, saving.mStartMoney);
+        writer.writeLong(JSONDatabase.Saving.END_MONEY, saving.mEndMoney);
+        writer.writeString(JSONDatabase.Saving.WALLET, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, saving.mWallet));
+        writer.writeString(JSONDatabase.Saving.END_DATE, saving.mEndDate);
+        writer.writeBoolean(JSONDatabase.Saving.COMPLETE, saving.mComplete);
+        writer.writeString(JSONDatabase.Saving.NOTE, saving.mNote);
+        writer.writeString(JSONDatabase.Saving.TAG, saving.mTag);
+        writer.writeString(JSONDatabase.Saving.ID, saving.mUUID);
+        writer.writeLong(JSONDatabase.Saving.LAST_EDIT, saving.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Saving.DELETED, saving.mDeleted);
+        writer.endObject();
         mCacheSavings.put(saving.mId, saving.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(RecurrentTransaction recurrentTransaction) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.RecurrentTransaction.MONEY, recurrentTransaction.mMoney);
-        object.put(JSONDatabase.RecurrentTransaction.DESCRIPTION, recurrentTransaction.mDescription);
-        object.put(JSONDatabase.RecurrentTransaction.CATEGORY, mCacheCategories.get(recurrentTransaction.mCategory));
-        object.put(JSONDatabase.RecurrentTransaction.DIRECTION, recurrentTransaction.mDirection);
-        object.put(JSONDatabase.RecurrentTransaction.WALLET, mCacheWallets.get(recurrentTransaction.mWallet));
-        object.put(JSONDatabase.RecurrentTransaction.PLACE, mCachePlaces.get(recurrentTransaction.mPlace));
-        object.put(JSONDatabase.RecurrentTransaction.NOTE, recurrentTransaction.mNote);
-        object.put(JSONDatabase.RecurrentTransaction.EVENT, mCacheEvents.get(recurrentTransaction.mEvent));
-        object.put(JSONDatabase.RecurrentTransaction.CONFIRMED, recurrentTransaction.mConfirmed);
-        object.put(JSONDatabase.RecurrentTransaction.COUNT_IN_TOTAL, recurrentTransaction.mCountInTotal);
-        object.put(JSONDatabase.RecurrentTransaction.START_DATE, recurrentTransaction.mStartDate);
-        object.put(JSONDatabase.RecurrentTransaction.LAST_OCCURRENCE, recurrentTransaction.mLastOccurrence);
-        object.put(JSONDatabase.RecurrentTransaction.NEXT_OCCURRENCE, recurrentTransaction.mNextOccurrence);
-        object.put(JSONDatabase.RecurrentTransaction.RULE, recurrentTransaction.mRule);
-        object.put(JSONDatabase.RecurrentTransaction.TAG, recurrentTransaction.mTag);
-        object.put(JSONDatabase.RecurrentTransaction.ID, recurrentTransaction.mUUID);
-        object.put(JSONDatabase.RecurrentTransaction.LAST_EDIT, recurrentTransaction.mLastEdit);
-        object.put(JSONDatabase.RecurrentTransaction.DELETED, recurrentTransaction.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, RecurrentTransaction recurrentTransaction) throws IOException {
+        writer.beginObject();
+        writer.writeLong(JSONDatabase.RecurrentTransaction.MONEY, recurrentTransaction.mMoney);
+        writer.writeString(JSONDatabase.RecurrentTransaction.DESCRIPTION, recurrentTransaction.mDescription);
+        writer.writeString(JSONDatabase.RecurrentTransaction.CATEGORY, getUUID(mCacheCategories, SyncContentProvider.CONTENT_CATEGORIES, recurrentTransaction.mCategory));
+        writer.writeLong(JSONDatabase.RecurrentTransaction.DIRECTION, recurrentTransaction.mDirection);
+        writer.writeString(JSONDatabase.RecurrentTransaction.WALLET, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, recurrentTransaction.mWallet));
+        writer.writeString(JSONDatabase.RecurrentTransaction.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, recurrentTransaction.mPlace));
+        writer.writeString(JSONDatabase.RecurrentTransaction.NOTE, recurrentTransaction.mNote);
+        writer.writeString(JSONDatabase.RecurrentTransaction.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, recurrentTransaction.mEvent));
+        writer.writeBoolean(JSONDatabase.RecurrentTransaction.CONFIRMED, recurrentTransaction.mConfirmed);
+        writer.writeBoolean(JSONDatabase.RecurrentTransaction.COUNT_IN_TOTAL, recurrentTransaction.mCountInTotal);
+        writer.writeString(JSONDatabase.RecurrentTransaction.START_DATE, recurrentTransaction.mStartDate);
+        writer.writeString(JSONDatabase.RecurrentTransaction.LAST_OCCURRENCE, recurrentTransaction.mLastOccurrence);
+        writer.writeString(JSONDatabase.RecurrentTransaction.NEXT_OCCURRENCE, recurrentTransaction.mNextOccurrence);
+        writer.writeString(JSONDatabase.RecurrentTransaction.RULE, recurrentTransaction.mRule);
+        writer.writeString(JSONDatabase.RecurrentTransaction.TAG, recurrentTransaction.mTag);
+        writer.writeString(JSONDatabase.RecurrentTransaction.ID, recurrentTransaction.mUUID);
+        writer.writeLong(JSONDatabase.RecurrentTransaction.LAST_EDIT, recurrentTransaction.mLastEdit);
+        writer.writeBoolean(JSONDatabase.RecurrentTransaction.DELETED, recurrentTransaction.mDeleted);
+        writer.endObject();
         mCacheRecurrentTransactions.put(recurrentTransaction.mId, recurrentTransaction.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(RecurrentTransfer recurrentTransfer) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.RecurrentTransfer.DESCRIPTION, recurrentTransfer.mDescription);
-        object.put(JSONDatabase.RecurrentTransfer.WALLET_FROM, mCacheWallets.get(recurrentTransfer.mFromWallet));
-        object.put(JSONDatabase.RecurrentTransfer.WALLET_TO, mCacheWallets.get(recurrentTransfer.mToWallet));
-        object.put(JSONDatabase.RecurrentTransfer.MONEY_FROM, recurrentTransfer.mFromMoney);
-        object.put(JSONDatabase.RecurrentTransfer.MONEY_TO, recurrentTransfer.mToMoney);
-        object.put(JSONDatabase.RecurrentTransfer.MONEY_TAX, recurrentTransfer.mTaxMoney);
-        object.put(JSONDatabase.RecurrentTransfer.NOTE, recurrentTransfer.mNote);
-        object.put(JSONDatabase.RecurrentTransfer.EVENT, mCacheEvents.get(recurrentTransfer.mEvent));
-        object.put(JSONDatabase.RecurrentTransfer.PLACE, mCachePlaces.get(recurrentTransfer.mPlace));
-        object.put(JSONDatabase.RecurrentTransfer.CONFIRMED, recurrentTransfer.mConfirmed);
-        object.put(JSONDatabase.RecurrentTransfer.COUNT_IN_TOTAL, recurrentTransfer.mCountInTotal);
-        object.put(JSONDatabase.RecurrentTransfer.START_DATE, recurrentTransfer.mStartDate);
-        object.put(JSONDatabase.RecurrentTransfer.LAST_OCCURRENCE, recurrentTransfer.mLastOccurrence);
-        object.put(JSONDatabase.RecurrentTransfer.NEXT_OCCURRENCE, recurrentTransfer.mNextOccurrence);
-        object.put(JSONDatabase.RecurrentTransfer.RULE, recurrentTransfer.mRule);
-        object.put(JSONDatabase.RecurrentTransfer.TAG, recurrentTransfer.mTag);
-        object.put(JSONDatabase.RecurrentTransfer.ID, recurrentTransfer.mUUID);
-        object.put(JSONDatabase.RecurrentTransfer.LAST_EDIT, recurrentTransfer.mLastEdit);
-        object.put(JSONDatabase.RecurrentTransfer.DELETED, recurrentTransfer.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, RecurrentTransfer recurrentTransfer) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.RecurrentTransfer.DESCRIPTION, recurrentTransfer.mDescription);
+        writer.writeString(JSONDatabase.RecurrentTransfer.WALLET_FROM, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, recurrentTransfer.mFromWallet));
+        writer.writeString(JSONDatabase.RecurrentTransfer.WALLET_TO, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, recurrentTransfer.mToWallet));
+        writer.writeLong(JSONDatabase.RecurrentTransfer.MONEY_FROM, recurrentTransfer.mFromMoney);
+        writer.writeLong(JSONDatabase.RecurrentTransfer.MONEY_TO, recurrentTransfer.mToMoney);
+        writer.writeLong(JSONDatabase.RecurrentTransfer.MONEY_TAX, recurrentTransfer.mTaxMoney);
+        writer.writeString(JSONDatabase.RecurrentTransfer.NOTE, recurrentTransfer.mNote);
+        writer.writeString(JSONDatabase.RecurrentTransfer.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, recurrentTransfer.mEvent));
+        writer.writeString(JSONDatabase.RecurrentTransfer.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, recurrentTransfer.mPlace));
+        writer.writeBoolean(JSONDatabase.RecurrentTransfer.CONFIRMED, recurrentTransfer.mConfirmed);
+        writer.writeBoolean(JSONDatabase.RecurrentTransfer.COUNT_IN_TOTAL, recurrentTransfer.mCountInTotal);
+        writer.writeString(JSONDatabase.RecurrentTransfer.START_DATE, recurrentTransfer.mStartDate);
+        writer.writeString(JSONDatabase.RecurrentTransfer.LAST_OCCURRENCE, recurrentTransfer.mLastOccurrence);
+        writer.writeString(JSONDatabase.RecurrentTransfer.NEXT_OCCURRENCE, recurrentTransfer.mNextOccurrence);
+        writer.writeString(JSONDatabase.RecurrentTransfer.RULE, recurrentTransfer.mRule);
+        writer.writeString(JSONDatabase.RecurrentTransfer.TAG, recurrentTransfer.mTag);
+        writer.writeString(JSONDatabase.RecurrentTransfer.ID, recurrentTransfer.mUUID);
+        writer.writeLong(JSONDatabase.RecurrentTransfer.LAST_EDIT, recurrentTransfer.mLastEdit);
+        writer.writeBoolean(JSONDatabase.RecurrentTransfer.DELETED, recurrentTransfer.mDeleted);
+        writer.endObject();
         mCacheRecurrentTransfers.put(recurrentTransfer.mId, recurrentTransfer.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(Transaction transaction) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Transaction.MONEY, transaction.mMoney);
-        object.put(JSONDatabase.Transaction.DATE, transaction.mDate);
-        object.put(JSONDatabase.Transaction.DESCRIPTION, transaction.mDescription);
-        object.put(JSONDatabase.Transaction.CATEGORY, mCacheCategories.get(transaction.mCategory));
-        object.put(JSONDatabase.Transaction.DIRECTION, transaction.mDirection);
-        object.put(JSONDatabase.Transaction.TYPE, transaction.mType);
-        object.put(JSONDatabase.Transaction.WALLET, mCacheWallets.get(transaction.mWallet));
-        object.put(JSONDatabase.Transaction.PLACE, mCachePlaces.get(transaction.mPlace));
-        object.put(JSONDatabase.Transaction.NOTE, transaction.mNote);
-        object.put(JSONDatabase.Transaction.SAVING, mCacheSavings.get(transaction.mSaving));
-        object.put(JSONDatabase.Transaction.DEBT, mCacheDebts.get(transaction.mDebt));
-        object.put(JSONDatabase.Transaction.EVENT, mCacheEvents.get(transaction.mEvent));
-        object.put(JSONDatabase.Transaction.RECURRENCE, mCacheRecurrentTransactions.get(transaction.mRecurrence));
-        object.put(JSONDatabase.Transaction.CONFIRMED, transaction.mConfirmed);
-        object.put(JSONDatabase.Transaction.COUNT_IN_TOTAL, transaction.mCountInTotal);
-        object.put(JSONDatabase.Transaction.TAG, transaction.mTag);
-        object.put(JSONDatabase.Transaction.ID, transaction.mUUID);
-        object.put(JSONDatabase.Transaction.LAST_EDIT, transaction.mLastEdit);
-        object.put(JSONDatabase.Transaction.DELETED, transaction.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Transaction transaction) throws IOException {
+        writer.beginObject();
+        writer.writeLong(JSONDatabase.Transaction.MONEY, transaction.mMoney);
+        writer.writeString(JSONDatabase.Transaction.DATE, transaction.mDate);
+        writer.writeString(JSONDatabase.Transaction.DESCRIPTION, transaction.mDescription);
+        writer.writeString(JSONDatabase.Transaction.CATEGORY, getUUID(mCacheCategories, SyncContentProvider.CONTENT_CATEGORIES, transaction.mCategory));
+        writer.writeLong(JSONDatabase.Transaction.DIRECTION, transaction.mDirection);
+        writer.writeLong(JSONDatabase.Transaction.TYPE, transaction.mType);
+        writer.writeString(JSONDatabase.Transaction.WALLET, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, transaction.mWallet));
+        writer.writeString(JSONDatabase.Transaction.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, transaction.mPlace));
+        writer.writeString(JSONDatabase.Transaction.NOTE, transaction.mNote);
+        writer.writeString(JSONDatabase.Transaction.SAVING, getUUID(mCacheSavings, SyncContentProvider.CONTENT_SAVING, transaction.mSaving));
+        writer.writeString(JSONDatabase.Transaction.DEBT, getUUID(mCacheDebts, SyncContentProvider.CONTENT_DEBT, transaction.mDebt));
+        writer.writeString(JSONDatabase.Transaction.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, transaction.mEvent));
+        writer.writeString(JSONDatabase.Transaction.RECURRENCE, getUUID(mCacheRecurrentTransactions, SyncContentProvider.CONTENT_RECURRENT_TRANSACTION, transaction.mRecurrence));
+        writer.writeBoolean(JSONDatabase.Transaction.CONFIRMED, transaction.mConfirmed);
+        writer.writeBoolean(JSONDatabase.Transaction.COUNT_IN_TOTAL, transaction.mCountInTotal);
+        writer.writeString(JSONDatabase.Transaction.TAG, transaction.mTag);
+        writer.writeString(JSONDatabase.Transaction.ID, transaction.mUUID);
+        writer.writeLong(JSONDatabase.Transaction.LAST_EDIT, transaction.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Transaction.DELETED, transaction.mDeleted);
+        writer.endObject();
         mCacheTransactions.put(transaction.mId, transaction.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(TransactionPerson transactionPerson) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.TransactionPeople.TRANSACTION, mCacheTransactions.get(transactionPerson.mTransaction));
-        object.put(JSONDatabase.TransactionPeople.PERSON, mCachePeople.get(transactionPerson.mPerson));
-        object.put(JSONDatabase.TransactionPeople.ID, transactionPerson.mUUID);
-        object.put(JSONDatabase.TransactionPeople.LAST_EDIT, transactionPerson.mLastEdit);
-        object.put(JSONDatabase.TransactionPeople.DELETED, transactionPerson.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, TransactionPerson transactionPerson) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.TransactionPeople.TRANSACTION, getUUID(mCacheTransactions, SyncContentProvider.CONTENT_TRANSACTION, transactionPerson.mTransaction));
+        writer.writeString(JSONDatabase.TransactionPeople.PERSON, getUUID(mCachePeople, SyncContentProvider.CONTENT_PEOPLE, transactionPerson.mPerson));
+        writer.writeString(JSONDatabase.TransactionPeople.ID, transactionPerson.mUUID);
+        writer.writeLong(JSONDatabase.TransactionPeople.LAST_EDIT, transactionPerson.mLastEdit);
+        writer.writeBoolean(JSONDatabase.TransactionPeople.DELETED, transactionPerson.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(TransactionModel transactionModel) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.TransactionModel.MONEY, transactionModel.mMoney);
-        object.put(JSONDatabase.TransactionModel.DESCRIPTION, transactionModel.mDescription);
-        object.put(JSONDatabase.TransactionModel.CATEGORY, mCacheCategories.get(transactionModel.mCategory));
-        object.put(JSONDatabase.TransactionModel.DIRECTION, transactionModel.mDirection);
-        object.put(JSONDatabase.TransactionModel.WALLET, mCacheWallets.get(transactionModel.mWallet));
-        object.put(JSONDatabase.TransactionModel.PLACE, mCachePlaces.get(transactionModel.mPlace));
-        object.put(JSONDatabase.TransactionModel.NOTE, transactionModel.mNote);
-        object.put(JSONDatabase.TransactionModel.EVENT, mCacheEvents.get(transactionModel.mEvent));
-        object.put(JSONDatabase.TransactionModel.CONFIRMED, transactionModel.mConfirmed);
-        object.put(JSONDatabase.TransactionModel.COUNT_IN_TOTAL, transactionModel.mCountInTotal);
-        object.put(JSONDatabase.TransactionModel.TAG, transactionModel.mTag);
-        object.put(JSONDatabase.TransactionModel.ID, transactionModel.mUUID);
-        object.put(JSONDatabase.TransactionModel.LAST_EDIT, transactionModel.mLastEdit);
-        object.put(JSONDatabase.TransactionModel.DELETED, transactionModel.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, TransactionModel transactionModel) throws IOException {
+        writer.beginObject();
+        writer.writeLong(JSONDatabase.TransactionModel.MONEY, transactionModel.mMoney);
+        writer.writeString(JSONDatabase.TransactionModel.DESCRIPTION, transactionModel.mDescription);
+        writer.writeString(JSONDatabase.TransactionModel.CATEGORY, getUUID(mCacheCategories, SyncContentProvider.CONTENT_CATEGORIES, transactionModel.mCategory));
+        writer.writeLong(JSONDatabase.TransactionModel.DIRECTION, transactionModel.mDirection);
+        writer.writeString(JSONDatabase.TransactionModel.WALLET, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, transactionModel.mWallet));
+        writer.writeString(JSONDatabase.TransactionModel.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, transactionModel.mPlace));
+        writer.writeString(JSONDatabase.TransactionModel.NOTE, transactionModel.mNote);
+        writer.writeString(JSONDatabase.TransactionModel.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, transactionModel.mEvent));
+        writer.writeBoolean(JSONDatabase.TransactionModel.CONFIRMED, transactionModel.mConfirmed);
+        writer.writeBoolean(JSONDatabase.TransactionModel.COUNT_IN_TOTAL, transactionModel.mCountInTotal);
+        writer.writeString(JSONDatabase.TransactionModel.TAG, transactionModel.mTag);
+        writer.writeString(JSONDatabase.TransactionModel.ID, transactionModel.mUUID);
+        writer.writeLong(JSONDatabase.TransactionModel.LAST_EDIT, transactionModel.mLastEdit);
+        writer.writeBoolean(JSONDatabase.TransactionModel.DELETED, transactionModel.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(Transfer transfer) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Transfer.DESCRIPTION, transfer.mDescription);
-        object.put(JSONDatabase.Transfer.DATE, transfer.mDate);
-        object.put(JSONDatabase.Transfer.FROM, mCacheTransactions.get(transfer.mTransactionFrom));
-        object.put(JSONDatabase.Transfer.TO, mCacheTransactions.get(transfer.mTransactionTo));
-        object.put(JSONDatabase.Transfer.TAX, mCacheTransactions.get(transfer.mTransactionTax));
-        object.put(JSONDatabase.Transfer.NOTE, transfer.mNote);
-        object.put(JSONDatabase.Transfer.PLACE, mCachePlaces.get(transfer.mPlace));
-        object.put(JSONDatabase.Transfer.EVENT, mCacheEvents.get(transfer.mEvent));
-        object.put(JSONDatabase.Transfer.RECURRENCE, mCacheRecurrentTransfers.get(transfer.mRecurrence));
-        object.put(JSONDatabase.Transfer.CONFIRMED, transfer.mConfirmed);
-        object.put(JSONDatabase.Transfer.COUNT_IN_TOTAL, transfer.mCountInTotal);
-        object.put(JSONDatabase.Transfer.TAG, transfer.mTag);
-        object.put(JSONDatabase.Transfer.ID, transfer.mUUID);
-        object.put(JSONDatabase.Transfer.LAST_EDIT, transfer.mLastEdit);
-        object.put(JSONDatabase.Transfer.DELETED, transfer.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Transfer transfer) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Transfer.DESCRIPTION, transfer.mDescription);
+        writer.writeString(JSONDatabase.Transfer.DATE, transfer.mDate);
+        writer.writeString(JSONDatabase.Transfer.FROM, getUUID(mCacheTransactions, SyncContentProvider.CONTENT_TRANSACTION, transfer.mTransactionFrom));
+        writer.writeString(JSONDatabase.Transfer.TO, getUUID(mCacheTransactions, SyncContentProvider.CONTENT_TRANSACTION, transfer.mTransactionTo));
+        writer.writeString(JSONDatabase.Transfer.TAX, getUUID(mCacheTransactions, SyncContentProvider.CONTENT_TRANSACTION, transfer.mTransactionTax));
+        writer.writeString(JSONDatabase.Transfer.NOTE, transfer.mNote);
+        writer.writeString(JSONDatabase.Transfer.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, transfer.mPlace));
+        writer.writeString(JSONDatabase.Transfer.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, transfer.mEvent));
+        writer.writeString(JSONDatabase.Transfer.RECURRENCE, getUUID(mCacheRecurrentTransfers, SyncContentProvider.CONTENT_RECURRENT_TRANSFER, transfer.mRecurrence));
+        writer.writeBoolean(JSONDatabase.Transfer.CONFIRMED, transfer.mConfirmed);
+        writer.writeBoolean(JSONDatabase.Transfer.COUNT_IN_TOTAL, transfer.mCountInTotal);
+        writer.writeString(JSONDatabase.Transfer.TAG, transfer.mTag);
+        writer.writeString(JSONDatabase.Transfer.ID, transfer.mUUID);
+        writer.writeLong(JSONDatabase.Transfer.LAST_EDIT, transfer.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Transfer.DELETED, transfer.mDeleted);
+        writer.endObject();
         mCacheTransfers.put(transfer.mId, transfer.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(TransferPerson transferPerson) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.TransferPeople.TRANSFER, mCacheTransfers.get(transferPerson.mTransfer));
-        object.put(JSONDatabase.TransferPeople.PERSON, mCachePeople.get(transferPerson.mPerson));
-        object.put(JSONDatabase.TransferPeople.ID, transferPerson.mUUID);
-        object.put(JSONDatabase.TransferPeople.LAST_EDIT, transferPerson.mLastEdit);
-        object.put(JSONDatabase.TransferPeople.DELETED, transferPerson.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, TransferPerson transferPerson) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.TransferPeople.TRANSFER, getUUID(mCacheTransfers, SyncContentProvider.CONTENT_TRANSFER, transferPerson.mTransfer));
+        writer.writeString(JSONDatabase.TransferPeople.PERSON, getUUID(mCachePeople, SyncContentProvider.CONTENT_PEOPLE, transferPerson.mPerson));
+        writer.writeString(JSONDatabase.TransferPeople.ID, transferPerson.mUUID);
+        writer.writeLong(JSONDatabase.TransferPeople.LAST_EDIT, transferPerson.mLastEdit);
+        writer.writeBoolean(JSONDatabase.TransferPeople.DELETED, transferPerson.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(TransferModel transferModel) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.TransferModel.DESCRIPTION, transferModel.mDescription);
-        object.put(JSONDatabase.TransferModel.WALLET_FROM, mCacheWallets.get(transferModel.mFromWallet));
-        object.put(JSONDatabase.TransferModel.WALLET_TO, mCacheWallets.get(transferModel.mToWallet));
-        object.put(JSONDatabase.TransferModel.MONEY_FROM, transferModel.mFromMoney);
-        object.put(JSONDatabase.TransferModel.MONEY_TO, transferModel.mToMoney);
-        object.put(JSONDatabase.TransferModel.MONEY_TAX, transferModel.mTaxMoney);
-        object.put(JSONDatabase.TransferModel.NOTE, transferModel.mNote);
-        object.put(JSONDatabase.TransferModel.EVENT, mCacheEvents.get(transferModel.mEvent));
-        object.put(JSONDatabase.TransferModel.PLACE, mCachePlaces.get(transferModel.mPlace));
-        object.put(JSONDatabase.TransferModel.CONFIRMED, transferModel.mConfirmed);
-        object.put(JSONDatabase.TransferModel.COUNT_IN_TOTAL, transferModel.mCountInTotal);
-        object.put(JSONDatabase.TransferModel.TAG, transferModel.mTag);
-        object.put(JSONDatabase.TransferModel.ID, transferModel.mUUID);
-        object.put(JSONDatabase.TransferModel.LAST_EDIT, transferModel.mLastEdit);
-        object.put(JSONDatabase.TransferModel.DELETED, transferModel.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, TransferModel transferModel) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.TransferModel.DESCRIPTION, transferModel.mDescription);
+        writer.writeString(JSONDatabase.TransferModel.WALLET_FROM, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, transferModel.mFromWallet));
+        writer.writeString(JSONDatabase.TransferModel.WALLET_TO, getUUID(mCacheWallets, SyncContentProvider.CONTENT_WALLETS, transferModel.mToWallet));
+        writer.writeLong(JSONDatabase.TransferModel.MONEY_FROM, transferModel.mFromMoney);
+        writer.writeLong(JSONDatabase.TransferModel.MONEY_TO, transferModel.mToMoney);
+        writer.writeLong(JSONDatabase.TransferModel.MONEY_TAX, transferModel.mTaxMoney);
+        writer.writeString(JSONDatabase.TransferModel.NOTE, transferModel.mNote);
+        writer.writeString(JSONDatabase.TransferModel.EVENT, getUUID(mCacheEvents, SyncContentProvider.CONTENT_EVENTS, transferModel.mEvent));
+        writer.writeString(JSONDatabase.TransferModel.PLACE, getUUID(mCachePlaces, SyncContentProvider.CONTENT_PLACES, transferModel.mPlace));
+        writer.writeBoolean(JSONDatabase.TransferModel.CONFIRMED, transferModel.mConfirmed);
+        writer.writeBoolean(JSONDatabase.TransferModel.COUNT_IN_TOTAL, transferModel.mCountInTotal);
+        writer.writeString(JSONDatabase.TransferModel.TAG, transferModel.mTag);
+        writer.writeString(JSONDatabase.TransferModel.ID, transferModel.mUUID);
+        writer.writeLong(JSONDatabase.TransferModel.LAST_EDIT, transferModel.mLastEdit);
+        writer.writeBoolean(JSONDatabase.TransferModel.DELETED, transferModel.mDeleted);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(Attachment attachment) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.Attachment.FILE, attachment.mFile);
-        object.put(JSONDatabase.Attachment.NAME, attachment.mName);
-        object.put(JSONDatabase.Attachment.TYPE, attachment.mType);
-        object.put(JSONDatabase.Attachment.SIZE, attachment.mSize);
-        object.put(JSONDatabase.Attachment.TAG, attachment.mTag);
-        object.put(JSONDatabase.Attachment.ID, attachment.mUUID);
-        object.put(JSONDatabase.Attachment.LAST_EDIT, attachment.mLastEdit);
-        object.put(JSONDatabase.Attachment.DELETED, attachment.mDeleted);
+    /*package-local*/ void write(JSONDataStreamWriter writer, Attachment attachment) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.Attachment.FILE, attachment.mFile);
+        writer.writeString(JSONDatabase.Attachment.NAME, attachment.mName);
+        writer.writeString(JSONDatabase.Attachment.TYPE, attachment.mType);
+        writer.writeLong(JSONDatabase.Attachment.SIZE, attachment.mSize);
+        writer.writeString(JSONDatabase.Attachment.TAG, attachment.mTag);
+        writer.writeString(JSONDatabase.Attachment.ID, attachment.mUUID);
+        writer.writeLong(JSONDatabase.Attachment.LAST_EDIT, attachment.mLastEdit);
+        writer.writeBoolean(JSONDatabase.Attachment.DELETED, attachment.mDeleted);
+        writer.endObject();
         mCacheAttachments.put(attachment.mId, attachment.mUUID);
-        return object;
     }
 
-    /*package-local*/ JSONObject getObject(TransactionAttachment transactionAttachment) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.TransactionAttachment.TRANSACTION, mCacheTransactions.get(transactionAttachment.mTransaction));
-        object.put(JSONDatabase.TransactionAttachment.ATTACHMENT, mCacheAttachments.get(transactionAttachment.mAttachment));
-        object.put(JSONDatabase.TransactionAttachment.ID, transactionAttachment.mUUID);
-        object.put(JSONDatabase.TransactionAttachment.LAST_EDIT, transactionAttachment.mLastEdit);
-        object.put(JSONDatabase.TransactionAttachment.DELETED, transactionAttachment.mDeleted);
-        return object;
+    /*package-local*/ void write(JSONDataStreamWriter writer, TransactionAttachment transactionAttachment) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.TransactionAttachment.TRANSACTION, getUUID(mCacheTransactions, SyncContentProvider.CONTENT_TRANSACTION, transactionAttachment.mTransaction));
+        writer.writeString(JSONDatabase.TransactionAttachment.ATTACHMENT, getUUID(mCacheAttachments, SyncContentProvider.CONTENT_ATTACHMENT, transactionAttachment.mAttachment));
+        writer.writeString(JSONDatabase.TransactionAttachment.ID, transactionAttachment.mUUID);
+        writer.writeLong(JSONDatabase.TransactionAttachment.LAST_EDIT, transactionAttachment.mLastEdit);
+        writer.writeBoolean(JSONDatabase.TransactionAttachment.DELETED, transactionAttachment.mDeleted);
+        writer.endObject();
+    }
+
+    /*package-local*/ void write(JSONDataStreamWriter writer, TransferAttachment transferAttachment) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.TransferAttachment.TRANSFER, getUUID(mCacheTransfers, SyncContentProvider.CONTENT_TRANSFER, transferAttachment.mTransfer));
+        writer.writeString(JSONDatabase.TransferAttachment.ATTACHMENT, getUUID(mCacheAttachments, SyncContentProvider.CONTENT_ATTACHMENT, transferAttachment.mAttachment));
+        writer.writeString(JSONDatabase.TransferAttachment.ID, transferAttachment.mUUID);
+        writer.writeLong(JSONDatabase.TransferAttachment.LAST_EDIT, transferAttachment.mLastEdit);
+        writer.writeBoolean(JSONDatabase.TransferAttachment.DELETED, transferAttachment.mDeleted);
+        writer.endObject();
+    }
+
+    /*package-local*/ void write(JSONDataStreamWriter writer, DeletedItem deletedItem) throws IOException {
+        writer.beginObject();
+        writer.writeString(JSONDatabase.DeletedItem.TABLE, deletedItem.mTable);
+        writer.writeString(JSONDatabase.DeletedItem.UUID, deletedItem.mUUID);
+        writer.endObject();
     }
 
-    /*package-local*/ JSONObject getObject(TransferAttachment transferAttachment) throws JSONException {
-        JSONObject object = new JSONObject();
-        object.put(JSONDatabase.TransferAttachment.TRANSFER, mCacheTransfers.get(transferAttachment.mTransfer));
-        object.put(JSONDatabase.TransferAttachment.ATTACHMENT, mCacheAttachments.get(transferAttachment.mAttachment));
-        object.put(JSONDatabase.TransferAttachment.ID, transferAttachment.mUUID);
-        object.put(JSONDatabase.TransferAttachment.LAST_EDIT, transferAttachment.mLastEdit);
-        object.put(JSONDatabase.TransferAttachment.DELETED, transferAttachment.mDeleted);
-        return object;
+    private String getUUID(LongSparseArray<String> cache, Uri uri, Long id) {
+        if (id == null) {
+            return null;
+        }
+        String uuid = cache.get(id);
+        if (uuid == null && mContentResolver != null) {
+            // an incremental backup does not contain the items that have not been changed:
+            // their uuid is read from the database the first time they are referenced
+            uuid = SQLDatabaseExporter.getUUID(mContentResolver, uri, id);
+            cache.put(id, uuid);
+        }
+        return uuid;
     }
 }
\ No newline at end of file
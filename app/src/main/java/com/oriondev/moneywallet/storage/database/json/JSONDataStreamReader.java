@@ -22,9 +22,6 @@ package com.oriondev.moneywallet.storage.database.json;
 import android.util.JsonReader;
 import android.util.JsonToken;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,6 +29,10 @@ import java.io.InputStreamReader;
 
 /**
  * Created by andrea on 27/10/18.
+ *
+ * Thin wrapper of the json reader used to read typed values: a missing or unexpected value
+ * is replaced by the provided default value, as it happened with the optional getters of
+ * the JSONObject.
  */
 /*package-local*/ class JSONDataStreamReader implements Closeable {
 
@@ -58,27 +59,120 @@ import java.io.InputStreamReader;
         return mReader.peek() != JsonToken.END_ARRAY;
     }
 
-    /*package-local*/ JSONObject readObject() throws IOException, JSONException {
+    /*package-local*/ void beginObject() throws IOException {
         mReader.beginObject();
-        JSONObject object = new JSONObject();
-        while (mReader.peek() != JsonToken.END_OBJECT) {
-            String name = mReader.nextName();
-            switch (mReader.peek()) {
-                case STRING:
-                    object.put(name, mReader.nextString());
-                    break;
-                case NUMBER:
-                    String value = mReader.nextString();
-                    try {object.put(name, Long.parseLong(value));} catch (NumberFormatException ignore) {}
-                    try {object.put(name, Double.parseDouble(value));} catch (NumberFormatException ignore) {}
-                    break;
-                case BOOLEAN:
-                    object.put(name, mReader.nextBoolean());
-                    break;
+    }
+
+    /*package-local*/ void endObject() throws IOException {
+        mReader.endObject();
+    }
+
+    /*package-local*/ boolean hasObjectAnotherField() throws IOException {
+        return mReader.peek() != JsonToken.END_OBJECT;
+    }
+
+    /*package-local*/ void skipValue() throws IOException {
+        mReader.skipValue();
+    }
+
+    /*package-local*/ String readString() throws IOException {
+        switch (mReader.peek()) {
+            case STRING:
+            case NUMBER:
+                return mReader.nextString();
+            case BOOLEAN:
+                return String.valueOf(mReader.nextBoolean());
+            default:
+                mReader.skipValue();
+                return null;
+        }
+    }
+
+    /*package-local*/ long readLong(long defaultValue) throws IOException {
+        switch (mReader.peek()) {
+            case STRING:
+            case NUMBER:
+                return parseLong(mReader.nextString(), defaultValue);
+            default:
+                mReader.skipValue();
+                return defaultValue;
+        }
+    }
+
+    /*package-local*/ int readInt(int defaultValue) throws IOException {
+        return (int) readLong(defaultValue);
+    }
+
+    /*package-local*/ double readDouble(double defaultValue) throws IOException {
+        switch (mReader.peek()) {
+            case STRING:
+            case NUMBER:
+                return parseDouble(mReader.nextString(), defaultValue);
+            default:
+                mReader.skipValue();
+                return defaultValue;
+        }
+    }
+
+    /*package-local*/ boolean readBoolean(boolean defaultValue) throws IOException {
+        switch (mReader.peek()) {
+            case BOOLEAN:
+                return mReader.nextBoolean();
+            case STRING:
+                String value = mReader.nextString();
+                if ("true".equalsIgnoreCase(value)) {
+                    return true;
+                } else if ("false".equalsIgnoreCase(value)) {
+                    return false;
+                }
+                return defaultValue;
+            default:
+                mReader.skipValue();
+                return defaultValue;
+        }
+    }
+
+    /**
+     * Parse an integer number without going through a double: the backup always contains
+     * integer values for the fields that are read as long, so the fallback to the double
+     * parser is only used for fractional or exponent forms written by other tools and for
+     * integers that do not fit in a long. The digits are accumulated as a negative number,
+     * as {@link Long#parseLong(String)} does, so that all the 19 digits values are exact.
+     */
+    private static long parseLong(String value, long defaultValue) {
+        int length = value.length();
+        boolean negative = length > 0 && value.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (length == start) {
+            return (long) parseDouble(value, defaultValue);
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10L;
+        long result = 0L;
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return (long) parseDouble(value, defaultValue);
+            }
+            int digit = c - '0';
+            if (result < multiplyLimit) {
+                return (long) parseDouble(value, defaultValue);
+            }
+            result *= 10L;
+            if (result < limit + digit) {
+                return (long) parseDouble(value, defaultValue);
             }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
         }
-        mReader.endObject();
-        return object;
     }
 
     @Override
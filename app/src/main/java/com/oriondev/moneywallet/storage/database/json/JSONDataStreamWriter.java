@@ -21,25 +21,26 @@ package com.oriondev.moneywallet.storage.database.json;
 
 import android.util.JsonWriter;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.Iterator;
 
 /**
  * Created by andrea on 28/10/18.
+ *
+ * Thin wrapper of the json writer used to write typed values: null values are skipped.
  */
 
 /*package-local*/ class JSONDataStreamWriter implements Closeable {
 
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     private final JsonWriter mWriter;
 
     /*package-local*/ JSONDataStreamWriter(OutputStream outputStream) throws IOException {
-        mWriter = new JsonWriter(new OutputStreamWriter(outputStream));
+        mWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream), BUFFER_SIZE));
         mWriter.beginObject();
     }
 
@@ -55,25 +56,34 @@ import java.util.Iterator;
         mWriter.endArray();
     }
 
-    /*package-local*/ void writeJSONObject(JSONObject object) throws IOException, JSONException {
+    /*package-local*/ void beginObject() throws IOException {
         mWriter.beginObject();
-        for (Iterator<String> it = object.keys(); it.hasNext(); ) {
-            String key = it.next();
-            mWriter.name(key);
-            Object value = object.get(key);
-            if (value instanceof String) {
-                mWriter.value((String) value);
-            } else if (value instanceof Number) {
-                mWriter.value((Number) value);
-            } else if (value instanceof Boolean) {
-                mWriter.value((Boolean) value);
-            } else {
-                mWriter.nullValue();
-            }
-        }
+    }
+
+    /*package-local*/ void endObject() throws IOException {
         mWriter.endObject();
     }
 
+    /*package-local*/ void writeString(String name, String value) throws IOException {
+        if (value != null) {
+            mWriter.name(name).value(value);
+        }
+    }
+
+    /*package-local*/ void writeLong(String name, long value) throws IOException {
+        mWriter.name(name).value(value);
+    }
+
+    /*package-local*/ void writeDouble(String name, Double value) throws IOException {
+        if (value != null) {
+            mWriter.name(name).value(value.doubleValue());
+        }
+    }
+
+    /*package-local*/ void writeBoolean(String name, boolean value) throws IOException {
+        mWriter.name(name).value(value);
+    }
+
     @Override
     public void close() throws IOException {
         mWriter.endObject();
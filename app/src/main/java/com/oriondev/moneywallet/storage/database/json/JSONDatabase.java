@@ -25,13 +25,29 @@ package com.oriondev.moneywallet.storage.database.json;
 /*package-local*/ class JSONDatabase {
 
     /*package-local*/ static final int MIN_SUPPORTED_VERSION = 1;
-    /*package-local*/ static final int MAX_SUPPORTED_VERSION = 2;
+    /*package-local*/ static final int MAX_SUPPORTED_VERSION = 3;
 
     /*package-local*/ static final int VERSION = 2;
 
+    /**
+     * Version of the incremental backups: they also contain the list of the deleted items and
+     * they cannot be read by the older versions of the app.
+     */
+    /*package-local*/ static final int DELTA_VERSION = 3;
+
     /*package-local*/ static class Header {
         /*package-local*/ static final String OBJECT = "header";
         /*package-local*/ static final String VERSION_CODE = "version_code";
+        /*package-local*/ static final String BACKUP_ID = "backup_id";
+        /*package-local*/ static final String BACKUP_BASE = "backup_base";
+        /*package-local*/ static final String BACKUP_SINCE = "backup_since";
+        /*package-local*/ static final String BACKUP_WATERMARK = "backup_watermark";
+    }
+
+    /*package-local*/ static class DeletedItem {
+        /*package-local*/ static final String ARRAY = "deleted_items";
+        /*package-local*/ static final String TABLE = "table";
+        /*package-local*/ static final String UUID = "uuid";
     }
 
     /*package-local*/ static class Currency {
@@ -19,6 +19,7 @@
 
 package com.oriondev.moneywallet.storage.database.json;
 
+import android.content.ContentResolver;
 import android.database.Cursor;
 
 import com.oriondev.moneywallet.storage.database.DatabaseExporter;
@@ -26,9 +27,6 @@ import com.oriondev.moneywallet.storage.database.ExportException;
 import com.oriondev.moneywallet.storage.database.SQLDatabaseExporter;
 import com.oriondev.moneywallet.storage.database.model.*;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -41,22 +39,57 @@ public class JSONDatabaseExporter implements DatabaseExporter {
     private final JSONDataOutputFactory mFactory;
 
     public JSONDatabaseExporter(OutputStream outputStream) throws ExportException {
+        this(outputStream, null);
+    }
+
+    /**
+     * Create a new exporter that is able to write an incremental backup: the references to the
+     * items that are not exported are resolved using the content resolver.
+     * @param outputStream where the JSON data is written.
+     * @param contentResolver used to read the referenced items or null.
+     * @throws ExportException if the stream cannot be written.
+     */
+    public JSONDatabaseExporter(OutputStream outputStream, ContentResolver contentResolver) throws ExportException {
         try {
             mWriter = new JSONDataStreamWriter(outputStream);
-            mFactory = new JSONDataOutputFactory();
+            mFactory = new JSONDataOutputFactory(contentResolver);
         } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
 
     @Override
-    public void exportHeader() throws ExportException {
+    public void exportHeader(BackupHeader header) throws ExportException {
         try {
+            boolean incremental = header != null && header.mBase != null;
             mWriter.writeName(JSONDatabase.Header.OBJECT);
-            JSONObject object = new JSONObject();
-            object.put(JSONDatabase.Header.VERSION_CODE, JSONDatabase.VERSION);
-            mWriter.writeJSONObject(object);
-        } catch (IOException | JSONException e) {
+            mWriter.beginObject();
+            mWriter.writeLong(JSONDatabase.Header.VERSION_CODE, incremental ? JSONDatabase.DELTA_VERSION : JSONDatabase.VERSION);
+            if (header != null) {
+                mWriter.writeString(JSONDatabase.Header.BACKUP_ID, header.mId);
+                mWriter.writeString(JSONDatabase.Header.BACKUP_BASE, header.mBase);
+                if (incremental) {
+                    mWriter.writeLong(JSONDatabase.Header.BACKUP_SINCE, header.mSince);
+                }
+                mWriter.writeLong(JSONDatabase.Header.BACKUP_WATERMARK, header.mWatermark);
+            }
+            mWriter.endObject();
+        } catch (IOException e) {
+            throw new ExportException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void exportDeletedItems(Cursor cursor) throws ExportException {
+        try {
+            mWriter.writeName(JSONDatabase.DeletedItem.ARRAY);
+            mWriter.beginArray();
+            while (cursor.moveToNext()) {
+                DeletedItem deletedItem = SQLDatabaseExporter.getDeletedItem(cursor);
+                mFactory.write(mWriter, deletedItem);
+            }
+            mWriter.endArray();
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -68,11 +101,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Currency currency = SQLDatabaseExporter.getCurrency(cursor);
-                JSONObject object = mFactory.getObject(currency);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, currency);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -84,11 +116,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Wallet wallet = SQLDatabaseExporter.getWallet(cursor);
-                JSONObject object = mFactory.getObject(wallet);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, wallet);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -100,11 +131,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Category category = SQLDatabaseExporter.getCategory(cursor);
-                JSONObject object = mFactory.getObject(category);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, category);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -116,11 +146,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Event event = SQLDatabaseExporter.getEvent(cursor);
-                JSONObject object = mFactory.getObject(event);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, event);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -132,11 +161,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Place place = SQLDatabaseExporter.getPlace(cursor);
-                JSONObject object = mFactory.getObject(place);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, place);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -148,11 +176,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Person person = SQLDatabaseExporter.getPerson(cursor);
-                JSONObject object = mFactory.getObject(person);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, person);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -164,11 +191,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 EventPerson eventPerson = SQLDatabaseExporter.getEventPerson(cursor);
-                JSONObject object = mFactory.getObject(eventPerson);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, eventPerson);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -180,11 +206,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Debt debt = SQLDatabaseExporter.getDebt(cursor);
-                JSONObject object = mFactory.getObject(debt);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, debt);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -196,11 +221,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 DebtPerson debtPerson = SQLDatabaseExporter.getDebtPerson(cursor);
-                JSONObject object = mFactory.getObject(debtPerson);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, debtPerson);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -212,11 +236,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Budget budget = SQLDatabaseExporter.getBudget(cursor);
-                JSONObject object = mFactory.getObject(budget);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, budget);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -228,11 +251,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 BudgetWallet budgetWallet = SQLDatabaseExporter.getBudgetWallet(cursor);
-                JSONObject object = mFactory.getObject(budgetWallet);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, budgetWallet);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -244,11 +266,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Saving saving = SQLDatabaseExporter.getSaving(cursor);
-                JSONObject object = mFactory.getObject(saving);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, saving);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -260,11 +281,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 RecurrentTransaction recurrentTransaction = SQLDatabaseExporter.getRecurrentTransaction(cursor);
-                JSONObject object = mFactory.getObject(recurrentTransaction);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, recurrentTransaction);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -276,11 +296,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 RecurrentTransfer recurrentTransfer = SQLDatabaseExporter.getRecurrentTransfer(cursor);
-                JSONObject object = mFactory.getObject(recurrentTransfer);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, recurrentTransfer);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -292,11 +311,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Transaction transaction = SQLDatabaseExporter.getTransaction(cursor);
-                JSONObject object = mFactory.getObject(transaction);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transaction);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -308,11 +326,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 TransactionPerson transactionPerson = SQLDatabaseExporter.getTransactionPerson(cursor);
-                JSONObject object = mFactory.getObject(transactionPerson);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transactionPerson);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -324,11 +341,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 TransactionModel transactionModel = SQLDatabaseExporter.getTransactionModel(cursor);
-                JSONObject object = mFactory.getObject(transactionModel);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transactionModel);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -340,11 +356,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Transfer transfer = SQLDatabaseExporter.getTransfer(cursor);
-                JSONObject object = mFactory.getObject(transfer);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transfer);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -356,11 +371,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 TransferPerson transferPerson = SQLDatabaseExporter.getTransferPerson(cursor);
-                JSONObject object = mFactory.getObject(transferPerson);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transferPerson);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -372,11 +386,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 TransferModel transferModel = SQLDatabaseExporter.getTransferModel(cursor);
-                JSONObject object = mFactory.getObject(transferModel);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transferModel);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -388,11 +401,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 Attachment attachment = SQLDatabaseExporter.getAttachment(cursor);
-                JSONObject object = mFactory.getObject(attachment);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, attachment);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -404,11 +416,10 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             mWriter.beginArray();
             while (cursor.moveToNext()) {
                 TransactionAttachment transactionAttachment = SQLDatabaseExporter.getTransactionAttachment(cursor);
-                JSONObject object = mFactory.getObject(transactionAttachment);
-                mWriter.writeJSONObject(object);
+                mFactory.write(mWriter, transactionAttachment);
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -421,13 +432,12 @@ public class JSONDatabaseExporter implements DatabaseExporter {
             if (cursor != null) {
                 while (cursor.moveToNext()) {
                     TransferAttachment transferAttachment = SQLDatabaseExporter.getTransferAttachment(cursor);
-                    JSONObject object = mFactory.getObject(transferAttachment);
-                    mWriter.writeJSONObject(object);
+                    mFactory.write(mWriter, transferAttachment);
                 }
                 cursor.close();
             }
             mWriter.endArray();
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ExportException(e.getMessage());
         }
     }
@@ -23,14 +23,17 @@ import android.content.ContentResolver;
 
 import com.oriondev.moneywallet.storage.database.DatabaseImporter;
 import com.oriondev.moneywallet.storage.database.ImportException;
+import com.oriondev.moneywallet.storage.database.SQLDatabaseBulkImporter;
 import com.oriondev.moneywallet.storage.database.SQLDatabaseImporter;
 import com.oriondev.moneywallet.storage.database.model.Attachment;
+import com.oriondev.moneywallet.storage.database.model.BackupHeader;
 import com.oriondev.moneywallet.storage.database.model.Budget;
 import com.oriondev.moneywallet.storage.database.model.BudgetWallet;
 import com.oriondev.moneywallet.storage.database.model.Category;
 import com.oriondev.moneywallet.storage.database.model.Currency;
 import com.oriondev.moneywallet.storage.database.model.Debt;
 import com.oriondev.moneywallet.storage.database.model.DebtPerson;
+import com.oriondev.moneywallet.storage.database.model.DeletedItem;
 import com.oriondev.moneywallet.storage.database.model.Event;
 import com.oriondev.moneywallet.storage.database.model.EventPerson;
 import com.oriondev.moneywallet.storage.database.model.Person;
@@ -48,9 +51,6 @@ import com.oriondev.moneywallet.storage.database.model.TransferModel;
 import com.oriondev.moneywallet.storage.database.model.TransferPerson;
 import com.oriondev.moneywallet.storage.database.model.Wallet;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -63,13 +63,41 @@ public class JSONDatabaseImporter implements DatabaseImporter {
 
     private final JSONDataStreamReader mReader;
     private final JSONDataInputFactory mFactory;
+    private final SQLDatabaseBulkImporter mBulkImporter;
 
     private int mVersion;
+    private BackupHeader mHeader;
 
     public JSONDatabaseImporter(InputStream inputStream) throws ImportException {
+        this(inputStream, null);
+    }
+
+    /**
+     * Create a new importer that writes the rows inside the given bulk importer instead of
+     * sending them to the content resolver.
+     * @param inputStream of the JSON data.
+     * @param bulkImporter that has already been started or null to use the content resolver.
+     * @throws ImportException if the stream cannot be read.
+     */
+    public JSONDatabaseImporter(InputStream inputStream, SQLDatabaseBulkImporter bulkImporter) throws ImportException {
+        this(inputStream, bulkImporter, null);
+    }
+
+    /**
+     * Create a new importer for an incremental backup that is applied over the backup read by
+     * the previous importer: the items that are not part of this backup can be referenced
+     * because the uuid of all the imported items is shared between the two importers.
+     * @param inputStream of the JSON data.
+     * @param bulkImporter that has already been started or null to use the content resolver.
+     * @param previousImporter of the previous backup of the chain or null.
+     * @throws ImportException if the stream cannot be read.
+     */
+    public JSONDatabaseImporter(InputStream inputStream, SQLDatabaseBulkImporter bulkImporter,
+                                JSONDatabaseImporter previousImporter) throws ImportException {
+        mBulkImporter = bulkImporter;
         try {
             mReader = new JSONDataStreamReader(inputStream);
-            mFactory = new JSONDataInputFactory();
+            mFactory = previousImporter != null ? previousImporter.mFactory : new JSONDataInputFactory();
         } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
@@ -79,8 +107,7 @@ public class JSONDatabaseImporter implements DatabaseImporter {
     public void importHeader() throws ImportException {
         try {
             if (JSONDatabase.Header.OBJECT.equals(mReader.readName())) {
-                JSONObject object = mReader.readObject();
-                mVersion = object.getInt(JSONDatabase.Header.VERSION_CODE);
+                mHeader = readHeader();
                 if (mVersion > JSONDatabase.MAX_SUPPORTED_VERSION) {
                     throw new ImportException("This backup belongs to a newer version of the " +
                             "application and cannot be imported. Please update the application " +
@@ -90,11 +117,80 @@ public class JSONDatabaseImporter implements DatabaseImporter {
                             "version of the application. It cannot be restored.");
                 }
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
 
+    private BackupHeader readHeader() throws IOException, ImportException {
+        BackupHeader header = new BackupHeader();
+        mVersion = -1;
+        mReader.beginObject();
+        while (mReader.hasObjectAnotherField()) {
+            switch (mReader.readName()) {
+                case JSONDatabase.Header.VERSION_CODE:
+                    mVersion = mReader.readInt(-1);
+                    break;
+                case JSONDatabase.Header.BACKUP_ID:
+                    header.mId = mReader.readString();
+                    break;
+                case JSONDatabase.Header.BACKUP_BASE:
+                    header.mBase = mReader.readString();
+                    break;
+                case JSONDatabase.Header.BACKUP_SINCE:
+                    header.mSince = mReader.readLong(0L);
+                    break;
+                case JSONDatabase.Header.BACKUP_WATERMARK:
+                    header.mWatermark = mReader.readLong(0L);
+                    break;
+                default:
+                    mReader.skipValue();
+                    break;
+            }
+        }
+        mReader.endObject();
+        if (mVersion < 0) {
+            throw new ImportException("Invalid backup file: missing version code");
+        }
+        if (header.mBase != null && mVersion < JSONDatabase.DELTA_VERSION) {
+            throw new ImportException("Invalid backup file: wrong version of the incremental backup");
+        }
+        return header;
+    }
+
+    /**
+     * Return the header of the backup. The backups created by the older versions of the app do
+     * not contain any information about the chain: they are considered as full backups.
+     * @return the header or null if the header has not been imported yet.
+     */
+    public BackupHeader getBackupHeader() {
+        return mHeader;
+    }
+
+    @Override
+    public void importDeletedItems(ContentResolver contentResolver) throws ImportException {
+        // deleted items are only stored inside incremental backups
+        if (mVersion >= JSONDatabase.DELTA_VERSION) {
+            if (mBulkImporter == null) {
+                throw new ImportException("An incremental backup can only be applied to a new database");
+            }
+            try {
+                if (JSONDatabase.DeletedItem.ARRAY.equals(mReader.readName())) {
+                    mReader.beginArray();
+                    while (mReader.hasArrayAnotherObject()) {
+                        DeletedItem deletedItem = mFactory.readDeletedItem(mReader);
+                        mBulkImporter.delete(deletedItem);
+                    }
+                    mReader.endArray();
+                } else {
+                    throw new ImportException("Wrong array name (expected = 'deleted_items')");
+                }
+            } catch (IOException e) {
+                throw new ImportException(e.getMessage());
+            }
+        }
+    }
+
     @Override
     public void importCurrencies(ContentResolver contentResolver) throws ImportException {
         // currencies are stored starting from backup version >= 2
@@ -103,15 +199,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
                 if (JSONDatabase.Currency.ARRAY.equals(mReader.readName())) {
                     mReader.beginArray();
                     while (mReader.hasArrayAnotherObject()) {
-                        JSONObject object = mReader.readObject();
-                        Currency currency = mFactory.getCurrency(object);
-                        SQLDatabaseImporter.insert(contentResolver, currency);
+                        Currency currency = mFactory.readCurrency(mReader);
+                        insert(contentResolver, currency);
                     }
                     mReader.endArray();
                 } else {
                     throw new ImportException("Wrong array name (expected = 'currencies')");
                 }
-            } catch (IOException | JSONException e) {
+            } catch (IOException e) {
                 throw new ImportException(e.getMessage());
             }
         }
@@ -123,16 +218,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Wallet.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Wallet wallet = mFactory.getWallet(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, wallet);
+                    Wallet wallet = mFactory.readWallet(mReader);
+                    long id = insert(contentResolver, wallet);
                     mFactory.cacheWallet(wallet.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'wallets')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -143,16 +237,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Category.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Category category = mFactory.getCategory(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, category);
+                    Category category = mFactory.readCategory(mReader);
+                    long id = insert(contentResolver, category);
                     mFactory.cacheCategory(category.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'categories')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -163,16 +256,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Event.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Event event = mFactory.getEvent(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, event);
+                    Event event = mFactory.readEvent(mReader);
+                    long id = insert(contentResolver, event);
                     mFactory.cacheEvent(event.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'events')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -183,16 +275,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Place.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Place place = mFactory.getPlace(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, place);
+                    Place place = mFactory.readPlace(mReader);
+                    long id = insert(contentResolver, place);
                     mFactory.cachePlace(place.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'places')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -203,16 +294,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Person.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Person person = mFactory.getPerson(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, person);
+                    Person person = mFactory.readPerson(mReader);
+                    long id = insert(contentResolver, person);
                     mFactory.cachePerson(person.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'people')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -223,15 +313,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.EventPeople.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    EventPerson eventPerson = mFactory.getEventPerson(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, eventPerson);
+                    EventPerson eventPerson = mFactory.readEventPerson(mReader);
+                    long id = insert(contentResolver, eventPerson);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'event_people')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -242,16 +331,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Debt.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Debt debt = mFactory.getDebt(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, debt);
+                    Debt debt = mFactory.readDebt(mReader);
+                    long id = insert(contentResolver, debt);
                     mFactory.cacheDebt(debt.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'debts')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -262,15 +350,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.DebtPeople.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    DebtPerson debtPerson = mFactory.getDebtPerson(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, debtPerson);
+                    DebtPerson debtPerson = mFactory.readDebtPerson(mReader);
+                    long id = insert(contentResolver, debtPerson);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'debt_people')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -281,16 +368,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Budget.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Budget budget = mFactory.getBudget(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, budget);
+                    Budget budget = mFactory.readBudget(mReader);
+                    long id = insert(contentResolver, budget);
                     mFactory.cacheBudget(budget.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'budgets')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -301,15 +387,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.BudgetWallet.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    BudgetWallet budgetWallet = mFactory.getBudgetWallet(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, budgetWallet);
+                    BudgetWallet budgetWallet = mFactory.readBudgetWallet(mReader);
+                    long id = insert(contentResolver, budgetWallet);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'budget_wallets')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -320,16 +405,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Saving.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Saving saving = mFactory.getSaving(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, saving);
+                    Saving saving = mFactory.readSaving(mReader);
+                    long id = insert(contentResolver, saving);
                     mFactory.cacheSaving(saving.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'savings')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -340,16 +424,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.RecurrentTransaction.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    RecurrentTransaction transaction = mFactory.getRecurrentTransaction(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transaction);
+                    RecurrentTransaction transaction = mFactory.readRecurrentTransaction(mReader);
+                    long id = insert(contentResolver, transaction);
                     mFactory.cacheRecurrentTransaction(transaction.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'recurrent_transactions')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -360,16 +443,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.RecurrentTransfer.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    RecurrentTransfer transfer = mFactory.getRecurrentTransfer(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transfer);
+                    RecurrentTransfer transfer = mFactory.readRecurrentTransfer(mReader);
+                    long id = insert(contentResolver, transfer);
                     mFactory.cacheRecurrentTransfer(transfer.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'recurrent_transfers')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -380,16 +462,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Transaction.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Transaction transaction = mFactory.getTransaction(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transaction);
+                    Transaction transaction = mFactory.readTransaction(mReader);
+                    long id = insert(contentResolver, transaction);
                     mFactory.cacheTransaction(transaction.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transactions')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -400,15 +481,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.TransactionPeople.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    TransactionPerson transactionPerson = mFactory.getTransactionPerson(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transactionPerson);
+                    TransactionPerson transactionPerson = mFactory.readTransactionPerson(mReader);
+                    long id = insert(contentResolver, transactionPerson);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transaction_people')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -419,15 +499,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.TransactionModel.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    TransactionModel transactionModel = mFactory.getTransactionModel(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transactionModel);
+                    TransactionModel transactionModel = mFactory.readTransactionModel(mReader);
+                    long id = insert(contentResolver, transactionModel);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transaction_models')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -438,16 +517,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Transfer.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Transfer transfer = mFactory.getTransfer(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transfer);
+                    Transfer transfer = mFactory.readTransfer(mReader);
+                    long id = insert(contentResolver, transfer);
                     mFactory.cacheTransfer(transfer.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transfers')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -458,15 +536,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.TransferPeople.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    TransferPerson transferPerson = mFactory.getTransferPerson(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transferPerson);
+                    TransferPerson transferPerson = mFactory.readTransferPerson(mReader);
+                    long id = insert(contentResolver, transferPerson);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transfer_people')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -477,15 +554,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.TransferModel.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    TransferModel transferModel = mFactory.getTransferModel(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transferModel);
+                    TransferModel transferModel = mFactory.readTransferModel(mReader);
+                    long id = insert(contentResolver, transferModel);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transfer_models')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -496,16 +572,15 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.Attachment.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    Attachment attachment = mFactory.getAttachment(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, attachment);
+                    Attachment attachment = mFactory.readAttachment(mReader);
+                    long id = insert(contentResolver, attachment);
                     mFactory.cacheAttachment(attachment.mUUID, id);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'attachments')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -516,15 +591,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.TransactionAttachment.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    TransactionAttachment transactionAttachment = mFactory.getTransactionAttachment(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transactionAttachment);
+                    TransactionAttachment transactionAttachment = mFactory.readTransactionAttachment(mReader);
+                    long id = insert(contentResolver, transactionAttachment);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transaction_attachments')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -535,15 +609,14 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             if (JSONDatabase.TransferAttachment.ARRAY.equals(mReader.readName())) {
                 mReader.beginArray();
                 while (mReader.hasArrayAnotherObject()) {
-                    JSONObject object = mReader.readObject();
-                    TransferAttachment transferAttachment = mFactory.getTransferAttachment(object);
-                    long id = SQLDatabaseImporter.insert(contentResolver, transferAttachment);
+                    TransferAttachment transferAttachment = mFactory.readTransferAttachment(mReader);
+                    long id = insert(contentResolver, transferAttachment);
                 }
                 mReader.endArray();
             } else {
                 throw new ImportException("Wrong array name (expected = 'transfer_attachments')");
             }
-        } catch (IOException | JSONException e) {
+        } catch (IOException e) {
             throw new ImportException(e.getMessage());
         }
     }
@@ -556,4 +629,165 @@ public class JSONDatabaseImporter implements DatabaseImporter {
             throw new ImportException(e.getMessage());
         }
     }
+
+    private long insert(ContentResolver contentResolver, Currency currency) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(currency);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, currency);
+    }
+
+    private long insert(ContentResolver contentResolver, Wallet wallet) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(wallet);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, wallet);
+    }
+
+    private long insert(ContentResolver contentResolver, Category category) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(category);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, category);
+    }
+
+    private long insert(ContentResolver contentResolver, Event event) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(event);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, event);
+    }
+
+    private long insert(ContentResolver contentResolver, Place place) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(place);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, place);
+    }
+
+    private long insert(ContentResolver contentResolver, Person person) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(person);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, person);
+    }
+
+    private long insert(ContentResolver contentResolver, EventPerson eventPerson) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(eventPerson);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, eventPerson);
+    }
+
+    private long insert(ContentResolver contentResolver, Debt debt) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(debt);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, debt);
+    }
+
+    private long insert(ContentResolver contentResolver, DebtPerson debtPerson) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(debtPerson);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, debtPerson);
+    }
+
+    private long insert(ContentResolver contentResolver, Budget budget) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(budget);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, budget);
+    }
+
+    private long insert(ContentResolver contentResolver, BudgetWallet budgetWallet) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(budgetWallet);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, budgetWallet);
+    }
+
+    private long insert(ContentResolver contentResolver, Saving saving) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(saving);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, saving);
+    }
+
+    private long insert(ContentResolver contentResolver, RecurrentTransaction recurrentTransaction) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(recurrentTransaction);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, recurrentTransaction);
+    }
+
+    private long insert(ContentResolver contentResolver, RecurrentTransfer recurrentTransfer) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(recurrentTransfer);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, recurrentTransfer);
+    }
+
+    private long insert(ContentResolver contentResolver, Transaction transaction) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transaction);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transaction);
+    }
+
+    private long insert(ContentResolver contentResolver, TransactionPerson transactionPerson) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transactionPerson);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transactionPerson);
+    }
+
+    private long insert(ContentResolver contentResolver, TransactionModel transactionModel) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transactionModel);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transactionModel);
+    }
+
+    private long insert(ContentResolver contentResolver, Transfer transfer) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transfer);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transfer);
+    }
+
+    private long insert(ContentResolver contentResolver, TransferPerson transferPerson) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transferPerson);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transferPerson);
+    }
+
+    private long insert(ContentResolver contentResolver, TransferModel transferModel) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transferModel);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transferModel);
+    }
+
+    private long insert(ContentResolver contentResolver, Attachment attachment) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(attachment);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, attachment);
+    }
+
+    private long insert(ContentResolver contentResolver, TransactionAttachment transactionAttachment) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transactionAttachment);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transactionAttachment);
+    }
+
+    private long insert(ContentResolver contentResolver, TransferAttachment transferAttachment) throws ImportException {
+        if (mBulkImporter != null) {
+            return mBulkImporter.insert(transferAttachment);
+        }
+        return SQLDatabaseImporter.insert(contentResolver, transferAttachment);
+    }
 }
\ No newline at end of file
@@ -106,6 +106,11 @@ public class LegacyDatabaseImporter implements DatabaseImporter {
         // no header to check :(
     }
 
+    @Override
+    public void importDeletedItems(ContentResolver contentResolver) throws ImportException {
+        // not supported in legacy database
+    }
+
     @Override
     public void importCurrencies(ContentResolver contentResolver) throws ImportException {
         // not supported in legacy database
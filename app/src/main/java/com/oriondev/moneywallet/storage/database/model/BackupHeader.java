@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.database.model;
+
+/**
+ * This class contains the information that identifies a backup inside a chain of backups.
+ * A full backup has no base, while an incremental backup only contains the items that have
+ * been changed after the watermark of the backup it is based on.
+ */
+public class BackupHeader {
+
+    public String mId;
+    public String mBase;
+    public long mSince;
+    public long mWatermark;
+}
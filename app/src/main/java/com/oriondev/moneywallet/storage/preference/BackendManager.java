@@ -21,6 +21,7 @@ package com.oriondev.moneywallet.storage.preference;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.text.TextUtils;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -40,6 +41,9 @@ public class BackendManager {
     private static final String BACKEND_AUTO_BACKUP_FOLDER = "auto_backup_folder_";
     private static final String BACKEND_AUTO_BACKUP_PASSWORD = "auto_backup_password_";
     private static final String BACKEND_AUTO_BACKUP_LAST_TIME = "auto_backup_last_time_";
+    private static final String BACKEND_AUTO_BACKUP_CHAIN_ID = "auto_backup_chain_id_";
+    private static final String BACKEND_AUTO_BACKUP_CHAIN_WATERMARK = "auto_backup_chain_watermark_";
+    private static final String BACKEND_AUTO_BACKUP_CHAIN_LENGTH = "auto_backup_chain_length_";
 
     private static SharedPreferences mPreferences;
 
@@ -62,6 +66,7 @@ public class BackendManager {
                     .remove(BACKEND_AUTO_BACKUP_PASSWORD + backendId)
                     .remove(BACKEND_AUTO_BACKUP_LAST_TIME + backendId)
                     .apply();
+            resetAutoBackupChain(backendId);
         }
         mPreferences.edit().putStringSet(AUTO_BACKUP_ENABLED_SERVICES, backendIdSet).apply();
     }
@@ -79,10 +84,18 @@ public class BackendManager {
     }
 
     public static void setAutoBackupFolder(String backendId, String folder) {
+        if (!TextUtils.equals(folder, getAutoBackupFolder(backendId))) {
+            // the incremental backups must be saved in the same folder of the full backup
+            resetAutoBackupChain(backendId);
+        }
         mPreferences.edit().putString(BACKEND_AUTO_BACKUP_FOLDER + backendId, folder).apply();
     }
 
     public static void setAutoBackupPassword(String backendId, String password) {
+        if (!TextUtils.equals(password, getAutoBackupPassword(backendId))) {
+            // all the backups of a chain must be encrypted with the same password
+            resetAutoBackupChain(backendId);
+        }
         mPreferences.edit().putString(BACKEND_AUTO_BACKUP_PASSWORD + backendId, password).apply();
     }
 
@@ -90,6 +103,34 @@ public class BackendManager {
         mPreferences.edit().putLong(BACKEND_AUTO_BACKUP_LAST_TIME + backendId, timestamp).apply();
     }
 
+    /**
+     * Store the last backup of the chain of automatic backups of the backend: the next
+     * automatic backup can be an incremental backup based on it.
+     * @param backendId id of the backend.
+     * @param backupId id of the last backup of the chain.
+     * @param watermark time in millis of the data saved inside the last backup.
+     * @param length number of incremental backups of the chain.
+     */
+    public static void setAutoBackupChain(String backendId, String backupId, long watermark, int length) {
+        mPreferences.edit()
+                .putString(BACKEND_AUTO_BACKUP_CHAIN_ID + backendId, backupId)
+                .putLong(BACKEND_AUTO_BACKUP_CHAIN_WATERMARK + backendId, watermark)
+                .putInt(BACKEND_AUTO_BACKUP_CHAIN_LENGTH + backendId, length)
+                .apply();
+    }
+
+    /**
+     * Forget the chain of automatic backups: the next automatic backup will be a full backup.
+     * @param backendId id of the backend.
+     */
+    public static void resetAutoBackupChain(String backendId) {
+        mPreferences.edit()
+                .remove(BACKEND_AUTO_BACKUP_CHAIN_ID + backendId)
+                .remove(BACKEND_AUTO_BACKUP_CHAIN_WATERMARK + backendId)
+                .remove(BACKEND_AUTO_BACKUP_CHAIN_LENGTH + backendId)
+                .apply();
+    }
+
     public static Set<String> getAutoBackupEnabledServices() {
         return mPreferences.getStringSet(AUTO_BACKUP_ENABLED_SERVICES, null);
     }
@@ -126,4 +167,16 @@ public class BackendManager {
         }
         return mPreferences.getLong(BACKEND_AUTO_BACKUP_LAST_TIME + backendId, System.currentTimeMillis());
     }
+
+    public static String getAutoBackupChainId(String backendId) {
+        return mPreferences.getString(BACKEND_AUTO_BACKUP_CHAIN_ID + backendId, null);
+    }
+
+    public static long getAutoBackupChainWatermark(String backendId) {
+        return mPreferences.getLong(BACKEND_AUTO_BACKUP_CHAIN_WATERMARK + backendId, 0L);
+    }
+
+    public static int getAutoBackupChainLength(String backendId) {
+        return mPreferences.getInt(BACKEND_AUTO_BACKUP_CHAIN_LENGTH + backendId, 0);
+    }
 }
\ No newline at end of file
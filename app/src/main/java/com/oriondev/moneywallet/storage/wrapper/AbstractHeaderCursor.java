@@ -25,8 +25,6 @@ import android.database.Cursor;
 import android.database.DataSetObserver;
 import android.util.SparseArray;
 
-import com.oriondev.moneywallet.model.Pair;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,17 +38,18 @@ public abstract class AbstractHeaderCursor<H> extends AbstractCursor {
 
     private final Cursor mCursor;
     private final SparseArray<H> mHeaders;
-    private final List<Pair<Integer, Integer>> mIndices;
+    private final List<Entry> mEntries;
     private final int mHeaderColumnCount;
     private final String[] mColumnNames;
 
     private boolean mIsHeader;
     private int mPosition;
+    private int mCount;
 
     /*package-local*/ AbstractHeaderCursor(Cursor cursor) {
         mCursor = cursor;
         mHeaders = new SparseArray<>();
-        mIndices = new ArrayList<>();
+        mEntries = new ArrayList<>();
         String[] headerColumnNames = getHeaderColumnNames();
         mHeaderColumnCount = headerColumnNames.length;
         mColumnNames = generateColumnNames(headerColumnNames, cursor);
@@ -82,11 +81,32 @@ public abstract class AbstractHeaderCursor<H> extends AbstractCursor {
     protected void addHeader(H header) {
         int id = mHeaders.size();
         mHeaders.put(id, header);
-        mIndices.add(new Pair<>(TYPE_HEADER, id));
+        mEntries.add(new Entry(TYPE_HEADER, mCount, id, 1));
+        mCount++;
     }
 
     protected void addItem(int position) {
-        mIndices.add(new Pair<>(TYPE_ITEM, position));
+        addItems(position, 1);
+    }
+
+    /**
+     * Add a range of consecutive items of the wrapped cursor. Consecutive items are stored as a
+     * single entry, so the memory used by this wrapper depends on the number of headers and not
+     * on the number of rows of the wrapped cursor.
+     * @param position of the first item inside the wrapped cursor.
+     * @param count number of items to add.
+     */
+    protected void addItems(int position, int count) {
+        if (count <= 0) {
+            return;
+        }
+        Entry last = mEntries.isEmpty() ? null : mEntries.get(mEntries.size() - 1);
+        if (last != null && last.mType == TYPE_ITEM && last.mValue + last.mCount == position) {
+            last.mCount += count;
+        } else {
+            mEntries.add(new Entry(TYPE_ITEM, mCount, position, count));
+        }
+        mCount += count;
     }
 
     /**
@@ -96,15 +116,15 @@ public abstract class AbstractHeaderCursor<H> extends AbstractCursor {
      */
     @Override
     public int getCount() {
-        return mIndices.size();
+        return mCount;
     }
 
     @Override
     public boolean onMove(int oldPosition, int newPosition) {
-        if (newPosition < mIndices.size()) {
-            Pair<Integer, Integer> item = mIndices.get(newPosition);
-            mIsHeader = item.getL() == TYPE_HEADER;
-            mPosition = item.getR();
+        if (newPosition < mCount) {
+            Entry entry = findEntry(newPosition);
+            mIsHeader = entry.mType == TYPE_HEADER;
+            mPosition = entry.mValue + (newPosition - entry.mStart);
             if (!mIsHeader) {
                 mCursor.moveToPosition(mPosition);
             }
@@ -113,6 +133,20 @@ public abstract class AbstractHeaderCursor<H> extends AbstractCursor {
         return false;
     }
 
+    private Entry findEntry(int position) {
+        int low = 0;
+        int high = mEntries.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (mEntries.get(middle).mStart <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return mEntries.get(low);
+    }
+
     @Override
     public String[] getColumnNames() {
         return mColumnNames;
@@ -226,4 +260,19 @@ public abstract class AbstractHeaderCursor<H> extends AbstractCursor {
     public boolean requery() {
         return mCursor.requery();
     }
+
+    private static class Entry {
+
+        private final int mType;
+        private final int mStart;
+        private final int mValue;
+        private int mCount;
+
+        private Entry(int type, int start, int value, int count) {
+            mType = type;
+            mStart = start;
+            mValue = value;
+            mCount = count;
+        }
+    }
 }
\ No newline at end of file
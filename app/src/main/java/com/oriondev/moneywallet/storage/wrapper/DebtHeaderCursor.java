@@ -114,6 +114,15 @@ public class DebtHeaderCursor extends AbstractHeaderCursor<DebtHeaderCursor.Head
         return null;
     }
 
+    /**
+     * Return the total money of the current header without the string round trip of the
+     * {@link #COLUMN_HEADER_MONEY} column. The returned object must not be modified.
+     * @return the money of the current header or null if the cursor is not on a header.
+     */
+    public Money getHeaderMoney() {
+        return isHeader() ? getHeader().mMoney : null;
+    }
+
     @Override
     protected short getHeaderShort(int index) {
         return 0;
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.storage.wrapper;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.util.LruCache;
+
+import com.oriondev.moneywallet.storage.database.DataContentProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class works as a read only cursor on top of a content uri that is queried one page at
+ * a time. The rows are sorted by a key column and by the id column (both descending) and each
+ * page is queried starting from the key of the last row of the previous one (keyset pagination)
+ * so that the database never needs to skip the rows that have already been read.
+ * The first page is always kept in memory and it is used to register the observers, while only
+ * a few of the other pages are cached at the same time.
+ */
+public class PagedCursor extends AbstractCursor {
+
+    private static final int MAX_CACHED_PAGES = 4;
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final String mKeyColumn;
+    private final String mIdColumn;
+    private final int mPageSize;
+    private final int mCount;
+
+    private final Cursor mFirstPage;
+    private final LruCache<Integer, Cursor> mPages;
+    private final List<String> mPageLastKeys;
+    private final List<Long> mPageLastIds;
+
+    private Cursor mPage;
+
+    public PagedCursor(ContentResolver contentResolver, Uri uri, String[] projection, String selection,
+                       String[] selectionArgs, String keyColumn, String idColumn, int pageSize, int count) {
+        mResolver = contentResolver;
+        mUri = uri.buildUpon().appendQueryParameter(DataContentProvider.QUERY_PARAMETER_LIMIT,
+                String.valueOf(pageSize)).build();
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mKeyColumn = keyColumn;
+        mIdColumn = idColumn;
+        mPageSize = pageSize;
+        mCount = count;
+        mPageLastKeys = new ArrayList<>();
+        mPageLastIds = new ArrayList<>();
+        mPages = new LruCache<Integer, Cursor>(MAX_CACHED_PAGES) {
+
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Cursor oldValue, Cursor newValue) {
+                oldValue.close();
+            }
+
+        };
+        mFirstPage = queryPage(0);
+        if (mFirstPage == null) {
+            throw new IllegalStateException("Content provider returned a null cursor for uri: " + uri);
+        }
+        mPage = mFirstPage;
+    }
+
+    private Cursor queryPage(int page) {
+        String selection;
+        String[] selectionArgs;
+        if (page == 0) {
+            selection = mSelection;
+            selectionArgs = mSelectionArgs;
+        } else {
+            String keySelection = mKeyColumn + " < ? OR (" + mKeyColumn + " = ? AND " + mIdColumn + " < ?)";
+            selection = mSelection != null ? "(" + mSelection + ") AND (" + keySelection + ")" : keySelection;
+            int argumentCount = mSelectionArgs != null ? mSelectionArgs.length : 0;
+            selectionArgs = new String[argumentCount + 3];
+            if (argumentCount > 0) {
+                System.arraycopy(mSelectionArgs, 0, selectionArgs, 0, argumentCount);
+            }
+            String lastKey = mPageLastKeys.get(page - 1);
+            selectionArgs[argumentCount] = lastKey;
+            selectionArgs[argumentCount + 1] = lastKey;
+            selectionArgs[argumentCount + 2] = String.valueOf(mPageLastIds.get(page - 1));
+        }
+        String sortOrder = mKeyColumn + " DESC, " + mIdColumn + " DESC";
+        Cursor cursor = mResolver.query(mUri, mProjection, selection, selectionArgs, sortOrder);
+        if (cursor != null && page == mPageLastKeys.size() && cursor.moveToLast()) {
+            mPageLastKeys.add(cursor.getString(cursor.getColumnIndex(mKeyColumn)));
+            mPageLastIds.add(cursor.getLong(cursor.getColumnIndex(mIdColumn)));
+        }
+        return cursor;
+    }
+
+    private Cursor getPage(int page) {
+        if (page == 0) {
+            return mFirstPage;
+        }
+        Cursor cursor = mPages.get(page);
+        if (cursor == null) {
+            // the key of the previous page is required to query the current one:
+            // if the user has jumped to a far position, all the missing keys are
+            // loaded first (each query is resolved using the indexes).
+            for (int i = mPageLastKeys.size(); i < page; i++) {
+                Cursor previous = queryPage(i);
+                if (previous == null) {
+                    return null;
+                }
+                mPages.put(i, previous);
+                if (mPageLastKeys.size() <= i) {
+                    // the page is empty: the content has changed after the count
+                    // has been computed and the cursor will be reloaded soon.
+                    return null;
+                }
+            }
+            cursor = queryPage(page);
+            if (cursor != null) {
+                mPages.put(page, cursor);
+            }
+        }
+        return cursor;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        Cursor page = getPage(newPosition / mPageSize);
+        if (page != null && page.moveToPosition(newPosition % mPageSize)) {
+            mPage = page;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mFirstPage.getColumnNames();
+    }
+
+    @Override
+    public String getString(int column) {
+        return mPage.getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return mPage.getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mPage.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mPage.getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return mPage.getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mPage.getDouble(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        return mPage.getType(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mPage.isNull(column);
+    }
+
+    @Override
+    public void deactivate() {
+        mFirstPage.deactivate();
+        super.deactivate();
+    }
+
+    @Override
+    public void close() {
+        mPages.evictAll();
+        mFirstPage.close();
+        super.close();
+    }
+
+    @Override
+    public void registerContentObserver(ContentObserver observer) {
+        mFirstPage.registerContentObserver(observer);
+    }
+
+    @Override
+    public void unregisterContentObserver(ContentObserver observer) {
+        mFirstPage.unregisterContentObserver(observer);
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        mFirstPage.registerDataSetObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mFirstPage.unregisterDataSetObserver(observer);
+    }
+}
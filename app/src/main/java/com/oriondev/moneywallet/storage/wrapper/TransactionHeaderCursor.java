@@ -51,15 +51,37 @@ public class TransactionHeaderCursor extends AbstractHeaderCursor<TransactionHea
     private final Group mGroup;
     private final Date mLowerBound;
     private final Date mUpperBound;
+    private final Cursor mDays;
 
     public TransactionHeaderCursor(Cursor cursor, Group group, Date lowerBound, Date upperBound) {
         super(cursor);
         mGroup = group;
         mLowerBound = lowerBound;
         mUpperBound = upperBound;
+        mDays = null;
         generateHeaders(cursor);
     }
 
+    /**
+     * Create a header cursor on top of a cursor that contains the transactions sorted by date
+     * (descending) using a second cursor that contains the number of transactions and the total
+     * money of each day, sorted in the same way. The headers are generated from the days only, so
+     * the transactions cursor is never iterated and it can be loaded lazily (eg. a PagedCursor).
+     * @param cursor that contains the transactions.
+     * @param days cursor that contains the aggregated data of each day.
+     * @param group type used to generate the headers.
+     * @param lowerBound that may be used to limit the date range of the first header.
+     * @param upperBound that may be used to limit the date range of the last header.
+     */
+    public TransactionHeaderCursor(Cursor cursor, Cursor days, Group group, Date lowerBound, Date upperBound) {
+        super(cursor);
+        mGroup = group;
+        mLowerBound = lowerBound;
+        mUpperBound = upperBound;
+        mDays = days;
+        generateHeadersFromDays(days);
+    }
+
     @Override
     protected void generateHeaders(Cursor cursor) {
         int indexTransactionDirection = cursor.getColumnIndex(Contract.Transaction.DIRECTION);
@@ -96,6 +118,30 @@ public class TransactionHeaderCursor extends AbstractHeaderCursor<TransactionHea
         }
     }
 
+    private void generateHeadersFromDays(Cursor days) {
+        int indexDay = days.getColumnIndex(Contract.TransactionDay.DAY);
+        int indexCurrency = days.getColumnIndex(Contract.TransactionDay.CURRENCY);
+        int indexCount = days.getColumnIndex(Contract.TransactionDay.COUNT);
+        int indexMoney = days.getColumnIndex(Contract.TransactionDay.MONEY);
+        if (days.moveToFirst()) {
+            Header header = null;
+            int position = 0;
+            do {
+                Date date = DateUtils.getDateFromSQLDateString(days.getString(indexDay));
+                if (header == null || !header.isInBounds(date)) {
+                    header = new Header(mGroup, mLowerBound, mUpperBound, date);
+                    addHeader(header);
+                }
+                int count = days.getInt(indexCount);
+                addItems(position, count);
+                position += count;
+                if (!days.isNull(indexMoney)) {
+                    header.addMoney(days.getString(indexCurrency), days.getLong(indexMoney));
+                }
+            } while (days.moveToNext());
+        }
+    }
+
     @Override
     protected String[] getHeaderColumnNames() {
         return new String[] {
@@ -123,6 +169,15 @@ public class TransactionHeaderCursor extends AbstractHeaderCursor<TransactionHea
         return null;
     }
 
+    /**
+     * Return the total money of the current header without the string round trip of the
+     * {@link #COLUMN_HEADER_MONEY} column. The returned object must not be modified.
+     * @return the money of the current header or null if the cursor is not on a header.
+     */
+    public Money getHeaderMoney() {
+        return isHeader() ? getHeader().mMoney : null;
+    }
+
     @Override
     protected short getHeaderShort(int index) {
         return 0;
@@ -160,9 +215,17 @@ public class TransactionHeaderCursor extends AbstractHeaderCursor<TransactionHea
         return false;
     }
 
+    @Override
+    public void close() {
+        if (mDays != null) {
+            mDays.close();
+        }
+        super.close();
+    }
+
     /*package-local*/ static class Header extends DateRangeHeader {
 
-        private Money mMoney;
+        private final Money mMoney;
 
         private Header(Group group, Date lowerBound, Date upperBound, Date date) {
             super(group, lowerBound, upperBound, date);
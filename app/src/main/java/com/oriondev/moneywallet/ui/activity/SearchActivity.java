@@ -26,12 +26,14 @@ import android.content.Loader;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import androidx.annotation.DrawableRes;
 import androidx.annotation.MenuRes;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.appcompat.widget.Toolbar;
 import android.text.Editable;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
@@ -62,6 +64,8 @@ public class SearchActivity extends SinglePanelActivity implements LoaderManager
     private static final int LOADER_ID = 4325;
     private static final String ARG_QUERY = "SearchActivity::Loader::QueryString";
 
+    private static final long SEARCH_DELAY = 150L;
+
     private EditText mSearchEditText;
     private AdvancedRecyclerView mAdvancedRecyclerView;
 
@@ -69,6 +73,17 @@ public class SearchActivity extends SinglePanelActivity implements LoaderManager
 
     private boolean[] mSearchFlags;
 
+    private final Handler mHandler = new Handler();
+
+    private final Runnable mSearchRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            loadTransactionAsync(mSearchEditText.getText().toString());
+        }
+
+    };
+
     @Override
     protected void onCreatePanelView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState) {
         mAdvancedRecyclerView = new AdvancedRecyclerView(this);
@@ -107,8 +122,11 @@ public class SearchActivity extends SinglePanelActivity implements LoaderManager
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
+                // the search is delayed until the user stops typing: each restart of the
+                // loader cancels the query that is still running for the previous text
                 mAdvancedRecyclerView.setState(AdvancedRecyclerView.State.LOADING);
-                loadTransactionAsync(s.toString());
+                mHandler.removeCallbacks(mSearchRunnable);
+                mHandler.postDelayed(mSearchRunnable, SEARCH_DELAY);
             }
 
             @Override
@@ -122,6 +140,7 @@ public class SearchActivity extends SinglePanelActivity implements LoaderManager
     }
 
     private void loadTransactionAsync(String query) {
+        mHandler.removeCallbacks(mSearchRunnable);
         Bundle args = new Bundle();
         args.putString(ARG_QUERY, query);
         getLoaderManager().restartLoader(LOADER_ID, args, SearchActivity.this);
@@ -216,36 +235,22 @@ public class SearchActivity extends SinglePanelActivity implements LoaderManager
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         String query = args.getString(ARG_QUERY);
-        Uri uri = DataContentProvider.CONTENT_TRANSACTIONS;
-        StringBuilder selection = new StringBuilder();
-        if (mSearchFlags[0]) {appendSelection(selection, Contract.Transaction.DESCRIPTION);}
-        if (mSearchFlags[1]) {appendSelection(selection, Contract.Transaction.CATEGORY_NAME);}
-        if (mSearchFlags[2]) {appendSelection(selection, Contract.Transaction.DATE);}
-        if (mSearchFlags[3]) {appendSelection(selection, Contract.Transaction.MONEY);}
-        if (mSearchFlags[4]) {appendSelection(selection, Contract.Transaction.NOTE);}
-        if (mSearchFlags[5]) {appendSelection(selection, Contract.Transaction.EVENT_NAME);}
-        if (mSearchFlags[6]) {appendSelection(selection, Contract.Transaction.PLACE_NAME);}
-        String[] selectionArgs = getSelectionArguments(query);
-        String sortOrder = Contract.Transaction.DATE + " DESC";
-        return new CursorLoader(this, uri, null, selection.toString(), selectionArgs, sortOrder);
-    }
-
-    private void appendSelection(StringBuilder builder, String column) {
-        if (builder.length() != 0) {
-            builder.append(" OR ");
+        Uri.Builder builder = DataContentProvider.CONTENT_TRANSACTION_SEARCH.buildUpon();
+        List<String> columns = new ArrayList<>();
+        if (mSearchFlags[0]) {columns.add(Contract.Transaction.DESCRIPTION);}
+        if (mSearchFlags[1]) {columns.add(Contract.Transaction.CATEGORY_NAME);}
+        if (mSearchFlags[2]) {columns.add(Contract.Transaction.DATE);}
+        if (mSearchFlags[3]) {columns.add(Contract.Transaction.MONEY);}
+        if (mSearchFlags[4]) {columns.add(Contract.Transaction.NOTE);}
+        if (mSearchFlags[5]) {columns.add(Contract.Transaction.EVENT_NAME);}
+        if (mSearchFlags[6]) {columns.add(Contract.Transaction.PLACE_NAME);}
+        if (!columns.isEmpty()) {
+            // when no column is selected the query is ignored and all the transactions are shown
+            builder.appendQueryParameter(DataContentProvider.QUERY_PARAMETER_SEARCH_QUERY, query);
+            builder.appendQueryParameter(DataContentProvider.QUERY_PARAMETER_SEARCH_COLUMNS, TextUtils.join(",", columns));
         }
-        builder.append(column);
-        builder.append(" LIKE '%'||?||'%'");
-    }
-
-    private String[] getSelectionArguments(String query) {
-        List<String> arguments = new ArrayList<>();
-        for (boolean flag : mSearchFlags) {
-            if (flag) {
-                arguments.add(query);
-            }
-        }
-        return arguments.toArray(new String[arguments.size()]);
+        String sortOrder = Contract.Transaction.SEARCH_RANK + " DESC, " + Contract.Transaction.DATE + " DESC";
+        return new CursorLoader(this, builder.build(), null, null, null, sortOrder);
     }
 
     @Override
@@ -282,6 +287,12 @@ public class SearchActivity extends SinglePanelActivity implements LoaderManager
         loadTransactionAsync(mSearchEditText.getText().toString());
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacks(mSearchRunnable);
+    }
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -106,7 +106,12 @@ public class DebtCursorAdapter extends AbstractCursorAdapter {
         switch (cursor.getInt(mIndexHeaderType)) {
             case DebtHeaderCursor.HEADER_CURRENT:
                 Contract.DebtType debtType = Contract.DebtType.fromValue(cursor.getInt(mIndexDebtType));
-                Money money = Money.parse(cursor.getString(mIndexHeaderMoney));
+                Money money;
+                if (cursor instanceof DebtHeaderCursor) {
+                    money = ((DebtHeaderCursor) cursor).getHeaderMoney();
+                } else {
+                    money = Money.parse(cursor.getString(mIndexHeaderMoney));
+                }
                 if (debtType != null) {
                     switch (debtType) {
                         case DEBT:
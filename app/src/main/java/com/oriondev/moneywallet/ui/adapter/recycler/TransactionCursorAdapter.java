@@ -117,7 +117,12 @@ public class TransactionCursorAdapter extends AbstractCursorAdapter<RecyclerView
         Date start = DateUtils.getDateFromSQLDateTimeString(cursor.getString(mIndexHeaderStartDate));
         Date end = DateUtils.getDateFromSQLDateTimeString(cursor.getString(mIndexHeaderEndDate));
         DateFormatter.applyDateRange(holder.mLeftTextView, start, end);
-        Money money = Money.parse(cursor.getString(mIndexHeaderMoney));
+        Money money;
+        if (cursor instanceof TransactionHeaderCursor) {
+            money = ((TransactionHeaderCursor) cursor).getHeaderMoney();
+        } else {
+            money = Money.parse(cursor.getString(mIndexHeaderMoney));
+        }
         mMoneyFormatter.applyTinted(holder.mRightTextView, money);
     }
 
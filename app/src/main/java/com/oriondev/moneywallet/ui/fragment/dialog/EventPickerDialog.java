@@ -145,9 +145,11 @@ public class EventPickerDialog extends DialogFragment implements EventSelectorCu
             String where = null;
             String[] whereArgs = null;
             if (mFilterDate != null) {
-                where = "DATE(?) BETWEEN DATE(" + Contract.Event.START_DATE + ") AND (" +
-                        Contract.Event.END_DATE + ")";
-                whereArgs = new String[] {DateUtils.getSQLDateString(mFilterDate)};
+                // the columns are compared as iso strings: they are not wrapped inside a function
+                where = Contract.Event.START_DATE + " < DATE(?, '+1 day') AND " +
+                        Contract.Event.END_DATE + " >= DATE(?)";
+                String filterDate = DateUtils.getSQLDateString(mFilterDate);
+                whereArgs = new String[] {filterDate, filterDate};
             }
             String sortOrder = Contract.Event.NAME;
             return new CursorLoader(activity, uri, projection, where, whereArgs, sortOrder);
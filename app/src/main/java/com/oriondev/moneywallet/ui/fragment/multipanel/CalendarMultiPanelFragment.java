@@ -169,8 +169,9 @@ public class CalendarMultiPanelFragment extends MultiPanelAppBarItemFragment imp
                 selection = Contract.Transaction.WALLET_ID + " = ?";
                 arguments = new String[] {String.valueOf(currentWallet)};
             }
-            selection += " AND DATE(" + Contract.Transaction.DATE + ") == DATE('" + DateUtils.getSQLDateString(date) + "')";
-            System.out.println(selection);
+            String day = DateUtils.getSQLDateString(date);
+            selection += " AND " + Contract.Transaction.DATE + " >= '" + day + "'";
+            selection += " AND " + Contract.Transaction.DATE + " < DATE('" + day + "', '+1 day')";
             String sortOrder = Contract.Transaction.DATE + " DESC";
             return new CursorLoader(activity, uri, null, selection, arguments, sortOrder);
         }
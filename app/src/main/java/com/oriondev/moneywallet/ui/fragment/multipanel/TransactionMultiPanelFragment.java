@@ -164,16 +164,28 @@ public class TransactionMultiPanelFragment extends MultiPanelCursorListItemFragm
                 selection = Contract.Transaction.WALLET_ID + " = ?";
                 selectionArgs = new String[] {String.valueOf(currentWallet)};
             }
-            selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('now', 'localtime')";
+            selection += " AND " + Contract.Transaction.DATE + " <= DATETIME('now', 'localtime')";
             if (startDate != null) {
-                selection += " AND DATETIME(" + Contract.Transaction.DATE + ") >= DATETIME('" + DateUtils.getSQLDateTimeString(startDate) + "')";
+                selection += " AND " + Contract.Transaction.DATE + " >= '" + DateUtils.getSQLDateTimeString(startDate) + "'";
             }
             if (endDate != null) {
-                selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('" + DateUtils.getSQLDateTimeString(endDate) + "')";
+                selection += " AND " + Contract.Transaction.DATE + " <= '" + DateUtils.getSQLDateTimeString(endDate) + "'";
             }
             String sortOrder = Contract.Transaction.DATE + " DESC";
             Group groupType = PreferenceManager.getCurrentGroupType();
-            return new WrappedCursorLoader(activity, uri, null, selection, selectionArgs, sortOrder, groupType, startDate, endDate);
+            String[] projection = new String[] {
+                    Contract.Transaction.ID,
+                    Contract.Transaction.DATE,
+                    Contract.Transaction.DIRECTION,
+                    Contract.Transaction.MONEY,
+                    Contract.Transaction.DESCRIPTION,
+                    Contract.Transaction.CATEGORY_NAME,
+                    Contract.Transaction.CATEGORY_ICON,
+                    Contract.Transaction.WALLET_CURRENCY,
+                    Contract.Transaction.CONFIRMED,
+                    Contract.Transaction.COUNT_IN_TOTAL
+            };
+            return new WrappedCursorLoader(activity, uri, projection, selection, selectionArgs, sortOrder, groupType, startDate, endDate);
         }
         return null;
     }
@@ -20,6 +20,7 @@
 package com.oriondev.moneywallet.ui.fragment.primary;
 
 import android.app.Activity;
+import android.content.ContentUris;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
@@ -74,7 +75,7 @@ public class BudgetListFragment extends CursorListFragment implements BudgetCurs
             // unpack the argument bundle
             boolean expired = arguments.getBoolean(ARG_BUDGET_EXPIRED, true);
             // query the content provider
-            Uri uri = DataContentProvider.CONTENT_BUDGETS;
+            Uri uri;
             String[] projection = new String[] {
                     Contract.Budget.ID,
                     Contract.Budget.TYPE,
@@ -86,14 +87,14 @@ public class BudgetListFragment extends CursorListFragment implements BudgetCurs
                     Contract.Budget.PROGRESS
             };
             String selection;
-            String[] selectionArgs;
             long currentWallet = PreferenceManager.getCurrentWallet();
             if (currentWallet == PreferenceManager.TOTAL_WALLET_ID) {
+                uri = DataContentProvider.CONTENT_BUDGETS;
                 selection = Contract.Budget.HAS_WALLET_IN_TOTAL + " = 1 AND ";
-                selectionArgs = null;
             } else {
-                selection = Contract.Budget.WALLET_IDS + " LIKE '%<'||?||'>%' AND ";
-                selectionArgs = new String[] {String.valueOf(currentWallet)};
+                uri = ContentUris.withAppendedId(DataContentProvider.CONTENT_WALLETS, currentWallet);
+                uri = Uri.withAppendedPath(uri, "budgets");
+                selection = "";
             }
             String sortOrder = Contract.Budget.END_DATE;
             if (expired) {
@@ -103,7 +104,7 @@ public class BudgetListFragment extends CursorListFragment implements BudgetCurs
                 selection += Contract.Budget.END_DATE + " >= DATE('now', 'localtime')";
                 sortOrder += " ASC";
             }
-            return new CursorLoader(activity, uri, projection, selection, selectionArgs, sortOrder);
+            return new CursorLoader(activity, uri, projection, selection, null, sortOrder);
         }
         return null;
     }
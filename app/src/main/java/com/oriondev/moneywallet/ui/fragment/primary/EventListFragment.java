@@ -84,10 +84,10 @@ public class EventListFragment extends CursorListFragment implements EventCursor
             String selection;
             String sortOrder;
             if (completed) {
-                selection = "DATE(" + Contract.Event.END_DATE + ") < DATE('now')";
+                selection = Contract.Event.END_DATE + " < DATE('now')";
                 sortOrder = Contract.Event.END_DATE + " DESC";
             } else {
-                selection = "DATE(" + Contract.Event.END_DATE + ") >= DATE('now')";
+                selection = Contract.Event.END_DATE + " >= DATE('now')";
                 sortOrder = Contract.Event.END_DATE + " ASC";
             }
             return new CursorLoader(activity, uri, projection, selection, null, sortOrder);
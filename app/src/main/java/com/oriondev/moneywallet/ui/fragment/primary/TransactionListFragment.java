@@ -23,7 +23,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -39,6 +38,7 @@ import com.oriondev.moneywallet.model.Group;
 import com.oriondev.moneywallet.storage.database.Contract;
 import com.oriondev.moneywallet.storage.database.DataContentProvider;
 import com.oriondev.moneywallet.storage.preference.PreferenceManager;
+import com.oriondev.moneywallet.storage.wrapper.PagedCursor;
 import com.oriondev.moneywallet.storage.wrapper.TransactionHeaderCursor;
 import com.oriondev.moneywallet.ui.activity.PeriodDetailActivity;
 import com.oriondev.moneywallet.ui.adapter.recycler.AbstractCursorAdapter;
@@ -68,7 +68,6 @@ public class TransactionListFragment extends CursorListFragment implements Trans
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         Activity activity = getActivity();
         if (activity != null) {
-            Uri uri = DataContentProvider.CONTENT_TRANSACTIONS;
             String selection;
             String[] arguments;
             long currentWallet = PreferenceManager.getCurrentWallet();
@@ -79,11 +78,9 @@ public class TransactionListFragment extends CursorListFragment implements Trans
                 selection = Contract.Transaction.WALLET_ID + " = ?";
                 arguments = new String[] {String.valueOf(currentWallet)};
             }
-            selection += " AND DATETIME(" + Contract.Transaction.DATE + ") <= DATETIME('now', 'localtime')";
-            String sortOrder = Contract.Transaction.DATE + " DESC";
+            selection += " AND " + Contract.Transaction.DATE + " <= DATETIME('now', 'localtime')";
             Group groupType = PreferenceManager.getCurrentGroupType();
-            return new WrappedCursorLoader(activity, uri, null, selection, arguments,
-                    sortOrder, groupType, null, null);
+            return new PagedCursorLoader(activity, selection, arguments, groupType);
         }
         return null;
     }
@@ -115,24 +112,53 @@ public class TransactionListFragment extends CursorListFragment implements Trans
         return true;
     }
 
-    private static class WrappedCursorLoader extends CursorLoader {
+    private static class PagedCursorLoader extends CursorLoader {
+
+        private static final int PAGE_SIZE = 200;
+
+        private static final String[] PROJECTION = new String[] {
+                Contract.Transaction.ID,
+                Contract.Transaction.DATE,
+                Contract.Transaction.DIRECTION,
+                Contract.Transaction.MONEY,
+                Contract.Transaction.DESCRIPTION,
+                Contract.Transaction.CATEGORY_NAME,
+                Contract.Transaction.CATEGORY_ICON,
+                Contract.Transaction.WALLET_CURRENCY
+        };
 
         private final Group mGroup;
-        private final Date mStartDate;
-        private final Date mEndDate;
 
-        private WrappedCursorLoader(@NonNull Context context, @NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
-                                   @Nullable String[] selectionArgs, @Nullable String sortOrder, Group group, Date startDate, Date endDate) {
-            super(context, uri, projection, selection, selectionArgs, sortOrder);
+        private PagedCursorLoader(@NonNull Context context, @Nullable String selection, @Nullable String[] selectionArgs, Group group) {
+            super(context, DataContentProvider.CONTENT_TRANSACTION_DAYS, null, selection, selectionArgs, Contract.TransactionDay.DAY + " DESC");
             mGroup = group;
-            mStartDate = startDate;
-            mEndDate = endDate;
         }
 
         @Override
         public Cursor loadInBackground() {
-            Cursor cursor = super.loadInBackground();
-            return new TransactionHeaderCursor(cursor, mGroup, mStartDate, mEndDate);
+            // the cursor loaded by the super class contains the number of transactions and the
+            // totals of each day and it is the one observed by the loader: the transactions are
+            // queried one page at time while the user scrolls the list.
+            Cursor days = super.loadInBackground();
+            if (days == null) {
+                return null;
+            }
+            try {
+                int count = 0;
+                int indexCount = days.getColumnIndex(Contract.TransactionDay.COUNT);
+                if (days.moveToFirst()) {
+                    do {
+                        count += days.getInt(indexCount);
+                    } while (days.moveToNext());
+                }
+                Cursor cursor = new PagedCursor(getContext().getContentResolver(), DataContentProvider.CONTENT_TRANSACTIONS,
+                        PROJECTION, getSelection(), getSelectionArgs(), Contract.Transaction.DATE, Contract.Transaction.ID,
+                        PAGE_SIZE, count);
+                return new TransactionHeaderCursor(cursor, days, mGroup, null, null);
+            } catch (RuntimeException e) {
+                days.close();
+                throw e;
+            }
         }
     }
 }
\ No newline at end of file
@@ -79,7 +79,7 @@ public class TransferListFragment extends CursorListFragment implements Transfer
                 Contract.Transfer.TRANSACTION_TO_WALLET_ID + " = ?";
                 arguments = new String[] {walletId, walletId};
             }
-            selection += " AND DATETIME(" + Contract.Transfer.DATE + ") <= DATETIME('now', 'localtime')";
+            selection += " AND " + Contract.Transfer.DATE + " <= DATETIME('now', 'localtime')";
             String sortOrder = Contract.Transfer.DATE + " DESC";
             Group groupType = PreferenceManager.getCurrentGroupType();
             return new WrappedCursorLoader(activity, uri, null, selection, arguments,
@@ -349,6 +349,9 @@ public class BackupHandlerFragment extends Fragment implements BackupFileAdapter
             loadFolder(file);
         } else {
             Activity activity = getActivity();
+            // an incremental backup is restored together with the previous backups of its
+            // chain, that are searched inside the same folder
+            final IFile folder = mFileStack.isEmpty() ? ROOT_FOLDER : mFileStack.get(mFileStack.size() - 1);
             if (mAllowRestore && activity != null) {
                 if (file.getName().endsWith(BackupManager.BACKUP_EXTENSION_STANDARD)) {
                     ThemedDialog.buildMaterialDialog(activity)
@@ -364,6 +367,7 @@ public class BackupHandlerFragment extends Fragment implements BackupFileAdapter
                                     intent.putExtra(BackupHandlerIntentService.BACKEND_ID, mBackendService.getId());
                                     intent.putExtra(BackupHandlerIntentService.ACTION, BackupHandlerIntentService.ACTION_RESTORE);
                                     intent.putExtra(BackupHandlerIntentService.BACKUP_FILE, file);
+                                    intent.putExtra(BackupHandlerIntentService.PARENT_FOLDER, folder);
                                     intent.putExtra(BackupHandlerIntentService.CALLER_ID, BACKUP_SERVICE_CALLER_ID);
                                     getActivity().startService(intent);
                                 }
@@ -384,6 +388,7 @@ public class BackupHandlerFragment extends Fragment implements BackupFileAdapter
                                     intent.putExtra(BackupHandlerIntentService.BACKEND_ID, mBackendService.getId());
                                     intent.putExtra(BackupHandlerIntentService.ACTION, BackupHandlerIntentService.ACTION_RESTORE);
                                     intent.putExtra(BackupHandlerIntentService.BACKUP_FILE, file);
+                                    intent.putExtra(BackupHandlerIntentService.PARENT_FOLDER, folder);
                                     intent.putExtra(BackupHandlerIntentService.PASSWORD, input.toString());
                                     intent.putExtra(BackupHandlerIntentService.CALLER_ID, BACKUP_SERVICE_CALLER_ID);
                                     getActivity().startService(intent);
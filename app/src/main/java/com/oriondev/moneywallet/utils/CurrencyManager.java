@@ -26,6 +26,7 @@ import android.database.Cursor;
 
 import com.oriondev.moneywallet.model.CurrencyUnit;
 import com.oriondev.moneywallet.model.ExchangeRate;
+import com.oriondev.moneywallet.storage.cache.ConversionEngine;
 import com.oriondev.moneywallet.storage.cache.ExchangeRateCache;
 import com.oriondev.moneywallet.storage.database.Contract;
 import com.oriondev.moneywallet.storage.database.DataContentProvider;
@@ -62,10 +63,12 @@ public class CurrencyManager {
     }
 
     private final ExchangeRateCache mExchangeRateCache;
+    private final ConversionEngine mConversionEngine;
     private final Map<String, CurrencyUnit> mCurrencyCache;
 
     private CurrencyManager(Context context) {
         mExchangeRateCache = new ExchangeRateCache(context);
+        mConversionEngine = mExchangeRateCache.createConversionEngine(context.getContentResolver());
         mCurrencyCache = new HashMap<>();
         loadCurrencies(context);
     }
@@ -189,4 +192,13 @@ public class CurrencyManager {
     public static ExchangeRateCache getExchangeRateCache() {
         return mInstance.mExchangeRateCache;
     }
+
+    /**
+     * Obtain the engine that converts the totals in a single currency using the historical
+     * exchange rates. It performs I/O operations so it should not be used on the main thread.
+     * @return the conversion engine.
+     */
+    public static ConversionEngine getConversionEngine() {
+        return mInstance.mConversionEngine;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.oriondev.moneywallet.utils;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parser and formatter of the fixed layouts used by the database ("yyyy-MM-dd" and
+ * "yyyy-MM-dd HH:mm:ss") in a given time zone. Well formed strings are decoded reading the
+ * digits at fixed offsets and the date fields are converted to epoch millis with plain integer
+ * arithmetic, without allocating any object. Everything else (lenient values like the 30th of
+ * February, local times that fall near a daylight saving transition, dates before the gregorian
+ * cutover) is delegated to a SimpleDateFormat so the results are always the same of the previous
+ * implementation. The last formatted strings are kept inside two small caches.
+ * This class is thread safe.
+ */
+public class DateCodec {
+
+    public static final String SQL_DATE = "yyyy-MM-dd";
+    public static final String SQL_DATETIME = "yyyy-MM-dd HH:mm:ss";
+
+    private static final int SQL_DATE_LENGTH = 10;
+    private static final int SQL_DATETIME_LENGTH = 19;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final int MIN_FAST_YEAR = 1600;
+    private static final int MAX_FAST_YEAR = 9999;
+
+    private static final int CACHE_SETS = 64;
+
+    private final TimeZone mTimeZone;
+    private final FormatCache mDateCache;
+    private final FormatCache mDateTimeCache;
+
+    public DateCodec(TimeZone timeZone) {
+        mTimeZone = (TimeZone) timeZone.clone();
+        mDateCache = new FormatCache(CACHE_SETS);
+        mDateTimeCache = new FormatCache(CACHE_SETS);
+    }
+
+    public TimeZone getTimeZone() {
+        return (TimeZone) mTimeZone.clone();
+    }
+
+    /*package-local*/ boolean isTimeZone(TimeZone timeZone) {
+        return mTimeZone.getID().equals(timeZone.getID()) && mTimeZone.hasSameRules(timeZone);
+    }
+
+    /**
+     * Parse a "yyyy-MM-dd" string. Any character after the date is ignored.
+     * @param text that contains the date.
+     * @param offset of the first character of the date.
+     * @return the epoch millis of the first instant of the local day.
+     */
+    public long parseDate(CharSequence text, int offset) {
+        int length = text.length() - offset;
+        if (length >= SQL_DATE_LENGTH && (length == SQL_DATE_LENGTH || !isDigit(text.charAt(offset + SQL_DATE_LENGTH)))) {
+            int packedDay = readPackedDay(text, offset);
+            if (packedDay > 0) {
+                long millis = toMillis(packedDay, 0);
+                if (millis != Long.MIN_VALUE) {
+                    return millis;
+                }
+            }
+        }
+        return parseSlow(SQL_DATE, text, offset);
+    }
+
+    public long parseDate(CharSequence text) {
+        return parseDate(text, 0);
+    }
+
+    /**
+     * Parse a "yyyy-MM-dd HH:mm:ss" string. Any character after the seconds is ignored.
+     * @param text that contains the date and the time.
+     * @param offset of the first character of the date.
+     * @return the epoch millis of the local date time.
+     */
+    public long parseDateTime(CharSequence text, int offset) {
+        int length = text.length() - offset;
+        if (length >= SQL_DATETIME_LENGTH && (length == SQL_DATETIME_LENGTH || !isDigit(text.charAt(offset + SQL_DATETIME_LENGTH)))) {
+            int packedDay = readPackedDay(text, offset);
+            int secondOfDay = readSecondOfDay(text, offset + SQL_DATE_LENGTH);
+            if (packedDay > 0 && secondOfDay >= 0) {
+                long millis = toMillis(packedDay, secondOfDay);
+                if (millis != Long.MIN_VALUE) {
+                    return millis;
+                }
+            }
+        }
+        return parseSlow(SQL_DATETIME, text, offset);
+    }
+
+    public long parseDateTime(CharSequence text) {
+        return parseDateTime(text, 0);
+    }
+
+    /**
+     * Parse a "yyyy-MM-dd" string into a packed day number (year * 10000 + month * 100 + day)
+     * that can be compared and stored without any conversion to epoch millis.
+     * @param text that contains the date.
+     * @param offset of the first character of the date.
+     * @return the packed day number.
+     */
+    public int parsePackedDay(CharSequence text, int offset) {
+        int length = text.length() - offset;
+        if (length >= SQL_DATE_LENGTH && (length == SQL_DATE_LENGTH || !isDigit(text.charAt(offset + SQL_DATE_LENGTH)))) {
+            int packedDay = readPackedDay(text, offset);
+            if (packedDay > 0) {
+                return packedDay;
+            }
+        }
+        return getPackedDay(parseSlow(SQL_DATE, text, offset));
+    }
+
+    /**
+     * @param millis epoch millis.
+     * @return the packed day number (year * 10000 + month * 100 + day) of the local date.
+     */
+    public int getPackedDay(long millis) {
+        long localMillis = millis + mTimeZone.getOffset(millis);
+        int packedDay = toPackedDay(floorDiv(localMillis, MILLIS_PER_DAY));
+        int year = packedDay / 10000;
+        if (year >= MIN_FAST_YEAR && year <= MAX_FAST_YEAR) {
+            return packedDay;
+        }
+        Calendar calendar = Calendar.getInstance(mTimeZone, Locale.ENGLISH);
+        calendar.setTimeInMillis(millis);
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100 + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    public String formatDate(long millis) {
+        long localMillis = millis + mTimeZone.getOffset(millis);
+        long epochDay = floorDiv(localMillis, MILLIS_PER_DAY);
+        String string = mDateCache.get(epochDay);
+        if (string == null) {
+            int packedDay = toPackedDay(epochDay);
+            if (isFastYear(packedDay)) {
+                string = formatPackedDay(packedDay);
+            } else {
+                string = formatSlow(SQL_DATE, millis);
+            }
+            mDateCache.put(epochDay, string);
+        }
+        return string;
+    }
+
+    public String formatDateTime(long millis) {
+        long epochSecond = floorDiv(millis, MILLIS_PER_SECOND);
+        String string = mDateTimeCache.get(epochSecond);
+        if (string == null) {
+            long localMillis = millis + mTimeZone.getOffset(millis);
+            long epochDay = floorDiv(localMillis, MILLIS_PER_DAY);
+            int packedDay = toPackedDay(epochDay);
+            if (isFastYear(packedDay)) {
+                int secondOfDay = (int) ((localMillis - epochDay * MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+                char[] buffer = new char[SQL_DATETIME_LENGTH];
+                writePackedDay(buffer, packedDay);
+                buffer[10] = ' ';
+                writeTwoDigits(buffer, 11, secondOfDay / 3600);
+                buffer[13] = ':';
+                writeTwoDigits(buffer, 14, (secondOfDay / 60) % 60);
+                buffer[16] = ':';
+                writeTwoDigits(buffer, 17, secondOfDay % 60);
+                string = new String(buffer);
+            } else {
+                string = formatSlow(SQL_DATETIME, millis);
+            }
+            mDateTimeCache.put(epochSecond, string);
+        }
+        return string;
+    }
+
+    /**
+     * Convert a local date time to epoch millis. The conversion is done only when the offset
+     * of the time zone does not change in the day before and in the day after the instant:
+     * in this case the local time is not ambiguous and the result is the same computed by
+     * the calendar, otherwise the special value Long.MIN_VALUE is returned.
+     */
+    private long toMillis(int packedDay, int secondOfDay) {
+        int year = packedDay / 10000;
+        if (year < MIN_FAST_YEAR || year > MAX_FAST_YEAR) {
+            return Long.MIN_VALUE;
+        }
+        long epochDay = toEpochDay(year, (packedDay / 100) % 100, packedDay % 100);
+        long localMillis = epochDay * MILLIS_PER_DAY + secondOfDay * MILLIS_PER_SECOND;
+        int offset = mTimeZone.getOffset(localMillis - mTimeZone.getRawOffset());
+        long millis = localMillis - offset;
+        if (mTimeZone.getOffset(millis) != offset
+                || mTimeZone.getOffset(millis - MILLIS_PER_DAY) != offset
+                || mTimeZone.getOffset(millis + MILLIS_PER_DAY) != offset) {
+            return Long.MIN_VALUE;
+        }
+        return millis;
+    }
+
+    private long parseSlow(String pattern, CharSequence text, int offset) {
+        DateFormat dateFormat = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        dateFormat.setTimeZone(mTimeZone);
+        try {
+            return dateFormat.parse(text.subSequence(offset, text.length()).toString()).getTime();
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String formatSlow(String pattern, long millis) {
+        DateFormat dateFormat = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        dateFormat.setTimeZone(mTimeZone);
+        return dateFormat.format(millis);
+    }
+
+    /**
+     * Read a strict "yyyy-MM-dd" date.
+     * @return the packed day or -1 if the date is not well formed or not valid.
+     */
+    private static int readPackedDay(CharSequence text, int offset) {
+        if (text.charAt(offset + 4) != '-' || text.charAt(offset + 7) != '-') {
+            return -1;
+        }
+        int year = readDigits(text, offset, 4);
+        int month = readDigits(text, offset + 5, 2);
+        int day = readDigits(text, offset + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > getDaysInMonth(year, month)) {
+            return -1;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Read a strict " HH:mm:ss" time.
+     * @return the second of the day or -1 if the time is not well formed or not valid.
+     */
+    private static int readSecondOfDay(CharSequence text, int offset) {
+        if (text.charAt(offset) != ' ' || text.charAt(offset + 3) != ':' || text.charAt(offset + 6) != ':') {
+            return -1;
+        }
+        int hour = readDigits(text, offset + 1, 2);
+        int minute = readDigits(text, offset + 4, 2);
+        int second = readDigits(text, offset + 7, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    private static int readDigits(CharSequence text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isFastYear(int packedDay) {
+        int year = packedDay / 10000;
+        return year >= MIN_FAST_YEAR && year <= MAX_FAST_YEAR;
+    }
+
+    private static void writePackedDay(char[] buffer, int packedDay) {
+        int year = packedDay / 10000;
+        writeTwoDigits(buffer, 0, year / 100);
+        writeTwoDigits(buffer, 2, year % 100);
+        buffer[4] = '-';
+        writeTwoDigits(buffer, 5, (packedDay / 100) % 100);
+        buffer[7] = '-';
+        writeTwoDigits(buffer, 8, packedDay % 100);
+    }
+
+    private static void writeTwoDigits(char[] buffer, int offset, int value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static int getDaysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of a date of the proleptic gregorian calendar (month is 1-based).
+     */
+    public static long toEpochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Inverse of {@link #toEpochDay(int, int, int)}.
+     */
+    private static int toPackedDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 99999) {
+            // out of the range of the packed representation: let the calendar handle it
+            return 0;
+        }
+        return (int) (year * 10000 + month * 100 + day);
+    }
+
+    /**
+     * @param utcMillis epoch millis.
+     * @return the number of days since 1970-01-01 of the instant in UTC.
+     */
+    public static long getEpochDay(long utcMillis) {
+        return floorDiv(utcMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Format a day with the "yyyy-MM-dd" layout. The day has no time zone, so no conversion
+     * is applied.
+     * @param epochDay number of days since 1970-01-01.
+     * @throws IllegalArgumentException if the year has more than four digits.
+     */
+    public static String formatEpochDay(long epochDay) {
+        return formatPackedDay(toPackedDay(epochDay));
+    }
+
+    /**
+     * Format a packed day number (year * 10000 + month * 100 + day) with the "yyyy-MM-dd"
+     * layout.
+     * @throws IllegalArgumentException if the year has more than four digits.
+     */
+    public static String formatPackedDay(int packedDay) {
+        if (packedDay <= 0 || packedDay / 10000 > MAX_FAST_YEAR) {
+            throw new IllegalArgumentException("Day out of range: " + packedDay);
+        }
+        char[] buffer = new char[SQL_DATE_LENGTH];
+        writePackedDay(buffer, packedDay);
+        return new String(buffer);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+
+    /**
+     * Two-way set associative cache of formatted strings with a least recently used eviction
+     * inside each set. Entries are immutable, so concurrent accesses may lose an update but
+     * they can never return a string associated to a different key.
+     */
+    private static class FormatCache {
+
+        private final Entry[] mEntries;
+        private final int mMask;
+
+        private FormatCache(int sets) {
+            mEntries = new Entry[sets * 2];
+            mMask = sets - 1;
+        }
+
+        private String get(long key) {
+            int index = getIndex(key);
+            Entry first = mEntries[index];
+            if (first != null && first.mKey == key) {
+                return first.mValue;
+            }
+            Entry second = mEntries[index + 1];
+            if (second != null && second.mKey == key) {
+                mEntries[index] = second;
+                mEntries[index + 1] = first;
+                return second.mValue;
+            }
+            return null;
+        }
+
+        private void put(long key, String value) {
+            int index = getIndex(key);
+            mEntries[index + 1] = mEntries[index];
+            mEntries[index] = new Entry(key, value);
+        }
+
+        private int getIndex(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return ((int) (hash >>> 40) & mMask) << 1;
+        }
+    }
+
+    private static class Entry {
+
+        private final long mKey;
+        private final String mValue;
+
+        private Entry(long key, String value) {
+            mKey = key;
+            mValue = value;
+        }
+    }
+}
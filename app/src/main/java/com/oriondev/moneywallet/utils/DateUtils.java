@@ -22,11 +22,11 @@ package com.oriondev.moneywallet.utils;
 import org.dmfs.rfc5545.DateTime;
 
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * Created by andrea on 03/03/18.
@@ -34,26 +34,38 @@ import java.util.Locale;
 
 public class DateUtils {
 
-    private static final String SQL_DATE = "yyyy-MM-dd";
-    private static final String SQL_DATETIME = "yyyy-MM-dd HH:mm:ss";
     private static final String FILENAME_DATETIME = "yyyy-MM-dd_HH-mm-ss";
 
-    public static Date getDateFromSQLDateString(String date) {
-        DateFormat dateFormat = new SimpleDateFormat(SQL_DATE, Locale.ENGLISH);
-        try {
-            return dateFormat.parse(date);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
+    private static final long TIME_ZONE_CHECK_INTERVAL = 1000L;
+
+    private static volatile DateCodec sDateCodec;
+    private static volatile long sDateCodecCheckTime;
+
+    /**
+     * Return the codec of the default time zone. The default time zone can be changed by the
+     * user while the application is running, so it is looked up again at most once per second.
+     * @return the codec that should be used to parse and format the sql dates.
+     */
+    public static DateCodec getDateCodec() {
+        DateCodec codec = sDateCodec;
+        long now = System.currentTimeMillis();
+        if (codec == null || now - sDateCodecCheckTime >= TIME_ZONE_CHECK_INTERVAL || now < sDateCodecCheckTime) {
+            TimeZone timeZone = TimeZone.getDefault();
+            if (codec == null || !codec.isTimeZone(timeZone)) {
+                codec = new DateCodec(timeZone);
+                sDateCodec = codec;
+            }
+            sDateCodecCheckTime = now;
         }
+        return codec;
+    }
+
+    public static Date getDateFromSQLDateString(String date) {
+        return new Date(getDateCodec().parseDate(date));
     }
 
     public static Date getDateFromSQLDateTimeString(String dateTime) {
-        DateFormat dateFormat = new SimpleDateFormat(SQL_DATETIME, Locale.ENGLISH);
-        try {
-            return dateFormat.parse(dateTime);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
+        return new Date(getDateCodec().parseDateTime(dateTime));
     }
 
     public static String getDateTimeString(Date date, String pattern) {
@@ -62,18 +74,15 @@ public class DateUtils {
     }
 
     public static String getSQLDateString(Date date) {
-        DateFormat format = new SimpleDateFormat(SQL_DATE, Locale.ENGLISH);
-        return format.format(date);
+        return getDateCodec().formatDate(date.getTime());
     }
 
     public static String getSQLDateTimeString(Date date) {
-        DateFormat format = new SimpleDateFormat(SQL_DATETIME, Locale.ENGLISH);
-        return format.format(date);
+        return getDateCodec().formatDateTime(date.getTime());
     }
 
     public static String getSQLDateTimeString(long millis) {
-        DateFormat format = new SimpleDateFormat(SQL_DATETIME, Locale.ENGLISH);
-        return format.format(new Date(millis));
+        return getDateCodec().formatDateTime(millis);
     }
 
     public static String getFilenameDateTimeString(Date date) {
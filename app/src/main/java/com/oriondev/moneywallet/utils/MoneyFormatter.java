@@ -32,7 +32,6 @@ import com.oriondev.moneywallet.ui.view.theme.ThemeEngine;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.Map;
 
 /**
  * Created by andrea on 23/01/18.
@@ -141,12 +140,12 @@ public class MoneyFormatter {
             builder.append(EMPTY_TEXT);
         } else {
             CurrencyMode currencyMode = money.getNumberOfCurrencies() > 1 ? CurrencyMode.ALWAYS_SHOWN : CurrencyMode.USER_PREFERENCE;
-            for (Map.Entry<String, Long> entry : money.getCurrencyMoneys().entrySet()) {
+            for (int i = 0; i < money.getNumberOfCurrencies(); i++) {
                 if (builder.length() > 0) {
                     builder.append(DIVIDER_TEXT);
                 }
-                CurrencyUnit currencyUnit = CurrencyManager.getCurrency(entry.getKey());
-                long currencyMoney = entry.getValue();
+                CurrencyUnit currencyUnit = CurrencyManager.getCurrency(money.getCurrencyAt(i));
+                long currencyMoney = money.getMoneyAt(i);
                 builder.append(getNotTintedString(currencyUnit, currencyMoney, currencyMode, FlowMode.AUTO_DETECT));
             }
         }
@@ -205,14 +204,14 @@ public class MoneyFormatter {
             builder.append(emptyString);
         } else {
             CurrencyMode currencyMode = money.getNumberOfCurrencies() > 1 ? CurrencyMode.ALWAYS_SHOWN : CurrencyMode.USER_PREFERENCE;
-            for (Map.Entry<String, Long> entry : money.getCurrencyMoneys().entrySet()) {
+            for (int i = 0; i < money.getNumberOfCurrencies(); i++) {
                 if (builder.length() > 0) {
                     SpannableString divider = new SpannableString(DIVIDER_TEXT);
                     divider.setSpan(new ForegroundColorSpan(mColorNeutral), 0, divider.length(), 0);
                     builder.append(divider);
                 }
-                CurrencyUnit currencyUnit = CurrencyManager.getCurrency(entry.getKey());
-                long currencyMoney = entry.getValue();
+                CurrencyUnit currencyUnit = CurrencyManager.getCurrency(money.getCurrencyAt(i));
+                long currencyMoney = money.getMoneyAt(i);
                 builder.append(getTintedString(currencyUnit, currencyMoney, currencyMode, tintMode));
             }
         }
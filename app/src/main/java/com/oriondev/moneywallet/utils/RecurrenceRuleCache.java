@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018.
+ *
+ * This file is part of MoneyWallet.
+ *
+ * MoneyWallet is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MoneyWallet is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MoneyWallet.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.oriondev.moneywallet.utils;
+
+import org.dmfs.rfc5545.recur.InvalidRecurrenceRuleException;
+import org.dmfs.rfc5545.recur.RecurrenceRule;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of the compiled recurrence rules: each rule string is parsed only once and the same
+ * instance is shared by all the recurrences that use it. The invalid rules are cached too, so
+ * they are not parsed again every time they are found. This class is not thread safe.
+ */
+public class RecurrenceRuleCache {
+
+    private final Map<String, RecurrenceRule> mRules = new HashMap<>();
+
+    /**
+     * @param rule string of the recurrence rule.
+     * @return the compiled rule or null if the rule is not valid.
+     */
+    public RecurrenceRule get(String rule) {
+        if (mRules.containsKey(rule)) {
+            return mRules.get(rule);
+        }
+        RecurrenceRule recurrenceRule;
+        try {
+            recurrenceRule = new RecurrenceRule(rule);
+        } catch (InvalidRecurrenceRuleException e) {
+            recurrenceRule = null;
+        }
+        mRules.put(rule, recurrenceRule);
+        return recurrenceRule;
+    }
+}
@@ -0,0 +1,283 @@
+package com.oriondev.moneywallet.api.chunk;
+
+import android.os.Parcel;
+
+import com.oriondev.moneywallet.api.BackendException;
+import com.oriondev.moneywallet.model.IFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkedTransferTest {
+
+    private static final int DOWNLOAD_CHUNK_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private final FakeChunkStore mChunkStore = new FakeChunkStore();
+
+    @Test
+    public void testUpload_resumeAfterFailure() throws Exception {
+        byte[] content = randomContent(64 * 1024);
+        File file = createFile("backup.mwbx", content);
+        File manifestFile = new File(mTemporaryFolder.getRoot(), "upload.manifest");
+        int chunkCount = newChunker().split(file).size();
+        mChunkStore.mStoresBeforeFailure = 5;
+        mChunkStore.mFailures = ChunkedUploader.MAX_CHUNK_ATTEMPTS;
+        try {
+            newUploader().upload(null, file, manifestFile, null);
+            fail("The upload should be interrupted");
+        } catch (BackendException e) {
+            assertTrue(e.isRecoverable());
+        }
+        assertTrue(manifestFile.exists());
+        assertEquals(5, mChunkStore.mStoreCount);
+        mChunkStore.mStoreCount = 0;
+        FakeFile uploaded = newUploader().upload(null, file, manifestFile, null);
+        assertEquals(chunkCount - 5, mChunkStore.mStoreCount);
+        assertArrayEquals(content, mChunkStore.mFiles.get(uploaded.getName()));
+        assertFalse(manifestFile.exists());
+    }
+
+    @Test
+    public void testUpload_transientFailureIsRetried() throws Exception {
+        byte[] content = randomContent(16 * 1024);
+        File file = createFile("backup.mwbx", content);
+        File manifestFile = new File(mTemporaryFolder.getRoot(), "upload.manifest");
+        mChunkStore.mStoresBeforeFailure = 2;
+        mChunkStore.mFailures = ChunkedUploader.MAX_CHUNK_ATTEMPTS - 1;
+        FakeFile uploaded = newUploader().upload(null, file, manifestFile, null);
+        assertArrayEquals(content, mChunkStore.mFiles.get(uploaded.getName()));
+    }
+
+    @Test
+    public void testDownload_resumeAfterFailure() throws Exception {
+        byte[] content = randomContent(10 * DOWNLOAD_CHUNK_SIZE + 100);
+        FakeFile remoteFile = mChunkStore.putFile("backup.mwbx", content);
+        File folder = mTemporaryFolder.newFolder();
+        mChunkStore.mBytesBeforeFailure = 3 * DOWNLOAD_CHUNK_SIZE + 10;
+        mChunkStore.mFailures = ChunkedDownloader.MAX_ATTEMPTS;
+        try {
+            newDownloader().download(folder, remoteFile, null);
+            fail("The download should be interrupted");
+        } catch (BackendException e) {
+            assertTrue(e.isRecoverable());
+        }
+        File downloaded = newDownloader().download(folder, remoteFile, null);
+        assertEquals(3 * DOWNLOAD_CHUNK_SIZE, mChunkStore.mLastOpenOffset);
+        assertArrayEquals(content, FileUtils.readFileToByteArray(downloaded));
+    }
+
+    @Test
+    public void testDownload_corruptedChunkIsDownloadedAgain() throws Exception {
+        byte[] content = randomContent(10 * DOWNLOAD_CHUNK_SIZE);
+        FakeFile remoteFile = mChunkStore.putFile("backup.mwbx", content);
+        File folder = mTemporaryFolder.newFolder();
+        mChunkStore.mBytesBeforeFailure = 5 * DOWNLOAD_CHUNK_SIZE;
+        mChunkStore.mFailures = ChunkedDownloader.MAX_ATTEMPTS;
+        try {
+            newDownloader().download(folder, remoteFile, null);
+            fail("The download should be interrupted");
+        } catch (BackendException e) {
+            assertTrue(e.isRecoverable());
+        }
+        RandomAccessFile partial = new RandomAccessFile(new File(folder, "backup.mwbx.part"), "rw");
+        try {
+            partial.seek(DOWNLOAD_CHUNK_SIZE + 1);
+            partial.write(content[DOWNLOAD_CHUNK_SIZE + 1] ^ 0xFF);
+        } finally {
+            partial.close();
+        }
+        File downloaded = newDownloader().download(folder, remoteFile, null);
+        assertEquals(DOWNLOAD_CHUNK_SIZE, mChunkStore.mLastOpenOffset);
+        assertArrayEquals(content, FileUtils.readFileToByteArray(downloaded));
+    }
+
+    private ContentDefinedChunker newChunker() {
+        return new ContentDefinedChunker(256, 1024, 4096);
+    }
+
+    private ChunkedUploader<FakeFile> newUploader() {
+        return new ChunkedUploader<>(mChunkStore, newChunker(), 0L);
+    }
+
+    private ChunkedDownloader<FakeFile> newDownloader() {
+        return new ChunkedDownloader<>(mChunkStore, DOWNLOAD_CHUNK_SIZE, 0L);
+    }
+
+    private File createFile(String name, byte[] content) throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), name);
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    private static byte[] randomContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * In-memory chunk store that fails with a recoverable exception after a given number of
+     * stored chunks or downloaded bytes.
+     */
+    private static class FakeChunkStore implements IChunkStore<FakeFile> {
+
+        private final Map<String, Map<String, byte[]>> mSessions = new HashMap<>();
+        private final Map<String, byte[]> mFiles = new HashMap<>();
+
+        private int mStoresBeforeFailure = -1;
+        private long mBytesBeforeFailure = -1L;
+        private int mFailures;
+        private int mStoreCount;
+        private long mLastOpenOffset = -1L;
+
+        private FakeFile putFile(String name, byte[] content) {
+            mFiles.put(name, content);
+            return new FakeFile(name, content.length);
+        }
+
+        @Override
+        public Set<String> getStoredChunks(FakeFile folder, String session) {
+            return getSession(session).keySet();
+        }
+
+        @Override
+        public void storeChunk(FakeFile folder, String session, Chunk chunk, InputStream inputStream) throws BackendException {
+            if (mFailures > 0 && mStoreCount >= mStoresBeforeFailure) {
+                mFailures--;
+                throw new BackendException("Connection lost", true);
+            }
+            try {
+                getSession(session).put(chunk.getChecksum(), IOUtils.toByteArray(inputStream));
+            } catch (IOException e) {
+                throw new BackendException(e.getMessage(), e, true);
+            }
+            mStoreCount++;
+        }
+
+        @Override
+        public FakeFile assembleFile(FakeFile folder, String session, String name, List<Chunk> chunks) throws BackendException {
+            Map<String, byte[]> storedChunks = getSession(session);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            for (Chunk chunk : chunks) {
+                byte[] data = storedChunks.get(chunk.getChecksum());
+                if (data == null) {
+                    throw new BackendException("Missing chunk", true);
+                }
+                outputStream.write(data, 0, data.length);
+            }
+            mSessions.remove(session);
+            return putFile(name, outputStream.toByteArray());
+        }
+
+        @Override
+        public InputStream openFile(FakeFile file, long offset) {
+            mLastOpenOffset = offset;
+            byte[] content = mFiles.get(file.getName());
+            InputStream inputStream = new ByteArrayInputStream(content, (int) offset, content.length - (int) offset);
+            if (mFailures > 0) {
+                mFailures--;
+                return new FailingInputStream(inputStream, mBytesBeforeFailure - offset);
+            }
+            return inputStream;
+        }
+
+        private Map<String, byte[]> getSession(String session) {
+            Map<String, byte[]> storedChunks = mSessions.get(session);
+            if (storedChunks == null) {
+                storedChunks = new HashMap<>();
+                mSessions.put(session, storedChunks);
+            }
+            return storedChunks;
+        }
+    }
+
+    private static class FailingInputStream extends InputStream {
+
+        private final InputStream mInputStream;
+        private long mRemaining;
+
+        private FailingInputStream(InputStream inputStream, long remaining) {
+            mInputStream = inputStream;
+            mRemaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (mRemaining <= 0) {
+                throw new IOException("Connection lost");
+            }
+            mRemaining--;
+            return mInputStream.read();
+        }
+    }
+
+    private static class FakeFile implements IFile {
+
+        private final String mName;
+        private final long mSize;
+
+        private FakeFile(String name, long size) {
+            mName = name;
+            mSize = size;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public String getExtension() {
+            return null;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public long getSize() {
+            return mSize;
+        }
+
+        @Override
+        public String encodeToString() {
+            return mName;
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            // not used by the tests
+        }
+    }
+}
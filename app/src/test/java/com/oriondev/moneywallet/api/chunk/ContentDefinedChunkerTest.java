@@ -0,0 +1,87 @@
+package com.oriondev.moneywallet.api.chunk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentDefinedChunkerTest {
+
+    private static final int MIN_SIZE = 64;
+    private static final int AVERAGE_SIZE = 256;
+    private static final int MAX_SIZE = 1024;
+
+    private final ContentDefinedChunker mChunker = new ContentDefinedChunker(MIN_SIZE, AVERAGE_SIZE, MAX_SIZE);
+
+    @Test
+    public void testSplit_emptyContent() throws IOException {
+        assertTrue(mChunker.split(new ByteArrayInputStream(new byte[0])).isEmpty());
+    }
+
+    @Test
+    public void testSplit_chunkBounds() throws IOException {
+        byte[] content = randomContent(100 * 1024, 1);
+        List<Chunk> chunks = mChunker.split(new ByteArrayInputStream(content));
+        long offset = 0L;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            assertEquals(offset, chunk.getOffset());
+            assertTrue(chunk.getLength() <= MAX_SIZE);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.getLength() >= MIN_SIZE);
+            }
+            offset += chunk.getLength();
+        }
+        assertEquals(content.length, offset);
+    }
+
+    @Test
+    public void testSplit_checksumOfContent() throws IOException {
+        byte[] content = randomContent(10 * 1024, 2);
+        for (Chunk chunk : mChunker.split(new ByteArrayInputStream(content))) {
+            byte[] hash = Chunk.createDigest().digest(copyOfRange(content, chunk));
+            assertEquals(Chunk.encodeChecksum(hash), chunk.getChecksum());
+        }
+    }
+
+    @Test
+    public void testSplit_insertionOnlyChangesNearbyChunks() throws IOException {
+        byte[] content = randomContent(100 * 1024, 3);
+        byte[] modified = new byte[content.length + 10];
+        int position = content.length / 2;
+        System.arraycopy(content, 0, modified, 0, position);
+        System.arraycopy(content, position, modified, position + 10, content.length - position);
+        Set<String> checksums = new HashSet<>();
+        for (Chunk chunk : mChunker.split(new ByteArrayInputStream(content))) {
+            checksums.add(chunk.getChecksum());
+        }
+        List<Chunk> modifiedChunks = mChunker.split(new ByteArrayInputStream(modified));
+        int changed = 0;
+        for (Chunk chunk : modifiedChunks) {
+            if (!checksums.contains(chunk.getChecksum())) {
+                changed++;
+            }
+        }
+        // the boundaries are resynchronized shortly after the inserted bytes
+        assertTrue(changed <= 3);
+    }
+
+    private static byte[] randomContent(int size, long seed) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] copyOfRange(byte[] content, Chunk chunk) {
+        byte[] data = new byte[chunk.getLength()];
+        System.arraycopy(content, (int) chunk.getOffset(), data, 0, chunk.getLength());
+        return data;
+    }
+}
@@ -0,0 +1,138 @@
+package com.oriondev.moneywallet.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old HashMap based accumulation of the header totals (including the string round
+ * trip done on every bind) with the primitive accumulator. Run the main method to get the
+ * allocation rate (gc.alloc.rate.norm) of each benchmark in bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAccumulatorBenchmark {
+
+    private static final String[] CURRENCIES = new String[] {"EUR", "USD", "GBP"};
+
+    @Param({"1000"})
+    public int mRows;
+
+    private String[] mRowCurrencies;
+    private long[] mRowMoney;
+
+    private Map<String, Long> mLegacyHeader;
+    private Money mHeader;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mRowCurrencies = new String[mRows];
+        mRowMoney = new long[mRows];
+        for (int i = 0; i < mRows; i++) {
+            // a cursor returns a new string instance for each row
+            mRowCurrencies[i] = new String(CURRENCIES[random.nextInt(4) == 0 ? random.nextInt(3) : 0]);
+            mRowMoney[i] = random.nextInt(100000) - 50000;
+        }
+        mLegacyHeader = legacyAccumulate();
+        mHeader = accumulate();
+    }
+
+    @Benchmark
+    public Map<String, Long> accumulateLegacy() {
+        return legacyAccumulate();
+    }
+
+    @Benchmark
+    public Money accumulateAccumulator() {
+        return accumulate();
+    }
+
+    @Benchmark
+    public long bindHeaderLegacy() {
+        // TransactionHeaderCursor.getString() followed by Money.parse() in the adapter
+        String string = legacyToString(mLegacyHeader);
+        Map<String, Long> parsed = new HashMap<>();
+        for (String currency : string.split(",")) {
+            String[] parts = currency.split(" ");
+            parsed.put(parts[0], Long.parseLong(parts[1]));
+        }
+        long total = 0;
+        for (Map.Entry<String, Long> entry : parsed.entrySet()) {
+            total += entry.getValue();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long bindHeaderAccumulator() {
+        // TransactionHeaderCursor.getHeaderMoney() read by index in the adapter
+        long total = 0;
+        for (int i = 0; i < mHeader.getNumberOfCurrencies(); i++) {
+            total += mHeader.getMoneyAt(i);
+        }
+        return total;
+    }
+
+    private Map<String, Long> legacyAccumulate() {
+        Map<String, Long> currencies = new HashMap<>();
+        for (int i = 0; i < mRows; i++) {
+            long total = mRowMoney[i];
+            if (currencies.containsKey(mRowCurrencies[i])) {
+                total += currencies.get(mRowCurrencies[i]);
+            }
+            currencies.put(mRowCurrencies[i], total);
+        }
+        return currencies;
+    }
+
+    private Money accumulate() {
+        Money money = new Money();
+        for (int i = 0; i < mRows; i++) {
+            money.addMoney(mRowCurrencies[i], mRowMoney[i]);
+        }
+        return money;
+    }
+
+    private static String legacyToString(Map<String, Long> currencies) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : currencies.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(",");
+            }
+            builder.append(String.format(Locale.ENGLISH, "%s %d", entry.getKey(), entry.getValue()));
+        }
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MoneyAccumulatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.oriondev.moneywallet.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MoneyAccumulatorTest {
+
+    @Test
+    public void testOrdinal_stable() {
+        int ordinal = MoneyAccumulator.getOrdinal("EUR");
+        assertEquals(ordinal, MoneyAccumulator.getOrdinal(new String("EUR")));
+        assertEquals("EUR", MoneyAccumulator.getCurrency(ordinal));
+        assertTrue(ordinal != MoneyAccumulator.getOrdinal("USD"));
+    }
+
+    @Test
+    public void testAdd_sumsByCurrencyInInsertionOrder() {
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+        accumulator.add("USD", 100L);
+        accumulator.add("EUR", 50L);
+        accumulator.add(new String("USD"), -30L);
+        accumulator.subtract("EUR", 20L);
+        assertEquals(2, accumulator.size());
+        assertEquals("USD", accumulator.getCurrencyAt(0));
+        assertEquals(70L, accumulator.getMoneyAt(0));
+        assertEquals("EUR", accumulator.getCurrencyAt(1));
+        assertEquals(30L, accumulator.getMoneyAt(1));
+        assertEquals(0L, accumulator.get("JPY"));
+        assertFalse(accumulator.contains("JPY"));
+    }
+
+    @Test
+    public void testAdd_growsPastInitialCapacity() {
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 40; i++) {
+                accumulator.add("C" + i, i);
+            }
+        }
+        assertEquals(40, accumulator.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals("C" + i, accumulator.getCurrencyAt(i));
+            assertEquals(3L * i, accumulator.get("C" + i));
+        }
+    }
+
+    @Test
+    public void testAddAll_andCopy() {
+        MoneyAccumulator first = new MoneyAccumulator();
+        first.add("EUR", 10L);
+        MoneyAccumulator second = new MoneyAccumulator();
+        second.add("USD", 5L);
+        second.add("EUR", 1L);
+        MoneyAccumulator copy = new MoneyAccumulator(first);
+        first.addAll(second);
+        assertEquals(11L, first.get("EUR"));
+        assertEquals(5L, first.get("USD"));
+        assertEquals(10L, copy.get("EUR"));
+        assertEquals(1, copy.size());
+        first.subtractAll(second);
+        assertEquals(10L, first.get("EUR"));
+        assertEquals(0L, first.get("USD"));
+    }
+
+    @Test
+    public void testClear() {
+        MoneyAccumulator accumulator = new MoneyAccumulator();
+        accumulator.add("EUR", 10L);
+        accumulator.clear();
+        assertEquals(0, accumulator.size());
+        assertEquals(0L, accumulator.get("EUR"));
+        accumulator.add("USD", 1L);
+        assertEquals("USD", accumulator.getCurrencyAt(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetMoneyAt_outOfBounds() {
+        new MoneyAccumulator().getMoneyAt(0);
+    }
+
+    @Test
+    public void testMoney_toStringKeepsFormat() {
+        Money money = new Money("EUR", 1500L);
+        money.addMoney("USD", -25L);
+        assertEquals("EUR 1500,USD -25", money.toString());
+        assertEquals(2, money.getNumberOfCurrencies());
+        assertEquals(Long.valueOf(-25L), money.getCurrencyMoneys().get("USD"));
+        assertSame("EUR", money.getCurrencies().iterator().next());
+    }
+}
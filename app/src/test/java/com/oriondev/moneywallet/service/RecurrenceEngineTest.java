@@ -0,0 +1,63 @@
+package com.oriondev.moneywallet.service;
+
+import org.dmfs.rfc5545.DateTime;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RecurrenceEngineTest {
+
+    private static final DateTime HORIZON = new DateTime(2019, 0, 10);
+
+    @Test
+    public void testExpand_dailyBacklog() {
+        RecurrenceEngine engine = new RecurrenceEngine(HORIZON);
+        RecurrenceEngine.Expansion expansion = engine.expand("FREQ=DAILY", new DateTime(2019, 0, 1));
+        assertEquals(10, expansion.mOccurrences.size());
+        assertEquals("2019-01-01", RecurrenceEngine.getSQLDateString(expansion.mOccurrences.get(0)));
+        assertEquals("2019-01-10", RecurrenceEngine.getSQLDateString(expansion.mLastOccurrence));
+        assertEquals("2019-01-11", RecurrenceEngine.getSQLDateString(expansion.mNextOccurrence));
+    }
+
+    @Test
+    public void testExpand_notDueYet() {
+        RecurrenceEngine engine = new RecurrenceEngine(HORIZON);
+        DateTime firstOccurrence = new DateTime(2019, 1, 1);
+        RecurrenceEngine.Expansion expansion = engine.expand("FREQ=MONTHLY", firstOccurrence);
+        assertEquals(0, expansion.mOccurrences.size());
+        assertSame(firstOccurrence, expansion.mLastOccurrence);
+        assertEquals("2019-02-01", RecurrenceEngine.getSQLDateString(expansion.mNextOccurrence));
+    }
+
+    @Test
+    public void testExpand_endedRule() {
+        RecurrenceEngine engine = new RecurrenceEngine(HORIZON);
+        RecurrenceEngine.Expansion expansion = engine.expand("FREQ=DAILY;COUNT=3", new DateTime(2019, 0, 1));
+        assertEquals(3, expansion.mOccurrences.size());
+        assertEquals("2019-01-03", RecurrenceEngine.getSQLDateString(expansion.mLastOccurrence));
+        assertNull(expansion.mNextOccurrence);
+    }
+
+    @Test
+    public void testExpand_invalidRule() {
+        RecurrenceEngine engine = new RecurrenceEngine(HORIZON);
+        DateTime firstOccurrence = new DateTime(2019, 0, 1);
+        RecurrenceEngine.Expansion expansion = engine.expand("INTERVAL=2", firstOccurrence);
+        assertEquals(0, expansion.mOccurrences.size());
+        assertSame(firstOccurrence, expansion.mLastOccurrence);
+        assertNull(expansion.mNextOccurrence);
+    }
+
+    @Test
+    public void testGetRule_compiledOnce() {
+        RecurrenceEngine engine = new RecurrenceEngine(HORIZON);
+        assertSame(engine.getRule("FREQ=WEEKLY"), engine.getRule("FREQ=WEEKLY"));
+    }
+
+    @Test
+    public void testGetSQLDateTimeString() {
+        assertEquals("2019-12-05 00:00:00", RecurrenceEngine.getSQLDateTimeString(new DateTime(2019, 11, 5)));
+    }
+}
@@ -0,0 +1,141 @@
+package com.oriondev.moneywallet.storage.cache;
+
+import com.oriondev.moneywallet.storage.database.Contract;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConversionEngineTest {
+
+    private FakeDataSource mDataSource;
+    private ConversionEngine mEngine;
+
+    @Before
+    public void setUp() throws IOException {
+        mDataSource = new FakeDataSource(ExchangeRateHistoryTest.loadFixture());
+        mEngine = new ConversionEngine(mDataSource);
+    }
+
+    @Test
+    public void testPeriodTotal_rateOfEachDay() {
+        // 10.00 EUR on the 10th (0.8 EUR = 1 USD) and on the 20th (0.9 EUR = 1 USD)
+        mDataSource.addRow("2019-01-10", "EUR", 2, Contract.Direction.EXPENSE, 1000L);
+        mDataSource.addRow("2019-01-20", "EUR", 2, Contract.Direction.EXPENSE, 1000L);
+        mDataSource.addRow("2019-01-20", "JPY", 0, Contract.Direction.INCOME, 1100L);
+        ConversionEngine.ConvertedTotal total = mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "USD", 2);
+        assertEquals(1250L + 1111L, total.getExpense());
+        assertEquals(1000L, total.getIncome());
+        assertEquals(1000L - 2361L, total.getNet());
+        assertTrue(total.isComplete());
+    }
+
+    @Test
+    public void testPeriodTotal_onlyRowsOfThePeriod() {
+        mDataSource.addRow("2018-12-31", "USD", 2, Contract.Direction.INCOME, 500L);
+        mDataSource.addRow("2019-01-10", "USD", 2, Contract.Direction.INCOME, 100L);
+        mDataSource.addRow("2019-02-01", "USD", 2, Contract.Direction.INCOME, 700L);
+        assertEquals(100L, mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "USD", 2).getIncome());
+    }
+
+    @Test
+    public void testPeriodTotal_missingCurrency() {
+        mDataSource.addRow("2019-01-10", "GBP", 2, Contract.Direction.INCOME, 1000L);
+        mDataSource.addRow("2019-01-10", "EUR", 2, Contract.Direction.INCOME, 800L);
+        ConversionEngine.ConvertedTotal total = mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "USD", 2);
+        assertEquals(1000L, total.getIncome());
+        assertFalse(total.isComplete());
+        assertTrue(total.getMissingCurrencies().contains("GBP"));
+    }
+
+    @Test
+    public void testNetWorth_rateOfTheDay() {
+        mDataSource.addRow("2019-01-10", "EUR", 2, Contract.Direction.INCOME, 9000L);
+        mDataSource.addRow("2019-01-20", "EUR", 2, Contract.Direction.EXPENSE, 900L);
+        mDataSource.addRow("2019-02-05", "EUR", 2, Contract.Direction.EXPENSE, 5000L);
+        // all the balance is converted with the rate of the day (0.9 EUR = 1 USD)
+        ConversionEngine.ConvertedTotal total = mEngine.getNetWorth("2019-01-31", "USD", 2);
+        assertEquals(9000L, total.getNet());
+    }
+
+    @Test
+    public void testCache_untilDataChanges() {
+        mDataSource.addRow("2019-01-10", "USD", 2, Contract.Direction.INCOME, 100L);
+        ConversionEngine.ConvertedTotal total = mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "EUR", 2);
+        assertSame(total, mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "EUR", 2));
+        assertEquals(1, mDataSource.mReadCount);
+        assertNotSame(total, mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "JPY", 0));
+        mDataSource.addRow("2019-01-11", "USD", 2, Contract.Direction.INCOME, 100L);
+        assertEquals(160L, mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "EUR", 2).getIncome());
+        assertEquals(3, mDataSource.mReadCount);
+    }
+
+    @Test
+    public void testCache_untilRatesChange() {
+        mDataSource.addRow("2019-01-10", "USD", 2, Contract.Direction.INCOME, 100L);
+        assertEquals(80L, mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "EUR", 2).getIncome());
+        mDataSource.mHistory = new ExchangeRateHistory.Builder()
+                .addRate("USD", "2019-01-01", 1d)
+                .addRate("EUR", "2019-01-01", 0.5)
+                .build();
+        assertEquals(50L, mEngine.getPeriodTotal("2019-01-01", "2019-01-31", "EUR", 2).getIncome());
+    }
+
+    private static class FakeDataSource implements ConversionEngine.DataSource {
+
+        private final List<Object[]> mRows = new ArrayList<>();
+        private ExchangeRateHistory mHistory;
+        private long mVersion;
+        private int mReadCount;
+
+        private FakeDataSource(ExchangeRateHistory history) {
+            mHistory = history;
+        }
+
+        private void addRow(String day, String currency, int decimals, int direction, long money) {
+            mRows.add(new Object[] {day, currency, decimals, direction, money});
+            mVersion++;
+        }
+
+        @Override
+        public ExchangeRateHistory getExchangeRateHistory() {
+            return mHistory;
+        }
+
+        @Override
+        public long getDataVersion() {
+            return mVersion;
+        }
+
+        @Override
+        public void readPeriodTotals(String startDay, String endDay, ConversionEngine.Collector collector) {
+            mReadCount++;
+            for (Object[] row : mRows) {
+                String day = (String) row[0];
+                if (day.compareTo(startDay) >= 0 && day.compareTo(endDay) <= 0) {
+                    collector.add(day, (String) row[1], (Integer) row[2], (Integer) row[3], (Long) row[4]);
+                }
+            }
+        }
+
+        @Override
+        public void readBalances(String day, ConversionEngine.Collector collector) {
+            mReadCount++;
+            for (Object[] row : mRows) {
+                String rowDay = (String) row[0];
+                if (rowDay.compareTo(day) <= 0) {
+                    collector.add(rowDay, (String) row[1], (Integer) row[2], (Integer) row[3], (Long) row[4]);
+                }
+            }
+        }
+    }
+}
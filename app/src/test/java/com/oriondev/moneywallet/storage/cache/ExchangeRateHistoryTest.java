@@ -0,0 +1,77 @@
+package com.oriondev.moneywallet.storage.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExchangeRateHistoryTest {
+
+    /*package-local*/ static ExchangeRateHistory loadFixture() throws IOException {
+        Reader reader = new InputStreamReader(ExchangeRateHistoryTest.class.getClassLoader().getResourceAsStream("exchange_rates.csv"), "UTF-8");
+        try {
+            ExchangeRateHistory.Builder builder = new ExchangeRateHistory.Builder();
+            assertEquals(7, ExchangeRateHistory.parse(reader, builder));
+            return builder.build();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testGetRate_validOnDay() throws IOException {
+        ExchangeRateHistory history = loadFixture();
+        assertEquals(0.8, history.getRate("EUR", "2019-01-01"), 0d);
+        assertEquals(0.8, history.getRate("EUR", "2019-01-14"), 0d);
+        assertEquals(0.9, history.getRate("EUR", "2019-01-15"), 0d);
+        assertEquals(0.9, history.getRate("EUR", "2019-01-31"), 0d);
+        assertEquals(1.0, history.getRate("EUR", "2020-06-01"), 0d);
+    }
+
+    @Test
+    public void testGetRate_beforeFirstRate() throws IOException {
+        assertEquals(0.8, loadFixture().getRate("EUR", "2018-12-31"), 0d);
+    }
+
+    @Test
+    public void testGetRate_unknownCurrency() throws IOException {
+        assertTrue(Double.isNaN(loadFixture().getRate("GBP", "2019-01-01")));
+    }
+
+    @Test
+    public void testGetExchangeRate() throws IOException {
+        ExchangeRateHistory history = loadFixture();
+        assertEquals(1d, history.getExchangeRate("GBP", "GBP", "2019-01-01"), 0d);
+        assertEquals(110d / 0.8, history.getExchangeRate("EUR", "JPY", "2019-01-10"), 1e-9);
+        assertEquals(100d, history.getExchangeRate("EUR", "JPY", "2019-02-10"), 1e-9);
+    }
+
+    @Test
+    public void testBuilder_sameDayReplaced() {
+        ExchangeRateHistory history = new ExchangeRateHistory.Builder()
+                .addRate("EUR", "2019-01-01", 0.8)
+                .addRate("EUR", "2019-01-01", 0.7)
+                .build();
+        assertEquals(0.7, history.getRate("EUR", "2019-01-01"), 0d);
+    }
+
+    @Test(expected = IOException.class)
+    public void testParse_invalidLine() throws IOException {
+        ExchangeRateHistory.parse(new StringReader("2019-01-01,EUR\n"), new ExchangeRateHistory.Builder());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParse_invalidDay() throws IOException {
+        ExchangeRateHistory.parse(new StringReader("01/01/2019,EUR,0.8\n"), new ExchangeRateHistory.Builder());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParse_invalidRate() throws IOException {
+        ExchangeRateHistory.parse(new StringReader("2019-01-01,EUR,-1\n"), new ExchangeRateHistory.Builder());
+    }
+}
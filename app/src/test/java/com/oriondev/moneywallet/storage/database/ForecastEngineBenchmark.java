@@ -0,0 +1,66 @@
+package com.oriondev.moneywallet.storage.database;
+
+import com.oriondev.moneywallet.utils.DateCodec;
+
+import org.dmfs.rfc5545.DateTime;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark that measures the time needed to build a forecast of five years with some hundreds
+ * of recurrences that share a small set of rules, as it usually happens. The best of a few
+ * runs must stay under 100 ms.
+ */
+public class ForecastEngineBenchmark {
+
+    private static final int WALLETS = 10;
+    private static final int RECURRENCES = 400;
+    private static final int RUNS = 5;
+    private static final long MAX_FORECAST_TIME = 100L * 1000000L;
+
+    private static final String[] RULES = new String[] {
+            "FREQ=DAILY",
+            "FREQ=WEEKLY",
+            "FREQ=WEEKLY;INTERVAL=2",
+            "FREQ=MONTHLY",
+            "FREQ=MONTHLY;INTERVAL=3",
+            "FREQ=YEARLY"
+    };
+
+    @Test
+    public void forecastOfFiveYears() {
+        // the first runs also measure the class loading and the interpreted code
+        long bestTime = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            bestTime = Math.min(bestTime, buildForecast());
+        }
+        assertTrue("forecast of five years built in " + (bestTime / 1000000L) + " ms", bestTime < MAX_FORECAST_TIME);
+    }
+
+    private long buildForecast() {
+        long startDay = DateCodec.toEpochDay(2019, 1, 1);
+        long endDay = startDay + ForecastEngine.DEFAULT_HORIZON_DAYS - 1;
+        long start = System.nanoTime();
+        ForecastEngine engine = new ForecastEngine(startDay, endDay);
+        for (int i = 0; i < WALLETS; i++) {
+            engine.addWallet(i, i % 2 == 0 ? "EUR" : "USD", true, 100000L);
+        }
+        int occurrences = 0;
+        for (int i = 0; i < RECURRENCES; i++) {
+            DateTime firstOccurrence = new DateTime(2019, i % 12, 1 + i % 28);
+            String rule = RULES[i % RULES.length];
+            if (i % 4 == 0) {
+                occurrences += engine.addRecurrentTransfer(i % WALLETS, 500L, (i + 1) % WALLETS, 500L, rule, firstOccurrence);
+            } else {
+                occurrences += engine.addRecurrentTransaction(i % WALLETS, i % 2 == 0 ? 1000L : -300L, rule, firstOccurrence);
+            }
+        }
+        ForecastEngine.Forecast forecast = engine.build();
+        long time = System.nanoTime() - start;
+        assertEquals(WALLETS, forecast.getWalletCount());
+        assertTrue(occurrences > RECURRENCES);
+        return time;
+    }
+}
@@ -0,0 +1,122 @@
+package com.oriondev.moneywallet.storage.database;
+
+import com.oriondev.moneywallet.utils.DateCodec;
+
+import org.dmfs.rfc5545.DateTime;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class ForecastEngineTest {
+
+    // 2019-01-10 is the current day of the forecast
+    private static final long START_DAY = DateCodec.toEpochDay(2019, 1, 10);
+    private static final long END_DAY = DateCodec.toEpochDay(2019, 3, 31);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_rangeLongerThanMaxHorizon() {
+        new ForecastEngine(START_DAY, START_DAY + ForecastEngine.MAX_HORIZON_DAYS);
+    }
+
+    @Test
+    public void testRecurrentTransaction_monthly() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 10000L);
+        int count = engine.addRecurrentTransaction(1L, -2500L, "FREQ=MONTHLY", new DateTime(2019, 0, 15));
+        assertEquals(3, count);
+        ForecastEngine.Forecast forecast = engine.build();
+        assertEquals(10000L, forecast.getWalletBalance(0, START_DAY));
+        assertEquals(10000L, forecast.getWalletBalance(0, ForecastEngine.parseEpochDay("2019-01-14")));
+        assertEquals(7500L, forecast.getWalletBalance(0, ForecastEngine.parseEpochDay("2019-01-15")));
+        assertEquals(5000L, forecast.getWalletBalance(0, ForecastEngine.parseEpochDay("2019-02-15")));
+        assertEquals(2500L, forecast.getWalletBalance(0, END_DAY));
+    }
+
+    @Test
+    public void testRecurrentTransaction_pendingOccurrencesOnFirstDay() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 0L);
+        // the occurrences from the 8th to the 10th have not been added to the database yet
+        engine.addRecurrentTransaction(1L, 100L, "FREQ=DAILY;COUNT=5", new DateTime(2019, 0, 8));
+        ForecastEngine.Forecast forecast = engine.build();
+        assertEquals(300L, forecast.getWalletBalance(0, START_DAY));
+        assertEquals(500L, forecast.getWalletBalance(0, END_DAY));
+    }
+
+    @Test
+    public void testRecurrentTransfer() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 1000L);
+        engine.addWallet(2L, "USD", true, 0L);
+        engine.addRecurrentTransfer(1L, 110L, 2L, 120L, "FREQ=WEEKLY;COUNT=4", new DateTime(2019, 0, 11));
+        ForecastEngine.Forecast forecast = engine.build();
+        assertEquals(1000L - 4 * 110L, forecast.getWalletBalance(0, END_DAY));
+        assertEquals(4 * 120L, forecast.getWalletBalance(1, END_DAY));
+        assertEquals(120L, forecast.getCurrencyBalance("USD", ForecastEngine.parseEpochDay("2019-01-11")));
+    }
+
+    @Test
+    public void testAddMoney_outsideOfTheForecast() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 0L);
+        engine.addMoney(1L, START_DAY - 1, 5L);
+        engine.addMoney(1L, END_DAY, 7L);
+        engine.addMoney(1L, END_DAY + 1, 11L);
+        engine.addMoney(2L, START_DAY, 13L);
+        ForecastEngine.Forecast forecast = engine.build();
+        assertEquals(5L, forecast.getWalletBalance(0, START_DAY));
+        assertEquals(12L, forecast.getWalletBalance(0, END_DAY));
+    }
+
+    @Test
+    public void testCurrencyBalance_onlyWalletsInTotal() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 100L);
+        engine.addWallet(2L, "EUR", false, 1000L);
+        engine.addWallet(3L, "EUR", true, 10L);
+        ForecastEngine.Forecast forecast = engine.build();
+        Iterator<String> currencies = forecast.getCurrencies();
+        assertEquals("EUR", currencies.next());
+        assertFalse(currencies.hasNext());
+        assertEquals(110L, forecast.getCurrencyBalance("EUR", END_DAY));
+        assertEquals(0L, forecast.getCurrencyBalance("USD", END_DAY));
+    }
+
+    @Test
+    public void testInvalidRule() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 100L);
+        assertEquals(0, engine.addRecurrentTransaction(1L, 1L, "INTERVAL=2", new DateTime(2019, 0, 11)));
+        assertEquals(100L, engine.build().getWalletBalance(0, END_DAY));
+    }
+
+    @Test
+    public void testGetRule_compiledOnce() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        assertSame(engine.getRule("FREQ=WEEKLY"), engine.getRule("FREQ=WEEKLY"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetWalletBalance_beforeStart() {
+        ForecastEngine engine = new ForecastEngine(START_DAY, END_DAY);
+        engine.addWallet(1L, "EUR", true, 100L);
+        engine.build().getWalletBalance(0, START_DAY - 1);
+    }
+
+    @Test
+    public void testEpochDay() {
+        assertEquals(0L, DateCodec.toEpochDay(1970, 1, 1));
+        assertEquals(17906L, ForecastEngine.parseEpochDay("2019-01-10 12:30:00"));
+        assertEquals("2019-01-10", DateCodec.formatEpochDay(17906L));
+        assertEquals("2020-02-29", DateCodec.formatEpochDay(ForecastEngine.parseEpochDay("2020-02-29")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseEpochDay_invalid() {
+        ForecastEngine.parseEpochDay("10/01/2019");
+    }
+}
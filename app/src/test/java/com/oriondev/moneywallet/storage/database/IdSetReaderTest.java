@@ -0,0 +1,55 @@
+package com.oriondev.moneywallet.storage.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class IdSetReaderTest {
+
+    @Test
+    public void testDecode_emptyValues() {
+        assertNull(IdSetReader.decode(null));
+        assertNull(IdSetReader.decode(""));
+    }
+
+    @Test
+    public void testDecode_singleId() {
+        assertArrayEquals(new long[] {5L}, IdSetReader.decode("<5>"));
+    }
+
+    @Test
+    public void testDecode_multipleIds() {
+        assertArrayEquals(new long[] {1L, 30L, 512L}, IdSetReader.decode("<1>,<30>,<512>"));
+    }
+
+    @Test
+    public void testDecode_largeId() {
+        assertArrayEquals(new long[] {123456789012345678L}, IdSetReader.decode("<123456789012345678>"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecode_missingBrackets() {
+        IdSetReader.decode("<1>,2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecode_emptyId() {
+        IdSetReader.decode("<>");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecode_notNumericId() {
+        IdSetReader.decode("<1a>");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecode_unclosedId() {
+        IdSetReader.decode("<1>,<2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecode_trailingSeparator() {
+        IdSetReader.decode("<1>,");
+    }
+}
@@ -0,0 +1,64 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory import store that counts the operations executed by the engine.
+ */
+/*package-local*/ class FakeImportStore implements IImportStore {
+
+    private final Map<Entity, List<String[]>> mEntities = new EnumMap<>(Entity.class);
+    private final List<ImportedTransaction> mTransactions = new ArrayList<>();
+
+    /*package-local*/ int mLoadCalls = 0;
+    /*package-local*/ int mCreateCalls = 0;
+    /*package-local*/ int mInsertCalls = 0;
+
+    /*package-local*/ FakeImportStore() {
+        for (Entity entity : Entity.values()) {
+            mEntities.put(entity, new ArrayList<String[]>());
+        }
+    }
+
+    /*package-local*/ long addEntity(Entity entity, String name, String detail) {
+        List<String[]> entities = mEntities.get(entity);
+        entities.add(new String[] {name, detail});
+        return entities.size();
+    }
+
+    /*package-local*/ int getEntityCount(Entity entity) {
+        return mEntities.get(entity).size();
+    }
+
+    /*package-local*/ List<ImportedTransaction> getTransactions() {
+        return mTransactions;
+    }
+
+    @Override
+    public void loadEntities(Entity entity, EntityListener listener) {
+        mLoadCalls++;
+        List<String[]> entities = mEntities.get(entity);
+        for (int i = 0; i < entities.size(); i++) {
+            listener.onEntityLoaded(i + 1, entities.get(i)[0], entities.get(i)[1]);
+        }
+    }
+
+    @Override
+    public long[] createEntities(Entity entity, List<String> names, List<String> details) {
+        mCreateCalls++;
+        long[] ids = new long[names.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = addEntity(entity, names.get(i), details.get(i));
+        }
+        return ids;
+    }
+
+    @Override
+    public void insertTransactions(List<ImportedTransaction> transactions) {
+        mInsertCalls++;
+        mTransactions.addAll(transactions);
+    }
+}
@@ -0,0 +1,59 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark that measures the throughput of the import engine on a bank export of 50k lines.
+ * The store is kept in memory so that only the work of the engine is measured.
+ */
+public class ImportEngineBenchmark {
+
+    private static final int FIXTURE_SIZE = 50000;
+    private static final long MAX_IMPORT_TIME = 5000L * 1000000L;
+
+    @Test
+    public void importThroughput() {
+        FakeImportStore store = new FakeImportStore();
+        ImportEngine engine = new ImportEngine(store);
+        long start = System.nanoTime();
+        for (int i = 0; i < FIXTURE_SIZE; i++) {
+            // the generation of the line is not part of the measured phases
+            String moneyString = String.format(Locale.ENGLISH, "%s%d.%02d", i % 3 == 0 ? "" : "-", i % 500, i % 100);
+            String dateString = String.format(Locale.ENGLISH, "2019-%02d-%02d 10:30:00", 1 + i % 12, 1 + i % 28);
+            long parseStart = System.nanoTime();
+            ImportedTransaction transaction = new ImportedTransaction();
+            transaction.mWallet = "wallet " + (i % 4);
+            transaction.mCurrency = "EUR";
+            transaction.mCategory = "category " + (i % 40);
+            transaction.mMoney = Math.abs(ImportEngine.parseMoney(moneyString, 2));
+            transaction.mDirection = moneyString.startsWith("-") ? 0 : 1;
+            transaction.mDateTime = ImportEngine.parseDateTime(dateString);
+            transaction.mDescription = "description " + i;
+            transaction.mPlace = i % 5 == 0 ? "place " + (i % 100) : null;
+            transaction.mPeople = i % 7 == 0 ? "person " + (i % 30) + ", person " + (i % 11) : null;
+            engine.recordPhase(ImportEngine.Phase.PARSE, parseStart, 1);
+            engine.addTransaction(transaction);
+        }
+        engine.flush();
+        long time = System.nanoTime() - start;
+        assertEquals(FIXTURE_SIZE, store.getTransactions().size());
+        assertEquals(FIXTURE_SIZE / ImportEngine.DEFAULT_BATCH_SIZE, store.mInsertCalls);
+        // every line must go through each phase exactly once
+        assertEquals(FIXTURE_SIZE, engine.getPhaseItems(ImportEngine.Phase.PARSE));
+        assertEquals(FIXTURE_SIZE, engine.getPhaseItems(ImportEngine.Phase.RESOLVE));
+        assertEquals(FIXTURE_SIZE, engine.getPhaseItems(ImportEngine.Phase.COMMIT));
+        long phasesTime = 0L;
+        for (ImportEngine.Phase phase : ImportEngine.Phase.values()) {
+            assertTrue(engine.getPhaseTime(phase) >= 0L);
+            phasesTime += engine.getPhaseTime(phase);
+        }
+        assertTrue(engine.getPhaseTime(ImportEngine.Phase.RESOLVE) > 0L);
+        assertTrue(phasesTime <= time);
+        assertTrue("50k lines imported in " + (time / 1000000L) + " ms", time < MAX_IMPORT_TIME);
+    }
+}
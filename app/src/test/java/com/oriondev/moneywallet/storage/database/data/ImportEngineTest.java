@@ -0,0 +1,123 @@
+package com.oriondev.moneywallet.storage.database.data;
+
+import com.oriondev.moneywallet.storage.database.Contract;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ImportEngineTest {
+
+    @Test
+    public void testParseMoney_integer() {
+        assertEquals(1200L, ImportEngine.parseMoney("12", 2));
+        assertEquals(-1200L, ImportEngine.parseMoney("-12", 2));
+        assertEquals(12L, ImportEngine.parseMoney("+12", 0));
+    }
+
+    @Test
+    public void testParseMoney_decimalSeparators() {
+        assertEquals(1250L, ImportEngine.parseMoney("12.5", 2));
+        assertEquals(1250L, ImportEngine.parseMoney("12,50", 2));
+        assertEquals(-5L, ImportEngine.parseMoney("-0.05", 2));
+        assertEquals(50L, ImportEngine.parseMoney(".5", 2));
+    }
+
+    @Test
+    public void testParseMoney_exceedingDecimalsAreTruncated() {
+        assertEquals(1299L, ImportEngine.parseMoney("12.999", 2));
+        assertEquals(-1299L, ImportEngine.parseMoney("-12.999", 2));
+        assertEquals(12L, ImportEngine.parseMoney("12.9", 0));
+    }
+
+    @Test
+    public void testParseMoney_unusualFormats() {
+        assertEquals(150000L, ImportEngine.parseMoney("1.5E3", 2));
+        assertEquals(123456789012345678L, ImportEngine.parseMoney("1234567890123456.78", 2));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseMoney_twoSeparators() {
+        ImportEngine.parseMoney("1,234.56", 2);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseMoney_noDigits() {
+        ImportEngine.parseMoney("-", 2);
+    }
+
+    @Test
+    public void testParseDateTime_wellFormatted() {
+        String value = "2019-02-28 23:59:59";
+        assertEquals(value, ImportEngine.parseDateTime(value));
+    }
+
+    @Test
+    public void testResolve_existingEntitiesAreReused() {
+        FakeImportStore store = new FakeImportStore();
+        store.addEntity(IImportStore.Entity.WALLET, "Cash", "EUR");
+        store.addEntity(IImportStore.Entity.CATEGORY, "Food", String.valueOf(Contract.CategoryType.EXPENSE.getValue()));
+        store.addEntity(IImportStore.Entity.EVENT, "Holiday", null);
+        ImportEngine engine = new ImportEngine(store, 10);
+        engine.addTransaction(newTransaction("Cash", "EUR", "Food", Contract.Direction.EXPENSE, "Holiday", null, null));
+        engine.flush();
+        ImportedTransaction transaction = store.getTransactions().get(0);
+        assertEquals(1L, transaction.mWalletId);
+        assertEquals(1L, transaction.mCategoryId);
+        assertEquals(Long.valueOf(1L), transaction.mEventId);
+        assertNull(transaction.mPlaceId);
+        assertNull(transaction.mPeopleIds);
+        assertEquals(0, engine.getCreatedEntities());
+    }
+
+    @Test
+    public void testResolve_missingEntitiesAreCreatedOnce() {
+        FakeImportStore store = new FakeImportStore();
+        ImportEngine engine = new ImportEngine(store, 100);
+        for (int i = 0; i < 250; i++) {
+            engine.addTransaction(newTransaction("Wallet " + (i % 2), "EUR", "Food", i % 2, "Unknown", "Home", "Anna, Marco"));
+        }
+        engine.flush();
+        assertEquals(250, store.getTransactions().size());
+        assertEquals(5, store.mLoadCalls);
+        assertEquals(3, store.mInsertCalls);
+        assertEquals(2, store.getEntityCount(IImportStore.Entity.WALLET));
+        assertEquals(2, store.getEntityCount(IImportStore.Entity.CATEGORY));
+        assertEquals(1, store.getEntityCount(IImportStore.Entity.PLACE));
+        assertEquals(2, store.getEntityCount(IImportStore.Entity.PERSON));
+        assertEquals(0, store.getEntityCount(IImportStore.Entity.EVENT));
+        ImportedTransaction transaction = store.getTransactions().get(249);
+        assertEquals(2L, transaction.mWalletId);
+        assertNull(transaction.mEventId);
+        assertEquals(Long.valueOf(1L), transaction.mPlaceId);
+        assertEquals("<1>,<2>", transaction.mPeopleIds);
+        assertEquals(250, engine.getPhaseItems(ImportEngine.Phase.COMMIT));
+    }
+
+    @Test
+    public void testResolve_categoriesAreSplitByDirection() {
+        FakeImportStore store = new FakeImportStore();
+        ImportEngine engine = new ImportEngine(store, 10);
+        engine.addTransaction(newTransaction("Cash", "EUR", "Other", Contract.Direction.INCOME, null, null, null));
+        engine.addTransaction(newTransaction("Cash", "USD", "Other", Contract.Direction.EXPENSE, null, null, null));
+        engine.flush();
+        assertEquals(2, store.getEntityCount(IImportStore.Entity.WALLET));
+        assertEquals(2, store.getEntityCount(IImportStore.Entity.CATEGORY));
+    }
+
+    /*package-local*/ static ImportedTransaction newTransaction(String wallet, String currency, String category, int direction,
+                                                               String event, String place, String people) {
+        ImportedTransaction transaction = new ImportedTransaction();
+        transaction.mWallet = wallet;
+        transaction.mCurrency = currency;
+        transaction.mCategory = category;
+        transaction.mDateTime = "2019-01-01 12:00:00";
+        transaction.mMoney = 100L;
+        transaction.mDirection = direction;
+        transaction.mEvent = event;
+        transaction.mPlace = place;
+        transaction.mPeople = people;
+        return transaction;
+    }
+}
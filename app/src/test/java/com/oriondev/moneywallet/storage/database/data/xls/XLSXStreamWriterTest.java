@@ -0,0 +1,215 @@
+package com.oriondev.moneywallet.storage.database.data.xls;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class XLSXStreamWriterTest {
+
+    private static final String CONTENT_TYPE_SHEET = "application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml";
+
+    private static Map<String, byte[]> writeWorkbook() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XLSXStreamWriter writer = new XLSXStreamWriter(outputStream);
+        writer.beginSheet("Wallet: <main>", new int[] {20, 15, 30});
+        writer.beginRow();
+        writer.writeHeader("Date");
+        writer.writeHeader("Money");
+        writer.writeHeader("Description");
+        writer.endRow();
+        writer.beginRow();
+        writer.writeDateTime("2019-01-02 12:00:00");
+        writer.writeNumber(-1234L, 2);
+        writer.writeString("Fish & \"chips\" <lunch>");
+        writer.endRow();
+        writer.beginRow();
+        writer.writeDateTime("not a date");
+        writer.writeNumber(5L, 0);
+        writer.writeString(null);
+        writer.endRow();
+        writer.beginRow();
+        writer.skipCell();
+        writer.writeNumber(Long.MIN_VALUE, 3);
+        writer.writeString("tab\tand\u0001control");
+        writer.endRow();
+        writer.endSheet();
+        writer.beginSheet("wallet: <MAIN>", new int[] {10});
+        writer.endSheet();
+        writer.close();
+        Map<String, byte[]> entries = new HashMap<>();
+        ZipInputStream inputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        ZipEntry entry;
+        while ((entry = inputStream.getNextEntry()) != null) {
+            ByteArrayOutputStream entryStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                entryStream.write(buffer, 0, read);
+            }
+            assertFalse("duplicated entry " + entry.getName(), entries.containsKey(entry.getName()));
+            entries.put(entry.getName(), entryStream.toByteArray());
+        }
+        inputStream.close();
+        return entries;
+    }
+
+    private static Document parse(Map<String, byte[]> entries, String name) throws Exception {
+        byte[] content = entries.get(name);
+        assertNotNull("missing entry " + name, content);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(content));
+    }
+
+    private static Element getCell(Document sheet, String reference) {
+        NodeList cells = sheet.getElementsByTagName("c");
+        for (int i = 0; i < cells.getLength(); i++) {
+            Element cell = (Element) cells.item(i);
+            if (reference.equals(cell.getAttribute("r"))) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    private static String getValue(Element cell) {
+        return cell.getElementsByTagName("v").item(0).getTextContent();
+    }
+
+    private static String getInlineString(Element cell) {
+        assertEquals("inlineStr", cell.getAttribute("t"));
+        return cell.getElementsByTagName("t").item(0).getTextContent();
+    }
+
+    @Test
+    public void testPackage_containsAllParts() throws Exception {
+        Map<String, byte[]> entries = writeWorkbook();
+        assertEquals(7, entries.size());
+        Document contentTypes = parse(entries, "[Content_Types].xml");
+        Map<String, String> overrides = new HashMap<>();
+        NodeList nodes = contentTypes.getElementsByTagName("Override");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element override = (Element) nodes.item(i);
+            overrides.put(override.getAttribute("PartName"), override.getAttribute("ContentType"));
+        }
+        assertEquals(4, overrides.size());
+        assertTrue(overrides.containsKey("/xl/workbook.xml"));
+        assertTrue(overrides.containsKey("/xl/styles.xml"));
+        assertEquals(CONTENT_TYPE_SHEET, overrides.get("/xl/worksheets/sheet1.xml"));
+        assertEquals(CONTENT_TYPE_SHEET, overrides.get("/xl/worksheets/sheet2.xml"));
+        // every part referenced by the relationships must exist
+        Document relationships = parse(entries, "xl/_rels/workbook.xml.rels");
+        nodes = relationships.getElementsByTagName("Relationship");
+        assertEquals(3, nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            String target = ((Element) nodes.item(i)).getAttribute("Target");
+            assertTrue("missing target " + target, entries.containsKey("xl/" + target));
+        }
+        parse(entries, "_rels/.rels");
+    }
+
+    @Test
+    public void testWorkbook_sheetNamesAreValidAndUnique() throws Exception {
+        Document workbook = parse(writeWorkbook(), "xl/workbook.xml");
+        NodeList sheets = workbook.getElementsByTagName("sheet");
+        assertEquals(2, sheets.getLength());
+        assertEquals("Wallet  <main>", ((Element) sheets.item(0)).getAttribute("name"));
+        assertEquals("wallet  <MAIN> (2)", ((Element) sheets.item(1)).getAttribute("name"));
+    }
+
+    @Test
+    public void testSheet_stringCellsAreInlineAndEscaped() throws Exception {
+        Document sheet = parse(writeWorkbook(), "xl/worksheets/sheet1.xml");
+        assertEquals(0, sheet.getElementsByTagName("f").getLength());
+        Element header = getCell(sheet, "A1");
+        assertEquals("Date", getInlineString(header));
+        assertEquals("1", header.getAttribute("s"));
+        Element description = getCell(sheet, "C2");
+        assertEquals("Fish & \"chips\" <lunch>", getInlineString(description));
+        assertEquals("", description.getAttribute("s"));
+        // the control characters are removed, the tab is kept
+        assertEquals("tab\tandcontrol", getInlineString(getCell(sheet, "C4")));
+        // a null string and a skipped cell do not write any cell
+        assertNull(getCell(sheet, "C3"));
+        assertNull(getCell(sheet, "A4"));
+        // an invalid date is written as a string
+        assertEquals("not a date", getInlineString(getCell(sheet, "A3")));
+    }
+
+    @Test
+    public void testSheet_numberAndDateCells() throws Exception {
+        Document sheet = parse(writeWorkbook(), "xl/worksheets/sheet1.xml");
+        Element date = getCell(sheet, "A2");
+        assertEquals("2", date.getAttribute("s"));
+        assertEquals("", date.getAttribute("t"));
+        // 2019-01-02 is the day 43467 of the excel calendar
+        assertEquals(43467.5, Double.parseDouble(getValue(date)), 0d);
+        Element money = getCell(sheet, "B2");
+        assertEquals("-12.34", getValue(money));
+        assertEquals(String.valueOf(3 + 2), money.getAttribute("s"));
+        Element integer = getCell(sheet, "B3");
+        assertEquals("5", getValue(integer));
+        assertEquals("3", integer.getAttribute("s"));
+        assertEquals("-9223372036854775.808", getValue(getCell(sheet, "B4")));
+        NodeList rows = sheet.getElementsByTagName("row");
+        assertEquals(4, rows.getLength());
+        assertEquals("4", ((Element) rows.item(3)).getAttribute("r"));
+        NodeList columns = sheet.getElementsByTagName("col");
+        assertEquals(3, columns.getLength());
+        assertEquals("30", ((Element) columns.item(2)).getAttribute("width"));
+    }
+
+    @Test
+    public void testStyles_declareEveryUsedIndex() throws Exception {
+        Document styles = parse(writeWorkbook(), "xl/styles.xml");
+        Element cellFormats = (Element) styles.getElementsByTagName("cellXfs").item(0);
+        NodeList formats = cellFormats.getElementsByTagName("xf");
+        int count = Integer.parseInt(cellFormats.getAttribute("count"));
+        assertEquals(count, formats.getLength());
+        // header, date and one number format for each number of decimals
+        assertEquals(3 + XLSXStreamWriter.MAX_DECIMALS + 1, count);
+        assertEquals("1", ((Element) formats.item(1)).getAttribute("fontId"));
+        assertEquals("164", ((Element) formats.item(2)).getAttribute("numFmtId"));
+        Map<String, String> numberFormats = new HashMap<>();
+        NodeList nodes = styles.getElementsByTagName("numFmt");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element numberFormat = (Element) nodes.item(i);
+            numberFormats.put(numberFormat.getAttribute("numFmtId"), numberFormat.getAttribute("formatCode"));
+        }
+        assertEquals("yyyy-mm-dd hh:mm:ss", numberFormats.get("164"));
+        for (int decimals = 0; decimals <= XLSXStreamWriter.MAX_DECIMALS; decimals++) {
+            String numberFormatId = ((Element) formats.item(3 + decimals)).getAttribute("numFmtId");
+            String formatCode = numberFormats.get(numberFormatId);
+            assertNotNull(formatCode);
+            int separator = formatCode.indexOf('.');
+            assertEquals(decimals, separator == -1 ? 0 : formatCode.length() - separator - 1);
+        }
+    }
+
+    @Test
+    public void testColumnName() {
+        assertEquals("A", XLSXStreamWriter.getColumnName(0));
+        assertEquals("Z", XLSXStreamWriter.getColumnName(25));
+        assertEquals("AA", XLSXStreamWriter.getColumnName(26));
+        assertEquals("AZ", XLSXStreamWriter.getColumnName(51));
+        assertEquals("ZZ", XLSXStreamWriter.getColumnName(701));
+        assertEquals("AAA", XLSXStreamWriter.getColumnName(702));
+    }
+}
@@ -0,0 +1,106 @@
+package com.oriondev.moneywallet.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SimpleDateFormat created on each call (the previous DateUtils implementation)
+ * with the DateCodec. Each operation parses or formats a batch of rows, like a cursor does.
+ * Run the main method to get the allocation rate (gc.alloc.rate.norm) of each benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateCodecBenchmark {
+
+    private static final int ROWS = 256;
+
+    private DateCodec mCodec;
+    private String[] mDateTimes;
+    private long[] mMillis;
+
+    @Setup
+    public void setup() {
+        mCodec = new DateCodec(TimeZone.getDefault());
+        Random random = new Random(42);
+        mDateTimes = new String[ROWS];
+        mMillis = new long[ROWS];
+        long start = 1546300800000L;
+        for (int i = 0; i < ROWS; i++) {
+            // a few transactions per day, sorted by date like the transaction list
+            mMillis[i] = start + i * 6L * 60L * 60L * 1000L + random.nextInt(3600) * 1000L;
+            mDateTimes[i] = new SimpleDateFormat(DateCodec.SQL_DATETIME, Locale.ENGLISH).format(new Date(mMillis[i]));
+        }
+    }
+
+    @Benchmark
+    public long parseLegacy() throws ParseException {
+        long total = 0;
+        for (String dateTime : mDateTimes) {
+            DateFormat dateFormat = new SimpleDateFormat(DateCodec.SQL_DATETIME, Locale.ENGLISH);
+            total += dateFormat.parse(dateTime).getTime();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long parseCodec() {
+        long total = 0;
+        for (String dateTime : mDateTimes) {
+            total += mCodec.parseDateTime(dateTime);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int formatLegacy() {
+        int total = 0;
+        for (long millis : mMillis) {
+            DateFormat dateFormat = new SimpleDateFormat(DateCodec.SQL_DATE, Locale.ENGLISH);
+            total += dateFormat.format(new Date(millis)).length();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int formatCodec() {
+        int total = 0;
+        for (long millis : mMillis) {
+            total += mCodec.formatDate(millis).length();
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DateCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,247 @@
+package com.oriondev.moneywallet.utils;
+
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Property test that compares the codec with the SimpleDateFormat based implementation it
+ * replaces, on random instants and on random (also malformed or lenient) strings.
+ */
+public class DateCodecTest {
+
+    private static final String[] TIME_ZONES = new String[] {
+            "UTC",
+            "Europe/Rome",
+            "America/New_York",
+            "America/Sao_Paulo",
+            "Asia/Kolkata",
+            "Australia/Lord_Howe",
+            "Pacific/Apia"
+    };
+
+    private static final int ITERATIONS = 20000;
+
+    // 1900-01-01 and 2100-01-01 (UTC)
+    private static final long MIN_MILLIS = -2208988800000L;
+    private static final long MAX_MILLIS = 4102444800000L;
+
+    private static DateFormat createFormat(String pattern, TimeZone timeZone) {
+        DateFormat format = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+    @Test
+    public void testFormat_equivalentToSimpleDateFormat() {
+        Random random = new Random(1);
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateCodec codec = new DateCodec(timeZone);
+            DateFormat dateFormat = createFormat(DateCodec.SQL_DATE, timeZone);
+            DateFormat dateTimeFormat = createFormat(DateCodec.SQL_DATETIME, timeZone);
+            for (int i = 0; i < ITERATIONS; i++) {
+                long millis = MIN_MILLIS + (long) (random.nextDouble() * (MAX_MILLIS - MIN_MILLIS));
+                assertEquals(id + " " + millis, dateFormat.format(millis), codec.formatDate(millis));
+                assertEquals(id + " " + millis, dateTimeFormat.format(millis), codec.formatDateTime(millis));
+                // the second lookup is served by the cache
+                assertEquals(id + " " + millis, dateTimeFormat.format(millis), codec.formatDateTime(millis));
+            }
+        }
+    }
+
+    @Test
+    public void testParse_roundTripEquivalentToSimpleDateFormat() throws ParseException {
+        Random random = new Random(2);
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateCodec codec = new DateCodec(timeZone);
+            DateFormat dateFormat = createFormat(DateCodec.SQL_DATE, timeZone);
+            DateFormat dateTimeFormat = createFormat(DateCodec.SQL_DATETIME, timeZone);
+            for (int i = 0; i < ITERATIONS; i++) {
+                long millis = MIN_MILLIS + (long) (random.nextDouble() * (MAX_MILLIS - MIN_MILLIS));
+                String date = dateFormat.format(millis);
+                String dateTime = dateTimeFormat.format(millis);
+                assertEquals(id + " " + date, dateFormat.parse(date).getTime(), codec.parseDate(date));
+                assertEquals(id + " " + dateTime, dateTimeFormat.parse(dateTime).getTime(), codec.parseDateTime(dateTime));
+                assertEquals(id + " " + dateTime, dateFormat.parse(dateTime).getTime(), codec.parseDate(dateTime));
+                assertEquals(id + " " + date, Integer.parseInt(date.replace("-", "")), codec.parsePackedDay(date, 0));
+            }
+        }
+    }
+
+    @Test
+    public void testParse_randomFieldsEquivalentToSimpleDateFormat() {
+        Random random = new Random(3);
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            DateCodec codec = new DateCodec(timeZone);
+            DateFormat dateFormat = createFormat(DateCodec.SQL_DATE, timeZone);
+            DateFormat dateTimeFormat = createFormat(DateCodec.SQL_DATETIME, timeZone);
+            for (int i = 0; i < ITERATIONS; i++) {
+                String text = randomText(random);
+                assertParseEquals(id, text, dateFormat, codec, false);
+                assertParseEquals(id, text, dateTimeFormat, codec, true);
+            }
+        }
+    }
+
+    @Test
+    public void testParse_daylightSavingTransitions() {
+        String[][] cases = new String[][] {
+                // missing local midnight
+                {"America/Sao_Paulo", "2018-11-04 00:30:00"},
+                {"America/Sao_Paulo", "2018-11-04"},
+                // missing and repeated local hour
+                {"Europe/Rome", "2019-03-31 02:30:00"},
+                {"Europe/Rome", "2019-10-27 02:30:00"},
+                {"America/New_York", "2019-11-03 01:30:00"},
+                // skipped day
+                {"Pacific/Apia", "2011-12-30"},
+                {"Pacific/Apia", "2011-12-30 12:00:00"}
+        };
+        for (String[] testCase : cases) {
+            TimeZone timeZone = TimeZone.getTimeZone(testCase[0]);
+            DateCodec codec = new DateCodec(timeZone);
+            boolean dateTime = testCase[1].length() > 10;
+            DateFormat format = createFormat(dateTime ? DateCodec.SQL_DATETIME : DateCodec.SQL_DATE, timeZone);
+            assertParseEquals(testCase[0], testCase[1], format, codec, dateTime);
+        }
+    }
+
+    @Test
+    public void testFormat_beforeGregorianCutover() {
+        TimeZone timeZone = TimeZone.getTimeZone("UTC");
+        DateCodec codec = new DateCodec(timeZone);
+        Calendar calendar = Calendar.getInstance(timeZone, Locale.ENGLISH);
+        calendar.clear();
+        calendar.set(1500, Calendar.MARCH, 1, 10, 0, 0);
+        long millis = calendar.getTimeInMillis();
+        assertEquals("1500-03-01", codec.formatDate(millis));
+        assertEquals("1500-03-01 10:00:00", codec.formatDateTime(millis));
+        assertEquals(millis, codec.parseDateTime("1500-03-01 10:00:00"));
+        assertEquals(15000301, codec.getPackedDay(millis));
+    }
+
+    @Test
+    public void testParse_offset() {
+        DateCodec codec = new DateCodec(TimeZone.getTimeZone("UTC"));
+        assertEquals(86400000L, codec.parseDate("day=1970-01-02", 4));
+        assertEquals(19700102, codec.parsePackedDay("day=1970-01-02", 4));
+        assertEquals(90061000L, codec.parseDateTime("x1970-01-02 01:01:01", 1));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testParse_invalidThrows() {
+        new DateCodec(TimeZone.getTimeZone("UTC")).parseDateTime("2019-01-01");
+    }
+
+    @Test
+    public void testEpochDay_equivalentToCalendar() {
+        Random random = new Random(7L);
+        DateFormat format = new SimpleDateFormat(DateCodec.SQL_DATE, Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ENGLISH);
+        for (int i = 0; i < 10000; i++) {
+            // the calendar is julian before 1582, so the range starts after the cutover
+            long epochDay = random.nextInt(3000000) - 140000;
+            long millis = epochDay * 86400000L;
+            calendar.setTimeInMillis(millis);
+            String expected = format.format(millis);
+            assertEquals(expected, DateCodec.formatEpochDay(epochDay));
+            assertEquals(epochDay, DateCodec.getEpochDay(millis + random.nextInt(86400000)));
+            assertEquals(epochDay, DateCodec.toEpochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH)));
+        }
+        assertEquals(0L, DateCodec.toEpochDay(1970, 1, 1));
+        assertEquals(-1L, DateCodec.getEpochDay(-1L));
+        assertEquals("2020-02-29", DateCodec.formatPackedDay(20200229));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFormatEpochDay_yearOutOfRange() {
+        DateCodec.formatEpochDay(DateCodec.toEpochDay(10000, 1, 1));
+    }
+
+    private static void assertParseEquals(String id, String text, DateFormat format, DateCodec codec, boolean dateTime) {
+        Long expected;
+        try {
+            expected = format.parse(text).getTime();
+        } catch (ParseException e) {
+            expected = null;
+        }
+        try {
+            long actual = dateTime ? codec.parseDateTime(text) : codec.parseDate(text);
+            if (expected == null) {
+                fail(id + " '" + text + "' should not be parsed");
+            }
+            assertEquals(id + " '" + text + "'", expected.longValue(), actual);
+        } catch (RuntimeException e) {
+            if (expected != null) {
+                throw new AssertionError(id + " '" + text + "' should be parsed", e);
+            }
+        }
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(randomNumber(random, 1900, 2100, 4));
+        builder.append(random.nextInt(50) == 0 ? '/' : '-');
+        builder.append(randomNumber(random, 1, 12, 2));
+        builder.append('-');
+        builder.append(randomNumber(random, 1, 31, 2));
+        switch (random.nextInt(6)) {
+            case 0:
+                // date only
+                break;
+            case 1:
+                builder.append(" trailing");
+                break;
+            default:
+                builder.append(random.nextInt(50) == 0 ? 'T' : ' ');
+                builder.append(randomNumber(random, 0, 23, 2));
+                builder.append(':');
+                builder.append(randomNumber(random, 0, 59, 2));
+                builder.append(':');
+                builder.append(randomNumber(random, 0, 59, 2));
+                if (random.nextInt(10) == 0) {
+                    builder.append(random.nextBoolean() ? ".123" : "7");
+                }
+                break;
+        }
+        return builder.toString();
+    }
+
+    private static String randomNumber(Random random, int min, int max, int digits) {
+        int value;
+        switch (random.nextInt(20)) {
+            case 0:
+                // out of range but lenient
+                value = max + 1 + random.nextInt(3);
+                break;
+            case 1:
+                value = 0;
+                break;
+            default:
+                value = min + random.nextInt(max - min + 1);
+                break;
+        }
+        String string = Integer.toString(value);
+        if (random.nextInt(30) == 0) {
+            // not padded
+            return string;
+        }
+        while (string.length() < digits) {
+            string = "0" + string;
+        }
+        return string;
+    }
+}